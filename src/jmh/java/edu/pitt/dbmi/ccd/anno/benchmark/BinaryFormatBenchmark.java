@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.pitt.dbmi.ccd.anno.CCDAnnotations;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationPage;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationPagedResourcesAssembler;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationResource;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationResourceAssembler;
+import edu.pitt.dbmi.ccd.anno.util.MediaTypes;
+import edu.pitt.dbmi.ccd.db.entity.Access;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
+import edu.pitt.dbmi.ccd.db.entity.Attribute;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * Payload size and encode/decode throughput of an annotation page as HAL
+ * JSON, Smile and CBOR, using the mapper of the converter the API negotiates
+ * for each format.
+ * <p>
+ * Payload sizes are printed when each trial starts. Run through the
+ * benchmark profile:
+ * {@code mvn -P benchmark test -Dbenchmark=BinaryFormatBenchmark}
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BinaryFormatBenchmark {
+
+    // annotations per page
+    private static final int PAGE_SIZE = 20;
+
+    // levels of data below each annotation, and data per level
+    private static final int DEPTH = 2;
+    private static final int WIDTH = 4;
+
+    // handler adapter of the API's controllers
+    private static final String HANDLER_ADAPTER = "requestMappingHandlerAdapter";
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager entityManager;
+    private ObjectMapper mapper;
+
+    private PagedResources<AnnotationResource> resources;
+    private byte[] payload;
+    private long nextId;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = new SpringApplicationBuilder(CCDAnnotations.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "spring.jpa.show-sql=false", "logging.level.root=WARN")
+                .run();
+        mapper = mapper(format);
+
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/annotations/annotations");
+        request.setContextPath("/annotations");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request), true);
+
+        // reference entities come from the sample data so vocabulary lookups hit the cache
+        entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+        final AnnotationPage page = page(
+                entityManager.find(UserAccount.class, 1L),
+                entityManager.find(AnnotationTarget.class, 1L),
+                entityManager.find(Access.class, 1L),
+                entityManager.find(Vocabulary.class, 1L),
+                entityManager.find(Attribute.class, 1L));
+        resources = context.getBean(AnnotationPagedResourcesAssembler.class)
+                .toResource(page, context.getBean(AnnotationResourceAssembler.class), request);
+        payload = mapper.writeValueAsBytes(resources);
+        System.out.printf("%n%s annotation page: %d bytes%n", format, payload.length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        entityManager.close();
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(resources);
+    }
+
+    @Benchmark
+    public JsonNode decode() throws IOException {
+        return mapper.readTree(payload);
+    }
+
+    /**
+     * Mapper of the converter the API negotiates for the format
+     */
+    private ObjectMapper mapper(String format) {
+        final MediaType mediaType;
+        switch (format) {
+            case "smile":
+                mediaType = MediaType.valueOf(MediaTypes.SMILE_VALUE);
+                break;
+            case "cbor":
+                mediaType = MediaType.valueOf(MediaTypes.CBOR_VALUE);
+                break;
+            default:
+                mediaType = org.springframework.hateoas.MediaTypes.HAL_JSON;
+        }
+        return context.getBean(HANDLER_ADAPTER, RequestMappingHandlerAdapter.class)
+                .getMessageConverters()
+                .stream()
+                .filter(c -> c instanceof AbstractJackson2HttpMessageConverter)
+                .filter(c -> c.getSupportedMediaTypes().contains(mediaType))
+                .map(c -> ((AbstractJackson2HttpMessageConverter) c).getObjectMapper())
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No converter for " + mediaType));
+    }
+
+    /**
+     * Build a page of annotations, each with a full data tree
+     */
+    private AnnotationPage page(UserAccount user, AnnotationTarget target, Access access, Vocabulary vocabulary, Attribute text) {
+        final Date now = new Date();
+        final List<Annotation> annotations = new ArrayList<>(PAGE_SIZE);
+        final Map<Long, List<AnnotationData>> data = new HashMap<>();
+        final Map<Long, List<AnnotationData>> subData = new HashMap<>();
+        final Map<Long, Long> childCounts = new HashMap<>();
+        for (long id = 1; id <= PAGE_SIZE; id++) {
+            final Annotation annotation = new Annotation(user, target, null, access, null, vocabulary);
+            annotation.setId(id);
+            annotation.setCreated(now);
+            annotation.setModified(now);
+            final List<AnnotationData> tree = new ArrayList<>();
+            data(annotation, text, null, 1, tree, subData);
+            annotations.add(annotation);
+            data.put(id, tree);
+            childCounts.put(id, id % 2);
+        }
+        final PageImpl<Annotation> content = new PageImpl<>(annotations, new PageRequest(0, PAGE_SIZE), PAGE_SIZE * 10);
+        return new AnnotationPage(content, data, subData, childCounts);
+    }
+
+    private void data(Annotation annotation, Attribute attribute, AnnotationData parent, int level, List<AnnotationData> tree, Map<Long, List<AnnotationData>> subData) {
+        if (level > DEPTH) {
+            return;
+        }
+        for (int i = 0; i < WIDTH; i++) {
+            final AnnotationData node = new AnnotationData(annotation, attribute, String.format("value %d.%d", level, i));
+            node.setId(++nextId);
+            node.setParent(parent);
+            tree.add(node);
+            if (parent != null) {
+                subData.computeIfAbsent(parent.getId(), k -> new ArrayList<>()).add(node);
+            }
+            data(annotation, attribute, node, level + 1, tree, subData);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.pitt.dbmi.ccd.anno.CCDAnnotations;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationEmbedding;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationPage;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationPagedResourcesAssembler;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationResource;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationResourceAssembler;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataResourceAssembler;
+import edu.pitt.dbmi.ccd.anno.vocabulary.attribute.AttributeResourceAssembler;
+import edu.pitt.dbmi.ccd.db.entity.Access;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
+import edu.pitt.dbmi.ccd.db.entity.Attribute;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Throughput and allocation of the annotation read path: resource assembly
+ * and HAL serialization of synthetic annotations whose data trees vary in
+ * depth and width.
+ * <p>
+ * Serialized sizes of the inline and shared annotation pages are printed
+ * when each trial starts. Run with the GC profiler through the benchmark
+ * profile:
+ * {@code mvn -P benchmark test -Dbenchmark=ResourceAssemblyBenchmark}
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ResourceAssemblyBenchmark {
+
+    // annotations per page
+    private static final int PAGE_SIZE = 20;
+
+    // bean registered by Spring HATEOAS for HAL responses
+    private static final String HAL_OBJECT_MAPPER = "_halObjectMapper";
+
+    // levels of data and attributes below each annotation
+    @Param({"1", "3"})
+    public int depth;
+
+    // data and attributes per level
+    @Param({"2", "8"})
+    public int width;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager entityManager;
+    private MockHttpServletRequest request;
+    private ObjectMapper mapper;
+    private AnnotationResourceAssembler assembler;
+    private AnnotationPagedResourcesAssembler pageAssembler;
+    private AnnotationDataResourceAssembler dataAssembler;
+    private AttributeResourceAssembler attributeAssembler;
+
+    private AnnotationPage page;
+    private Annotation annotation;
+    private AnnotationData data;
+    private Attribute attribute;
+    private final Map<Long, List<Attribute>> attributeChildren = new HashMap<>();
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        context = new SpringApplicationBuilder(CCDAnnotations.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "spring.jpa.show-sql=false", "logging.level.root=WARN")
+                .run();
+        mapper = context.getBean(HAL_OBJECT_MAPPER, ObjectMapper.class);
+        assembler = context.getBean(AnnotationResourceAssembler.class);
+        pageAssembler = context.getBean(AnnotationPagedResourcesAssembler.class);
+        dataAssembler = context.getBean(AnnotationDataResourceAssembler.class);
+        attributeAssembler = context.getBean(AttributeResourceAssembler.class);
+
+        request = new MockHttpServletRequest("GET", "/annotations/annotations");
+        request.setContextPath("/annotations");
+        bindRequest();
+
+        // reference entities come from the sample data so vocabulary lookups hit the cache
+        entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+        final UserAccount user = entityManager.find(UserAccount.class, 1L);
+        final AnnotationTarget target = entityManager.find(AnnotationTarget.class, 1L);
+        final Access access = entityManager.find(Access.class, 1L);
+        final Vocabulary vocabulary = entityManager.find(Vocabulary.class, 1L);
+        final Attribute text = entityManager.find(Attribute.class, 1L);
+
+        page = page(user, target, access, vocabulary, text);
+        annotation = page.getPage().getContent().get(0);
+        data = page.getData(annotation).get(0);
+        attribute = attributes(vocabulary, null, 1).get(0);
+        System.out.printf("%nannotation page: %d bytes, shared: %d bytes%n", annotationPage().length, annotationPageShared().length);
+    }
+
+    @Setup(Level.Iteration)
+    public void bindRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request), true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        entityManager.close();
+        context.close();
+    }
+
+    @Benchmark
+    public PagedResources<AnnotationResource> annotationPageAssembly() {
+        return pageAssembler.toResource(page, assembler, request);
+    }
+
+    @Benchmark
+    public byte[] annotationPage() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(pageAssembler.toResource(page, assembler, request));
+    }
+
+    // the same page with each vocabulary and attribute embedded once (embed=shared)
+    @Benchmark
+    public byte[] annotationPageShared() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(AnnotationEmbedding.shared(pageAssembler.toResource(page, assembler, request)));
+    }
+
+    @Benchmark
+    public byte[] annotation() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(assembler.toResource(annotation, page));
+    }
+
+    @Benchmark
+    public byte[] annotationData() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(dataAssembler.toResource(data, page::getSubData));
+    }
+
+    @Benchmark
+    public byte[] attribute() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(attributeAssembler.toResource(attribute, a -> attributeChildren.getOrDefault(a.getId(), Collections.emptyList())));
+    }
+
+    /**
+     * Build a page of annotations, each with a full data tree
+     */
+    private AnnotationPage page(UserAccount user, AnnotationTarget target, Access access, Vocabulary vocabulary, Attribute text) {
+        final Date now = new Date();
+        final List<Annotation> annotations = new ArrayList<>(PAGE_SIZE);
+        final Map<Long, List<AnnotationData>> data = new HashMap<>();
+        final Map<Long, List<AnnotationData>> subData = new HashMap<>();
+        final Map<Long, Long> childCounts = new HashMap<>();
+        for (long id = 1; id <= PAGE_SIZE; id++) {
+            final Annotation annotation = new Annotation(user, target, null, access, null, vocabulary);
+            annotation.setId(id);
+            annotation.setCreated(now);
+            annotation.setModified(now);
+            final List<AnnotationData> tree = new ArrayList<>();
+            data(annotation, text, null, 1, tree, subData);
+            annotations.add(annotation);
+            data.put(id, tree);
+            childCounts.put(id, id % 2);
+        }
+        final PageImpl<Annotation> content = new PageImpl<>(annotations, new PageRequest(0, PAGE_SIZE), PAGE_SIZE * 10);
+        return new AnnotationPage(content, data, subData, childCounts);
+    }
+
+    private void data(Annotation annotation, Attribute attribute, AnnotationData parent, int level, List<AnnotationData> tree, Map<Long, List<AnnotationData>> subData) {
+        if (level > depth) {
+            return;
+        }
+        for (int i = 0; i < width; i++) {
+            final AnnotationData node = new AnnotationData(annotation, attribute, String.format("value %d.%d", level, i));
+            node.setId(++nextId);
+            node.setParent(parent);
+            tree.add(node);
+            if (parent != null) {
+                subData.computeIfAbsent(parent.getId(), k -> new ArrayList<>()).add(node);
+            }
+            data(annotation, attribute, node, level + 1, tree, subData);
+        }
+    }
+
+    /**
+     * Build one level of a synthetic attribute tree
+     */
+    private List<Attribute> attributes(Vocabulary vocabulary, Attribute parent, int level) {
+        final List<Attribute> attributes = new ArrayList<>(width);
+        if (level > depth) {
+            return attributes;
+        }
+        for (int i = 0; i < width; i++) {
+            final Attribute node = new Attribute();
+            node.setId(++nextId);
+            node.setVocabulary(vocabulary);
+            node.setParent(parent);
+            node.setLevel(Integer.toString(level));
+            node.setName(String.format("attribute %d.%d", level, i));
+            node.setRequirementLevel("optional");
+            attributeChildren.put(node.getId(), attributes(vocabulary, node, level + 1));
+            attributes.add(node);
+        }
+        return attributes;
+    }
+}
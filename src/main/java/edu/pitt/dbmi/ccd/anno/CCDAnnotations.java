@@ -18,19 +18,38 @@
  */
 package edu.pitt.dbmi.ccd.anno;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.HandlerInstantiator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import edu.pitt.dbmi.ccd.anno.util.BinaryJacksonHttpMessageConverter;
+import edu.pitt.dbmi.ccd.anno.util.MediaTypes;
+import edu.pitt.dbmi.ccd.anno.util.SparseResourceModule;
 import edu.pitt.dbmi.ccd.db.CCDDatabaseApplication;
 import edu.pitt.dbmi.ccd.security.CCDOAuth2;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.support.MessageSourceAccessor;
+import org.springframework.hateoas.RelProvider;
 import org.springframework.hateoas.config.EnableEntityLinks;
 import org.springframework.hateoas.config.EnableHypermediaSupport;
 import org.springframework.hateoas.config.EnableHypermediaSupport.HypermediaType;
+import org.springframework.hateoas.hal.CurieProvider;
+import org.springframework.hateoas.hal.Jackson2HalModule;
+import org.springframework.hateoas.hal.Jackson2HalModule.HalHandlerInstantiator;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
 /**
  * @author Mark Silvis
@@ -41,6 +60,11 @@ import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 @EnableHypermediaSupport(type = HypermediaType.HAL)
 public class CCDAnnotations {
 
+    // beans registered by Spring HATEOAS for HAL responses
+    private static final String REL_PROVIDER = "_relProvider";
+    private static final String LINK_RELATION_MESSAGE_SOURCE = "linkRelationMessageSource";
+    private static final String HAL_OBJECT_MAPPER = "_halObjectMapper";
+
     public static void main(String[] args) {
         ApplicationContext app = SpringApplication.run(CCDAnnotations.class, args);
     }
@@ -51,6 +75,71 @@ public class CCDAnnotations {
      * Fix for Spring Boot Actuator
      */
     public ObjectMapper jacksonObjectMapper(Jackson2ObjectMapperBuilder builder) {
-        return builder.createXmlMapper(false).build();
+        final ObjectMapper mapper = builder.createXmlMapper(false).build();
+        mapper.registerModule(new SparseResourceModule());
+        return mapper;
+    }
+
+    /**
+     * Leave out the null properties resources omit in HAL responses. The HAL
+     * mapper is not configured with module beans, so register it directly.
+     */
+    @Bean
+    public static BeanPostProcessor halSparseResourceModule() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (HAL_OBJECT_MAPPER.equals(beanName) && bean instanceof ObjectMapper) {
+                    ((ObjectMapper) bean).registerModule(new SparseResourceModule());
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Smile and CBOR representations of every response and request body,
+     * registered after the JSON converters so JSON stays the default
+     */
+    @Bean
+    public WebMvcConfigurerAdapter binaryMessageConverters(
+            Jackson2ObjectMapperBuilder builder,
+            @Qualifier(REL_PROVIDER) RelProvider relProvider,
+            ObjectProvider<CurieProvider> curieProvider,
+            @Qualifier(LINK_RELATION_MESSAGE_SOURCE) MessageSourceAccessor messageSourceAccessor) {
+        final HandlerInstantiator hal = new HalHandlerInstantiator(relProvider, curieProvider.getIfAvailable(), messageSourceAccessor);
+        final ObjectMapper smile = binaryObjectMapper(new SmileFactory(), builder, hal);
+        final ObjectMapper cbor = binaryObjectMapper(new CBORFactory(), builder, hal);
+        return new WebMvcConfigurerAdapter() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                converters.add(new BinaryJacksonHttpMessageConverter(smile, MediaType.valueOf(MediaTypes.SMILE_VALUE)));
+                converters.add(new BinaryJacksonHttpMessageConverter(cbor, MediaType.valueOf(MediaTypes.CBOR_VALUE)));
+            }
+        };
+    }
+
+    /**
+     * Configure a mapper for a binary format like the primary mapper, with the
+     * HAL mapping of resources so the binary bodies have the same structure
+     * as the JSON ones
+     *
+     * @param factory binary format
+     * @param builder primary mapper configuration
+     * @param hal HAL link and relation handlers
+     * @return mapper
+     */
+    private static ObjectMapper binaryObjectMapper(JsonFactory factory, Jackson2ObjectMapperBuilder builder, HandlerInstantiator hal) {
+        final ObjectMapper mapper = new ObjectMapper(factory);
+        builder.configure(mapper);
+        mapper.registerModule(new Jackson2HalModule());
+        mapper.registerModule(new SparseResourceModule());
+        mapper.setHandlerInstantiator(hal);
+        return mapper;
     }
 }
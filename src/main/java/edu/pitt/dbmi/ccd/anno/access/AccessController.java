@@ -55,6 +55,7 @@ public class AccessController {
     // services and components
     private final AccessLinks accessLinks;
     private final AccessService accessService;
+    private final AccessRegistry accessRegistry;
     private final AccessResourceAssembler assembler;
     private final AccessPagedResourcesAssembler pageAssembler;
 
@@ -63,11 +64,13 @@ public class AccessController {
             HttpServletRequest request,
             AccessLinks accessLinks,
             AccessService accessService,
+            AccessRegistry accessRegistry,
             AccessResourceAssembler assembler,
             AccessPagedResourcesAssembler pageAssembler) {
         this.request = request;
         this.accessLinks = accessLinks;
         this.accessService = accessService;
+        this.accessRegistry = accessRegistry;
         this.assembler = assembler;
         this.pageAssembler = pageAssembler;
     }
@@ -98,7 +101,7 @@ public class AccessController {
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
     public AccessResource access(@PathVariable Long id) throws NotFoundException {
-        final Access access = accessService.findById(id);
+        final Access access = accessRegistry.find(id);
         if (access == null) {
             throw new AccessNotFoundException(id);
         }
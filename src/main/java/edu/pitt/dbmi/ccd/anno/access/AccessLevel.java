@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.access;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation access levels, from least to most restrictive.
+ * <p>
+ * An annotation's access may only be relaxed: private annotations may be
+ * shared with a group or made public, and group annotations may be made
+ * public. The allowed changes are precomputed in a transition table.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public enum AccessLevel {
+
+    PUBLIC,
+    GROUP,
+    PRIVATE;
+
+    // allowed access changes, by current level
+    private static final Map<AccessLevel, Set<AccessLevel>> TRANSITIONS;
+
+    static {
+        final Map<AccessLevel, Set<AccessLevel>> transitions = new EnumMap<>(AccessLevel.class);
+        transitions.put(PUBLIC, Collections.unmodifiableSet(EnumSet.of(PUBLIC)));
+        transitions.put(GROUP, Collections.unmodifiableSet(EnumSet.of(GROUP, PUBLIC)));
+        transitions.put(PRIVATE, Collections.unmodifiableSet(EnumSet.of(PRIVATE, GROUP, PUBLIC)));
+        TRANSITIONS = Collections.unmodifiableMap(transitions);
+    }
+
+    /**
+     * Get access level by name, ignoring case
+     *
+     * @param name access name
+     * @return access level, or null if the name is unknown
+     */
+    public static AccessLevel of(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Check whether an annotation with this access level may be changed to
+     * another level
+     *
+     * @param level requested access level
+     * @return true if the change is allowed
+     */
+    public boolean canChangeTo(AccessLevel level) {
+        return TRANSITIONS.get(this).contains(level);
+    }
+}
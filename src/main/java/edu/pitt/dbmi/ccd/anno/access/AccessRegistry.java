@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.access;
+
+import edu.pitt.dbmi.ccd.db.entity.Access;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of access entities.
+ * <p>
+ * Accesses are a small, fixed set. They are loaded once at startup and
+ * indexed by {@link AccessLevel}, so resolving an access by name or id does
+ * not query the database. Registered entities are detached and must not be
+ * modified.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AccessRegistry {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccessRegistry.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    // accesses indexed by level ordinal
+    private final Access[] accesses = new Access[AccessLevel.values().length];
+    private List<Access> all = Collections.emptyList();
+
+    @Autowired(required = true)
+    public AccessRegistry(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Load accesses
+     */
+    @PostConstruct
+    public void load() {
+        final EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            final CriteriaQuery<Access> query = entityManager.getCriteriaBuilder().createQuery(Access.class);
+            query.select(query.from(Access.class));
+            entityManager.createQuery(query).getResultList().forEach(access -> {
+                final AccessLevel level = AccessLevel.of(access.getName());
+                if (level == null) {
+                    LOGGER.warn("Ignoring unknown access level {}", access.getName());
+                } else {
+                    accesses[level.ordinal()] = access;
+                }
+            });
+        } finally {
+            entityManager.close();
+        }
+        all = Collections.unmodifiableList(Arrays.stream(accesses)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+        Arrays.stream(AccessLevel.values())
+                .filter(level -> get(level) == null)
+                .forEach(level -> LOGGER.warn("No access found for level {}", level));
+    }
+
+    /**
+     * Get access for level
+     *
+     * @param level access level
+     * @return access, or null if the level has no access
+     */
+    public Access get(AccessLevel level) {
+        return (level == null) ? null : accesses[level.ordinal()];
+    }
+
+    /**
+     * Find access by name, ignoring case
+     *
+     * @param name access name
+     * @return access, or null if not found
+     */
+    public Access find(String name) {
+        return get(AccessLevel.of(name));
+    }
+
+    /**
+     * Find access by id
+     *
+     * @param id access id
+     * @return access, or null if not found
+     */
+    public Access find(Long id) {
+        for (Access access : all) {
+            if (access.getId().equals(id)) {
+                return access;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get all accesses, ordered from least to most restrictive
+     *
+     * @return accesses
+     */
+    public List<Access> findAll() {
+        return all;
+    }
+
+    /**
+     * Get level of access
+     *
+     * @param access access
+     * @return access level, or null if the access is not registered
+     */
+    public AccessLevel level(Access access) {
+        if (access == null) {
+            return null;
+        }
+        for (AccessLevel level : AccessLevel.values()) {
+            final Access registered = accesses[level.ordinal()];
+            if (registered != null && registered.getId().equals(access.getId())) {
+                return level;
+            }
+        }
+        return null;
+    }
+}
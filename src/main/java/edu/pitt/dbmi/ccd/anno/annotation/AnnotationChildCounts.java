@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts child annotations with a single grouped query instead of
+ * initializing each parent's children collection
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationChildCounts {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Count children of many annotations
+     *
+     * @param ids parent annotation ids
+     * @return number of children by parent id; parents without children are
+     * absent
+     */
+    public Map<Long, Long> count(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        final Root<Annotation> root = query.from(Annotation.class);
+        final Path<Long> parent = root.get("parent").get("id");
+        query.multiselect(parent, cb.count(root))
+                .where(parent.in(ids))
+                .groupBy(parent);
+        final Map<Long, Long> counts = new HashMap<>();
+        entityManager.createQuery(query)
+                .getResultList()
+                .forEach(t -> counts.put(t.get(0, Long.class), t.get(1, Long.class)));
+        return counts;
+    }
+
+    /**
+     * Count children of an annotation
+     *
+     * @param annotation parent annotation
+     * @return number of children
+     */
+    public long count(Annotation annotation) {
+        return count(Collections.singleton(annotation.getId())).getOrDefault(annotation.getId(), 0L);
+    }
+}
@@ -18,20 +18,50 @@
  */
 package edu.pitt.dbmi.ccd.anno.annotation;
 
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.childOf;
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.matching;
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.notRedacted;
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.valueWithin;
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.visibleTo;
+import edu.pitt.dbmi.ccd.anno.access.AccessLevel;
+import edu.pitt.dbmi.ccd.anno.access.AccessRegistry;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationBatchResource;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationBatchResult;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationBatchWriter;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationExporter;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationImportResource;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationImporter;
 import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataForm;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataLookup;
 import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataPagedResourcesAssembler;
 import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataResource;
 import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataResourceAssembler;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataValues;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataTreeBuilder;
+import edu.pitt.dbmi.ccd.anno.annotation.job.AnnotationJob;
+import edu.pitt.dbmi.ccd.anno.annotation.job.AnnotationJobQueue;
+import edu.pitt.dbmi.ccd.anno.annotation.job.AnnotationJobResource;
+import edu.pitt.dbmi.ccd.anno.annotation.query.AnnotationQueryCompiler;
+import edu.pitt.dbmi.ccd.anno.annotation.query.AnnotationQueryExplanation;
+import edu.pitt.dbmi.ccd.anno.annotation.search.AnnotationIndex;
+import edu.pitt.dbmi.ccd.anno.data.AnnotationTargetSummaries;
 import edu.pitt.dbmi.ccd.anno.error.AccessNotFoundException;
 import edu.pitt.dbmi.ccd.anno.error.AccessUpdateException;
 import edu.pitt.dbmi.ccd.anno.error.AnnotationDataNotFoundException;
 import edu.pitt.dbmi.ccd.anno.error.AnnotationNotFoundException;
 import edu.pitt.dbmi.ccd.anno.error.AnnotationTargetNotFoundException;
 import edu.pitt.dbmi.ccd.anno.error.AttributeNotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.BatchSizeException;
 import edu.pitt.dbmi.ccd.anno.error.ForbiddenException;
 import edu.pitt.dbmi.ccd.anno.error.GroupNotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.JobQueueFullException;
 import edu.pitt.dbmi.ccd.anno.error.NotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.PreconditionFailedException;
+import edu.pitt.dbmi.ccd.anno.error.VocabularyMismatchException;
 import edu.pitt.dbmi.ccd.anno.error.VocabularyNotFoundException;
+import edu.pitt.dbmi.ccd.anno.util.ETags;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.anno.util.MediaTypes;
 import edu.pitt.dbmi.ccd.db.entity.Access;
 import edu.pitt.dbmi.ccd.db.entity.Annotation;
 import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
@@ -40,7 +70,6 @@ import edu.pitt.dbmi.ccd.db.entity.Attribute;
 import edu.pitt.dbmi.ccd.db.entity.Group;
 import edu.pitt.dbmi.ccd.db.entity.UserAccount;
 import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
-import edu.pitt.dbmi.ccd.db.service.AccessService;
 import edu.pitt.dbmi.ccd.db.service.AnnotationDataService;
 import edu.pitt.dbmi.ccd.db.service.AnnotationService;
 import edu.pitt.dbmi.ccd.db.service.AnnotationTargetService;
@@ -48,34 +77,50 @@ import edu.pitt.dbmi.ccd.db.service.AttributeService;
 import edu.pitt.dbmi.ccd.db.service.GroupService;
 import edu.pitt.dbmi.ccd.db.service.VocabularyService;
 import edu.pitt.dbmi.ccd.security.userDetails.UserAccountDetails;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.stream.IntStream;
+import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.domain.Specifications;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.hateoas.ExposesResourceFor;
 import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.Resources;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.transaction.annotation.Transactional;
 import static org.springframework.util.StringUtils.isEmpty;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 // logging
 /**
@@ -97,14 +142,35 @@ public class AnnotationController {
     private final AnnotationService annotationService;
     private final AnnotationDataService annotationDataService;
     private final AnnotationTargetService annotationTargetService;
-    private final AccessService accessService;
+    private final AccessRegistry accessRegistry;
     private final GroupService groupService;
     private final VocabularyService vocabularyService;
     private final AttributeService attributeService;
     private final AnnotationResourceAssembler assembler;
     private final AnnotationPagedResourcesAssembler pageAssembler;
+    private final AnnotationPageLoader pageLoader;
+    private final AnnotationChildCounts childCounts;
     private final AnnotationDataResourceAssembler dataAssembler;
     private final AnnotationDataPagedResourcesAssembler dataPageAssembler;
+    private final AnnotationDataTreeBuilder dataTreeBuilder;
+    private final AnnotationDataLookup dataLookup;
+    private final AnnotationDataValues dataValues;
+    private final AnnotationBatchWriter batchWriter;
+    private final AnnotationImporter importer;
+    private final AnnotationExporter exporter;
+    private final AnnotationJobQueue jobQueue;
+    private final AnnotationIndex annotationIndex;
+    private final AnnotationThreadLoader threadLoader;
+    private final AnnotationTargetSummaries summaries;
+    private final AnnotationFacets facets;
+    private final AnnotationQueryCompiler queryCompiler;
+
+    // settings
+    private final int maxBatchItems;
+    private final int maxGetIds;
+    private final int maxThreadDepth;
+    private final int maxThreadSize;
+    private final int maxFacetSize;
 
     @Autowired(required = true)
     public AnnotationController(
@@ -113,27 +179,65 @@ public class AnnotationController {
             AnnotationService annotationService,
             AnnotationDataService annotationDataService,
             AnnotationTargetService annotationTargetService,
-            AccessService accessService,
+            AccessRegistry accessRegistry,
             GroupService groupService,
             VocabularyService vocabularyService,
             AttributeService attributeService,
             AnnotationResourceAssembler assembler,
             AnnotationPagedResourcesAssembler pageAssembler,
+            AnnotationPageLoader pageLoader,
+            AnnotationChildCounts childCounts,
             AnnotationDataResourceAssembler dataAssembler,
-            AnnotationDataPagedResourcesAssembler dataPageAssembler) {
+            AnnotationDataPagedResourcesAssembler dataPageAssembler,
+            AnnotationDataTreeBuilder dataTreeBuilder,
+            AnnotationDataLookup dataLookup,
+            AnnotationDataValues dataValues,
+            AnnotationBatchWriter batchWriter,
+            AnnotationImporter importer,
+            AnnotationExporter exporter,
+            AnnotationJobQueue jobQueue,
+            AnnotationIndex annotationIndex,
+            AnnotationThreadLoader threadLoader,
+            AnnotationTargetSummaries summaries,
+            AnnotationFacets facets,
+            AnnotationQueryCompiler queryCompiler,
+            @Value("${ccd.annotations.batch.max-items:10000}") int maxBatchItems,
+            @Value("${ccd.annotations.mget.max-ids:1000}") int maxGetIds,
+            @Value("${ccd.annotations.thread.max-depth:10}") int maxThreadDepth,
+            @Value("${ccd.annotations.thread.max-size:500}") int maxThreadSize,
+            @Value("${ccd.annotations.facets.max-size:100}") int maxFacetSize) {
         this.request = request;
         this.annotationLinks = annotationLinks;
         this.annotationService = annotationService;
         this.annotationDataService = annotationDataService;
         this.annotationTargetService = annotationTargetService;
-        this.accessService = accessService;
+        this.accessRegistry = accessRegistry;
         this.groupService = groupService;
         this.vocabularyService = vocabularyService;
         this.attributeService = attributeService;
         this.assembler = assembler;
         this.pageAssembler = pageAssembler;
+        this.pageLoader = pageLoader;
+        this.childCounts = childCounts;
         this.dataAssembler = dataAssembler;
         this.dataPageAssembler = dataPageAssembler;
+        this.dataTreeBuilder = dataTreeBuilder;
+        this.dataLookup = dataLookup;
+        this.dataValues = dataValues;
+        this.batchWriter = batchWriter;
+        this.importer = importer;
+        this.exporter = exporter;
+        this.jobQueue = jobQueue;
+        this.annotationIndex = annotationIndex;
+        this.threadLoader = threadLoader;
+        this.summaries = summaries;
+        this.facets = facets;
+        this.queryCompiler = queryCompiler;
+        this.maxBatchItems = maxBatchItems;
+        this.maxGetIds = maxGetIds;
+        this.maxThreadDepth = maxThreadDepth;
+        this.maxThreadSize = maxThreadSize;
+        this.maxFacetSize = maxFacetSize;
     }
 
     /* GET requests */
@@ -148,13 +252,21 @@ public class AnnotationController {
      * @param attributeLevel attribute level (nullable)
      * @param attributeName attribute name (nullable)
      * @param attributeRequirementLevel attribute requirement level (nullable)
+     * @param q query expression (nullable)
+     * @param after cursor token for keyset paging (nullable)
+     * @param count false to skip counting the annotations
+     * @param embed shared to embed vocabularies and attributes once per page
+     * instead of in every annotation (optional)
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
      * @param pageable page request
-     * @return page of annotations
+     * @param webRequest request, for conditional GET
+     * @return page of annotations, or null if not modified
      */
     @RequestMapping(method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public PagedResources<AnnotationResource> annotations(
+    public Resources<? extends ResourceSupport> annotations(
             @AuthenticationPrincipal UserAccountDetails principal,
             @RequestParam(value = "user", required = false) String user,
             @RequestParam(value = "group", required = false) String group,
@@ -169,12 +281,23 @@ public class AnnotationController {
             @RequestParam(value = "createdAfter", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date createdAfter,
             @RequestParam(value = "modifiedBefore", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date modifiedBefore,
             @RequestParam(value = "modifiedAfter", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date modifiedAfter,
-            Pageable pageable) {
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "count", required = false, defaultValue = "true") boolean count,
+            @RequestParam(value = "embed", required = false, defaultValue = AnnotationEmbedding.INLINE) String embed,
+            @RequestParam(value = Fields.PARAM, required = false) String fields,
+            Pageable pageable,
+            WebRequest webRequest) {
         final UserAccount requester = principal.getUserAccount();
-        final Page<Annotation> page = annotationService.filter(requester, user, group, target, vocab, attributeLevel, attributeName, attributeRequirementLevel, showRedacted, parentless, createdBefore, createdAfter, modifiedBefore, modifiedAfter, pageable);
-        final PagedResources<AnnotationResource> pagedResources = pageAssembler.toResource(page, assembler, request);
+        final Fields selected = Fields.parse(fields, AnnotationResource.FIELDS);
+        final AnnotationFilter filter = new AnnotationFilter(user, group, target, vocab, attributeLevel, attributeName, attributeRequirementLevel, showRedacted, parentless, createdBefore, createdAfter, modifiedBefore, modifiedAfter, null, null);
+        final AnnotationPage page = load(Specifications.where(visibleTo(requester)).and(matching(filter)).and(query(q)), pageable, after, count, selected);
+        if (ETags.notModified(webRequest, etag(page), null)) {
+            return null;
+        }
+        final Resources<AnnotationResource> pagedResources = pageAssembler.toResources(page, assembler, selected, request);
         pagedResources.add(annotationLinks.search());
-        return pagedResources;
+        return AnnotationEmbedding.isShared(embed) ? AnnotationEmbedding.shared(pagedResources) : pagedResources;
     }
 
     /**
@@ -182,18 +305,65 @@ public class AnnotationController {
      *
      * @param principal authenticated user
      * @param id annotation id
-     * @return annotation
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
+     * @param webRequest request, for conditional GET
+     * @return annotation, or null if not modified
      */
     @RequestMapping(value = AnnotationLinks.ANNOTATION, method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public AnnotationResource annotation(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id) throws NotFoundException {
+    public AnnotationResource annotation(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id, @RequestParam(value = Fields.PARAM, required = false) String fields, WebRequest webRequest) throws NotFoundException {
         final UserAccount requester = principal.getUserAccount();
+        final Fields selected = Fields.parse(fields, AnnotationResource.FIELDS);
         final Annotation annotation = annotationService.findById(requester, id);
         if (annotation == null) {
             throw new AnnotationNotFoundException(id);
         }
-        final AnnotationResource resource = assembler.toResource(annotation);
+        final long childCount = AnnotationResourceAssembler.needsChildCount(selected) ? childCounts.count(annotation) : 0;
+        if (ETags.notModified(webRequest, etag(annotation, childCount), lastModified(annotation))) {
+            return null;
+        }
+        final AnnotationResource resource = assembler.toResource(annotation, selected, childCount);
+        return resource;
+    }
+
+    /**
+     * Get many annotations by id, checking access for all of them at once
+     *
+     * @param principal authenticated user
+     * @param ids annotation ids
+     * @return annotations found, in request order, and ids that were not
+     * found or are not visible
+     * @throws BatchSizeException if more ids are requested than allowed
+     */
+    @RequestMapping(value = AnnotationLinks.MGET, method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public AnnotationMultiGetResource multiGet(@AuthenticationPrincipal UserAccountDetails principal, @RequestBody List<Long> ids) throws BatchSizeException {
+        final UserAccount requester = principal.getUserAccount();
+        if (ids.size() > maxGetIds) {
+            throw new BatchSizeException(ids.size(), maxGetIds);
+        }
+        final List<Long> requested = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        final AnnotationPage page = pageLoader.load(visibleTo(requester), requested);
+        final List<AnnotationResource> content = page.getSlice()
+                .getContent()
+                .stream()
+                .map(a -> assembler.toResource(a, page))
+                .collect(Collectors.toList());
+        final Set<Long> found = page.getSlice()
+                .getContent()
+                .stream()
+                .map(Annotation::getId)
+                .collect(Collectors.toSet());
+        final List<Long> missing = requested.stream()
+                .filter(id -> !found.contains(id))
+                .collect(Collectors.toList());
+        final AnnotationMultiGetResource resource = new AnnotationMultiGetResource(content, missing, annotationLinks.getRequestLink(request));
         return resource;
     }
 
@@ -202,6 +372,8 @@ public class AnnotationController {
      *
      * @param principal authenticated user
      * @param id annotation id
+     * @param attributeId attribute id (nullable)
+     * @param pageable page request
      * @return page of annotation data
      */
     @RequestMapping(value = AnnotationLinks.ANNOTATION_DATA, method = RequestMethod.GET)
@@ -217,7 +389,7 @@ public class AnnotationController {
         if (annotation == null) {
             throw new AnnotationNotFoundException(id);
         }
-        final Page<AnnotationData> page = annotationDataService.findByAnnotation(annotation, pageable);
+        final Page<AnnotationData> page = dataLookup.findByAnnotation(annotation.getId(), attributeId, pageable);
         final PagedResources<AnnotationDataResource> pagedResources = dataPageAssembler.toResource(page, dataAssembler, request);
         return pagedResources;
     }
@@ -228,22 +400,25 @@ public class AnnotationController {
      * @param principal authenticated user
      * @param id annotation id
      * @param dataId annotation data id
-     * @return annotation data
+     * @param webRequest request, for conditional GET
+     * @return annotation data, or null if not modified
      */
     @RequestMapping(value = AnnotationLinks.ANNOTATION_DATA_ID, method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public AnnotationDataResource annotationData(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id, @PathVariable Long dataId) throws NotFoundException {
+    public AnnotationDataResource annotationData(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id, @PathVariable Long dataId, WebRequest webRequest) throws NotFoundException {
         final UserAccount requester = principal.getUserAccount();
         final Annotation annotation = annotationService.findById(requester, id);
         if (annotation == null) {
             throw new AnnotationNotFoundException(id);
         }
-        final AnnotationData data = annotation.getData()
-                .stream()
-                .filter(d -> d.getId().equals(dataId))
-                .findFirst()
-                .orElseThrow(() -> new AnnotationDataNotFoundException(dataId));
+        final AnnotationData data = dataLookup.find(annotation.getId(), dataId);
+        if (data == null) {
+            throw new AnnotationDataNotFoundException(dataId);
+        }
+        if (ETags.notModified(webRequest, etag(annotation), lastModified(annotation))) {
+            return null;
+        }
         final AnnotationDataResource resource = dataAssembler.toResource(data);
         return resource;
     }
@@ -253,22 +428,65 @@ public class AnnotationController {
      *
      * @param principal authenticated user
      * @param id parent annotation id
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
      * @return page of annotations
      */
     @RequestMapping(value = AnnotationLinks.CHILDREN, method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public PagedResources<AnnotationResource> children(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id, @RequestParam(name = "showRedacted", required = false) boolean showRedacted, Pageable pageable) throws NotFoundException {
+    public PagedResources<AnnotationResource> children(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id, @RequestParam(name = "showRedacted", required = false) boolean showRedacted, @RequestParam(value = Fields.PARAM, required = false) String fields, Pageable pageable) throws NotFoundException {
         final UserAccount requester = principal.getUserAccount();
+        final Fields selected = Fields.parse(fields, AnnotationResource.FIELDS);
         final Annotation annotation = annotationService.findById(requester, id);
         if (annotation == null) {
             throw new AnnotationNotFoundException(id);
         }
-        final Page<Annotation> page = annotationService.findByParent(requester, annotation, showRedacted, pageable);
-        final PagedResources<AnnotationResource> pagedResources = pageAssembler.toResource(page, assembler, request);
+        Specifications<Annotation> specification = Specifications.where(visibleTo(requester)).and(childOf(annotation));
+        if (!showRedacted) {
+            specification = specification.and(notRedacted());
+        }
+        final AnnotationPage page = pageLoader.load(specification, pageable, selected);
+        final PagedResources<AnnotationResource> pagedResources = pageAssembler.toResource(page, assembler, selected, request);
         return pagedResources;
     }
 
+    /**
+     * Get an annotation and all of its replies
+     *
+     * @param principal authenticated user
+     * @param id root annotation id
+     * @param depth levels of replies to include (optional, capped)
+     * @param showRedacted include redacted replies
+     * @return root followed by its replies, depth first
+     */
+    @RequestMapping(value = AnnotationLinks.THREAD, method = RequestMethod.GET)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public AnnotationThreadResource thread(
+            @AuthenticationPrincipal UserAccountDetails principal,
+            @PathVariable Long id,
+            @RequestParam(name = "depth", required = false) Integer depth,
+            @RequestParam(name = "showRedacted", required = false) boolean showRedacted) throws NotFoundException {
+        final UserAccount requester = principal.getUserAccount();
+        final Annotation annotation = annotationService.findById(requester, id);
+        if (annotation == null) {
+            throw new AnnotationNotFoundException(id);
+        }
+        Specifications<Annotation> specification = Specifications.where(visibleTo(requester));
+        if (!showRedacted) {
+            specification = specification.and(notRedacted());
+        }
+        final int maxDepth = (depth == null) ? maxThreadDepth : Math.max(0, Math.min(depth, maxThreadDepth));
+        final AnnotationThread thread = threadLoader.load(annotation, specification, maxDepth, maxThreadSize);
+        final List<AnnotationResource> content = thread.getAnnotations()
+                .stream()
+                .map(a -> assembler.toResource(a, thread.getPage()))
+                .collect(Collectors.toList());
+        final AnnotationThreadResource resource = new AnnotationThreadResource(content, thread.isTruncated(), annotationLinks.getRequestLink(request));
+        return resource;
+    }
+
     /**
      * Search for annotations
      *
@@ -282,13 +500,29 @@ public class AnnotationController {
      * @param attributeRequirementLevel attribute requirement level (nullable)
      * @param query search terms (nullable)
      * @param not negated search terms (nullable)
+     * @param q query expression (nullable)
+     * @param valueFrom lowest typed data value, inclusive; a number or
+     * ISO-8601 date (nullable)
+     * @param valueTo highest typed data value, exclusive; a number or
+     * ISO-8601 date (nullable)
+     * @param facet facets to count over all matches: vocab, user or
+     * attribute:&lt;id&gt; (nullable)
+     * @param facetSize number of values per facet (optional, capped)
+     * @param after cursor token for keyset paging (nullable)
+     * @param count false to skip counting the annotations
+     * @param embed shared to embed vocabularies and attributes once per page
+     * instead of in every annotation (optional)
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
      * @param pageable page request
-     * @return page of annotations matching parameters
+     * @param webRequest request, for conditional GET
+     * @return page of annotations matching parameters, with facet counts if
+     * requested, or null if not modified
      */
     @RequestMapping(value = AnnotationLinks.SEARCH, method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public PagedResources<AnnotationResource> search(
+    public Resources<? extends ResourceSupport> search(
             @AuthenticationPrincipal UserAccountDetails principal,
             @RequestParam(value = "user", required = false) String user,
             @RequestParam(value = "group", required = false) String group,
@@ -305,22 +539,222 @@ public class AnnotationController {
             @RequestParam(value = "modifiedAfter", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date modifiedAfter,
             @RequestParam(value = "terms", required = false) String query,
             @RequestParam(value = "not", required = false) String not,
-            Pageable pageable) {
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "valueFrom", required = false) String valueFrom,
+            @RequestParam(value = "valueTo", required = false) String valueTo,
+            @RequestParam(value = "facet", required = false) List<String> facet,
+            @RequestParam(value = "facetSize", required = false, defaultValue = "10") int facetSize,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "count", required = false, defaultValue = "true") boolean count,
+            @RequestParam(value = "embed", required = false, defaultValue = AnnotationEmbedding.INLINE) String embed,
+            @RequestParam(value = Fields.PARAM, required = false) String fields,
+            Pageable pageable,
+            WebRequest webRequest) {
         final UserAccount requester = principal.getUserAccount();
+        final Fields selected = Fields.parse(fields, AnnotationResource.FIELDS);
         final Set<String> matches = (query != null) ? new HashSet<>(Arrays.asList(query.trim().split("\\s+")))
                 : null;
         final Set<String> nots = (not != null) ? new HashSet<>(Arrays.asList(not.trim().split("\\s+")))
                 : null;
-        final Page<Annotation> page = annotationService.search(requester, user, group, target, vocab, attributeLevel, attributeName, attributeRequirementLevel, showRedacted, parentless, createdBefore, createdAfter, modifiedBefore, modifiedAfter, matches, nots, pageable);
-        final PagedResources<AnnotationResource> pagedResources = pageAssembler.toResource(page, assembler, request);
-        return pagedResources;
+        // candidates come from the full-text index instead of scanning data values
+        final Specification<Annotation> candidates = annotationIndex.containing(matches, nots);
+        final boolean indexed = candidates != null;
+        final AnnotationFilter filter = new AnnotationFilter(user, group, target, vocab, attributeLevel, attributeName, attributeRequirementLevel, showRedacted, parentless, createdBefore, createdAfter, modifiedBefore, modifiedAfter, indexed ? null : matches, indexed ? null : nots);
+        Specifications<Annotation> specification = Specifications.where(visibleTo(requester)).and(matching(filter)).and(query(q)).and(candidates);
+        final ValueRange range = ValueRange.of(valueFrom, valueTo);
+        if (range != null) {
+            specification = specification.and(valueWithin(range, attributeName));
+        }
+        final AnnotationPage page = load(specification, pageable, after, count, selected);
+        // facets cover every match, not only this page
+        final boolean faceted = facet != null && !facet.isEmpty();
+        if (!faceted && ETags.notModified(webRequest, etag(page), null)) {
+            return null;
+        }
+        final Resources<AnnotationResource> annotations = pageAssembler.toResources(page, assembler, selected, request);
+        final Resources<? extends ResourceSupport> pagedResources = AnnotationEmbedding.isShared(embed) ? AnnotationEmbedding.shared(annotations) : annotations;
+        if (!faceted) {
+            return pagedResources;
+        }
+        final int limit = Math.max(1, Math.min(facetSize, maxFacetSize));
+        return new AnnotationSearchResources(pagedResources, facets.count(specification, facet, limit));
+    }
+
+    /**
+     * Explain how a query expression is parsed and the statement it runs as
+     *
+     * @param principal authenticated user
+     * @param q query expression
+     * @return explanation
+     */
+    @RequestMapping(value = AnnotationLinks.EXPLAIN, method = RequestMethod.GET)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public AnnotationQueryExplanation explain(@AuthenticationPrincipal UserAccountDetails principal, @RequestParam(value = "q") String q) {
+        final UserAccount requester = principal.getUserAccount();
+        final AnnotationQueryExplanation explanation = queryCompiler.explain(q, Specifications.where(visibleTo(requester)).and(notRedacted()));
+        explanation.add(annotationLinks.getRequestLink(request));
+        return explanation;
+    }
+
+    /**
+     * Annotations matching a query expression
+     *
+     * @param q query expression (nullable)
+     * @return specification, or null if there is no query
+     */
+    private Specification<Annotation> query(String q) {
+        return isEmpty(q) ? null : queryCompiler.compile(q).getSpecification();
+    }
+
+    /**
+     * Entity tag of an annotation itself, also used for its data and checked
+     * by If-Match. Edits to the annotation and its data increment its
+     * version; replies do not.
+     */
+    private static String etag(Annotation annotation) {
+        return ETags.of(annotation.getId(), annotation.getVersion());
+    }
+
+    /**
+     * Entity tag of an annotation's representation, which also shows its
+     * number of replies
+     */
+    private static String etag(Annotation annotation, long childCount) {
+        return ETags.detailed(etag(annotation), childCount);
+    }
+
+    /**
+     * Check an If-Match precondition against an annotation's current entity
+     * tag. Requests without If-Match are not checked.
+     *
+     * @param ifMatch If-Match header (nullable)
+     * @param annotation annotation to be written
+     * @throws PreconditionFailedException if the client's copy is stale
+     */
+    private void checkIfMatch(String ifMatch, Annotation annotation) throws PreconditionFailedException {
+        final String etag = etag(annotation);
+        if (!ETags.matches(ifMatch, etag)) {
+            throw new PreconditionFailedException(annotation.getId(), annotation.getVersion(), ETags.variant(etag, request.getHeader(HttpHeaders.ACCEPT)));
+        }
+    }
+
+    /**
+     * Entity tag of a page of annotations
+     */
+    private static String etag(AnnotationPage page) {
+        return ETags.of(page.getSlice(), a -> etag(a, page.getChildCount(a)));
+    }
+
+    /**
+     * Last modification of an annotation
+     *
+     * @return modified or created date (nullable)
+     */
+    private static Date lastModified(Annotation annotation) {
+        return (annotation.getModified() != null) ? annotation.getModified() : annotation.getCreated();
+    }
+
+    /**
+     * Load a page of annotations, an uncounted slice if counting is turned
+     * off, or a keyset paged slice if a cursor is given
+     *
+     * @param specification annotations to include
+     * @param pageable page request
+     * @param after cursor token (nullable; empty for the first slice)
+     * @param count whether to count the annotations of an offset page
+     * @param fields fields to be assembled
+     * @return annotations with preloaded associations
+     */
+    private AnnotationPage load(Specification<Annotation> specification, Pageable pageable, String after, boolean count, Fields fields) {
+        if (after == null) {
+            return count ? pageLoader.load(specification, pageable, fields) : pageLoader.loadSlice(specification, pageable, fields);
+        }
+        return pageLoader.load(specification, AnnotationCursor.decode(after, pageable.getSort()), pageable.getPageSize(), fields);
+    }
+
+    /**
+     * Export all annotations matching parameters as newline-delimited JSON
+     * or CSV. Results are streamed to the response rather than paged.
+     *
+     * @param principal authenticated user (required)
+     * @param user username (nullable)
+     * @param group group name (nullable)
+     * @param target target id (nullable)
+     * @param vocab vocabulary name (nullable)
+     * @param attributeLevel attribute level (nullable)
+     * @param attributeName attribute name (nullable)
+     * @param attributeRequirementLevel attribute requirement level (nullable)
+     * @param query search terms (nullable)
+     * @param not negated search terms (nullable)
+     * @param format ndjson (default) or csv
+     * @param response servlet response
+     * @throws IOException if the response cannot be written
+     */
+    @RequestMapping(value = AnnotationLinks.EXPORT, method = RequestMethod.GET)
+    public void exportAnnotations(
+            @AuthenticationPrincipal UserAccountDetails principal,
+            @RequestParam(value = "user", required = false) String user,
+            @RequestParam(value = "group", required = false) String group,
+            @RequestParam(value = "target", required = false) Long target,
+            @RequestParam(value = "vocab", required = false) String vocab,
+            @RequestParam(value = "level", required = false) String attributeLevel,
+            @RequestParam(value = "name", required = false) String attributeName,
+            @RequestParam(value = "requirement", required = false) String attributeRequirementLevel,
+            @RequestParam(value = "showRedacted", required = false, defaultValue = "false") Boolean showRedacted,
+            @RequestParam(value = "parentless", required = false, defaultValue = "false") Boolean parentless,
+            @RequestParam(value = "createdBefore", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date createdBefore,
+            @RequestParam(value = "createdAfter", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date createdAfter,
+            @RequestParam(value = "modifiedBefore", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date modifiedBefore,
+            @RequestParam(value = "modifiedAfter", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date modifiedAfter,
+            @RequestParam(value = "terms", required = false) String query,
+            @RequestParam(value = "not", required = false) String not,
+            @RequestParam(value = "format", required = false, defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+        final UserAccount requester = principal.getUserAccount();
+        final Set<String> matches = (query != null) ? new HashSet<>(Arrays.asList(query.trim().split("\\s+")))
+                : null;
+        final Set<String> nots = (not != null) ? new HashSet<>(Arrays.asList(not.trim().split("\\s+")))
+                : null;
+        final AnnotationFilter filter = new AnnotationFilter(user, group, target, vocab, attributeLevel, attributeName, attributeRequirementLevel, showRedacted, parentless, createdBefore, createdAfter, modifiedBefore, modifiedAfter, matches, nots);
+        final AnnotationExporter.Format exportFormat = "csv".equalsIgnoreCase(format) ? AnnotationExporter.Format.CSV : AnnotationExporter.Format.NDJSON;
+        response.setStatus(HttpStatus.OK.value());
+        if (exportFormat == AnnotationExporter.Format.CSV) {
+            response.setContentType(MediaTypes.CSV_VALUE + ";charset=UTF-8");
+            response.setHeader("Content-Disposition", "attachment; filename=\"annotations.csv\"");
+        } else {
+            response.setContentType(MediaTypes.NDJSON_VALUE + ";charset=UTF-8");
+            response.setHeader("Content-Disposition", "attachment; filename=\"annotations.ndjson\"");
+        }
+        final long count = exporter.export(requester, filter, exportFormat, response.getOutputStream());
+        LOGGER.debug("Exported {} annotations", count);
+    }
+
+    /**
+     * Get status of an asynchronous annotation submission
+     *
+     * @param principal authenticated user
+     * @param jobId job id
+     * @return job status, with a link to the annotation once created
+     * @throws NotFoundException if the job does not exist, has expired, or
+     * was submitted by another user
+     */
+    @RequestMapping(value = AnnotationLinks.JOB, method = RequestMethod.GET)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public AnnotationJobResource annotationJob(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable String jobId) throws NotFoundException {
+        final UserAccount requester = principal.getUserAccount();
+        final AnnotationJob job = jobQueue.find(requester, jobId);
+        final AnnotationJobResource resource = toJobResource(job);
+        return resource;
     }
 
     /* POST requests */
     @RequestMapping(method = RequestMethod.POST)
     @ResponseStatus(HttpStatus.CREATED)
     @ResponseBody
-    public AnnotationResource newAnnotation(@AuthenticationPrincipal UserAccountDetails principal, @RequestBody @Valid AnnotationForm form) throws NotFoundException {
+    @Transactional
+    public AnnotationResource newAnnotation(@AuthenticationPrincipal UserAccountDetails principal, @RequestBody @Valid AnnotationForm form) throws NotFoundException, VocabularyMismatchException {
         final UserAccount requester = principal.getUserAccount();
         // get target (nullable)
         final Long targetId = form.getTarget();
@@ -344,7 +778,7 @@ public class AnnotationController {
         }
 
         // get access
-        final Access access = accessService.findByName(form.getAccess());
+        final Access access = accessRegistry.find(form.getAccess());
         if (access == null) {
             throw new AccessNotFoundException(form.getAccess());
         }
@@ -364,49 +798,88 @@ public class AnnotationController {
         if (vocabulary == null) {
             throw new VocabularyNotFoundException(form.getVocabulary());
         }
+        // resolve and validate every attribute before anything is saved
+        final Map<Long, Attribute> attributes = dataTreeBuilder.resolve(vocabulary, form.getData());
         Annotation annotation = new Annotation(requester, annotationTarget, parent, access, group, vocabulary);
         annotation = annotationService.save(annotation);
-        annotation = newAnnotationData(annotation, form.getData());
+        final List<AnnotationData> data = dataTreeBuilder.build(annotation, form.getData(), attributes);
+        data.forEach(annotationDataService::save);
+        dataValues.store(data);
+        summaries.added(annotation, data);
         annotation = annotationService.saveAndFlush(annotation);
+        annotationIndex.update(Collections.singleton(annotation.getId()));
         final AnnotationResource resource = assembler.toResource(annotation);
         return resource;
     }
 
-    private Annotation newAnnotationData(Annotation annotation, @Valid List<AnnotationDataForm> data) {
-        IntStream.range(0, data.size())
-                .forEach(i -> {
-                    final Long attributeId = data.get(i).getAttribute();
-                    final Attribute attribute = attributeService.findById(attributeId);
-                    if (attribute == null) {
-                        throw new AttributeNotFoundException(attributeId);
-                    }
-                    final String value = data.get(i).getValue();
-                    final List<AnnotationDataForm> subData = data.get(i).getChildren();
-                    AnnotationData annoData = new AnnotationData(annotation, attribute, value);
-                    annoData = annotationDataService.save(annoData);
-                    if (subData.size() > 0) {
-                        newAnnotationDataSubData(annotation, annoData, subData);
-                    }
-                });
-        return annotation;
+    /**
+     * Create many annotations in a single transaction
+     *
+     * @param principal authenticated user
+     * @param forms annotation content
+     * @return per-item results and throughput; 201 if every item was created,
+     * 207 if any item failed
+     */
+    @RequestMapping(value = AnnotationLinks.BATCH, method = RequestMethod.POST)
+    @ResponseBody
+    public ResponseEntity<AnnotationBatchResource> newAnnotations(@AuthenticationPrincipal UserAccountDetails principal, @RequestBody List<AnnotationForm> forms) throws BatchSizeException {
+        final UserAccount requester = principal.getUserAccount();
+        if (forms.size() > maxBatchItems) {
+            throw new BatchSizeException(forms.size(), maxBatchItems);
+        }
+        final AnnotationBatchResult result = batchWriter.write(requester, forms);
+        result.getItems()
+                .stream()
+                .filter(i -> !i.failed())
+                .forEach(i -> i.setHref(annotationLinks.annotation(i.getId()).getHref()));
+        final AnnotationBatchResource resource = new AnnotationBatchResource(result, annotationLinks.getRequestLink(request));
+        return new ResponseEntity<>(resource, (result.getFailed() > 0) ? HttpStatus.MULTI_STATUS : HttpStatus.CREATED);
     }
 
-    private void newAnnotationDataSubData(Annotation annotation, AnnotationData parent, @Valid List<AnnotationDataForm> children) {
-        IntStream.range(0, children.size())
-                .forEach(i -> {
-                    final Long attributeId = children.get(i).getAttribute();
-                    final Attribute attribute = attributeService.findById(attributeId);
-                    if (attribute == null) {
-                        throw new AttributeNotFoundException(attributeId);
-                    }
-                    final String value = children.get(i).getValue();
-                    final List<AnnotationDataForm> subData = children.get(i).getChildren();
-                    AnnotationData annotationData = new AnnotationData(annotation, attribute, value);
-                    annotationData = annotationDataService.save(annotationData);
-                    if (subData.size() > 0) {
-                        newAnnotationDataSubData(annotation, annotationData, subData);
-                    }
-                });
+    /**
+     * Queue an annotation for asynchronous creation
+     *
+     * @param principal authenticated user
+     * @param form annotation content
+     * @param response servlet response
+     * @return queued job, with a link to its status
+     * @throws JobQueueFullException if the queue is full
+     */
+    @RequestMapping(value = AnnotationLinks.JOBS, method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @ResponseBody
+    public AnnotationJobResource newAnnotationJob(@AuthenticationPrincipal UserAccountDetails principal, @RequestBody @Valid AnnotationForm form, HttpServletResponse response) throws JobQueueFullException {
+        final UserAccount requester = principal.getUserAccount();
+        final AnnotationJob job = jobQueue.submit(requester, form);
+        final AnnotationJobResource resource = toJobResource(job);
+        response.setHeader(HttpHeaders.LOCATION, resource.getId().getHref());
+        return resource;
+    }
+
+    private AnnotationJobResource toJobResource(AnnotationJob job) {
+        final AnnotationJobResource resource = new AnnotationJobResource(job, annotationLinks.job(job.getId()).withSelfRel());
+        if (resource.getStatus() == AnnotationJob.Status.DONE) {
+            resource.add(annotationLinks.annotation(job.getAnnotation()));
+        }
+        return resource;
+    }
+
+    /**
+     * Import annotations from a newline-delimited JSON stream. Records are
+     * validated one at a time and committed in fixed-size chunks.
+     *
+     * @param principal authenticated user
+     * @param body one annotation per line
+     * @return progress and error summary per chunk
+     */
+    @RequestMapping(value = AnnotationLinks.IMPORT, method = RequestMethod.POST, consumes = MediaTypes.NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public AnnotationImportResource importAnnotations(@AuthenticationPrincipal UserAccountDetails principal, InputStream body) throws IOException {
+        final UserAccount requester = principal.getUserAccount();
+        final AnnotationImportResource resource = importer.importAnnotations(requester, body);
+        resource.add(annotationLinks.getRequestLink(request));
+        return resource;
     }
 
     /**
@@ -418,6 +891,7 @@ public class AnnotationController {
     @RequestMapping(value = AnnotationLinks.ANNOTATION_REDACT, method = RequestMethod.POST)
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @ResponseBody
+    @Transactional
     public void redactAnnotation(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id) throws NotFoundException, ForbiddenException {
         final UserAccount requester = principal.getUserAccount();
         final Annotation annotation = annotationService.findById(requester, id);
@@ -425,8 +899,11 @@ public class AnnotationController {
             throw new AnnotationNotFoundException(id);
         }
         if (annotation.getUser().getId().equals(requester.getId())) {
+            summaries.redacted(annotation);
             annotation.redact();
+            annotation.setModified(new Date());
             annotationService.save(annotation);
+            annotationIndex.update(Collections.singleton(id));
         } else {
             throw new ForbiddenException(requester, request);
         }
@@ -441,17 +918,19 @@ public class AnnotationController {
     @RequestMapping(value = AnnotationLinks.ANNOTATION, method = RequestMethod.PATCH)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public AnnotationResource editAnnotation(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id, @RequestBody AnnotationForm form) throws NotFoundException, ForbiddenException, AccessUpdateException {
+    @Transactional
+    public AnnotationResource editAnnotation(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch, @RequestBody AnnotationForm form, HttpServletResponse response) throws NotFoundException, ForbiddenException, AccessUpdateException, PreconditionFailedException {
         final UserAccount requester = principal.getUserAccount();
         Annotation annotation = annotationService.findById(requester, id);
         if (annotation == null) {
             throw new AnnotationNotFoundException(id);
         }
         if (annotation.getUser().getId().equals(requester.getId())) {
+            checkIfMatch(ifMatch, annotation);
             final String accessName = form.getAccess();
             Access access = null;
             if (accessName != null) {
-                access = accessService.findByName(accessName);
+                access = accessRegistry.find(accessName);
                 if (access == null) {
                     throw new AccessNotFoundException(accessName);
                 }
@@ -464,74 +943,102 @@ public class AnnotationController {
                     throw new GroupNotFoundException(groupName);
                 }
             }
+            final Access previous = annotation.getAccess();
             annotation = updateAnnotation(annotation, access, group);
-            annotation = annotationService.save(annotation);
+            annotation.setModified(new Date());
+            // flush to get the new version for the entity tag
+            annotation = annotationService.saveAndFlush(annotation);
+            summaries.accessChanged(annotation, previous);
             final AnnotationResource resource = assembler.toResource(annotation);
+            ETags.set(request, response, etag(annotation, resource.getChildCount()));
             return resource;
         } else {
             throw new ForbiddenException(requester, request);
         }
     }
 
-    private Annotation updateAnnotation(Annotation annotation, Access access, Group group) {
-        // no changes, don't update
-        if (annotation.getAccess().getId().equals(access.getId()) && annotation.getGroup().getId().equals(group.getId())) {
-            return annotation;
-            // update just group
-        } else if (annotation.getAccess().getId().equals(access.getId()) && access.getName().equalsIgnoreCase("GROUP") && !annotation.getGroup().getId().equals(group.getId())) {
-            annotation.setGroup(group);
-            return annotationService.save(annotation);
-            // update access from private to group and update group
-        } else if (annotation.getAccess().getName().equalsIgnoreCase("PRIVATE") && access.getName().equalsIgnoreCase("GROUP")) {
-            if (group == null) {
-                throw new AccessUpdateException(true);
-            } else {
-                annotation.setAccess(access);
-                annotation.setGroup(group);
-                return annotationService.save(annotation);
-            }
-            // update access from private to public
-        } else if (annotation.getAccess().getName().equalsIgnoreCase("PRIVATE") && access.getName().equalsIgnoreCase("PUBLIC")) {
-            annotation.setAccess(access);
-            return annotationService.save(annotation);
-            // update access from group to public and remove group
-        } else if (annotation.getAccess().getName().equalsIgnoreCase("GROUP") && access.getName().equalsIgnoreCase("PUBLIC")) {
-            annotation.setAccess(access);
-            annotation.setGroup(null);
-            return annotationService.save(annotation);
-        } else {
-            throw new AccessUpdateException(annotation.getAccess(), access);
+    /**
+     * Apply an access and group change to an annotation. A group may only be
+     * given when the resulting access is GROUP.
+     *
+     * @param annotation annotation
+     * @param access requested access (nullable, keeps current access)
+     * @param group requested group (nullable, keeps current group)
+     * @return updated annotation
+     * @throws AccessUpdateException if the access change is not allowed, or a
+     * group is given for public or private access
+     */
+    Annotation updateAnnotation(Annotation annotation, Access access, Group group) throws AccessUpdateException {
+        final AccessLevel current = accessRegistry.level(annotation.getAccess());
+        final AccessLevel requested = (access == null) ? current : accessRegistry.level(access);
+        if (current == null || !current.canChangeTo(requested)) {
+            throw new AccessUpdateException(annotation.getAccess(), (access == null) ? annotation.getAccess() : access);
         }
+        switch (requested) {
+            case GROUP:
+                // sharing with a group requires one
+                if (group == null && current != AccessLevel.GROUP) {
+                    throw new AccessUpdateException(true);
+                }
+                if (group != null) {
+                    annotation.setGroup(group);
+                }
+                break;
+            case PUBLIC:
+                if (group != null) {
+                    throw new AccessUpdateException(accessRegistry.get(requested), group);
+                }
+                annotation.setGroup(null);
+                break;
+            default:
+                if (group != null) {
+                    throw new AccessUpdateException(accessRegistry.get(requested), group);
+                }
+                break;
+        }
+        if (requested != current) {
+            annotation.setAccess(accessRegistry.get(requested));
+        }
+        return annotation;
     }
 
     @RequestMapping(value = AnnotationLinks.ANNOTATION_DATA, method = RequestMethod.PATCH)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public AnnotationDataResource editAnnotationData(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id, @PathVariable Long dataId, @RequestBody AnnotationDataForm form) throws NotFoundException, ForbiddenException {
+    @Transactional
+    public AnnotationDataResource editAnnotationData(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id, @PathVariable Long dataId, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch, @RequestBody AnnotationDataForm form, HttpServletResponse response) throws NotFoundException, ForbiddenException, PreconditionFailedException {
         final UserAccount requester = principal.getUserAccount();
         final Annotation annotation = annotationService.findById(requester, id);
         if (annotation == null) {
             throw new AnnotationNotFoundException(id);
         }
         if (annotation.getUser().getId().equals(requester.getId())) {
-            AnnotationData data = annotation.getData()
-                    .stream()
-                    .filter(d -> d.getId().equals(dataId))
-                    .findFirst()
-                    .orElseThrow(() -> new AnnotationDataNotFoundException(dataId));
+            AnnotationData data = dataLookup.find(annotation.getId(), dataId);
+            if (data == null) {
+                throw new AnnotationDataNotFoundException(dataId);
+            }
+            checkIfMatch(ifMatch, annotation);
             final Long attributeId = form.getAttribute();
             if (!isEmpty(attributeId) && !data.getAttribute().getId().equals(attributeId)) {
                 final Attribute attribute = attributeService.findById(attributeId);
                 if (attribute == null) {
                     throw new AttributeNotFoundException(attributeId);
                 }
+                final Attribute previous = data.getAttribute();
                 data.setAttribute(attribute);
+                summaries.attributeChanged(annotation, data, previous);
             }
             final String value = form.getValue();
             if (!isEmpty(value) && !data.getValue().equals(value)) {
                 data.setValue(value);
             }
             data = annotationDataService.save(data);
+            // data is part of the annotation's representation; bump its version
+            annotation.setModified(new Date());
+            annotationService.saveAndFlush(annotation);
+            dataValues.update(data);
+            annotationIndex.update(Collections.singleton(id));
+            ETags.set(request, response, etag(annotation));
             final AnnotationDataResource resource = dataAssembler.toResource(data);
             return resource;
         } else {
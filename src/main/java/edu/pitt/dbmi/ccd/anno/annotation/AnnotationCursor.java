@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.anno.error.InvalidCursorException;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Position in a keyset paged annotation listing.
+ * <p>
+ * Annotations are ordered by one sort property and then by id in the same
+ * direction. A cursor holds the sort property and id of the last annotation
+ * returned, so the next page is found with a range condition on an index
+ * instead of skipping rows with an offset. Ordering and ranges are on the
+ * columns themselves, so an index on the sort column and id serves both.
+ * <p>
+ * Dates that are not set are taken to sort below every date, as MySQL and
+ * HSQLDB order them: first in ascending order and last in descending order.
+ * The range condition has a separate branch for them. Databases that sort
+ * nulls last in ascending order, like PostgreSQL, would skip or repeat
+ * annotations without a date. Cursors are passed to clients as opaque
+ * tokens.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationCursor {
+
+    // properties annotations may be ordered by
+    private static final List<String> PROPERTIES = Arrays.asList("id", "created", "modified");
+    private static final String ID = "id";
+
+    private static final String SEPARATOR = ",";
+    private static final String INVALID = "Invalid cursor";
+    private static final String UNSUPPORTED = "Cursor paging supports sorting by one of " + PROPERTIES;
+    private static final String MISMATCH = "Cursor does not match requested sort";
+
+    private final String property;
+    private final Sort.Direction direction;
+    // sort value of the last annotation; epoch milliseconds for dates, null
+    // for a date that is not set
+    private final Long value;
+    private final Integer nanos;
+    private final Long id;
+
+    private AnnotationCursor(String property, Sort.Direction direction, Long value, Integer nanos, Long id) {
+        this.property = property;
+        this.direction = direction;
+        this.value = value;
+        this.nanos = nanos;
+        this.id = id;
+    }
+
+    /**
+     * Cursor at the start of a listing
+     *
+     * @param sort requested sort (nullable, defaults to id ascending)
+     * @return cursor
+     * @throws InvalidCursorException if the sort is not supported
+     */
+    public static AnnotationCursor first(Sort sort) throws InvalidCursorException {
+        if (sort == null) {
+            return new AnnotationCursor(ID, Sort.Direction.ASC, null, null, null);
+        }
+        final Iterator<Sort.Order> orders = sort.iterator();
+        final Sort.Order order = orders.next();
+        if (orders.hasNext() || !PROPERTIES.contains(order.getProperty())) {
+            throw new InvalidCursorException(UNSUPPORTED);
+        }
+        return new AnnotationCursor(order.getProperty(), order.getDirection(), null, null, null);
+    }
+
+    /**
+     * Decode a cursor token
+     *
+     * @param token cursor token; empty for the start of a listing
+     * @param sort requested sort (nullable, defaults to id ascending)
+     * @return cursor
+     * @throws InvalidCursorException if the token is malformed or was issued
+     * for another sort
+     */
+    public static AnnotationCursor decode(String token, Sort sort) throws InvalidCursorException {
+        final AnnotationCursor first = first(sort);
+        if (token.isEmpty()) {
+            return first;
+        }
+        final AnnotationCursor cursor;
+        try {
+            final String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+            if (parts.length != 5) {
+                throw new InvalidCursorException(INVALID);
+            }
+            cursor = new AnnotationCursor(
+                    parts[0],
+                    Sort.Direction.fromString(parts[1]),
+                    parts[2].isEmpty() ? null : Long.valueOf(parts[2]),
+                    parts[3].isEmpty() ? null : Integer.valueOf(parts[3]),
+                    Long.valueOf(parts[4]));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidCursorException(INVALID);
+        }
+        if (!cursor.property.equals(first.property) || cursor.direction != first.direction
+                || (cursor.value == null && ID.equals(cursor.property))) {
+            throw new InvalidCursorException(MISMATCH);
+        }
+        return cursor;
+    }
+
+    /**
+     * Cursor after an annotation
+     *
+     * @param last last annotation of a page
+     * @return cursor
+     */
+    public AnnotationCursor next(Annotation last) {
+        switch (property) {
+            case "created":
+                return after(last.getCreated(), last.getId());
+            case "modified":
+                return after(last.getModified(), last.getId());
+            default:
+                return new AnnotationCursor(property, direction, last.getId(), null, last.getId());
+        }
+    }
+
+    private AnnotationCursor after(Date date, Long last) {
+        if (date == null) {
+            return new AnnotationCursor(property, direction, null, null, last);
+        }
+        final Integer fraction = (date instanceof Timestamp) ? ((Timestamp) date).getNanos() : null;
+        return new AnnotationCursor(property, direction, date.getTime(), fraction, last);
+    }
+
+    /**
+     * Encode as an opaque token
+     *
+     * @return token
+     */
+    public String encode() {
+        final String raw = String.join(SEPARATOR,
+                property,
+                direction.name(),
+                (value == null) ? "" : String.valueOf(value),
+                (nanos == null) ? "" : String.valueOf(nanos),
+                String.valueOf(id));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get sort of the listing
+     *
+     * @return sort
+     */
+    public Sort getSort() {
+        return ID.equals(property) ? new Sort(direction, ID) : new Sort(direction, property, ID);
+    }
+
+    /**
+     * Condition selecting annotations after this cursor
+     *
+     * @param root annotation root
+     * @param cb criteria builder
+     * @return predicate, or null at the start of a listing
+     */
+    public Predicate toPredicate(Root<Annotation> root, CriteriaBuilder cb) {
+        if (id == null) {
+            return null;
+        }
+        final Path<Long> idPath = root.get(ID);
+        if (ID.equals(property)) {
+            return after(cb, idPath, id);
+        }
+        final Path<Date> path = root.get(property);
+        final boolean ascending = direction == Sort.Direction.ASC;
+        if (value == null) {
+            // within the block of unset dates, which sorts below every date
+            final Predicate unset = cb.and(cb.isNull(path), after(cb, idPath, id));
+            return ascending ? cb.or(unset, cb.isNotNull(path)) : unset;
+        }
+        final Date date = toDate();
+        final Predicate set = cb.or(
+                after(cb, path, date),
+                cb.and(cb.equal(path, date), after(cb, idPath, id)));
+        return ascending ? set : cb.or(set, cb.isNull(path));
+    }
+
+    /**
+     * Ordering of the listing
+     *
+     * @param root annotation root
+     * @param cb criteria builder
+     * @return orders
+     */
+    public List<Order> toOrders(Root<Annotation> root, CriteriaBuilder cb) {
+        final boolean ascending = direction == Sort.Direction.ASC;
+        if (ID.equals(property)) {
+            return Arrays.asList(ascending ? cb.asc(root.get(ID)) : cb.desc(root.get(ID)));
+        }
+        final Path<Date> date = root.get(property);
+        return Arrays.asList(
+                ascending ? cb.asc(date) : cb.desc(date),
+                ascending ? cb.asc(root.get(ID)) : cb.desc(root.get(ID)));
+    }
+
+    private <T extends Comparable<? super T>> Predicate after(CriteriaBuilder cb, Expression<T> path, T bound) {
+        return (direction == Sort.Direction.ASC) ? cb.greaterThan(path, bound) : cb.lessThan(path, bound);
+    }
+
+    private Date toDate() {
+        final Timestamp timestamp = new Timestamp(value);
+        if (nanos != null) {
+            timestamp.setNanos(nanos);
+        }
+        return timestamp;
+    }
+}
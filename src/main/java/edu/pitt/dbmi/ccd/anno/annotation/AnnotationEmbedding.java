@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataResource;
+import edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyResource;
+import edu.pitt.dbmi.ccd.anno.vocabulary.attribute.AttributeResource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.Resources;
+
+/**
+ * Shared embedding of vocabularies and attributes.
+ * <p>
+ * By default every annotation carries its vocabulary and every data item its
+ * attribute tree. In shared mode these are removed from the items and each
+ * distinct vocabulary and attribute is embedded once next to the annotations,
+ * under <code>_embedded.vocabularies</code> and
+ * <code>_embedded.attributes</code>. Annotations reference their vocabulary by
+ * name and data items their attribute by id, as they already do.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationEmbedding {
+
+    // embed parameter values
+    static final String INLINE = "inline";
+    static final String SHARED = "shared";
+
+    private AnnotationEmbedding() {
+    }
+
+    /**
+     * Whether shared embedding was requested
+     *
+     * @param embed embed parameter (nullable)
+     * @return true for shared embedding
+     */
+    static boolean isShared(String embed) {
+        return SHARED.equalsIgnoreCase(embed);
+    }
+
+    /**
+     * Move vocabularies and attributes of a page of annotations into a
+     * lookup section. Annotation and data resources are modified in place;
+     * vocabulary and attribute resources are shared and left untouched.
+     *
+     * @param resources page or slice of annotations
+     * @return annotations followed by their distinct vocabularies and
+     * attributes, with the same page metadata and links
+     */
+    public static Resources<ResourceSupport> shared(Resources<AnnotationResource> resources) {
+        final Map<Long, VocabularyResource> vocabularies = new LinkedHashMap<>();
+        final Map<Long, AttributeResource> attributes = new LinkedHashMap<>();
+        final List<ResourceSupport> content = new ArrayList<>(resources.getContent());
+        for (AnnotationResource annotation : resources.getContent()) {
+            final VocabularyResource vocabulary = annotation.removeVocabularyResource();
+            if (vocabulary != null) {
+                vocabularies.putIfAbsent(vocabulary.getIdentifier(), vocabulary);
+            }
+            if (annotation.getData() != null) {
+                unembed(annotation.getData(), attributes);
+            }
+        }
+        content.addAll(vocabularies.values());
+        content.addAll(attributes.values());
+        if (resources instanceof PagedResources) {
+            return new PagedResources<>(content, ((PagedResources<AnnotationResource>) resources).getMetadata(), resources.getLinks());
+        }
+        return new Resources<>(content, resources.getLinks());
+    }
+
+    /**
+     * Remove attribute resources from data and their sub data, collecting
+     * them by id
+     */
+    private static void unembed(Collection<AnnotationDataResource> data, Map<Long, AttributeResource> attributes) {
+        for (AnnotationDataResource d : data) {
+            final AttributeResource attribute = d.removeAttributeResource();
+            if (attribute != null) {
+                attributes.putIfAbsent(attribute.getIdentifer(), attribute);
+            }
+            unembed(d.getSubData(), attributes);
+        }
+    }
+}
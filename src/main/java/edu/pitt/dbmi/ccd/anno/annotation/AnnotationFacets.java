@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.anno.error.InvalidFacetException;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Counts annotations matching a search by vocabulary, user or the values of
+ * an attribute. Each facet is one grouped query over the search's own
+ * predicates, returning the most frequent values first.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationFacets {
+
+    // facet names
+    public static final String VOCAB = "vocab";
+    public static final String USER = "user";
+    public static final String ATTRIBUTE = "attribute:";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Count annotations by facet
+     *
+     * @param specification annotations to count
+     * @param facets vocab, user or attribute:&lt;id&gt;
+     * @param limit number of values per facet
+     * @return counts by facet, then by value, most frequent first
+     * @throws InvalidFacetException if a facet is not recognized
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Map<String, Long>> count(Specification<Annotation> specification, Collection<String> facets, int limit) throws InvalidFacetException {
+        final Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+        for (String facet : facets) {
+            if (VOCAB.equals(facet)) {
+                counts.put(facet, countBy(specification, "vocabulary", "name", limit));
+            } else if (USER.equals(facet)) {
+                counts.put(facet, countBy(specification, "user", "username", limit));
+            } else if (facet.startsWith(ATTRIBUTE)) {
+                counts.put(facet, countValues(specification, attributeId(facet), limit));
+            } else {
+                throw new InvalidFacetException(facet);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Annotations grouped by an attribute of an association
+     */
+    private Map<String, Long> countBy(Specification<Annotation> specification, String association, String attribute, int limit) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        final Root<Annotation> root = query.from(Annotation.class);
+        final Path<String> value = root.join(association).get(attribute);
+        final Expression<Long> count = cb.count(root);
+        final Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.multiselect(value, count)
+                .groupBy(value)
+                .orderBy(cb.desc(count), cb.asc(value));
+        return toCounts(entityManager.createQuery(query).setMaxResults(limit).getResultList());
+    }
+
+    /**
+     * Annotations grouped by the values they have for an attribute. An
+     * annotation with several values is counted once for each.
+     */
+    private Map<String, Long> countValues(Specification<Annotation> specification, Long attributeId, int limit) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        final Root<AnnotationData> data = query.from(AnnotationData.class);
+        final Path<String> value = data.get("value");
+        final Expression<Long> count = cb.countDistinct(data.get("annotation").get("id"));
+
+        final Subquery<Long> matches = query.subquery(Long.class);
+        final Root<Annotation> annotation = matches.from(Annotation.class);
+        matches.select(annotation.get("id"));
+        final Predicate predicate = specification.toPredicate(annotation, query, cb);
+        if (predicate != null) {
+            matches.where(predicate);
+        }
+
+        final List<Predicate> predicates = new ArrayList<>(3);
+        predicates.add(cb.equal(data.get("attribute").get("id"), attributeId));
+        predicates.add(cb.isNotNull(value));
+        predicates.add(data.get("annotation").get("id").in(matches));
+        query.multiselect(value, count)
+                .where(predicates.toArray(new Predicate[predicates.size()]))
+                .groupBy(value)
+                .orderBy(cb.desc(count), cb.asc(value));
+        return toCounts(entityManager.createQuery(query).setMaxResults(limit).getResultList());
+    }
+
+    private static Map<String, Long> toCounts(List<Tuple> rows) {
+        final Map<String, Long> counts = new LinkedHashMap<>(rows.size());
+        rows.forEach(r -> counts.put(r.get(0, String.class), r.get(1, Long.class)));
+        return counts;
+    }
+
+    private static Long attributeId(String facet) throws InvalidFacetException {
+        try {
+            return Long.valueOf(facet.substring(ATTRIBUTE.length()));
+        } catch (NumberFormatException ex) {
+            throw new InvalidFacetException(facet);
+        }
+    }
+}
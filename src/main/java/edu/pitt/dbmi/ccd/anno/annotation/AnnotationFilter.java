@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Annotation filter parameters shared by listing, search and export
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationFilter {
+
+    private final String user;
+    private final String group;
+    private final Long target;
+    private final String vocab;
+    private final String attributeLevel;
+    private final String attributeName;
+    private final String attributeRequirementLevel;
+    private final boolean showRedacted;
+    private final boolean parentless;
+    private final Date createdBefore;
+    private final Date createdAfter;
+    private final Date modifiedBefore;
+    private final Date modifiedAfter;
+    private final Set<String> terms;
+    private final Set<String> nots;
+
+    /**
+     * Constructor
+     *
+     * @param user username (nullable)
+     * @param group group name (nullable)
+     * @param target target id (nullable)
+     * @param vocab vocabulary name (nullable)
+     * @param attributeLevel attribute level (nullable)
+     * @param attributeName attribute name (nullable)
+     * @param attributeRequirementLevel attribute requirement level (nullable)
+     * @param showRedacted include redacted annotations
+     * @param parentless only include annotations without a parent
+     * @param createdBefore created before date (nullable)
+     * @param createdAfter created after date (nullable)
+     * @param modifiedBefore modified before date (nullable)
+     * @param modifiedAfter modified after date (nullable)
+     * @param terms search terms (nullable)
+     * @param nots negated search terms (nullable)
+     */
+    public AnnotationFilter(String user, String group, Long target, String vocab, String attributeLevel, String attributeName, String attributeRequirementLevel, Boolean showRedacted, Boolean parentless, Date createdBefore, Date createdAfter, Date modifiedBefore, Date modifiedAfter, Set<String> terms, Set<String> nots) {
+        this.user = user;
+        this.group = group;
+        this.target = target;
+        this.vocab = vocab;
+        this.attributeLevel = attributeLevel;
+        this.attributeName = attributeName;
+        this.attributeRequirementLevel = attributeRequirementLevel;
+        this.showRedacted = Boolean.TRUE.equals(showRedacted);
+        this.parentless = Boolean.TRUE.equals(parentless);
+        this.createdBefore = createdBefore;
+        this.createdAfter = createdAfter;
+        this.modifiedBefore = modifiedBefore;
+        this.modifiedAfter = modifiedAfter;
+        this.terms = (terms != null) ? Collections.unmodifiableSet(terms) : Collections.emptySet();
+        this.nots = (nots != null) ? Collections.unmodifiableSet(nots) : Collections.emptySet();
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public Long getTarget() {
+        return target;
+    }
+
+    public String getVocab() {
+        return vocab;
+    }
+
+    public String getAttributeLevel() {
+        return attributeLevel;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    public String getAttributeRequirementLevel() {
+        return attributeRequirementLevel;
+    }
+
+    public boolean isShowRedacted() {
+        return showRedacted;
+    }
+
+    public boolean isParentless() {
+        return parentless;
+    }
+
+    public Date getCreatedBefore() {
+        return createdBefore;
+    }
+
+    public Date getCreatedAfter() {
+        return createdAfter;
+    }
+
+    public Date getModifiedBefore() {
+        return modifiedBefore;
+    }
+
+    public Date getModifiedAfter() {
+        return modifiedAfter;
+    }
+
+    public Set<String> getTerms() {
+        return terms;
+    }
+
+    public Set<String> getNots() {
+        return nots;
+    }
+}
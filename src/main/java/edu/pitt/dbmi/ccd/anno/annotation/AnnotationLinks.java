@@ -19,6 +19,7 @@
 package edu.pitt.dbmi.ccd.anno.annotation;
 
 import edu.pitt.dbmi.ccd.anno.links.ResourceLinks;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
 import edu.pitt.dbmi.ccd.db.entity.Annotation;
 import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -42,6 +43,14 @@ public class AnnotationLinks implements ResourceLinks {
     public static final String ANNOTATION_DATA = "/{id}/data";
     public static final String ANNOTATION_DATA_ID = "/{id}/data/{dataId}";
     public static final String CHILDREN = "/{id}/children";
+    public static final String THREAD = "/{id}/thread";
+    public static final String BATCH = "/batch";
+    public static final String MGET = "/_mget";
+    public static final String EXPLAIN = "/_explain";
+    public static final String IMPORT = "/import";
+    public static final String EXPORT = "/export";
+    public static final String JOBS = "/jobs";
+    public static final String JOB = "/jobs/{jobId}";
 
     // annotations rels
     private final String REL_ANNOTATION;
@@ -49,6 +58,7 @@ public class AnnotationLinks implements ResourceLinks {
     private final String REL_PARENT = "parent";
     private final String REL_CHILDREN = "children";
     private final String REL_DATA = "data";
+    private final String REL_JOB = "job";
 
     // query parameters
     // filter
@@ -61,9 +71,21 @@ public class AnnotationLinks implements ResourceLinks {
     public static final String REQUIREMENT = "requirement";
     public static final String REDACTED = "showRedacted";
 
+    // keyset paging
+    public static final String AFTER = "after";
+
     //search
     public static final String QUERY = "query";
     public static final String NOT = "not";
+    public static final String VALUE_FROM = "valueFrom";
+    public static final String VALUE_TO = "valueTo";
+    public static final String FACET = "facet";
+    public static final String Q = "q";
+    public static final String FACET_SIZE = "facetSize";
+
+    // representation
+    public static final String EMBED = "embed";
+    public static final String FIELDS = Fields.PARAM;
 
     // dependencies
     private final EntityLinks entityLinks;
@@ -83,7 +105,7 @@ public class AnnotationLinks implements ResourceLinks {
      * @return link to collection
      */
     public Link annotations() {
-        String template = toTemplate(entityLinks.linkFor(AnnotationResource.class).toString(), USER, GROUP, UPLOAD, VOCAB, LEVEL, NAME, REQUIREMENT, REDACTED, PAGEABLE);
+        String template = toTemplate(entityLinks.linkFor(AnnotationResource.class).toString(), USER, GROUP, UPLOAD, VOCAB, LEVEL, NAME, REQUIREMENT, REDACTED, Q, AFTER, COUNT, EMBED, FIELDS, PAGEABLE);
         return new Link(template, REL_ANNOTATIONS);
     }
 
@@ -97,6 +119,16 @@ public class AnnotationLinks implements ResourceLinks {
         return entityLinks.linkForSingleResource(AnnotationResource.class, annotation.getId()).withRel(REL_ANNOTATION);
     }
 
+    /**
+     * Get link to annotation resource by id
+     *
+     * @param id annotation id
+     * @return link to resource
+     */
+    public Link annotation(Long id) {
+        return entityLinks.linkForSingleResource(AnnotationResource.class, id).withRel(REL_ANNOTATION);
+    }
+
     /**
      * Get link to annotation data resource
      *
@@ -107,6 +139,16 @@ public class AnnotationLinks implements ResourceLinks {
         return entityLinks.linkForSingleResource(AnnotationResource.class, data.getAnnotation().getId()).slash(REL_DATA).slash(data.getId()).withRel(REL_DATA);
     }
 
+    /**
+     * Get link to annotation job resource
+     *
+     * @param id job id
+     * @return link to resource
+     */
+    public Link job(String id) {
+        return entityLinks.linkFor(AnnotationResource.class).slash(JOBS).slash(id).withRel(REL_JOB);
+    }
+
     public Link parent(Annotation annotation) {
         return entityLinks.linkForSingleResource(AnnotationResource.class, annotation.getParent().getId()).withRel(REL_PARENT);
     }
@@ -121,7 +163,7 @@ public class AnnotationLinks implements ResourceLinks {
      * @return link to search
      */
     public Link search() {
-        String template = toTemplate(entityLinks.linkFor(AnnotationResource.class).slash(SEARCH).toString(), USER, GROUP, UPLOAD, VOCAB, LEVEL, NAME, REQUIREMENT, REDACTED, QUERY, NOT, PAGEABLE);
+        String template = toTemplate(entityLinks.linkFor(AnnotationResource.class).slash(SEARCH).toString(), USER, GROUP, UPLOAD, VOCAB, LEVEL, NAME, REQUIREMENT, REDACTED, QUERY, NOT, Q, VALUE_FROM, VALUE_TO, FACET, FACET_SIZE, AFTER, COUNT, EMBED, FIELDS, PAGEABLE);
         return new Link(template, REL_SEARCH);
     }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import java.util.List;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resources;
+
+/**
+ * Multi-get DTO representation: the annotations found, and the requested
+ * ids that were not
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationMultiGetResource extends Resources<AnnotationResource> {
+
+    // content
+    private final List<Long> missing;
+
+    /**
+     * Constructor
+     *
+     * @param content annotations found
+     * @param missing ids of annotations that do not exist or are not
+     * visible to the requester
+     * @param links (optional) links to include
+     */
+    public AnnotationMultiGetResource(List<AnnotationResource> content, List<Long> missing, Link... links) {
+        super(content, links);
+        this.missing = missing;
+    }
+
+    /**
+     * Get ids of annotations that do not exist or are not visible to the
+     * requester
+     *
+     * @return missing ids
+     */
+    public List<Long> getMissing() {
+        return missing;
+    }
+}
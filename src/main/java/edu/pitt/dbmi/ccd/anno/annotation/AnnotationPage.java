@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Page of annotations with the associations needed to assemble resources
+ * already loaded, keyed by owner id. Keyset paged listings are uncounted
+ * slices that carry the cursor of the next page.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public class AnnotationPage {
+
+    private final Slice<Annotation> slice;
+    private final AnnotationCursor next;
+    private final Map<Long, List<AnnotationData>> data;
+    private final Map<Long, List<AnnotationData>> subData;
+    private final Map<Long, Long> childCounts;
+
+    /**
+     * Constructor
+     *
+     * @param page page of annotations
+     * @param data annotation data by annotation id
+     * @param subData annotation data by parent data id
+     * @param childCounts number of children by annotation id
+     */
+    public AnnotationPage(Page<Annotation> page, Map<Long, List<AnnotationData>> data, Map<Long, List<AnnotationData>> subData, Map<Long, Long> childCounts) {
+        this(page, null, data, subData, childCounts);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param slice slice of annotations
+     * @param next cursor of the next slice (nullable)
+     * @param data annotation data by annotation id
+     * @param subData annotation data by parent data id
+     * @param childCounts number of children by annotation id
+     */
+    public AnnotationPage(Slice<Annotation> slice, AnnotationCursor next, Map<Long, List<AnnotationData>> data, Map<Long, List<AnnotationData>> subData, Map<Long, Long> childCounts) {
+        this.slice = slice;
+        this.next = next;
+        this.data = data;
+        this.subData = subData;
+        this.childCounts = childCounts;
+    }
+
+    /**
+     * Get counted page
+     *
+     * @return page
+     * @throws IllegalStateException if the annotations were not counted
+     */
+    public Page<Annotation> getPage() throws IllegalStateException {
+        if (!isCounted()) {
+            throw new IllegalStateException("Annotations were not counted");
+        }
+        return (Page<Annotation>) slice;
+    }
+
+    /**
+     * Get annotations
+     *
+     * @return slice
+     */
+    public Slice<Annotation> getSlice() {
+        return slice;
+    }
+
+    /**
+     * Check whether the total number of annotations is known
+     *
+     * @return true if counted
+     */
+    public boolean isCounted() {
+        return slice instanceof Page;
+    }
+
+    /**
+     * Get cursor of the next slice
+     *
+     * @return cursor, or null if not keyset paged or last
+     */
+    public AnnotationCursor getNext() {
+        return next;
+    }
+
+    /**
+     * Get all data of an annotation
+     *
+     * @param annotation annotation on this page
+     * @return data
+     */
+    public List<AnnotationData> getData(Annotation annotation) {
+        return data.getOrDefault(annotation.getId(), Collections.emptyList());
+    }
+
+    /**
+     * Get sub data of an annotation data
+     *
+     * @param parent annotation data on this page
+     * @return sub data
+     */
+    public List<AnnotationData> getSubData(AnnotationData parent) {
+        return subData.getOrDefault(parent.getId(), Collections.emptyList());
+    }
+
+    /**
+     * Get number of children of an annotation
+     *
+     * @param annotation annotation on this page
+     * @return number of annotations that have it as parent
+     */
+    public long getChildCount(Annotation annotation) {
+        return childCounts.getOrDefault(annotation.getId(), 0L);
+    }
+}
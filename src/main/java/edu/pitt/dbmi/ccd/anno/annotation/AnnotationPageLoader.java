@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.idIn;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.domain.Specifications;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Loads a page of annotations and everything their resources need in a fixed
+ * number of queries, independent of page size:
+ * <ol>
+ * <li>ids of the annotations on the page</li>
+ * <li>total count (skipped when the page is the last one, for uncounted
+ * slices and for keyset paging)</li>
+ * <li>annotations by id, with user, access, group, vocabulary and target</li>
+ * <li>data of those annotations, with attribute</li>
+ * <li>number of children of those annotations</li>
+ * </ol>
+ * The last two are skipped when the requested fields do not need them.
+ * Vocabulary and attribute resources come from the
+ * {@link edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyCache}.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationPageLoader {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AnnotationChildCounts childCounts;
+
+    @Autowired(required = true)
+    public AnnotationPageLoader(AnnotationChildCounts childCounts) {
+        this.childCounts = childCounts;
+    }
+
+    /**
+     * Load a page of annotations
+     *
+     * @param specification annotations to include
+     * @param pageable page request
+     * @return page with preloaded associations
+     */
+    @Transactional(readOnly = true)
+    public AnnotationPage load(Specification<Annotation> specification, Pageable pageable) {
+        return load(specification, pageable, Fields.all());
+    }
+
+    /**
+     * Load a page of annotations with what the requested fields need
+     *
+     * @param specification annotations to include
+     * @param pageable page request
+     * @param fields fields to be assembled
+     * @return page with preloaded associations
+     */
+    @Transactional(readOnly = true)
+    public AnnotationPage load(Specification<Annotation> specification, Pageable pageable, Fields fields) {
+        final List<Long> ids = findIds(specification, pageable);
+        final List<Annotation> annotations = findAnnotations(ids);
+        final Page<Annotation> page = new PageImpl<>(annotations, pageable, total(specification, pageable, ids.size()));
+        return load(page, null, ids, fields);
+    }
+
+    /**
+     * Load the annotations after a keyset cursor, without counting
+     *
+     * @param specification annotations to include
+     * @param cursor position in the listing
+     * @param size maximum number of annotations
+     * @return slice with preloaded associations and the cursor of the next
+     * slice
+     */
+    @Transactional(readOnly = true)
+    public AnnotationPage load(Specification<Annotation> specification, AnnotationCursor cursor, int size) {
+        return load(specification, cursor, size, Fields.all());
+    }
+
+    /**
+     * Load the annotations after a keyset cursor, without counting, with what
+     * the requested fields need
+     *
+     * @param specification annotations to include
+     * @param cursor position in the listing
+     * @param size maximum number of annotations
+     * @param fields fields to be assembled
+     * @return slice with preloaded associations and the cursor of the next
+     * slice
+     */
+    @Transactional(readOnly = true)
+    public AnnotationPage load(Specification<Annotation> specification, AnnotationCursor cursor, int size, Fields fields) {
+        // one extra row tells whether there is a next slice
+        List<Long> ids = findIds(specification, cursor, size + 1);
+        final boolean hasNext = ids.size() > size;
+        if (hasNext) {
+            ids = ids.subList(0, size);
+        }
+        final List<Annotation> annotations = findAnnotations(ids);
+        final Slice<Annotation> slice = new SliceImpl<>(annotations, new PageRequest(0, Math.max(size, 1), cursor.getSort()), hasNext);
+        final AnnotationCursor next = (hasNext && !annotations.isEmpty()) ? cursor.next(annotations.get(annotations.size() - 1)) : null;
+        return load(slice, next, ids, fields);
+    }
+
+    /**
+     * Load a page of annotations as a slice, without counting
+     *
+     * @param specification annotations to include
+     * @param pageable page request
+     * @return slice with preloaded associations
+     */
+    @Transactional(readOnly = true)
+    public AnnotationPage loadSlice(Specification<Annotation> specification, Pageable pageable) {
+        return loadSlice(specification, pageable, Fields.all());
+    }
+
+    /**
+     * Load a page of annotations as a slice, without counting, with what the
+     * requested fields need
+     *
+     * @param specification annotations to include
+     * @param pageable page request
+     * @param fields fields to be assembled
+     * @return slice with preloaded associations
+     */
+    @Transactional(readOnly = true)
+    public AnnotationPage loadSlice(Specification<Annotation> specification, Pageable pageable, Fields fields) {
+        // one extra row tells whether there is a next slice
+        List<Long> ids = findIds(specification, pageable.getPageSize() + 1, pageable);
+        final boolean hasNext = ids.size() > pageable.getPageSize();
+        if (hasNext) {
+            ids = ids.subList(0, pageable.getPageSize());
+        }
+        final Slice<Annotation> slice = new SliceImpl<>(findAnnotations(ids), pageable, hasNext);
+        return load(slice, null, ids, fields);
+    }
+
+    /**
+     * Load annotations by id
+     *
+     * @param specification annotations to include
+     * @param ids annotation ids, distinct
+     * @return annotations that exist and match the specification, in the
+     * order of their ids, with preloaded associations
+     */
+    @Transactional(readOnly = true)
+    public AnnotationPage load(Specification<Annotation> specification, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return load(new SliceImpl<>(Collections.emptyList()), null, ids, Fields.all());
+        }
+        final Set<Long> matching = new HashSet<>(findIds(Specifications.where(specification).and(idIn(ids)), new PageRequest(0, ids.size())));
+        final List<Long> found = ids.stream()
+                .filter(matching::contains)
+                .collect(Collectors.toList());
+        return load(new SliceImpl<>(findAnnotations(found)), null, found, Fields.all());
+    }
+
+    private AnnotationPage load(Slice<Annotation> slice, AnnotationCursor next, List<Long> ids, Fields fields) {
+        if (ids.isEmpty()) {
+            return new AnnotationPage(slice, next, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+        }
+        final Map<Long, Long> children = AnnotationResourceAssembler.needsChildCount(fields) ? childCounts.count(ids) : Collections.emptyMap();
+        if (!fields.includes(AnnotationResource.DATA)) {
+            return new AnnotationPage(slice, next, Collections.emptyMap(), Collections.emptyMap(), children);
+        }
+        final List<AnnotationData> data = findData(ids);
+        final Map<Long, List<AnnotationData>> dataByAnnotation = data.stream()
+                .collect(Collectors.groupingBy(d -> d.getAnnotation().getId()));
+        final Map<Long, List<AnnotationData>> subData = data.stream()
+                .filter(d -> d.getParent() != null)
+                .collect(Collectors.groupingBy(d -> d.getParent().getId()));
+        return new AnnotationPage(slice, next, dataByAnnotation, subData, children);
+    }
+
+    private List<Long> findIds(Specification<Annotation> specification, Pageable pageable) {
+        return findIds(specification, pageable.getPageSize(), pageable);
+    }
+
+    private List<Long> findIds(Specification<Annotation> specification, int limit, Pageable pageable) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        final Root<Annotation> root = query.from(Annotation.class);
+        final List<Order> orders = new ArrayList<>();
+        if (pageable.getSort() != null) {
+            orders.addAll(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+        // tie-breaker for stable paging
+        orders.add(cb.asc(root.get("id")));
+        query.select(root.get("id"))
+                .where(specification.toPredicate(root, query, cb))
+                .orderBy(orders);
+        return entityManager.createQuery(query)
+                .setFirstResult(pageable.getOffset())
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private List<Long> findIds(Specification<Annotation> specification, AnnotationCursor cursor, int limit) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        final Root<Annotation> root = query.from(Annotation.class);
+        final Predicate matching = specification.toPredicate(root, query, cb);
+        final Predicate after = cursor.toPredicate(root, cb);
+        query.select(root.get("id"))
+                .where((after == null) ? matching : (matching == null) ? after : cb.and(matching, after))
+                .orderBy(cursor.toOrders(root, cb));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private long total(Specification<Annotation> specification, Pageable pageable, int size) {
+        // count is only needed when the page is full or beyond the last one
+        if (size > 0 && size < pageable.getPageSize()) {
+            return pageable.getOffset() + size;
+        }
+        if (size == 0 && pageable.getOffset() == 0) {
+            return 0;
+        }
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        final Root<Annotation> root = query.from(Annotation.class);
+        query.select(cb.count(root)).where(specification.toPredicate(root, query, cb));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private List<Annotation> findAnnotations(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Annotation> query = cb.createQuery(Annotation.class);
+        final Root<Annotation> root = query.from(Annotation.class);
+        root.fetch("user");
+        root.fetch("access");
+        root.fetch("vocabulary");
+        root.fetch("target", JoinType.LEFT);
+        root.fetch("group", JoinType.LEFT);
+        query.select(root).where(root.get("id").in(ids));
+        final Map<Long, Annotation> found = entityManager.createQuery(query)
+                .getResultList()
+                .stream()
+                .collect(Collectors.toMap(Annotation::getId, Function.identity()));
+        // restore page order
+        return ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private List<AnnotationData> findData(List<Long> ids) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<AnnotationData> query = cb.createQuery(AnnotationData.class);
+        final Root<AnnotationData> root = query.from(AnnotationData.class);
+        root.fetch("attribute", JoinType.LEFT);
+        query.select(root)
+                .where(root.get("annotation").get("id").in(ids))
+                .orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(query).getResultList();
+    }
+}
@@ -18,7 +18,10 @@
  */
 package edu.pitt.dbmi.ccd.anno.annotation;
 
+import edu.pitt.dbmi.ccd.anno.util.Fields;
 import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import java.util.List;
+import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -26,7 +29,9 @@ import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.ResourceAssembler;
+import org.springframework.hateoas.Resources;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 /**
  * Assembles page of AnnotationResources
@@ -61,4 +66,81 @@ public class AnnotationPagedResourcesAssembler extends PagedResourcesAssembler<A
         final Link self = annotationLinks.getRequestLink(request);
         return this.toResource(page, assembler, self);
     }
+
+    /**
+     * Create PagedResources of annotation resources from a preloaded page
+     *
+     * @param page page of entities with preloaded associations
+     * @param assembler resource assembler
+     * @param request request data
+     * @return PagedResources of annotation resources
+     */
+    public PagedResources<AnnotationResource> toResource(AnnotationPage page, AnnotationResourceAssembler assembler, HttpServletRequest request) {
+        return this.toResource(page, assembler, Fields.all(), request);
+    }
+
+    /**
+     * Create PagedResources of annotation resources with the requested
+     * fields from a preloaded page
+     *
+     * @param page page of entities with preloaded associations
+     * @param assembler resource assembler
+     * @param fields fields to include
+     * @param request request data
+     * @return PagedResources of annotation resources
+     */
+    public PagedResources<AnnotationResource> toResource(AnnotationPage page, AnnotationResourceAssembler assembler, Fields fields, HttpServletRequest request) {
+        return this.toResource(page.getPage(), a -> assembler.toResource(a, page, fields), request);
+    }
+
+    /**
+     * Create Resources of annotation resources from a preloaded page,
+     * without page metadata when the annotations were not counted
+     *
+     * @param page page, uncounted slice or keyset paged slice of entities
+     * with preloaded associations
+     * @param assembler resource assembler
+     * @param request request data
+     * @return annotation resources with self and, for slices, next and
+     * previous links
+     */
+    public Resources<AnnotationResource> toResources(AnnotationPage page, AnnotationResourceAssembler assembler, HttpServletRequest request) {
+        return toResources(page, assembler, Fields.all(), request);
+    }
+
+    /**
+     * Create Resources of annotation resources with the requested fields
+     * from a preloaded page, without page metadata when the annotations were
+     * not counted
+     *
+     * @param page page, uncounted slice or keyset paged slice of entities
+     * with preloaded associations
+     * @param assembler resource assembler
+     * @param fields fields to include
+     * @param request request data
+     * @return annotation resources with self and, for slices, next and
+     * previous links
+     */
+    public Resources<AnnotationResource> toResources(AnnotationPage page, AnnotationResourceAssembler assembler, Fields fields, HttpServletRequest request) {
+        if (page.isCounted()) {
+            return toResource(page, assembler, fields, request);
+        }
+        final List<AnnotationResource> content = page.getSlice()
+                .getContent()
+                .stream()
+                .map(a -> assembler.toResource(a, page, fields))
+                .collect(Collectors.toList());
+        final Resources<AnnotationResource> resources = new Resources<>(content, annotationLinks.getRequestLink(request));
+        if (page.getNext() == null) {
+            // offset paged slice
+            resources.add(annotationLinks.getSliceLinks(page.getSlice(), request));
+        } else {
+            final String next = ServletUriComponentsBuilder.fromRequest(request)
+                    .replaceQueryParam(AnnotationLinks.AFTER, page.getNext().encode())
+                    .build()
+                    .toUriString();
+            resources.add(new Link(next, Link.REL_NEXT));
+        }
+        return resources;
+    }
 }
@@ -23,8 +23,12 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataResource;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.anno.util.SparseResource;
 import edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyResource;
 import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
@@ -38,8 +42,14 @@ import org.springframework.hateoas.core.Relation;
  * @author Mark Silvis (marksilvis@pitt.edu)
  */
 @Relation(value = "annotation", collectionRelation = "annotations")
-@JsonPropertyOrder({"id", "created", "modified", "redacted", "upload", "user", "access", "group", "vocabulary", "vocabularyResource", "data"})
-public final class AnnotationResource extends ResourceSupport {
+@JsonPropertyOrder({"id", "created", "modified", "redacted", "upload", "user", "access", "group", "vocabulary", "childCount", "vocabularyResource", "data"})
+public final class AnnotationResource extends ResourceSupport implements SparseResource {
+
+    // fields
+    public static final String DATA = "data";
+    public static final String CHILD_COUNT = "childCount";
+    public static final String VOCABULARY_RESOURCE = "vocabularyResource";
+    public static final Set<String> FIELDS = fields();
 
     // content
     private final Long id;
@@ -51,8 +61,11 @@ public final class AnnotationResource extends ResourceSupport {
     private final String access;
     private final String group;
     private final String vocabulary;
-    private final Set<AnnotationDataResource> data = new HashSet<>(0);
+    private final Set<AnnotationDataResource> data;
+    private final boolean sparse;
     private VocabularyResource vocabularyResource = null;
+    private Long childCount;
+    private boolean shared = false;
 
     /**
      * Empty constructor
@@ -60,6 +73,7 @@ public final class AnnotationResource extends ResourceSupport {
      * @return AnnotationResource with empty variables
      */
     protected AnnotationResource() {
+        this.sparse = false;
         this.id = null;
         this.created = null;
         this.modified = null;
@@ -69,6 +83,8 @@ public final class AnnotationResource extends ResourceSupport {
         this.access = "";
         this.group = "";
         this.vocabulary = "";
+        this.data = new HashSet<>(0);
+        this.childCount = 0L;
     }
 
     /**
@@ -77,16 +93,29 @@ public final class AnnotationResource extends ResourceSupport {
      * @param annotation content
      */
     public AnnotationResource(Annotation annotation) {
+        this(annotation, Fields.all());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param annotation content
+     * @param fields fields to include; others are left null
+     */
+    public AnnotationResource(Annotation annotation, Fields fields) {
+        this.sparse = !fields.isAll();
         this.id = annotation.getId();
-        this.created = annotation.getCreated();
-        this.modified = annotation.getModified();
-        this.redacted = annotation.isRedacted();
-        this.upload = annotation.getTarget().getId();
-        this.user = annotation.getUser().getUsername();
-        this.access = annotation.getAccess().getName();
-        this.group = (annotation.getGroup() != null) ? annotation.getGroup().getName()
+        this.created = fields.includes("created") ? annotation.getCreated() : null;
+        this.modified = fields.includes("modified") ? annotation.getModified() : null;
+        this.redacted = fields.includes("redacted") && annotation.isRedacted();
+        this.upload = fields.includes("upload") ? annotation.getTarget().getId() : null;
+        this.user = fields.includes("user") ? annotation.getUser().getUsername() : null;
+        this.access = fields.includes("access") ? annotation.getAccess().getName() : null;
+        this.group = (fields.includes("group") && annotation.getGroup() != null) ? annotation.getGroup().getName()
                 : null;
-        this.vocabulary = annotation.getVocabulary().getName();
+        this.vocabulary = fields.includes("vocabulary") ? annotation.getVocabulary().getName() : null;
+        this.data = fields.includes(DATA) ? new HashSet<>(0) : null;
+        this.childCount = fields.includes(CHILD_COUNT) ? 0L : null;
     }
 
     /**
@@ -184,10 +213,23 @@ public final class AnnotationResource extends ResourceSupport {
         return vocabulary;
     }
 
+    /**
+     * Get number of child annotations
+     *
+     * @return child count, or null if not requested
+     */
+    public Long getChildCount() {
+        return childCount;
+    }
+
+    public void setChildCount(long childCount) {
+        this.childCount = childCount;
+    }
+
     /**
      * Get vocabulary resource
      *
-     * @return vocabulary resource
+     * @return vocabulary resource, or null when embedded once per page
      */
     public VocabularyResource getVocabularyResource() {
         return vocabularyResource;
@@ -197,10 +239,23 @@ public final class AnnotationResource extends ResourceSupport {
         this.vocabularyResource = vocabularyResource;
     }
 
+    /**
+     * Remove the vocabulary resource to embed it once per page. The
+     * vocabulary resource is then left out rather than written as null.
+     *
+     * @return removed vocabulary resource (nullable)
+     */
+    public VocabularyResource removeVocabularyResource() {
+        final VocabularyResource removed = vocabularyResource;
+        vocabularyResource = null;
+        shared = true;
+        return removed;
+    }
+
     /**
      * Get annotation data
      *
-     * @return annotation data
+     * @return annotation data, or null if not requested
      */
     public Set<AnnotationDataResource> getData() {
         return data;
@@ -234,4 +289,18 @@ public final class AnnotationResource extends ResourceSupport {
     public void addData(Set<AnnotationDataResource> data) {
         this.data.addAll(data);
     }
+
+    @Override
+    public boolean omitsNull(String property) {
+        return sparse || (shared && VOCABULARY_RESOURCE.equals(property));
+    }
+
+    /**
+     * Known field names, including fields of data
+     */
+    private static Set<String> fields() {
+        final Set<String> fields = new HashSet<>(Arrays.asList("created", "modified", "redacted", "upload", "user", "access", "group", "vocabulary", CHILD_COUNT, VOCABULARY_RESOURCE, DATA, Fields.LINKS));
+        AnnotationDataResource.FIELDS.forEach(f -> fields.add(DATA + '.' + f));
+        return Collections.unmodifiableSet(fields);
+    }
 }
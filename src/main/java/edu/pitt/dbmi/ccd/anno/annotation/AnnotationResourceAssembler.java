@@ -23,16 +23,19 @@ import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataResourceAssembler;
 import edu.pitt.dbmi.ccd.anno.data.AnnotationTargetLinks;
 import edu.pitt.dbmi.ccd.anno.group.GroupLinks;
 import edu.pitt.dbmi.ccd.anno.user.UserLinks;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
 import edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyLinks;
-import edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyResourceAssembler;
+import edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyCache;
 import edu.pitt.dbmi.ccd.anno.vocabulary.attribute.AttributeLinks;
 import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
@@ -54,10 +57,11 @@ public class AnnotationResourceAssembler extends ResourceAssemblerSupport<Annota
     private final UserLinks userLinks;
     private final GroupLinks groupLinks;
     private final VocabularyLinks vocabularyLinks;
-    private final VocabularyResourceAssembler vocabularyResourceAssembler;
+    private final VocabularyCache vocabularyCache;
+    private final AnnotationChildCounts childCounts;
 
     @Autowired(required = true)
-    public AnnotationResourceAssembler(AnnotationLinks annotationLinks, AttributeLinks attributeLinks, AnnotationTargetLinks annotationTargetLinks, UserLinks userLinks, GroupLinks groupLinks, VocabularyLinks vocabularyLinks, VocabularyResourceAssembler vocabularyResourceAssembler) {
+    public AnnotationResourceAssembler(AnnotationLinks annotationLinks, AttributeLinks attributeLinks, AnnotationTargetLinks annotationTargetLinks, UserLinks userLinks, GroupLinks groupLinks, VocabularyLinks vocabularyLinks, VocabularyCache vocabularyCache, AnnotationChildCounts childCounts) {
         super(AnnotationController.class, AnnotationResource.class);
         this.annotationLinks = annotationLinks;
         this.attributeLinks = attributeLinks;
@@ -65,7 +69,8 @@ public class AnnotationResourceAssembler extends ResourceAssemblerSupport<Annota
         this.userLinks = userLinks;
         this.groupLinks = groupLinks;
         this.vocabularyLinks = vocabularyLinks;
-        this.vocabularyResourceAssembler = vocabularyResourceAssembler;
+        this.vocabularyCache = vocabularyCache;
+        this.childCounts = childCounts;
     }
 
     /**
@@ -76,29 +81,128 @@ public class AnnotationResourceAssembler extends ResourceAssemblerSupport<Annota
      */
     @Override
     public AnnotationResource toResource(Annotation annotation) throws IllegalArgumentException {
+        return toResource(annotation, Fields.all());
+    }
+
+    /**
+     * Convert Annotation to AnnotationResource, building only the requested
+     * fields
+     *
+     * @param annotation entity
+     * @param fields fields to include
+     * @return resource
+     */
+    public AnnotationResource toResource(Annotation annotation, Fields fields) throws IllegalArgumentException {
         Assert.notNull(annotation);
-        AnnotationResource resource = createResourceWithId(annotation.getId(), annotation);
-        Set<AnnotationDataResource> data = annotation.getData()
-                .stream()
-                .filter(d -> d.getParent() == null)
-                .map(dataAssembler::toResource)
-                .collect(Collectors.toSet());
-        resource.addData(data);
-        if (annotation.getChildren().size() > 0) {
-            resource.add(annotationLinks.children(annotation));
+        return toResource(annotation, fields, needsChildCount(fields) ? childCounts.count(annotation) : 0);
+    }
+
+    /**
+     * Convert Annotation to AnnotationResource, building only the requested
+     * fields, with its number of children already counted
+     *
+     * @param annotation entity
+     * @param fields fields to include
+     * @param childCount number of children
+     * @return resource
+     */
+    public AnnotationResource toResource(Annotation annotation, Fields fields, long childCount) throws IllegalArgumentException {
+        Assert.notNull(annotation);
+        AnnotationResource resource = createResource(annotation, fields);
+        if (fields.includes(AnnotationResource.DATA)) {
+            final Fields dataFields = fields.nested(AnnotationResource.DATA);
+            Set<AnnotationDataResource> data = annotation.getData()
+                    .stream()
+                    .filter(d -> d.getParent() == null)
+                    .map(d -> dataAssembler.toResource(d, AnnotationData::getSubData, dataFields))
+                    .collect(Collectors.toSet());
+            resource.addData(data);
         }
-        resource.add(annotationTargetLinks.target(annotation.getTarget()));
-        if (annotation.getUser().getAccountId() != null) {
-            resource.add(userLinks.user(annotation.getUser()));
+        return addLinks(resource, annotation, childCount, fields);
+    }
+
+    /**
+     * Convert Annotation to AnnotationResource using data and children
+     * preloaded for a page, without touching lazy associations
+     *
+     * @param annotation entity
+     * @param page preloaded page
+     * @return resource
+     */
+    public AnnotationResource toResource(Annotation annotation, AnnotationPage page) throws IllegalArgumentException {
+        return toResource(annotation, page, Fields.all());
+    }
+
+    /**
+     * Convert Annotation to AnnotationResource using data and children
+     * preloaded for a page, building only the requested fields
+     *
+     * @param annotation entity
+     * @param page preloaded page
+     * @param fields fields to include
+     * @return resource
+     */
+    public AnnotationResource toResource(Annotation annotation, AnnotationPage page, Fields fields) throws IllegalArgumentException {
+        Assert.notNull(annotation);
+        AnnotationResource resource = createResource(annotation, fields);
+        if (fields.includes(AnnotationResource.DATA)) {
+            final Fields dataFields = fields.nested(AnnotationResource.DATA);
+            Set<AnnotationDataResource> data = page.getData(annotation)
+                    .stream()
+                    .filter(d -> d.getParent() == null)
+                    .map(d -> dataAssembler.toResource(d, page::getSubData, dataFields))
+                    .collect(Collectors.toSet());
+            resource.addData(data);
+        }
+        return addLinks(resource, annotation, page.getChildCount(annotation), fields);
+    }
+
+    /**
+     * Whether the child count is needed to build the requested fields
+     *
+     * @param fields fields to include
+     * @return true if the child count or the children link is requested
+     */
+    public static boolean needsChildCount(Fields fields) {
+        return fields.includes(AnnotationResource.CHILD_COUNT) || fields.includes(Fields.LINKS);
+    }
+
+    /**
+     * Create resource with the requested fields and a self link
+     */
+    private AnnotationResource createResource(Annotation annotation, Fields fields) {
+        final AnnotationResource resource = new AnnotationResource(annotation, fields);
+        resource.add(linkTo(AnnotationController.class).slash(annotation.getId()).withSelfRel());
+        return resource;
+    }
+
+    /**
+     * Add child count and links to children, target, user, group, vocabulary
+     * and parent
+     */
+    private AnnotationResource addLinks(AnnotationResource resource, Annotation annotation, long childCount, Fields fields) {
+        if (fields.includes(AnnotationResource.CHILD_COUNT)) {
+            resource.setChildCount(childCount);
         }
-        if (annotation.getGroup() != null) {
-            resource.add(groupLinks.group(annotation.getGroup()));
+        if (fields.includes(Fields.LINKS)) {
+            if (childCount > 0) {
+                resource.add(annotationLinks.children(annotation));
+            }
+            resource.add(annotationTargetLinks.target(annotation.getTarget()));
+            if (annotation.getUser().getAccountId() != null) {
+                resource.add(userLinks.user(annotation.getUser()));
+            }
+            if (annotation.getGroup() != null) {
+                resource.add(groupLinks.group(annotation.getGroup()));
+            }
+            resource.add(vocabularyLinks.vocabulary(annotation.getVocabulary()));
+            if (annotation.getParent() != null) {
+                resource.add(annotationLinks.parent(annotation));
+            }
         }
-        resource.add(vocabularyLinks.vocabulary(annotation.getVocabulary()));
-        if (annotation.getParent() != null) {
-            resource.add(annotationLinks.parent(annotation));
+        if (fields.includes(AnnotationResource.VOCABULARY_RESOURCE)) {
+            resource.setVocabularyResource(vocabularyCache.vocabulary(annotation.getVocabulary()));
         }
-        resource.setVocabularyResource(vocabularyResourceAssembler.toResource(annotation.getVocabulary()));
         return resource;
     }
 
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.ArrayList;
+import java.util.Map;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.Resources;
+
+/**
+ * Search results DTO representation: a page or slice of annotations with
+ * facet counts over all matching annotations
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationSearchResources extends PagedResources<ResourceSupport> {
+
+    // content
+    private final Map<String, Map<String, Long>> facets;
+
+    /**
+     * Constructor
+     *
+     * @param resources page or slice of annotations, possibly followed by
+     * shared vocabularies and attributes
+     * @param facets counts by facet, then by value
+     */
+    public AnnotationSearchResources(Resources<? extends ResourceSupport> resources, Map<String, Map<String, Long>> facets) {
+        super(new ArrayList<>(resources.getContent()), (resources instanceof PagedResources) ? ((PagedResources<?>) resources).getMetadata() : null, resources.getLinks());
+        this.facets = facets;
+    }
+
+    /**
+     * Get page metadata
+     *
+     * @return metadata, or null for an uncounted slice
+     */
+    @Override
+    @JsonProperty("page")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public PageMetadata getMetadata() {
+        return super.getMetadata();
+    }
+
+    /**
+     * Get facet counts
+     *
+     * @return counts by facet, then by value, most frequent first
+     */
+    public Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+}
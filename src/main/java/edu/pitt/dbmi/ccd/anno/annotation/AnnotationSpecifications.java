@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.anno.access.AccessLevel;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataValue;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.Attribute;
+import edu.pitt.dbmi.ccd.db.entity.Group;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+import static org.springframework.util.StringUtils.isEmpty;
+
+/**
+ * Criteria predicates for querying annotations directly
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public abstract class AnnotationSpecifications {
+
+    /**
+     * Annotations the requester may read: public annotations, group
+     * annotations of the requester's groups, and the requester's own. Access
+     * names are compared ignoring case, as {@link AccessLevel#of} does.
+     *
+     * @param requester authenticated user
+     * @return specification
+     */
+    public static Specification<Annotation> visibleTo(UserAccount requester) {
+        return (root, query, cb) -> {
+            final Expression<String> access = cb.upper(root.get("access").get("name"));
+            final Subquery<Long> groups = query.subquery(Long.class);
+            final Root<Group> group = groups.from(Group.class);
+            final Join<Group, UserAccount> member = group.join("members");
+            groups.select(group.get("id")).where(cb.equal(member.get("id"), requester.getId()));
+            return cb.or(
+                    cb.equal(access, AccessLevel.PUBLIC.name()),
+                    cb.and(cb.equal(access, AccessLevel.GROUP.name()), root.get("group").get("id").in(groups)),
+                    cb.equal(root.get("user").get("id"), requester.getId()));
+        };
+    }
+
+    /**
+     * Replies to an annotation
+     *
+     * @param parent parent annotation
+     * @return specification
+     */
+    public static Specification<Annotation> childOf(Annotation parent) {
+        return (root, query, cb) -> cb.equal(root.get("parent").get("id"), parent.getId());
+    }
+
+    /**
+     * Annotations that have not been redacted
+     *
+     * @return specification
+     */
+    public static Specification<Annotation> notRedacted() {
+        return (root, query, cb) -> cb.isFalse(root.get("redacted"));
+    }
+
+    /**
+     * Annotations with one of the ids
+     *
+     * @param ids annotation ids
+     * @return specification
+     */
+    public static Specification<Annotation> idIn(Collection<Long> ids) {
+        return (root, query, cb) -> ids.isEmpty() ? cb.disjunction() : root.get("id").in(ids);
+    }
+
+    /**
+     * Annotations with a typed data value within a range. The typed values
+     * are selected first, through their indexes, rather than checking the
+     * data of every annotation.
+     *
+     * @param range value range
+     * @param attributeName only values of data with this attribute name
+     * (nullable)
+     * @return specification
+     */
+    public static Specification<Annotation> valueWithin(ValueRange range, String attributeName) {
+        return (root, query, cb) -> {
+            final Subquery<Long> subquery = query.subquery(Long.class);
+            final Root<AnnotationDataValue> value = subquery.from(AnnotationDataValue.class);
+            final List<Predicate> predicates = range.toPredicates(value, cb);
+            if (!isEmpty(attributeName)) {
+                final Subquery<Long> attributes = query.subquery(Long.class);
+                final Root<Attribute> attribute = attributes.from(Attribute.class);
+                attributes.select(attribute.get("id")).where(cb.equal(attribute.get("name"), attributeName));
+                predicates.add(value.get("attributeId").in(attributes));
+            }
+            subquery.select(value.get("annotationId")).where(predicates.toArray(new Predicate[predicates.size()]));
+            return root.get("id").in(subquery);
+        };
+    }
+
+    /**
+     * Annotations matching filter parameters
+     *
+     * @param filter filter parameters
+     * @return specification
+     */
+    public static Specification<Annotation> matching(AnnotationFilter filter) {
+        return (root, query, cb) -> {
+            final List<Predicate> predicates = new ArrayList<>();
+            if (!isEmpty(filter.getUser())) {
+                predicates.add(cb.equal(root.get("user").get("username"), filter.getUser()));
+            }
+            if (!isEmpty(filter.getGroup())) {
+                predicates.add(cb.equal(root.get("group").get("name"), filter.getGroup()));
+            }
+            if (filter.getTarget() != null) {
+                predicates.add(cb.equal(root.get("target").get("id"), filter.getTarget()));
+            }
+            if (!isEmpty(filter.getVocab())) {
+                predicates.add(cb.equal(root.get("vocabulary").get("name"), filter.getVocab()));
+            }
+            if (!filter.isShowRedacted()) {
+                predicates.add(cb.isFalse(root.get("redacted")));
+            }
+            if (filter.isParentless()) {
+                predicates.add(cb.isNull(root.get("parent")));
+            }
+            if (filter.getCreatedBefore() != null) {
+                predicates.add(cb.lessThan(root.get("created"), filter.getCreatedBefore()));
+            }
+            if (filter.getCreatedAfter() != null) {
+                predicates.add(cb.greaterThan(root.get("created"), filter.getCreatedAfter()));
+            }
+            if (filter.getModifiedBefore() != null) {
+                predicates.add(cb.lessThan(root.get("modified"), filter.getModifiedBefore()));
+            }
+            if (filter.getModifiedAfter() != null) {
+                predicates.add(cb.greaterThan(root.get("modified"), filter.getModifiedAfter()));
+            }
+            if (!isEmpty(filter.getAttributeLevel()) || !isEmpty(filter.getAttributeName()) || !isEmpty(filter.getAttributeRequirementLevel())) {
+                predicates.add(cb.exists(attributeSubquery(filter, root, query, cb)));
+            }
+            filter.getTerms().forEach(t -> predicates.add(cb.exists(valueSubquery(t, root, query, cb))));
+            filter.getNots().forEach(t -> predicates.add(cb.not(cb.exists(valueSubquery(t, root, query, cb)))));
+            return cb.and(predicates.toArray(new Predicate[predicates.size()]));
+        };
+    }
+
+    /**
+     * Data of the annotation uses an attribute matching the filter
+     */
+    private static Subquery<Long> attributeSubquery(AnnotationFilter filter, Root<Annotation> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        final Subquery<Long> subquery = query.subquery(Long.class);
+        final Root<AnnotationData> data = subquery.from(AnnotationData.class);
+        final Path<Object> attribute = data.get("attribute");
+        final List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.equal(data.get("annotation"), root));
+        if (!isEmpty(filter.getAttributeLevel())) {
+            predicates.add(cb.equal(attribute.get("level"), filter.getAttributeLevel()));
+        }
+        if (!isEmpty(filter.getAttributeName())) {
+            predicates.add(cb.equal(attribute.get("name"), filter.getAttributeName()));
+        }
+        if (!isEmpty(filter.getAttributeRequirementLevel())) {
+            predicates.add(cb.equal(attribute.get("requirementLevel"), filter.getAttributeRequirementLevel()));
+        }
+        return subquery.select(data.get("id")).where(predicates.toArray(new Predicate[predicates.size()]));
+    }
+
+    /**
+     * Data of the annotation contains a term (case-insensitive)
+     */
+    private static Subquery<Long> valueSubquery(String term, Root<Annotation> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        final Subquery<Long> subquery = query.subquery(Long.class);
+        final Root<AnnotationData> data = subquery.from(AnnotationData.class);
+        return subquery.select(data.get("id"))
+                .where(cb.equal(data.get("annotation"), root),
+                        cb.like(cb.lower(data.get("value")), "%" + term.toLowerCase() + "%"));
+    }
+}
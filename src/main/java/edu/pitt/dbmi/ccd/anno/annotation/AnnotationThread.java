@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import java.util.List;
+
+/**
+ * Annotation and its replies in depth-first order
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public class AnnotationThread {
+
+    private final AnnotationPage page;
+    private final List<Annotation> annotations;
+    private final boolean truncated;
+
+    /**
+     * Constructor
+     *
+     * @param page loaded annotations and their associations
+     * @param annotations root followed by its replies, depth first
+     * @param truncated true if replies were left out to respect the size
+     * limit
+     */
+    public AnnotationThread(AnnotationPage page, List<Annotation> annotations, boolean truncated) {
+        this.page = page;
+        this.annotations = annotations;
+        this.truncated = truncated;
+    }
+
+    /**
+     * Get loaded associations
+     *
+     * @return page
+     */
+    public AnnotationPage getPage() {
+        return page;
+    }
+
+    /**
+     * Get annotations
+     *
+     * @return root followed by its replies, depth first
+     */
+    public List<Annotation> getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * Check whether replies were left out
+     *
+     * @return true if truncated
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
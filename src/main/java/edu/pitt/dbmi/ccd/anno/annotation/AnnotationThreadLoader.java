@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.idIn;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.domain.Specifications;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Loads the reply tree below an annotation.
+ * <p>
+ * On databases with recursive common table expressions (MySQL 8+,
+ * PostgreSQL) the descendants are found with one recursive query. Elsewhere
+ * they are found one level at a time, one query per level. Access and
+ * redaction are then checked for the whole tree at once; a reply that is
+ * filtered out hides its own replies too.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationThreadLoader {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationThreadLoader.class);
+
+    private static final String DESCENDANTS = "WITH RECURSIVE thread (id, parent_id, depth) AS ("
+            + "SELECT id, parent_id, 0 FROM annotation WHERE id = ?1 "
+            + "UNION ALL "
+            + "SELECT a.id, a.parent_id, t.depth + 1 FROM annotation a JOIN thread t ON a.parent_id = t.id WHERE t.depth < ?2"
+            + ") SELECT id, parent_id FROM thread WHERE depth > 0 ORDER BY depth, id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final DataSource dataSource;
+    private final AnnotationPageLoader pageLoader;
+
+    private boolean recursive;
+
+    @Autowired(required = true)
+    public AnnotationThreadLoader(DataSource dataSource, AnnotationPageLoader pageLoader) {
+        this.dataSource = dataSource;
+        this.pageLoader = pageLoader;
+    }
+
+    /**
+     * Choose how descendants are found
+     */
+    @PostConstruct
+    public void init() {
+        try (Connection connection = dataSource.getConnection()) {
+            final DatabaseMetaData metaData = connection.getMetaData();
+            final String product = metaData.getDatabaseProductName();
+            recursive = ("MySQL".equalsIgnoreCase(product) && metaData.getDatabaseMajorVersion() >= 8)
+                    || "PostgreSQL".equalsIgnoreCase(product);
+            LOGGER.info("Annotation threads on {} {} are loaded {}", product, metaData.getDatabaseProductVersion(), recursive ? "with a recursive query" : "one level at a time");
+        } catch (SQLException ex) {
+            LOGGER.warn("Unable to read database metadata; annotation threads are loaded one level at a time", ex);
+            recursive = false;
+        }
+    }
+
+    /**
+     * Load a thread
+     *
+     * @param root annotation at the top of the thread, already checked for
+     * access
+     * @param specification replies to include
+     * @param maxDepth levels of replies to load
+     * @param maxSize maximum number of replies
+     * @return root and replies in depth-first order, with preloaded
+     * associations
+     */
+    @Transactional(readOnly = true)
+    public AnnotationThread load(Annotation root, Specification<Annotation> specification, int maxDepth, int maxSize) {
+        // reply id to parent id, breadth first
+        final Map<Long, Long> parents = recursive
+                ? findDescendants(root.getId(), maxDepth, maxSize + 1)
+                : findDescendants(root.getId(), specification, maxDepth, maxSize + 1);
+        final boolean truncated = parents.size() > maxSize;
+        final Map<Long, List<Long>> children = new HashMap<>();
+        parents.entrySet()
+                .stream()
+                .limit(maxSize)
+                .forEach(e -> children.computeIfAbsent(e.getValue(), k -> new ArrayList<>()).add(e.getKey()));
+        final List<Long> ids = depthFirst(root.getId(), children);
+
+        final Specification<Annotation> included = Specifications.where(specification).or(idIn(Collections.singleton(root.getId())));
+        final AnnotationPage page = pageLoader.load(included, ids);
+        // drop replies whose parent was filtered out
+        final Set<Long> kept = new HashSet<>();
+        final List<Annotation> annotations = page.getSlice()
+                .getContent()
+                .stream()
+                .filter(a -> {
+                    final boolean keep = a.getId().equals(root.getId()) || kept.contains(parents.get(a.getId()));
+                    if (keep) {
+                        kept.add(a.getId());
+                    }
+                    return keep;
+                })
+                .collect(Collectors.toList());
+        return new AnnotationThread(page, annotations, truncated);
+    }
+
+    /**
+     * Descendants by recursive query
+     */
+    private Map<Long, Long> findDescendants(Long id, int maxDepth, int limit) {
+        @SuppressWarnings("unchecked")
+        final List<Object[]> rows = entityManager.createNativeQuery(DESCENDANTS)
+                .setParameter(1, id)
+                .setParameter(2, maxDepth)
+                .setMaxResults(limit)
+                .getResultList();
+        final Map<Long, Long> parents = new LinkedHashMap<>(rows.size());
+        rows.forEach(r -> parents.put(((Number) r[0]).longValue(), ((Number) r[1]).longValue()));
+        return parents;
+    }
+
+    /**
+     * Descendants by one query per level. Filtered replies are not followed.
+     */
+    private Map<Long, Long> findDescendants(Long id, Specification<Annotation> specification, int maxDepth, int limit) {
+        final Map<Long, Long> parents = new LinkedHashMap<>();
+        List<Long> level = Collections.singletonList(id);
+        for (int depth = 0; depth < maxDepth && !level.isEmpty() && parents.size() < limit; depth++) {
+            final List<Long> parentIds = level;
+            final Specification<Annotation> replies = Specifications.where(specification)
+                    .and((r, q, b) -> r.get("parent").get("id").in(parentIds));
+            final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            final CriteriaQuery<Tuple> query = cb.createTupleQuery();
+            final Root<Annotation> reply = query.from(Annotation.class);
+            query.multiselect(reply.get("id"), reply.get("parent").get("id"))
+                    .where(replies.toPredicate(reply, query, cb))
+                    .orderBy(cb.asc(reply.get("id")));
+            final List<Tuple> rows = entityManager.createQuery(query)
+                    .setMaxResults(limit - parents.size())
+                    .getResultList();
+            level = new ArrayList<>(rows.size());
+            for (Tuple row : rows) {
+                parents.put(row.get(0, Long.class), row.get(1, Long.class));
+                level.add(row.get(0, Long.class));
+            }
+        }
+        return parents;
+    }
+
+    private static List<Long> depthFirst(Long root, Map<Long, List<Long>> children) {
+        final List<Long> ids = new ArrayList<>();
+        final Deque<Long> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            final Long id = stack.pop();
+            ids.add(id);
+            final List<Long> replies = children.getOrDefault(id, Collections.emptyList());
+            // push in reverse so that replies come out in id order
+            for (int i = replies.size() - 1; i >= 0; i--) {
+                stack.push(replies.get(i));
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import java.util.List;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resources;
+
+/**
+ * Thread DTO representation: the root annotation followed by its replies in
+ * depth-first order. Each reply follows its parent.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationThreadResource extends Resources<AnnotationResource> {
+
+    // content
+    private final boolean truncated;
+
+    /**
+     * Constructor
+     *
+     * @param content root and replies
+     * @param truncated true if replies were left out
+     * @param links (optional) links to include
+     */
+    public AnnotationThreadResource(List<AnnotationResource> content, boolean truncated, Link... links) {
+        super(content, links);
+        this.truncated = truncated;
+    }
+
+    /**
+     * Check whether replies were left out to respect the size limit
+     *
+     * @return true if truncated
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
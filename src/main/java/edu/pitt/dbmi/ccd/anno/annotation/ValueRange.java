@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataValue;
+import edu.pitt.dbmi.ccd.anno.error.InvalidValueRangeException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import static org.springframework.util.StringUtils.isEmpty;
+
+/**
+ * Half-open range of typed annotation data values: from (inclusive) to
+ * (exclusive). Bounds are both numbers or both ISO-8601 dates; either may
+ * be open.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class ValueRange {
+
+    private final Double numberFrom;
+    private final Double numberTo;
+    private final Date dateFrom;
+    private final Date dateTo;
+
+    private ValueRange(Double numberFrom, Double numberTo, Date dateFrom, Date dateTo) {
+        this.numberFrom = numberFrom;
+        this.numberTo = numberTo;
+        this.dateFrom = dateFrom;
+        this.dateTo = dateTo;
+    }
+
+    /**
+     * Parse range bounds
+     *
+     * @param from lower bound, inclusive (nullable)
+     * @param to upper bound, exclusive (nullable)
+     * @return range, or null if both bounds are empty
+     * @throws InvalidValueRangeException if a bound is neither a number nor
+     * a date, or the bounds differ in type
+     */
+    public static ValueRange of(String from, String to) throws InvalidValueRangeException {
+        if (isEmpty(from) && isEmpty(to)) {
+            return null;
+        }
+        final Double numberFrom = AnnotationDataValue.parseNumber(from);
+        final Double numberTo = AnnotationDataValue.parseNumber(to);
+        if ((isEmpty(from) || numberFrom != null) && (isEmpty(to) || numberTo != null)) {
+            return new ValueRange(numberFrom, numberTo, null, null);
+        }
+        final Date dateFrom = AnnotationDataValue.parseDate(from);
+        final Date dateTo = AnnotationDataValue.parseDate(to);
+        if ((isEmpty(from) || dateFrom != null) && (isEmpty(to) || dateTo != null)) {
+            return new ValueRange(null, null, dateFrom, dateTo);
+        }
+        throw new InvalidValueRangeException(from, to);
+    }
+
+    /**
+     * @return whether the bounds are numbers rather than dates
+     */
+    public boolean isNumeric() {
+        return numberFrom != null || numberTo != null;
+    }
+
+    /**
+     * Predicates bounding typed values
+     *
+     * @param value typed value
+     * @param cb criteria builder
+     * @return predicates
+     */
+    public List<Predicate> toPredicates(Path<AnnotationDataValue> value, CriteriaBuilder cb) {
+        final List<Predicate> predicates = new ArrayList<>(2);
+        if (isNumeric()) {
+            final Path<Double> number = value.get("numberValue");
+            if (numberFrom != null) {
+                predicates.add(cb.greaterThanOrEqualTo(number, numberFrom));
+            }
+            if (numberTo != null) {
+                predicates.add(cb.lessThan(number, numberTo));
+            }
+        } else {
+            final Path<Date> date = value.get("dateValue");
+            if (dateFrom != null) {
+                predicates.add(cb.greaterThanOrEqualTo(date, dateFrom));
+            }
+            if (dateTo != null) {
+                predicates.add(cb.lessThan(date, dateTo));
+            }
+        }
+        return predicates;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Result of a single item in a batch submission
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@JsonPropertyOrder({"index", "status", "id", "href", "message"})
+public final class AnnotationBatchItem {
+
+    /**
+     * Item outcome
+     */
+    public enum Status {
+        CREATED, FAILED
+    }
+
+    private final int index;
+    private Status status;
+    private Long id = null;
+    private String href = null;
+    private String message = null;
+
+    /**
+     * Constructor
+     *
+     * @param index position of item in submission
+     */
+    public AnnotationBatchItem(int index) {
+        this.index = index;
+        this.status = Status.CREATED;
+    }
+
+    /**
+     * Get position of item in submission
+     *
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get outcome
+     *
+     * @return status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Get created annotation id
+     *
+     * @return annotation id
+     */
+    @JsonInclude(Include.NON_NULL)
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * Get link to created annotation
+     *
+     * @return annotation href
+     */
+    @JsonInclude(Include.NON_NULL)
+    public String getHref() {
+        return href;
+    }
+
+    public void setHref(String href) {
+        this.href = href;
+    }
+
+    /**
+     * Get failure message
+     *
+     * @return message
+     */
+    @JsonInclude(Include.NON_NULL)
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Mark item as failed
+     *
+     * @param message reason for failure
+     */
+    public void fail(String message) {
+        this.status = Status.FAILED;
+        this.id = null;
+        this.message = message;
+    }
+
+    /**
+     * Check if item failed
+     *
+     * @return true if failed
+     */
+    public boolean failed() {
+        return status == Status.FAILED;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.util.List;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * Batch submission DTO representation
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@JsonPropertyOrder({"total", "created", "failed", "elapsed", "throughput", "items"})
+public final class AnnotationBatchResource extends ResourceSupport {
+
+    // content
+    private final int total;
+    private final long created;
+    private final long failed;
+    private final long elapsed;
+    private final double throughput;
+    private final List<AnnotationBatchItem> items;
+
+    /**
+     * Constructor
+     *
+     * @param result batch result
+     */
+    public AnnotationBatchResource(AnnotationBatchResult result) {
+        this.total = result.getItems().size();
+        this.created = result.getCreated();
+        this.failed = result.getFailed();
+        this.elapsed = result.getElapsed();
+        this.throughput = result.getThroughput();
+        this.items = result.getItems();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param result batch result
+     * @param links (optional) links to include
+     */
+    public AnnotationBatchResource(AnnotationBatchResult result, Link... links) {
+        this(result);
+        this.add(links);
+    }
+
+    /**
+     * Get number of submitted items
+     *
+     * @return total
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Get number of created annotations
+     *
+     * @return created
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Get number of failed items
+     *
+     * @return failed
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Get time spent writing
+     *
+     * @return elapsed milliseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Get write throughput
+     *
+     * @return annotations per second
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * Get per-item results
+     *
+     * @return items
+     */
+    public List<AnnotationBatchItem> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of writing a batch of annotations
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationBatchResult {
+
+    private final List<AnnotationBatchItem> items;
+    private final long elapsedNanos;
+
+    /**
+     * Constructor
+     *
+     * @param items per-item results
+     * @param elapsedNanos time spent writing the batch
+     */
+    public AnnotationBatchResult(List<AnnotationBatchItem> items, long elapsedNanos) {
+        this.items = Collections.unmodifiableList(items);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Get per-item results
+     *
+     * @return items in submission order
+     */
+    public List<AnnotationBatchItem> getItems() {
+        return items;
+    }
+
+    /**
+     * Get number of created annotations
+     *
+     * @return created count
+     */
+    public long getCreated() {
+        return items.stream().filter(i -> !i.failed()).count();
+    }
+
+    /**
+     * Get number of failed items
+     *
+     * @return failed count
+     */
+    public long getFailed() {
+        return items.stream().filter(AnnotationBatchItem::failed).count();
+    }
+
+    /**
+     * Get time spent writing the batch
+     *
+     * @return elapsed milliseconds
+     */
+    public long getElapsed() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * Get write throughput
+     *
+     * @return created annotations per second
+     */
+    public double getThroughput() {
+        return (elapsedNanos > 0)
+                ? getCreated() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos
+                : 0.0;
+    }
+}
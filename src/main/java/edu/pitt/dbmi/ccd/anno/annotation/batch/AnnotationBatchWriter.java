@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import edu.pitt.dbmi.ccd.anno.access.AccessRegistry;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationForm;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataTreeBuilder;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataValues;
+import edu.pitt.dbmi.ccd.anno.annotation.search.AnnotationIndex;
+import edu.pitt.dbmi.ccd.anno.data.AnnotationTargetSummaries;
+import edu.pitt.dbmi.ccd.anno.error.AccessNotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.AnnotationNotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.AnnotationTargetNotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.GroupNotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.NotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.VocabularyMismatchException;
+import edu.pitt.dbmi.ccd.anno.error.VocabularyNotFoundException;
+import edu.pitt.dbmi.ccd.anno.util.EntityLookup;
+import edu.pitt.dbmi.ccd.db.entity.Access;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
+import edu.pitt.dbmi.ccd.db.entity.Attribute;
+import edu.pitt.dbmi.ccd.db.entity.Group;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import edu.pitt.dbmi.ccd.db.service.AnnotationService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Writes many annotations in a single transaction.
+ * <p>
+ * All targets, vocabularies, access levels, groups and attributes referenced by
+ * a batch are resolved up front with set-based lookups, and inserts are
+ * flushed every {@code hibernate.jdbc.batch_size} entities so Hibernate can
+ * send them as JDBC batches. Items that fail validation or reference missing
+ * entities are reported individually and do not abort the rest of the batch.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationBatchWriter {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationBatchWriter.class);
+
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+    // services and components
+    private final AnnotationService annotationService;
+    private final AccessRegistry accessRegistry;
+    private final EntityLookup entityLookup;
+    private final AnnotationDataTreeBuilder dataTreeBuilder;
+    private final AnnotationDataValues dataValues;
+    private final AnnotationIndex annotationIndex;
+    private final AnnotationTargetSummaries summaries;
+    private final int flushSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired(required = true)
+    public AnnotationBatchWriter(
+            AnnotationService annotationService,
+            AccessRegistry accessRegistry,
+            EntityLookup entityLookup,
+            AnnotationDataTreeBuilder dataTreeBuilder,
+            AnnotationDataValues dataValues,
+            AnnotationIndex annotationIndex,
+            AnnotationTargetSummaries summaries,
+            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int flushSize) {
+        this.annotationService = annotationService;
+        this.accessRegistry = accessRegistry;
+        this.entityLookup = entityLookup;
+        this.dataTreeBuilder = dataTreeBuilder;
+        this.dataValues = dataValues;
+        this.annotationIndex = annotationIndex;
+        this.summaries = summaries;
+        this.flushSize = Math.max(flushSize, 1);
+    }
+
+    /**
+     * Write annotations
+     *
+     * @param requester user creating the annotations
+     * @param forms annotation content
+     * @return per-item results
+     */
+    @Transactional
+    public AnnotationBatchResult write(UserAccount requester, List<AnnotationForm> forms) {
+        final long start = System.nanoTime();
+        final List<AnnotationBatchItem> items = new ArrayList<>(forms.size());
+        final Map<AnnotationBatchItem, AnnotationForm> valid = new HashMap<>(forms.size());
+        for (int i = 0; i < forms.size(); i++) {
+            final AnnotationBatchItem item = new AnnotationBatchItem(i);
+            final AnnotationForm form = forms.get(i);
+            final String violations = validate(form);
+            if (violations == null) {
+                valid.put(item, form);
+            } else {
+                item.fail(violations);
+            }
+            items.add(item);
+        }
+
+        final References references = resolve(requester, valid.values());
+        final Map<AnnotationBatchItem, Annotation> created = new HashMap<>(valid.size());
+        final Map<Annotation, List<AnnotationData>> written = new HashMap<>(valid.size());
+        int pending = 0;
+        for (AnnotationBatchItem item : items) {
+            final AnnotationForm form = valid.get(item);
+            if (form == null) {
+                continue;
+            }
+            try {
+                final Annotation annotation = references.annotation(requester, form);
+                dataTreeBuilder.check(annotation.getVocabulary(), dataTreeBuilder.attributeIds(form.getData()), references.attributes);
+                final List<AnnotationData> data = dataTreeBuilder.build(annotation, form.getData(), references.attributes);
+                entityManager.persist(annotation);
+                data.forEach(entityManager::persist);
+                // ids are assigned on persist
+                final int typed = dataValues.store(data);
+                created.put(item, annotation);
+                written.put(annotation, data);
+                pending += 1 + data.size() + typed;
+            } catch (NotFoundException | VocabularyMismatchException ex) {
+                item.fail(ex.getMessage());
+            }
+            if (pending >= flushSize) {
+                entityManager.flush();
+                pending = 0;
+            }
+        }
+        summaries.added(written);
+        entityManager.flush();
+        created.forEach((item, annotation) -> item.setId(annotation.getId()));
+        annotationIndex.update(created.values()
+                .stream()
+                .map(Annotation::getId)
+                .collect(Collectors.toList()));
+        // written entities are not needed after the batch; keep the persistence context from growing across batches
+        entityManager.clear();
+
+        final AnnotationBatchResult result = new AnnotationBatchResult(items, System.nanoTime() - start);
+        LOGGER.info(String.format("Batch of %d annotations written: %d created, %d failed in %d ms", items.size(), result.getCreated(), result.getFailed(), result.getElapsed()));
+        return result;
+    }
+
+    /**
+     * Validate form
+     *
+     * @param form annotation content
+     * @return violation messages, or null if valid
+     */
+    private String validate(AnnotationForm form) {
+        if (form == null) {
+            return "Annotation required";
+        }
+        final Set<ConstraintViolation<AnnotationForm>> violations = VALIDATOR.validate(form);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * Resolve every entity referenced by a batch
+     *
+     * @param requester user creating the annotations
+     * @param forms valid annotation content
+     * @return resolved references
+     */
+    private References resolve(UserAccount requester, Iterable<AnnotationForm> forms) {
+        final Set<Long> targetIds = new HashSet<>();
+        final Set<Long> parentIds = new HashSet<>();
+        final Set<String> accessNames = new HashSet<>();
+        final Set<String> groupNames = new HashSet<>();
+        final Set<String> vocabularyNames = new HashSet<>();
+        final Set<Long> attributeIds = new HashSet<>();
+        forms.forEach(form -> {
+            addIfPresent(targetIds, form.getTarget());
+            addIfPresent(parentIds, form.getParent());
+            addIfPresent(accessNames, form.getAccess());
+            addIfPresent(groupNames, form.getGroup());
+            addIfPresent(vocabularyNames, form.getVocabulary());
+            attributeIds.addAll(dataTreeBuilder.attributeIds(form.getData()));
+        });
+
+        final References references = new References();
+        references.targets = entityLookup.findAllIn(AnnotationTarget.class, "id", targetIds, AnnotationTarget::getId);
+        references.accesses = new HashMap<>(accessNames.size());
+        accessNames.forEach(name -> {
+            final Access access = accessRegistry.find(name);
+            if (access != null) {
+                references.accesses.put(name, access);
+            }
+        });
+        references.groups = entityLookup.findAllIn(Group.class, "name", groupNames, Group::getName);
+        references.vocabularies = entityLookup.findAllIn(Vocabulary.class, "name", vocabularyNames, Vocabulary::getName);
+        references.attributes = entityLookup.findAllIn(Attribute.class, "id", attributeIds, Attribute::getId);
+        // parents go through the service so the requester's access is checked
+        references.parents = new HashMap<>(parentIds.size());
+        parentIds.forEach(id -> {
+            final Annotation parent = annotationService.findById(requester, id);
+            if (parent != null) {
+                references.parents.put(id, parent);
+            }
+        });
+        return references;
+    }
+
+    private static <T> void addIfPresent(Set<T> set, T value) {
+        if (value != null) {
+            set.add(value);
+        }
+    }
+
+    /**
+     * Entities referenced by a batch
+     */
+    private static final class References {
+
+        private Map<Long, AnnotationTarget> targets;
+        private Map<Long, Annotation> parents;
+        private Map<String, Access> accesses;
+        private Map<String, Group> groups;
+        private Map<String, Vocabulary> vocabularies;
+        private Map<Long, Attribute> attributes;
+
+        /**
+         * Create an unsaved annotation from resolved references
+         *
+         * @param requester user creating the annotation
+         * @param form annotation content
+         * @return annotation
+         * @throws NotFoundException if a referenced entity was not resolved
+         */
+        private Annotation annotation(UserAccount requester, AnnotationForm form) throws NotFoundException {
+            final AnnotationTarget target = get(targets, form.getTarget(), () -> new AnnotationTargetNotFoundException(form.getTarget()));
+            final Annotation parent = get(parents, form.getParent(), () -> new AnnotationNotFoundException(form.getParent()));
+            final Access access = get(accesses, form.getAccess(), () -> new AccessNotFoundException(form.getAccess()));
+            final Group group = get(groups, form.getGroup(), () -> new GroupNotFoundException(form.getGroup()));
+            final Vocabulary vocabulary = get(vocabularies, form.getVocabulary(), () -> new VocabularyNotFoundException(form.getVocabulary()));
+            return new Annotation(requester, target, parent, access, group, vocabulary);
+        }
+
+        private static <K, V> V get(Map<K, V> map, K key, Supplier<NotFoundException> notFound) {
+            if (Objects.isNull(key)) {
+                return null;
+            }
+            final V value = map.get(key);
+            if (value == null) {
+                throw notFound.get();
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationFilter;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.Attribute;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Root;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specifications;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Streams annotations matching a filter to an output stream.
+ * <p>
+ * Annotations are read in chunks ordered by id, each chunk starting after the
+ * last id of the previous one, so no result set stays open between queries:
+ * the data of each chunk is fetched with a single query and the persistence
+ * context is cleared once the chunk is written, so memory use depends on the
+ * chunk size and not on the number of annotations exported. No count query is
+ * issued.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationExporter {
+
+    /**
+     * Export formats
+     */
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private static final String[] CSV_HEADER = {
+        "annotation", "created", "modified", "user", "access", "group", "vocabulary", "target", "parent", "redacted",
+        "data", "dataParent", "attribute", "level", "name", "value"
+    };
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JsonFactory jsonFactory;
+    private final int chunkSize;
+
+    @Autowired(required = true)
+    public AnnotationExporter(
+            ObjectMapper objectMapper,
+            @Value("${ccd.annotations.export.chunk-size:500}") int chunkSize) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.chunkSize = Math.max(chunkSize, 1);
+    }
+
+    /**
+     * Export annotations
+     *
+     * @param requester authenticated user
+     * @param filter filter parameters
+     * @param format output format
+     * @param output destination, left open
+     * @return number of annotations written
+     * @throws IOException if the output cannot be written
+     */
+    @Transactional(readOnly = true)
+    public long export(UserAccount requester, AnnotationFilter filter, Format format, OutputStream output) throws IOException {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Annotation> criteria = cb.createQuery(Annotation.class);
+        final Root<Annotation> root = criteria.from(Annotation.class);
+        root.fetch("user");
+        root.fetch("access");
+        root.fetch("vocabulary");
+        root.fetch("target", JoinType.LEFT);
+        root.fetch("group", JoinType.LEFT);
+        final ParameterExpression<Long> after = cb.parameter(Long.class);
+        criteria.select(root)
+                .where(Specifications.where(AnnotationSpecifications.visibleTo(requester))
+                        .and(AnnotationSpecifications.matching(filter))
+                        .and((r, q, b) -> b.greaterThan(r.get("id"), after))
+                        .toPredicate(root, criteria, cb))
+                .orderBy(cb.asc(root.get("id")));
+
+        long count = 0;
+        try (RecordWriter writer = (format == Format.CSV) ? new CsvRecordWriter(output) : new JsonRecordWriter(output)) {
+            long last = 0;
+            int written;
+            do {
+                final TypedQuery<Annotation> query = entityManager.createQuery(criteria)
+                        .setParameter(after, last)
+                        .setMaxResults(chunkSize)
+                        .setHint(QueryHints.READ_ONLY, true);
+                final List<Annotation> chunk = new ArrayList<>(query.getResultList());
+                if (!chunk.isEmpty()) {
+                    last = chunk.get(chunk.size() - 1).getId();
+                }
+                written = writeChunk(chunk, writer);
+                count += written;
+            } while (written == chunkSize);
+        }
+        return count;
+    }
+
+    /**
+     * Write a chunk of annotations with their data and release them
+     */
+    private int writeChunk(List<Annotation> chunk, RecordWriter writer) throws IOException {
+        final int size = chunk.size();
+        if (size > 0) {
+            final Map<Long, List<AnnotationData>> data = findData(chunk);
+            for (Annotation annotation : chunk) {
+                writer.write(annotation, data.getOrDefault(annotation.getId(), Collections.emptyList()));
+            }
+            writer.flush();
+            chunk.clear();
+            entityManager.clear();
+        }
+        return size;
+    }
+
+    /**
+     * Fetch data of many annotations with a single query
+     */
+    private Map<Long, List<AnnotationData>> findData(List<Annotation> annotations) {
+        final List<Long> ids = annotations.stream().map(Annotation::getId).collect(Collectors.toList());
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<AnnotationData> criteria = cb.createQuery(AnnotationData.class);
+        final Root<AnnotationData> root = criteria.from(AnnotationData.class);
+        root.fetch("attribute", JoinType.LEFT);
+        criteria.select(root)
+                .where(root.get("annotation").get("id").in(ids))
+                .orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(criteria)
+                .getResultList()
+                .stream()
+                .collect(Collectors.groupingBy(d -> d.getAnnotation().getId()));
+    }
+
+    private static Long id(Annotation annotation) {
+        return (annotation != null) ? annotation.getId() : null;
+    }
+
+    private static Long id(AnnotationData data) {
+        return (data != null) ? data.getId() : null;
+    }
+
+    /**
+     * Group data by parent id; top-level data is keyed by null
+     */
+    private static Map<Long, List<AnnotationData>> byParent(List<AnnotationData> data) {
+        final Map<Long, List<AnnotationData>> children = new HashMap<>();
+        data.forEach(d -> children.computeIfAbsent(id(d.getParent()), k -> new ArrayList<>()).add(d));
+        return children;
+    }
+
+    /**
+     * Writes one annotation record at a time
+     */
+    private interface RecordWriter extends Closeable {
+
+        void write(Annotation annotation, List<AnnotationData> data) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * One JSON object per line, with data nested as in the annotation
+     * resource
+     */
+    private final class JsonRecordWriter implements RecordWriter {
+
+        private final JsonGenerator generator;
+
+        private JsonRecordWriter(OutputStream output) throws IOException {
+            this.generator = jsonFactory.createGenerator(output)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Annotation annotation, List<AnnotationData> data) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", annotation.getId());
+            generator.writeObjectField("created", annotation.getCreated());
+            generator.writeObjectField("modified", annotation.getModified());
+            generator.writeBooleanField("redacted", annotation.isRedacted());
+            generator.writeStringField("user", annotation.getUser().getUsername());
+            generator.writeStringField("access", annotation.getAccess().getName());
+            generator.writeStringField("group", (annotation.getGroup() != null) ? annotation.getGroup().getName() : null);
+            generator.writeStringField("vocabulary", annotation.getVocabulary().getName());
+            generator.writeObjectField("target", (annotation.getTarget() != null) ? annotation.getTarget().getId() : null);
+            generator.writeObjectField("parent", id(annotation.getParent()));
+            generator.writeArrayFieldStart("data");
+            final Map<Long, List<AnnotationData>> children = byParent(data);
+            writeData(children.getOrDefault(null, Collections.emptyList()), children);
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeData(List<AnnotationData> data, Map<Long, List<AnnotationData>> children) throws IOException {
+            for (AnnotationData d : data) {
+                final Attribute attribute = d.getAttribute();
+                generator.writeStartObject();
+                generator.writeNumberField("id", d.getId());
+                if (attribute != null) {
+                    generator.writeObjectFieldStart("attribute");
+                    generator.writeNumberField("id", attribute.getId());
+                    generator.writeStringField("level", attribute.getLevel());
+                    generator.writeStringField("name", attribute.getName());
+                    generator.writeEndObject();
+                }
+                generator.writeStringField("value", d.getValue());
+                final List<AnnotationData> subData = children.get(d.getId());
+                if (subData != null) {
+                    generator.writeArrayFieldStart("subData");
+                    writeData(subData, children);
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * One row per annotation data, with annotation columns repeated; an
+     * annotation without data is written as a single row with empty data
+     * columns
+     */
+    private static final class CsvRecordWriter implements RecordWriter {
+
+        private final Writer writer;
+
+        private CsvRecordWriter(OutputStream output) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            writeRow((Object[]) CSV_HEADER);
+        }
+
+        @Override
+        public void write(Annotation annotation, List<AnnotationData> data) throws IOException {
+            final Object[] row = {
+                annotation.getId(),
+                format(annotation.getCreated()),
+                format(annotation.getModified()),
+                annotation.getUser().getUsername(),
+                annotation.getAccess().getName(),
+                (annotation.getGroup() != null) ? annotation.getGroup().getName() : null,
+                annotation.getVocabulary().getName(),
+                (annotation.getTarget() != null) ? annotation.getTarget().getId() : null,
+                id(annotation.getParent()),
+                annotation.isRedacted(),
+                null, null, null, null, null, null
+            };
+            if (data.isEmpty()) {
+                writeRow(row);
+            } else {
+                final Map<Long, List<AnnotationData>> children = byParent(data);
+                writeData(row, children.getOrDefault(null, Collections.emptyList()), children);
+            }
+        }
+
+        private void writeData(Object[] row, List<AnnotationData> data, Map<Long, List<AnnotationData>> children) throws IOException {
+            for (AnnotationData d : data) {
+                final Attribute attribute = d.getAttribute();
+                row[10] = d.getId();
+                row[11] = id(d.getParent());
+                row[12] = (attribute != null) ? attribute.getId() : null;
+                row[13] = (attribute != null) ? attribute.getLevel() : null;
+                row[14] = (attribute != null) ? attribute.getName() : null;
+                row[15] = d.getValue();
+                writeRow(row);
+                writeData(row, children.getOrDefault(d.getId(), Collections.emptyList()), children);
+            }
+        }
+
+        private void writeRow(Object... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writer.write(escape(values[i].toString()));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private static String format(Date date) {
+            return (date != null) ? DateTimeFormatter.ISO_INSTANT.format(date.toInstant()) : null;
+        }
+
+        /**
+         * Quote a field if it contains a delimiter, quote or line break
+         * (RFC 4180)
+         */
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // leave the underlying stream open
+            writer.flush();
+        }
+    }
+}
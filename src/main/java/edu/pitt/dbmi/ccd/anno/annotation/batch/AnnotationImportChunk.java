@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Progress and error summary of one chunk of a streaming import
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@JsonPropertyOrder({"chunk", "firstLine", "lastLine", "written", "created", "failed", "elapsed", "errors"})
+public final class AnnotationImportChunk {
+
+    private final int chunk;
+    private final long firstLine;
+    private final long lastLine;
+    private final boolean written;
+    private final long created;
+    private final long failed;
+    private final long elapsed;
+    private final List<Error> errors;
+
+    /**
+     * Constructor
+     *
+     * @param chunk chunk number (zero-based)
+     * @param firstLine first input line in chunk
+     * @param lastLine last input line in chunk
+     * @param written false if the database rejected the chunk and it was
+     * rolled back
+     * @param created number of annotations created
+     * @param failed number of lines that failed
+     * @param elapsed milliseconds spent writing the chunk
+     * @param errors per-line failures (may be truncated)
+     */
+    public AnnotationImportChunk(int chunk, long firstLine, long lastLine, boolean written, long created, long failed, long elapsed, List<Error> errors) {
+        this.chunk = chunk;
+        this.firstLine = firstLine;
+        this.lastLine = lastLine;
+        this.written = written;
+        this.created = created;
+        this.failed = failed;
+        this.elapsed = elapsed;
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+    }
+
+    public int getChunk() {
+        return chunk;
+    }
+
+    public long getFirstLine() {
+        return firstLine;
+    }
+
+    public long getLastLine() {
+        return lastLine;
+    }
+
+    public boolean isWritten() {
+        return written;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    public List<Error> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Failure of a single input line
+     */
+    @JsonPropertyOrder({"line", "message"})
+    public static final class Error {
+
+        private final long line;
+        private final String message;
+
+        public Error(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
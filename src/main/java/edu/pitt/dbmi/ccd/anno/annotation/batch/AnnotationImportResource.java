@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * Streaming import DTO representation
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@JsonPropertyOrder({"lines", "complete", "created", "failed", "elapsed", "throughput", "chunks"})
+public final class AnnotationImportResource extends ResourceSupport {
+
+    // content
+    private final long lines;
+    private final boolean complete;
+    private final long created;
+    private final long failed;
+    private final long elapsed;
+    private final double throughput;
+    private final List<AnnotationImportChunk> chunks;
+
+    /**
+     * Constructor
+     *
+     * @param lines number of input lines read
+     * @param elapsed milliseconds spent importing
+     * @param complete false if the import stopped at a chunk the database
+     * rejected
+     * @param chunks per-chunk summaries
+     * @param links (optional) links to include
+     */
+    public AnnotationImportResource(long lines, long elapsed, boolean complete, List<AnnotationImportChunk> chunks, Link... links) {
+        this.lines = lines;
+        this.complete = complete;
+        this.created = chunks.stream().mapToLong(AnnotationImportChunk::getCreated).sum();
+        this.failed = chunks.stream().mapToLong(AnnotationImportChunk::getFailed).sum();
+        this.elapsed = elapsed;
+        this.throughput = (elapsed > 0) ? created * 1000.0 / elapsed : 0.0;
+        this.chunks = Collections.unmodifiableList(chunks);
+        this.add(links);
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public List<AnnotationImportChunk> getChunks() {
+        return chunks;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationForm;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.PersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+/**
+ * Imports annotations from a newline-delimited JSON stream.
+ * <p>
+ * Records are parsed one line at a time and handed to the
+ * {@link AnnotationBatchWriter} in fixed-size chunks, each committed in its
+ * own transaction, so memory use depends on the chunk size and the maximum
+ * line length and not on the size of the upload. Longer lines are skipped
+ * and reported as errors. If a chunk cannot be written, the import stops and
+ * the summary reports the chunks already committed.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationImporter {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationImporter.class);
+
+    // maximum number of errors reported per chunk
+    private static final int MAX_ERRORS = 100;
+
+    private final ObjectReader reader;
+    private final AnnotationBatchWriter batchWriter;
+    private final int chunkSize;
+    private final int maxLineLength;
+
+    @Autowired(required = true)
+    public AnnotationImporter(
+            ObjectMapper objectMapper,
+            AnnotationBatchWriter batchWriter,
+            @Value("${ccd.annotations.import.chunk-size:500}") int chunkSize,
+            @Value("${ccd.annotations.import.max-line-length:1048576}") int maxLineLength) {
+        this.reader = objectMapper.readerFor(AnnotationForm.class);
+        this.batchWriter = batchWriter;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.maxLineLength = Math.max(maxLineLength, 1);
+    }
+
+    /**
+     * Import annotations
+     *
+     * @param requester user creating the annotations
+     * @param input newline-delimited JSON, one annotation per line
+     * @return import summary
+     * @throws IOException if the input cannot be read
+     */
+    public AnnotationImportResource importAnnotations(UserAccount requester, InputStream input) throws IOException {
+        final long start = System.nanoTime();
+        final LineReader lines = new LineReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)), maxLineLength);
+        final List<AnnotationImportChunk> chunks = new ArrayList<>();
+        Chunk chunk = new Chunk(0, 1);
+        long line = 0;
+        String text;
+        boolean complete = true;
+        while (complete && (text = lines.next()) != null) {
+            line++;
+            if (lines.isTruncated()) {
+                chunk.error(line, String.format("Line longer than %d characters", maxLineLength));
+            } else if (text.trim().isEmpty()) {
+                continue;
+            } else {
+                try {
+                    chunk.add(line, reader.readValue(text));
+                } catch (JsonProcessingException ex) {
+                    chunk.error(line, ex.getOriginalMessage());
+                }
+            }
+            if (chunk.forms.size() >= chunkSize) {
+                final AnnotationImportChunk written = commit(requester, chunk, line);
+                chunks.add(written);
+                complete = written.isWritten();
+                chunk = new Chunk(chunks.size(), line + 1);
+            }
+        }
+        if (complete && (!chunk.forms.isEmpty() || chunk.failed > 0)) {
+            final AnnotationImportChunk written = commit(requester, chunk, line);
+            chunks.add(written);
+            complete = written.isWritten();
+        }
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new AnnotationImportResource(line, elapsed, complete, chunks);
+    }
+
+    /**
+     * Write a chunk in its own transaction
+     *
+     * @param requester user creating the annotations
+     * @param chunk parsed records
+     * @param lastLine last input line included in the chunk
+     * @return chunk summary; not written if the database rejected the chunk
+     */
+    private AnnotationImportChunk commit(UserAccount requester, Chunk chunk, long lastLine) {
+        final long start = System.nanoTime();
+        long created = 0;
+        if (!chunk.forms.isEmpty()) {
+            final AnnotationBatchResult result;
+            try {
+                result = batchWriter.write(requester, chunk.forms);
+            } catch (PersistenceException | DataAccessException | TransactionException ex) {
+                // the chunk was rolled back; every record in it failed
+                LOGGER.error(String.format("Import chunk %d (lines %d-%d) not written; import stopped", chunk.number, chunk.firstLine, lastLine), ex);
+                chunk.lines.forEach(l -> chunk.error(l, "Chunk not written: " + ex.getMessage()));
+                final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                return new AnnotationImportChunk(chunk.number, chunk.firstLine, lastLine, false, 0, chunk.failed, elapsed, chunk.errors);
+            }
+            for (AnnotationBatchItem item : result.getItems()) {
+                if (item.failed()) {
+                    chunk.error(chunk.lines.get(item.getIndex()), item.getMessage());
+                } else {
+                    created++;
+                }
+            }
+        }
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOGGER.info(String.format("Import chunk %d (lines %d-%d): %d created, %d failed", chunk.number, chunk.firstLine, lastLine, created, chunk.failed));
+        return new AnnotationImportChunk(chunk.number, chunk.firstLine, lastLine, true, created, chunk.failed, elapsed, chunk.errors);
+    }
+
+    /**
+     * Reads lines of at most a maximum length, so a single line cannot
+     * exhaust memory. The rest of a longer line is skipped.
+     */
+    private static final class LineReader {
+
+        private final Reader reader;
+        private final int maxLength;
+        private final StringBuilder line = new StringBuilder();
+        private boolean truncated;
+
+        private LineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * @return next line without its terminator, or null at the end of
+         * the input
+         */
+        private String next() throws IOException {
+            line.setLength(0);
+            truncated = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c == '\n') {
+                    return text();
+                }
+                if (line.length() < maxLength) {
+                    line.append((char) c);
+                } else if (c != '\r') {
+                    truncated = true;
+                }
+            }
+            return (line.length() > 0 || truncated) ? text() : null;
+        }
+
+        /**
+         * @return whether the last line was longer than the maximum length
+         */
+        private boolean isTruncated() {
+            return truncated;
+        }
+
+        private String text() {
+            final int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(length - 1);
+            }
+            return line.toString();
+        }
+    }
+
+    /**
+     * Records parsed but not yet written
+     */
+    private static final class Chunk {
+
+        private final int number;
+        private final long firstLine;
+        private final List<AnnotationForm> forms = new ArrayList<>();
+        private final List<Long> lines = new ArrayList<>();
+        private final List<AnnotationImportChunk.Error> errors = new ArrayList<>(0);
+        private long failed = 0;
+
+        private Chunk(int number, long firstLine) {
+            this.number = number;
+            this.firstLine = firstLine;
+        }
+
+        private void add(long line, AnnotationForm form) {
+            forms.add(form);
+            lines.add(line);
+        }
+
+        private void error(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(new AnnotationImportChunk.Error(line, message));
+            }
+        }
+    }
+}
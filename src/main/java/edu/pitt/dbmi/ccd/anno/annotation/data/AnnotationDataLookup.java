@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.data;
+
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Keyed lookups of annotation data. Selects rows by primary key or by the
+ * indexed annotation and attribute foreign keys instead of loading every
+ * data of an annotation.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationDataLookup {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Find annotation data of an annotation
+     *
+     * @param annotationId annotation id
+     * @param dataId annotation data id
+     * @return annotation data, or null if the annotation has no such data
+     */
+    @Transactional(readOnly = true)
+    public AnnotationData find(Long annotationId, Long dataId) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<AnnotationData> query = cb.createQuery(AnnotationData.class);
+        final Root<AnnotationData> root = query.from(AnnotationData.class);
+        root.fetch("attribute", JoinType.LEFT);
+        query.select(root).where(
+                cb.equal(root.get("id"), dataId),
+                cb.equal(root.get("annotation").get("id"), annotationId));
+        final List<AnnotationData> found = entityManager.createQuery(query).getResultList();
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Find a page of annotation data of an annotation
+     *
+     * @param annotationId annotation id
+     * @param attributeId only data with this attribute (nullable)
+     * @param pageable page request
+     * @return page of annotation data
+     */
+    @Transactional(readOnly = true)
+    public Page<AnnotationData> findByAnnotation(Long annotationId, Long attributeId, Pageable pageable) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<AnnotationData> query = cb.createQuery(AnnotationData.class);
+        final Root<AnnotationData> root = query.from(AnnotationData.class);
+        root.fetch("attribute", JoinType.LEFT);
+        final List<Order> orders = new ArrayList<>();
+        if (pageable.getSort() != null) {
+            orders.addAll(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+        // tie-breaker for stable paging
+        orders.add(cb.asc(root.get("id")));
+        query.select(root)
+                .where(matching(root, cb, annotationId, attributeId))
+                .orderBy(orders);
+        final List<AnnotationData> content = entityManager.createQuery(query)
+                .setFirstResult(pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return new PageImpl<>(content, pageable, total(annotationId, attributeId, pageable, content.size()));
+    }
+
+    private long total(Long annotationId, Long attributeId, Pageable pageable, int size) {
+        // count is only needed when the page is full or beyond the last one
+        if (size > 0 && size < pageable.getPageSize()) {
+            return pageable.getOffset() + size;
+        }
+        if (size == 0 && pageable.getOffset() == 0) {
+            return 0;
+        }
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        final Root<AnnotationData> root = query.from(AnnotationData.class);
+        query.select(cb.count(root)).where(matching(root, cb, annotationId, attributeId));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static Predicate[] matching(Root<AnnotationData> root, CriteriaBuilder cb, Long annotationId, Long attributeId) {
+        final Predicate annotation = cb.equal(root.get("annotation").get("id"), annotationId);
+        if (attributeId == null) {
+            return new Predicate[]{annotation};
+        }
+        return new Predicate[]{annotation, cb.equal(root.get("attribute").get("id"), attributeId)};
+    }
+}
@@ -22,6 +22,8 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.anno.util.SparseResource;
 import edu.pitt.dbmi.ccd.anno.vocabulary.attribute.AttributeResource;
 import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
 import java.util.HashSet;
@@ -37,14 +39,21 @@ import org.springframework.hateoas.core.Relation;
  */
 @Relation(value = "data", collectionRelation = "data")
 @JsonPropertyOrder({"id", "attribute", "attributeResource", "value", "subData"})
-public final class AnnotationDataResource extends ResourceSupport {
+public final class AnnotationDataResource extends ResourceSupport implements SparseResource {
+
+    // fields
+    public static final String ATTRIBUTE_RESOURCE = "attributeResource";
+    public static final String SUB_DATA = "subData";
+    public static final Set<String> FIELDS = Fields.of("attribute", ATTRIBUTE_RESOURCE, "value", SUB_DATA, Fields.LINKS);
 
     // content
     private final Long id;
     private final Long attribute;
     private final String value;
     private final Set<AnnotationDataResource> subData = new HashSet<>(0);
+    private final boolean sparse;
     private AttributeResource attributeResource = null;
+    private boolean shared = false;
 
     /**
      * Empty constructor
@@ -52,6 +61,7 @@ public final class AnnotationDataResource extends ResourceSupport {
      * @return new AnnotationDataResource with empty/null variables
      */
     public AnnotationDataResource() {
+        this.sparse = false;
         this.id = null;
         this.attribute = null;
         this.value = "";
@@ -63,9 +73,20 @@ public final class AnnotationDataResource extends ResourceSupport {
      * @param data content
      */
     public AnnotationDataResource(AnnotationData data) {
+        this(data, Fields.all());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param data content
+     * @param fields fields to include; others are left null
+     */
+    public AnnotationDataResource(AnnotationData data, Fields fields) {
+        this.sparse = !fields.isAll();
         this.id = data.getId();
-        this.attribute = (data.getAttribute() != null) ? data.getAttribute().getId() : null;
-        this.value = data.getValue();
+        this.attribute = (fields.includes("attribute") && data.getAttribute() != null) ? data.getAttribute().getId() : null;
+        this.value = fields.includes("value") ? data.getValue() : null;
     }
 
     /**
@@ -107,6 +128,19 @@ public final class AnnotationDataResource extends ResourceSupport {
         this.attributeResource = attributeResource;
     }
 
+    /**
+     * Remove the attribute resource to embed it once per page. The
+     * attribute resource is then left out rather than written as null.
+     *
+     * @return removed attribute resource (nullable)
+     */
+    public AttributeResource removeAttributeResource() {
+        final AttributeResource removed = attributeResource;
+        attributeResource = null;
+        shared = true;
+        return removed;
+    }
+
     /**
      * Get attribute value
      *
@@ -156,4 +190,9 @@ public final class AnnotationDataResource extends ResourceSupport {
     public void addSubData(Set<AnnotationDataResource> subData) {
         this.subData.addAll(subData);
     }
+
+    @Override
+    public boolean omitsNull(String property) {
+        return sparse || (shared && ATTRIBUTE_RESOURCE.equals(property));
+    }
 }
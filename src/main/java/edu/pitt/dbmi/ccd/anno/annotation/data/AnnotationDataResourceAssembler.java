@@ -19,15 +19,19 @@
 package edu.pitt.dbmi.ccd.anno.annotation.data;
 
 import edu.pitt.dbmi.ccd.anno.annotation.AnnotationController;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyCache;
 import edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyLinks;
-import edu.pitt.dbmi.ccd.anno.vocabulary.attribute.AttributeResourceAssembler;
 import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.Link;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
 import org.springframework.stereotype.Component;
@@ -42,13 +46,13 @@ import org.springframework.util.Assert;
 public class AnnotationDataResourceAssembler extends ResourceAssemblerSupport<AnnotationData, AnnotationDataResource> {
 
     private final VocabularyLinks vocabularyLinks;
-    private final AttributeResourceAssembler attributeResourceAssembler;
+    private final VocabularyCache vocabularyCache;
 
     @Autowired(required = true)
-    public AnnotationDataResourceAssembler(VocabularyLinks vocabularyLinks, AttributeResourceAssembler attributeResourceAssembler) {
+    public AnnotationDataResourceAssembler(VocabularyLinks vocabularyLinks, VocabularyCache vocabularyCache) {
         super(AnnotationController.class, AnnotationDataResource.class);
         this.vocabularyLinks = vocabularyLinks;
-        this.attributeResourceAssembler = attributeResourceAssembler;
+        this.vocabularyCache = vocabularyCache;
     }
 
     /**
@@ -59,15 +63,47 @@ public class AnnotationDataResourceAssembler extends ResourceAssemblerSupport<An
      */
     @Override
     public AnnotationDataResource toResource(AnnotationData data) {
-        AnnotationDataResource resource = createResourceWithId(data.getId(), data);
-        Set<AnnotationDataResource> children = data.getSubData().stream()
-                .map(this::toResource)
-                .collect(Collectors.toSet());
-        resource.addSubData(children);
+        return toResource(data, AnnotationData::getSubData);
+    }
+
+    /**
+     * convert AnnotationData to AnnotationDataResource using preloaded sub
+     * data
+     *
+     * @param data entity
+     * @param subData sub data of an annotation data
+     * @return resource
+     */
+    public AnnotationDataResource toResource(AnnotationData data, Function<AnnotationData, ? extends Collection<AnnotationData>> subData) {
+        return toResource(data, subData, Fields.all());
+    }
+
+    /**
+     * convert AnnotationData to AnnotationDataResource using preloaded sub
+     * data, building only the requested fields
+     *
+     * @param data entity
+     * @param subData sub data of an annotation data
+     * @param fields fields to include
+     * @return resource
+     */
+    public AnnotationDataResource toResource(AnnotationData data, Function<AnnotationData, ? extends Collection<AnnotationData>> subData, Fields fields) {
+        AnnotationDataResource resource = new AnnotationDataResource(data, fields);
+        resource.add(selfLink(data, data.getId()));
+        if (fields.includes(AnnotationDataResource.SUB_DATA)) {
+            Set<AnnotationDataResource> children = subData.apply(data).stream()
+                    .map(d -> toResource(d, subData, fields))
+                    .collect(Collectors.toSet());
+            resource.addSubData(children);
+        }
         if (data.getAttribute() != null) {
-            resource.add(vocabularyLinks.attribute(data.getAttribute().getVocabulary(), data.getAttribute()));
+            if (fields.includes(Fields.LINKS)) {
+                resource.add(vocabularyLinks.attribute(data.getAttribute().getVocabulary(), data.getAttribute()));
+            }
+            if (fields.includes(AnnotationDataResource.ATTRIBUTE_RESOURCE)) {
+                resource.setAttributeResource(vocabularyCache.attribute(data.getAttribute()));
+            }
         }
-        resource.setAttributeResource(attributeResourceAssembler.toResource(data.getAttribute()));
         return resource;
     }
 
@@ -100,10 +136,17 @@ public class AnnotationDataResourceAssembler extends ResourceAssemblerSupport<An
         Assert.notNull(id);
 
         AnnotationDataResource instance = instantiateResource(entity);
-        instance.add(linkTo(AnnotationController.class, parameters).slash(entity.getAnnotation().getId() + "/data").slash(id).withSelfRel());
+        instance.add(selfLink(entity, id, parameters));
         return instance;
     }
 
+    /**
+     * Self link of annotation data, below its annotation
+     */
+    private Link selfLink(AnnotationData entity, Object id, Object... parameters) {
+        return linkTo(AnnotationController.class, parameters).slash(entity.getAnnotation().getId() + "/data").slash(id).withSelfRel();
+    }
+
     /**
      * Instantiate AnnotationDataResource with non-default constructor
      *
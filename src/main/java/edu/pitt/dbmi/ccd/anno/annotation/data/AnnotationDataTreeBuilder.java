@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.data;
+
+import edu.pitt.dbmi.ccd.anno.error.AttributeNotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.VocabularyMismatchException;
+import edu.pitt.dbmi.ccd.anno.util.EntityLookup;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.Attribute;
+import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds AnnotationData entities from a submitted AnnotationDataForm tree
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationDataTreeBuilder {
+
+    private final EntityLookup entityLookup;
+
+    @Autowired(required = true)
+    public AnnotationDataTreeBuilder(EntityLookup entityLookup) {
+        this.entityLookup = entityLookup;
+    }
+
+    /**
+     * Resolve every attribute referenced in a data tree with a single query
+     *
+     * @param vocabulary vocabulary of the annotation
+     * @param data submitted data
+     * @return attributes keyed by id
+     * @throws AttributeNotFoundException if any attribute does not exist
+     * @throws VocabularyMismatchException if any attribute belongs to
+     * another vocabulary
+     */
+    public Map<Long, Attribute> resolve(Vocabulary vocabulary, List<AnnotationDataForm> data) throws AttributeNotFoundException, VocabularyMismatchException {
+        final Set<Long> ids = attributeIds(data);
+        final Map<Long, Attribute> attributes = entityLookup.findAllIn(Attribute.class, "id", ids, Attribute::getId);
+        check(vocabulary, ids, attributes);
+        return attributes;
+    }
+
+    /**
+     * Check that attributes were resolved and belong to a vocabulary
+     *
+     * @param vocabulary vocabulary of the annotation
+     * @param ids referenced attribute ids
+     * @param attributes resolved attributes keyed by id
+     * @throws AttributeNotFoundException listing every unresolved id
+     * @throws VocabularyMismatchException listing every attribute of
+     * another vocabulary
+     */
+    public void check(Vocabulary vocabulary, Collection<Long> ids, Map<Long, Attribute> attributes) throws AttributeNotFoundException, VocabularyMismatchException {
+        final List<Long> missing = ids.stream()
+                .filter(id -> !attributes.containsKey(id))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            throw new AttributeNotFoundException(missing);
+        }
+        final List<Long> mismatched = ids.stream()
+                .filter(id -> !attributes.get(id).getVocabulary().getId().equals(vocabulary.getId()))
+                .collect(Collectors.toList());
+        if (!mismatched.isEmpty()) {
+            throw new VocabularyMismatchException(vocabulary, mismatched);
+        }
+    }
+
+    /**
+     * Collect the ids of every attribute referenced in a data tree
+     *
+     * @param data submitted data
+     * @return attribute ids (null ids excluded)
+     */
+    public Set<Long> attributeIds(List<AnnotationDataForm> data) {
+        final Set<Long> ids = new LinkedHashSet<>();
+        collectAttributeIds(data, ids);
+        return ids;
+    }
+
+    private void collectAttributeIds(List<AnnotationDataForm> data, Set<Long> ids) {
+        if (data == null) {
+            return;
+        }
+        data.forEach(d -> {
+            if (d.getAttribute() != null) {
+                ids.add(d.getAttribute());
+            }
+            collectAttributeIds(d.getChildren(), ids);
+        });
+    }
+
+    /**
+     * Build unsaved AnnotationData entities for a data tree
+     *
+     * @param annotation annotation the data belongs to
+     * @param data submitted data
+     * @param attributes resolved attributes keyed by id
+     * @return data entities in submission order (parents before children),
+     * each child linked to its parent
+     * @throws AttributeNotFoundException if an attribute is not in attributes
+     */
+    public List<AnnotationData> build(Annotation annotation, List<AnnotationDataForm> data, Map<Long, Attribute> attributes) throws AttributeNotFoundException {
+        final List<AnnotationData> built = new ArrayList<>();
+        build(annotation, null, data, attributes, built);
+        return built;
+    }
+
+    private void build(Annotation annotation, AnnotationData parent, List<AnnotationDataForm> data, Map<Long, Attribute> attributes, List<AnnotationData> built) {
+        if (data == null) {
+            return;
+        }
+        data.forEach(d -> {
+            final Long attributeId = d.getAttribute();
+            final Attribute attribute = attributes.get(attributeId);
+            if (attribute == null) {
+                throw new AttributeNotFoundException(attributeId);
+            }
+            final AnnotationData node = new AnnotationData(annotation, attribute, d.getValue());
+            if (parent != null) {
+                node.setParent(parent);
+                parent.getSubData().add(node);
+            }
+            built.add(node);
+            build(annotation, node, d.getChildren(), attributes, built);
+        });
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.data;
+
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.regex.Pattern;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * Typed copy of an annotation data value.
+ * <p>
+ * Data values are free text. Values that are numbers or ISO-8601 dates are
+ * also stored parsed, in indexed columns, so that range filters run in the
+ * database. Shares its id with the annotation data it was parsed from.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Entity
+@Table(name = "annotation_data_value", indexes = {
+    @Index(name = "idx_data_value_number", columnList = "number_value"),
+    @Index(name = "idx_data_value_date", columnList = "date_value"),
+    @Index(name = "idx_data_value_attribute_number", columnList = "attribute_id,number_value"),
+    @Index(name = "idx_data_value_attribute_date", columnList = "attribute_id,date_value")
+})
+public class AnnotationDataValue implements Serializable {
+
+    private static final long serialVersionUID = 3618475203714528211L;
+
+    private static final Pattern NUMBER = Pattern.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+
+    @Id
+    private Long id;
+
+    @Column(name = "annotation_id", nullable = false)
+    private Long annotationId;
+
+    @Column(name = "attribute_id")
+    private Long attributeId;
+
+    @Column(name = "number_value")
+    private Double numberValue;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "date_value")
+    private Date dateValue;
+
+    protected AnnotationDataValue() {
+    }
+
+    private AnnotationDataValue(AnnotationData data, Double numberValue, Date dateValue) {
+        this.id = data.getId();
+        this.annotationId = data.getAnnotation().getId();
+        this.attributeId = (data.getAttribute() == null) ? null : data.getAttribute().getId();
+        this.numberValue = numberValue;
+        this.dateValue = dateValue;
+    }
+
+    /**
+     * Parse the value of annotation data
+     *
+     * @param data saved annotation data
+     * @return typed value, or null if the value is neither a number nor a
+     * date
+     */
+    public static AnnotationDataValue of(AnnotationData data) {
+        final Double number = parseNumber(data.getValue());
+        if (number != null) {
+            return new AnnotationDataValue(data, number, null);
+        }
+        final Date date = parseDate(data.getValue());
+        if (date != null) {
+            return new AnnotationDataValue(data, null, date);
+        }
+        return null;
+    }
+
+    /**
+     * Parse a finite decimal number
+     *
+     * @param value text (nullable)
+     * @return number, or null if the text is not a number
+     */
+    public static Double parseNumber(String value) {
+        if (value == null || !NUMBER.matcher(value.trim()).matches()) {
+            return null;
+        }
+        final double number = Double.parseDouble(value.trim());
+        return Double.isInfinite(number) ? null : number;
+    }
+
+    /**
+     * Parse an ISO-8601 date (yyyy-MM-dd, as midnight UTC) or date-time
+     * with offset
+     *
+     * @param value text (nullable)
+     * @return date, or null if the text is not a date
+     */
+    public static Date parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        final String text = value.trim();
+        try {
+            return Date.from(LocalDate.parse(text).atStartOfDay(ZoneOffset.UTC).toInstant());
+        } catch (DateTimeParseException ex) {
+            // not a plain date
+        }
+        try {
+            return Date.from(OffsetDateTime.parse(text).toInstant());
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAnnotationId() {
+        return annotationId;
+    }
+
+    public Long getAttributeId() {
+        return attributeId;
+    }
+
+    public Double getNumberValue() {
+        return numberValue;
+    }
+
+    public Date getDateValue() {
+        return dateValue;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.data;
+
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Keeps typed copies of annotation data values in step with the data
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationDataValues {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationDataValues.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final boolean backfillOnStartup;
+    private final int batchSize;
+
+    @Autowired(required = true)
+    public AnnotationDataValues(
+            EntityManagerFactory entityManagerFactory,
+            @Value("${ccd.annotations.values.backfill-on-startup:false}") boolean backfillOnStartup,
+            @Value("${ccd.annotations.values.batch-size:500}") int batchSize) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.backfillOnStartup = backfillOnStartup;
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    /**
+     * Parse values of data saved before typed values were stored, if
+     * requested
+     */
+    @PostConstruct
+    public void init() {
+        if (backfillOnStartup) {
+            backfill();
+        }
+    }
+
+    /**
+     * Store typed values of new annotation data
+     *
+     * @param data saved annotation data
+     * @return number of typed values stored
+     */
+    @Transactional
+    public int store(Collection<AnnotationData> data) {
+        int stored = 0;
+        for (AnnotationData d : data) {
+            final AnnotationDataValue value = AnnotationDataValue.of(d);
+            if (value != null) {
+                entityManager.persist(value);
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Replace the typed value of edited annotation data
+     *
+     * @param data saved annotation data
+     */
+    @Transactional
+    public void update(AnnotationData data) {
+        final AnnotationDataValue existing = entityManager.find(AnnotationDataValue.class, data.getId());
+        if (existing != null) {
+            entityManager.remove(existing);
+            entityManager.flush();
+        }
+        final AnnotationDataValue value = AnnotationDataValue.of(data);
+        if (value != null) {
+            entityManager.persist(value);
+        }
+    }
+
+    /**
+     * Store typed values of all annotation data that has none, in id-ordered
+     * batches of one transaction each
+     *
+     * @return number of typed values stored
+     */
+    public long backfill() {
+        final long start = System.currentTimeMillis();
+        long stored = 0;
+        Long last = null;
+        List<AnnotationData> data;
+        do {
+            final EntityManager batch = entityManagerFactory.createEntityManager();
+            try {
+                batch.getTransaction().begin();
+                data = nextData(batch, last);
+                if (!data.isEmpty()) {
+                    final Set<Long> typed = typedIds(batch, data);
+                    for (AnnotationData d : data) {
+                        final AnnotationDataValue value = typed.contains(d.getId()) ? null : AnnotationDataValue.of(d);
+                        if (value != null) {
+                            batch.persist(value);
+                            stored++;
+                        }
+                    }
+                    last = data.get(data.size() - 1).getId();
+                }
+                batch.getTransaction().commit();
+            } finally {
+                if (batch.getTransaction().isActive()) {
+                    batch.getTransaction().rollback();
+                }
+                batch.close();
+            }
+        } while (data.size() == batchSize);
+        LOGGER.info(String.format("Typed annotation data values backfilled: %d stored in %d ms", stored, System.currentTimeMillis() - start));
+        return stored;
+    }
+
+    private List<AnnotationData> nextData(EntityManager batch, Long after) {
+        final CriteriaBuilder cb = batch.getCriteriaBuilder();
+        final CriteriaQuery<AnnotationData> query = cb.createQuery(AnnotationData.class);
+        final Root<AnnotationData> root = query.from(AnnotationData.class);
+        query.select(root).orderBy(cb.asc(root.get("id")));
+        if (after != null) {
+            query.where(cb.greaterThan(root.get("id"), after));
+        }
+        return batch.createQuery(query)
+                .setMaxResults(batchSize)
+                .getResultList();
+    }
+
+    private Set<Long> typedIds(EntityManager batch, List<AnnotationData> data) {
+        final CriteriaBuilder cb = batch.getCriteriaBuilder();
+        final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        final Root<AnnotationDataValue> root = query.from(AnnotationDataValue.class);
+        query.select(root.get("id")).where(root.get("id").in(data.stream()
+                .map(AnnotationData::getId)
+                .collect(Collectors.toList())));
+        return new HashSet<>(batch.createQuery(query).getResultList());
+    }
+}
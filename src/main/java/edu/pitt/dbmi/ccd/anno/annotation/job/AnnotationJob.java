@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.job;
+
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationForm;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Asynchronous annotation submission.
+ * <p>
+ * Jobs are created by the submitting request thread and updated by a single
+ * worker thread; state is published through volatile fields so status
+ * requests see progress without locking.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationJob {
+
+    /**
+     * Job status
+     */
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    private final String id;
+    private final Long requester;
+    private final Date submitted;
+    private volatile AnnotationForm form;
+    private volatile Status status;
+    private volatile Date started;
+    private volatile Date finished;
+    private volatile Long annotation;
+    private volatile String message;
+
+    /**
+     * Constructor
+     *
+     * @param requester id of the submitting user
+     * @param form annotation content
+     */
+    public AnnotationJob(Long requester, AnnotationForm form) {
+        this.id = UUID.randomUUID().toString();
+        this.requester = requester;
+        this.submitted = new Date();
+        this.form = form;
+        this.status = Status.QUEUED;
+    }
+
+    /**
+     * Get job id
+     *
+     * @return id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get id of the submitting user
+     *
+     * @return user id
+     */
+    public Long getRequester() {
+        return requester;
+    }
+
+    /**
+     * Get submission time
+     *
+     * @return submitted
+     */
+    public Date getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Get annotation content; released once the job has finished
+     *
+     * @return form, or null if finished
+     */
+    public AnnotationForm getForm() {
+        return form;
+    }
+
+    /**
+     * Get status
+     *
+     * @return status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Get time the job started running
+     *
+     * @return started, or null if queued
+     */
+    public Date getStarted() {
+        return started;
+    }
+
+    /**
+     * Get time the job finished
+     *
+     * @return finished, or null if not finished
+     */
+    public Date getFinished() {
+        return finished;
+    }
+
+    /**
+     * Get id of the created annotation
+     *
+     * @return annotation id, or null unless done
+     */
+    public Long getAnnotation() {
+        return annotation;
+    }
+
+    /**
+     * Get failure message
+     *
+     * @return message, or null unless failed
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Check whether the job has finished
+     *
+     * @return true if done or failed
+     */
+    public boolean finished() {
+        return finished != null;
+    }
+
+    /**
+     * Mark job as running
+     */
+    void start() {
+        started = new Date();
+        status = Status.RUNNING;
+    }
+
+    /**
+     * Mark job as done
+     *
+     * @param annotation id of the created annotation
+     */
+    void succeed(Long annotation) {
+        this.annotation = annotation;
+        finish(Status.DONE);
+    }
+
+    /**
+     * Mark job as failed
+     *
+     * @param message reason
+     */
+    void fail(String message) {
+        this.message = message;
+        finish(Status.FAILED);
+    }
+
+    private void finish(Status status) {
+        form = null;
+        finished = new Date();
+        this.status = status;
+    }
+}
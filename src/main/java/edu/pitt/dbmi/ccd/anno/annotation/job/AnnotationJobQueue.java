@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.job;
+
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationForm;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationBatchItem;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationBatchWriter;
+import edu.pitt.dbmi.ccd.anno.error.AnnotationJobNotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.JobQueueFullException;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded in-process queue of asynchronous annotation submissions.
+ * <p>
+ * Submissions are written by a fixed pool of workers. When every worker is
+ * busy and the queue is full, new submissions are rejected so that callers
+ * back off instead of piling up, and are told when to retry. Finished jobs
+ * are kept for status requests until the retention period has passed; they
+ * are removed whenever jobs are submitted, read or measured. On shutdown,
+ * queued jobs are given a bounded time to finish.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationJobQueue implements PublicMetrics {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationJobQueue.class);
+
+    private final AnnotationBatchWriter batchWriter;
+    private final ThreadPoolTaskExecutor executor;
+    private final long retention;
+    private final long retryAfter;
+
+    private final Map<String, AnnotationJob> jobs = new ConcurrentHashMap<>();
+    private final LongAdder done = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @Autowired(required = true)
+    public AnnotationJobQueue(
+            AnnotationBatchWriter batchWriter,
+            @Value("${ccd.annotations.jobs.workers:2}") int workers,
+            @Value("${ccd.annotations.jobs.queue-capacity:100}") int queueCapacity,
+            @Value("${ccd.annotations.jobs.retention-minutes:60}") long retentionMinutes,
+            @Value("${ccd.annotations.jobs.retry-after-seconds:10}") long retryAfterSeconds,
+            @Value("${ccd.annotations.jobs.shutdown-seconds:30}") int shutdownSeconds) {
+        this.batchWriter = batchWriter;
+        this.retention = TimeUnit.MINUTES.toMillis(Math.max(retentionMinutes, 0));
+        this.retryAfter = Math.max(retryAfterSeconds, 1);
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(workers, 1));
+        executor.setMaxPoolSize(Math.max(workers, 1));
+        executor.setQueueCapacity(Math.max(queueCapacity, 1));
+        executor.setThreadNamePrefix("annotation-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(Math.max(shutdownSeconds, 0));
+        executor.initialize();
+    }
+
+    /**
+     * Queue an annotation for creation
+     *
+     * @param requester user creating the annotation
+     * @param form valid annotation content
+     * @return queued job
+     * @throws JobQueueFullException if the queue is full
+     */
+    public AnnotationJob submit(UserAccount requester, AnnotationForm form) throws JobQueueFullException {
+        purge();
+        final AnnotationJob job = new AnnotationJob(requester.getId(), form);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(requester, job));
+        } catch (TaskRejectedException ex) {
+            jobs.remove(job.getId());
+            rejected.increment();
+            throw new JobQueueFullException(executor.getThreadPoolExecutor().getQueue().size(), retryAfter);
+        }
+        return job;
+    }
+
+    /**
+     * Find a job submitted by a user
+     *
+     * @param requester authenticated user
+     * @param id job id
+     * @return job
+     * @throws AnnotationJobNotFoundException if the job does not exist, has
+     * expired, or was submitted by another user
+     */
+    public AnnotationJob find(UserAccount requester, String id) throws AnnotationJobNotFoundException {
+        purge();
+        final AnnotationJob job = jobs.get(id);
+        if (job == null || !job.getRequester().equals(requester.getId())) {
+            throw new AnnotationJobNotFoundException(id);
+        }
+        return job;
+    }
+
+    /**
+     * Stop accepting jobs and wait for queued jobs to finish, up to the
+     * shutdown timeout
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        purge();
+        final List<Metric<?>> metrics = new ArrayList<>(6);
+        metrics.add(new Metric<>("annotations.jobs.queued", executor.getThreadPoolExecutor().getQueue().size()));
+        metrics.add(new Metric<>("annotations.jobs.running", executor.getActiveCount()));
+        metrics.add(new Metric<>("annotations.jobs.done", done.sum()));
+        metrics.add(new Metric<>("annotations.jobs.failed", failed.sum()));
+        metrics.add(new Metric<>("annotations.jobs.rejected", rejected.sum()));
+        metrics.add(new Metric<>("annotations.jobs.retained", jobs.size()));
+        return metrics;
+    }
+
+    private void run(UserAccount requester, AnnotationJob job) {
+        job.start();
+        try {
+            final AnnotationBatchItem item = batchWriter.write(requester, Collections.singletonList(job.getForm()))
+                    .getItems()
+                    .get(0);
+            if (item.failed()) {
+                job.fail(item.getMessage());
+                failed.increment();
+            } else {
+                job.succeed(item.getId());
+                done.increment();
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.error(String.format("Annotation job %s failed", job.getId()), ex);
+            job.fail(ex.getMessage());
+            failed.increment();
+        }
+    }
+
+    /**
+     * Remove finished jobs older than the retention period
+     */
+    private void purge() {
+        final long expired = System.currentTimeMillis() - retention;
+        jobs.values().removeIf(job -> job.finished() && job.getFinished().getTime() < expired);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.job;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.util.Date;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * Annotation job DTO representation
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"jobId", "status", "submitted", "started", "finished", "message"})
+public final class AnnotationJobResource extends ResourceSupport {
+
+    // content
+    private final String jobId;
+    private final AnnotationJob.Status status;
+    private final Date submitted;
+    private final Date started;
+    private final Date finished;
+    private final String message;
+
+    /**
+     * Constructor
+     *
+     * @param job annotation job
+     */
+    public AnnotationJobResource(AnnotationJob job) {
+        // read status first; fields set before it are then visible
+        this.status = job.getStatus();
+        this.jobId = job.getId();
+        this.submitted = job.getSubmitted();
+        this.started = job.getStarted();
+        this.finished = job.getFinished();
+        this.message = job.getMessage();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param job annotation job
+     * @param links (optional) links to include
+     */
+    public AnnotationJobResource(AnnotationJob job, Link... links) {
+        this(job);
+        this.add(links);
+    }
+
+    /**
+     * Get job id
+     *
+     * @return job id
+     */
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Get status
+     *
+     * @return status
+     */
+    public AnnotationJob.Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Get submission time
+     *
+     * @return submitted
+     */
+    public Date getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Get time the job started running
+     *
+     * @return started
+     */
+    public Date getStarted() {
+        return started;
+    }
+
+    /**
+     * Get time the job finished
+     *
+     * @return finished
+     */
+    public Date getFinished() {
+        return finished;
+    }
+
+    /**
+     * Get failure message
+     *
+     * @return message
+     */
+    public String getMessage() {
+        return message;
+    }
+}
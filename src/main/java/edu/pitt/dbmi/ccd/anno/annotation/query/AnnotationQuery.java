@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.query;
+
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Parsed annotation query
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationQuery {
+
+    private final String text;
+    private final QueryNode root;
+
+    AnnotationQuery(String text, QueryNode root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /**
+     * Get query as written
+     *
+     * @return query text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Get normalized query, fully parenthesized with quoted values
+     *
+     * @return expression
+     */
+    public String getExpression() {
+        return root.toString();
+    }
+
+    /**
+     * Get annotations matching the query
+     *
+     * @return specification
+     */
+    public Specification<Annotation> getSpecification() {
+        return root;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.query;
+
+import edu.pitt.dbmi.ccd.anno.annotation.search.AnnotationIndex;
+import edu.pitt.dbmi.ccd.anno.error.InvalidQueryException;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.hibernate.Query;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.domain.Specifications;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Parses annotation queries and keeps the most recently used ones, so that a
+ * repeated query is parsed once
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationQueryCompiler implements PublicMetrics {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationQueryCompiler.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AnnotationIndex annotationIndex;
+    private final int maxLength;
+    private final Map<String, AnnotationQuery> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired(required = true)
+    public AnnotationQueryCompiler(
+            AnnotationIndex annotationIndex,
+            @Value("${ccd.annotations.query.cache-size:500}") int cacheSize,
+            @Value("${ccd.annotations.query.max-length:2000}") int maxLength) {
+        this.annotationIndex = annotationIndex;
+        this.maxLength = maxLength;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, AnnotationQuery>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AnnotationQuery> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Parse a query, or get it from the cache
+     *
+     * @param text query
+     * @return parsed query
+     * @throws InvalidQueryException if the query is malformed
+     */
+    public AnnotationQuery compile(String text) throws InvalidQueryException {
+        final String key = text.trim();
+        final AnnotationQuery cached = cache.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        if (key.length() > maxLength) {
+            throw new InvalidQueryException(maxLength, "longer than " + maxLength + " characters");
+        }
+        final AnnotationQuery query = new AnnotationQuery(key, new AnnotationQueryParser(key, annotationIndex).parse());
+        cache.put(key, query);
+        return query;
+    }
+
+    /**
+     * Explain how a query is parsed and run
+     *
+     * @param text query
+     * @param specification other annotations restrictions, such as access
+     * @return explanation
+     * @throws InvalidQueryException if the query is malformed
+     */
+    @Transactional(readOnly = true)
+    public AnnotationQueryExplanation explain(String text, Specification<Annotation> specification) throws InvalidQueryException {
+        final boolean cached = cache.containsKey(text.trim());
+        final AnnotationQuery query = compile(text);
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Annotation> criteria = cb.createQuery(Annotation.class);
+        final Root<Annotation> root = criteria.from(Annotation.class);
+        final Predicate predicate = Specifications.where(specification).and(query.getSpecification()).toPredicate(root, criteria, cb);
+        criteria.select(root).where(predicate);
+        final String jpql = entityManager.createQuery(criteria).unwrap(Query.class).getQueryString();
+        return new AnnotationQueryExplanation(query.getText(), query.getExpression(), cached, jpql, toSql(jpql));
+    }
+
+    /**
+     * Translate JPQL to the SQL of the configured dialect
+     *
+     * @return SQL, or null if it cannot be translated
+     */
+    private String toSql(String jpql) {
+        try {
+            final SessionFactoryImplementor factory = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+            final QueryTranslator translator = new ASTQueryTranslatorFactory().createQueryTranslator(jpql, jpql, Collections.emptyMap(), factory, null);
+            translator.compile(Collections.emptyMap(), false);
+            return translator.getSQLString();
+        } catch (RuntimeException ex) {
+            LOGGER.debug("Unable to translate query to SQL", ex);
+            return null;
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("annotations.query.cache.size", cache.size()),
+                new Metric<>("annotations.query.cache.hits", hits.get()),
+                new Metric<>("annotations.query.cache.misses", misses.get()));
+    }
+}
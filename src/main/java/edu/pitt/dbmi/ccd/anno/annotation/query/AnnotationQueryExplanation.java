@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.query;
+
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * Query explanation DTO representation: how a query was parsed and the
+ * statement it runs as
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationQueryExplanation extends ResourceSupport {
+
+    // content
+    private final String query;
+    private final String expression;
+    private final boolean cached;
+    private final String jpql;
+    private final String sql;
+
+    /**
+     * Constructor
+     *
+     * @param query query as written
+     * @param expression normalized query
+     * @param cached true if the parsed query came from the cache
+     * @param jpql JPQL the query is rendered to
+     * @param sql SQL the query is translated to (nullable)
+     */
+    public AnnotationQueryExplanation(String query, String expression, boolean cached, String jpql, String sql) {
+        this.query = query;
+        this.expression = expression;
+        this.cached = cached;
+        this.jpql = jpql;
+        this.sql = sql;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public String getJpql() {
+        return jpql;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.query;
+
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataValue;
+import edu.pitt.dbmi.ccd.anno.annotation.query.QueryNode.Field;
+import edu.pitt.dbmi.ccd.anno.annotation.query.QueryNode.Op;
+import edu.pitt.dbmi.ccd.anno.annotation.search.AnnotationIndex;
+import edu.pitt.dbmi.ccd.anno.error.InvalidQueryException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Parser of the annotation query language.
+ * <pre>
+ * query  := or
+ * or     := and ("OR" and)*
+ * and    := unary (["AND"] unary)*
+ * unary  := "NOT" unary | "(" or ")" | term
+ * term   := field ":" value
+ *         | field op value
+ *         | "attr" ":" name [op value]
+ *         | value
+ * op     := "=" | "!=" | "&gt;" | "&gt;=" | "&lt;" | "&lt;="
+ * value  := word | "quoted string"
+ * </pre> Fields are vocab, user, group, access, target, parent, id,
+ * redacted, created, modified, attr and text. A bare value is a text term.
+ * A word after ":" or an operator may itself contain ':', so date-times
+ * need no quotes: created&gt;2020-01-01T10:00Z.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+final class AnnotationQueryParser {
+
+    private static final int MAX_DEPTH = 32;
+
+    private final String text;
+    private final AnnotationIndex index;
+    private final List<Token> tokens;
+    private int next;
+    private int depth;
+
+    AnnotationQueryParser(String text, AnnotationIndex index) {
+        this.text = text;
+        this.index = index;
+        this.tokens = tokenize(text);
+    }
+
+    /**
+     * Parse the whole query
+     *
+     * @return root node
+     * @throws InvalidQueryException if the query is malformed
+     */
+    QueryNode parse() throws InvalidQueryException {
+        if (tokens.isEmpty()) {
+            throw new InvalidQueryException(0, "empty query");
+        }
+        final QueryNode node = or();
+        if (next < tokens.size()) {
+            throw new InvalidQueryException(peek().position, "unexpected '" + peek().text + "'");
+        }
+        return node;
+    }
+
+    private QueryNode or() {
+        final List<QueryNode> children = new ArrayList<>();
+        children.add(and());
+        while (is(Kind.OR)) {
+            next++;
+            children.add(and());
+        }
+        return (children.size() == 1) ? children.get(0) : new QueryNode.Or(children);
+    }
+
+    private QueryNode and() {
+        final List<QueryNode> children = new ArrayList<>();
+        children.add(unary());
+        while (true) {
+            if (is(Kind.AND)) {
+                next++;
+            } else if (!(is(Kind.WORD) || is(Kind.STRING) || is(Kind.LPAREN) || is(Kind.NOT))) {
+                break;
+            }
+            children.add(unary());
+        }
+        return (children.size() == 1) ? children.get(0) : new QueryNode.And(children);
+    }
+
+    private QueryNode unary() {
+        if (++depth > MAX_DEPTH) {
+            throw new InvalidQueryException(position(), "nested deeper than " + MAX_DEPTH);
+        }
+        try {
+            if (is(Kind.NOT)) {
+                next++;
+                return new QueryNode.Not(unary());
+            }
+            if (is(Kind.LPAREN)) {
+                next++;
+                final QueryNode node = or();
+                expect(Kind.RPAREN, "')'");
+                return node;
+            }
+            return term();
+        } finally {
+            depth--;
+        }
+    }
+
+    private QueryNode term() {
+        final Token first = expect(Kind.WORD, Kind.STRING, "a term");
+        if (first.kind == Kind.STRING || !(is(Kind.COLON) || is(Kind.OP))) {
+            return new QueryNode.Term(Field.TEXT, Op.EQ, null, first.text, null, index);
+        }
+        final Field field = Field.of(first.text);
+        if (field == null) {
+            throw new InvalidQueryException(first.position, "unknown field '" + first.text + "'");
+        }
+        if (is(Kind.COLON)) {
+            next++;
+            final Token value = expect(Kind.WORD, Kind.STRING, "a value");
+            if (field == Field.ATTR) {
+                if (!is(Kind.OP)) {
+                    return new QueryNode.Term(Field.ATTR, Op.EXISTS, value.text, null, null, null);
+                }
+                final Token op = tokens.get(next++);
+                return term(field, value.text, op, expect(Kind.WORD, Kind.STRING, "a value"));
+            }
+            return term(field, null, new Token(Kind.OP, "=", value.position), value);
+        }
+        if (field == Field.ATTR) {
+            throw new InvalidQueryException(first.position, "attr needs an attribute name: attr:\"name\"");
+        }
+        final Token op = tokens.get(next++);
+        return term(field, null, op, expect(Kind.WORD, Kind.STRING, "a value"));
+    }
+
+    /**
+     * Check the operator and parse the value for the field
+     */
+    private QueryNode term(Field field, String attribute, Token opToken, Token value) {
+        final Op op = Op.of(opToken.text);
+        if (op == null) {
+            throw new InvalidQueryException(opToken.position, "unknown operator '" + opToken.text + "'");
+        }
+        Object parsed = null;
+        switch (field) {
+            case TARGET:
+            case ID:
+                parsed = parseLong(value);
+                break;
+            case PARENT:
+                parsed = "none".equalsIgnoreCase(value.text) ? null : parseLong(value);
+                break;
+            case REDACTED:
+                if (!"true".equalsIgnoreCase(value.text) && !"false".equalsIgnoreCase(value.text)) {
+                    throw new InvalidQueryException(value.position, "expected true or false");
+                }
+                parsed = Boolean.valueOf(value.text);
+                break;
+            case CREATED:
+            case MODIFIED:
+                parsed = AnnotationDataValue.parseDate(value.text);
+                if (parsed == null) {
+                    throw new InvalidQueryException(value.position, "expected an ISO-8601 date");
+                }
+                break;
+            case ATTR:
+                if (op.isRange()) {
+                    final Double number = AnnotationDataValue.parseNumber(value.text);
+                    final Date date = (number == null) ? AnnotationDataValue.parseDate(value.text) : null;
+                    if (number == null && date == null) {
+                        throw new InvalidQueryException(value.position, "expected a number or ISO-8601 date");
+                    }
+                    parsed = (number != null) ? number : date;
+                }
+                break;
+            case TEXT:
+                if (op != Op.EQ) {
+                    throw new InvalidQueryException(opToken.position, "text only supports ':'");
+                }
+                break;
+            default:
+                break;
+        }
+        if (op.isRange() && !(field == Field.CREATED || field == Field.MODIFIED || field == Field.ATTR)) {
+            throw new InvalidQueryException(opToken.position, field + " only supports ':', '=' and '!='");
+        }
+        return new QueryNode.Term(field, op, attribute, value.text, parsed, (field == Field.TEXT) ? index : null);
+    }
+
+    private static Long parseLong(Token value) {
+        try {
+            return Long.valueOf(value.text);
+        } catch (NumberFormatException ex) {
+            throw new InvalidQueryException(value.position, "expected an id");
+        }
+    }
+
+    private boolean is(Kind kind) {
+        return next < tokens.size() && tokens.get(next).kind == kind;
+    }
+
+    private Token peek() {
+        return tokens.get(next);
+    }
+
+    private int position() {
+        return (next < tokens.size()) ? peek().position : text.length();
+    }
+
+    private Token expect(Kind kind, String expected) {
+        if (!is(kind)) {
+            throw new InvalidQueryException(position(), "expected " + expected);
+        }
+        return tokens.get(next++);
+    }
+
+    private Token expect(Kind kind, Kind other, String expected) {
+        if (!is(kind) && !is(other)) {
+            throw new InvalidQueryException(position(), "expected " + expected);
+        }
+        return tokens.get(next++);
+    }
+
+    /**
+     * Split the query into tokens
+     */
+    private static List<Token> tokenize(String text) throws InvalidQueryException {
+        final List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            final char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(Kind.LPAREN, "(", i++));
+            } else if (c == ')') {
+                tokens.add(new Token(Kind.RPAREN, ")", i++));
+            } else if (c == ':') {
+                tokens.add(new Token(Kind.COLON, ":", i++));
+            } else if (c == '=' || c == '!' || c == '<' || c == '>') {
+                final int start = i++;
+                if (i < text.length() && text.charAt(i) == '=') {
+                    i++;
+                }
+                tokens.add(new Token(Kind.OP, text.substring(start, i), start));
+            } else if (c == '"') {
+                final int start = i++;
+                final StringBuilder value = new StringBuilder();
+                while (i < text.length() && text.charAt(i) != '"') {
+                    if (text.charAt(i) == '\\' && i + 1 < text.length()) {
+                        i++;
+                    }
+                    value.append(text.charAt(i++));
+                }
+                if (i == text.length()) {
+                    throw new InvalidQueryException(start, "unterminated string");
+                }
+                i++;
+                tokens.add(new Token(Kind.STRING, value.toString(), start));
+            } else {
+                final int start = i;
+                final String delimiters = isValue(tokens) ? "()=!<>\"" : "():=!<>\"";
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i)) && delimiters.indexOf(text.charAt(i)) < 0) {
+                    i++;
+                }
+                final String word = text.substring(start, i);
+                switch (word) {
+                    case "AND":
+                        tokens.add(new Token(Kind.AND, word, start));
+                        break;
+                    case "OR":
+                        tokens.add(new Token(Kind.OR, word, start));
+                        break;
+                    case "NOT":
+                        tokens.add(new Token(Kind.NOT, word, start));
+                        break;
+                    default:
+                        tokens.add(new Token(Kind.WORD, word, start));
+                        break;
+                }
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Next word is the value of a term
+     */
+    private static boolean isValue(List<Token> tokens) {
+        if (tokens.isEmpty()) {
+            return false;
+        }
+        final Kind last = tokens.get(tokens.size() - 1).kind;
+        return last == Kind.COLON || last == Kind.OP;
+    }
+
+    private enum Kind {
+        WORD, STRING, COLON, OP, LPAREN, RPAREN, AND, OR, NOT
+    }
+
+    private static final class Token {
+
+        private final Kind kind;
+        private final String text;
+        private final int position;
+
+        Token(Kind kind, String text, int position) {
+            this.kind = kind;
+            this.text = text;
+            this.position = position;
+        }
+    }
+}
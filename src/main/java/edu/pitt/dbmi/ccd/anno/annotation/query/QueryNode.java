@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.query;
+
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataValue;
+import edu.pitt.dbmi.ccd.anno.annotation.search.AnnotationIndex;
+import edu.pitt.dbmi.ccd.db.entity.Access;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.Attribute;
+import edu.pitt.dbmi.ccd.db.entity.Group;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Node of a parsed annotation query. Every node is the specification it
+ * compiles to, so a parsed query is reused as is for each request.
+ * <p>
+ * Term predicates never evaluate to unknown, so that NOT of a term on a
+ * nullable column also matches annotations where the column is null.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+abstract class QueryNode implements Specification<Annotation> {
+
+    /**
+     * Normalized form of the node
+     *
+     * @return expression
+     */
+    @Override
+    public abstract String toString();
+
+    /**
+     * Fields that can be queried
+     */
+    enum Field {
+        VOCAB, USER, GROUP, ACCESS, TARGET, PARENT, ID, REDACTED, CREATED, MODIFIED, ATTR, TEXT;
+
+        static Field of(String name) {
+            switch (name.toLowerCase()) {
+                case "vocab":
+                case "vocabulary":
+                    return VOCAB;
+                case "user":
+                    return USER;
+                case "group":
+                    return GROUP;
+                case "access":
+                    return ACCESS;
+                case "target":
+                case "dataset":
+                    return TARGET;
+                case "parent":
+                    return PARENT;
+                case "id":
+                    return ID;
+                case "redacted":
+                    return REDACTED;
+                case "created":
+                    return CREATED;
+                case "modified":
+                    return MODIFIED;
+                case "attr":
+                case "attribute":
+                    return ATTR;
+                case "text":
+                    return TEXT;
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Comparison operators
+     */
+    enum Op {
+        EQ("="), NE("!="), GT(">"), GE(">="), LT("<"), LE("<="), EXISTS("");
+
+        private final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+
+        static Op of(String symbol) {
+            return Arrays.stream(values())
+                    .filter(o -> o != EXISTS && o.symbol.equals(symbol))
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        boolean isRange() {
+            return this == GT || this == GE || this == LT || this == LE;
+        }
+
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    }
+
+    /**
+     * All children match
+     */
+    static final class And extends QueryNode {
+
+        private final List<QueryNode> children;
+
+        And(List<QueryNode> children) {
+            this.children = children;
+        }
+
+        @Override
+        public Predicate toPredicate(Root<Annotation> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+            return cb.and(children.stream()
+                    .map(c -> c.toPredicate(root, query, cb))
+                    .toArray(Predicate[]::new));
+        }
+
+        @Override
+        public String toString() {
+            return children.stream()
+                    .map(QueryNode::toString)
+                    .collect(Collectors.joining(" AND ", "(", ")"));
+        }
+    }
+
+    /**
+     * Any child matches
+     */
+    static final class Or extends QueryNode {
+
+        private final List<QueryNode> children;
+
+        Or(List<QueryNode> children) {
+            this.children = children;
+        }
+
+        @Override
+        public Predicate toPredicate(Root<Annotation> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+            return cb.or(children.stream()
+                    .map(c -> c.toPredicate(root, query, cb))
+                    .toArray(Predicate[]::new));
+        }
+
+        @Override
+        public String toString() {
+            return children.stream()
+                    .map(QueryNode::toString)
+                    .collect(Collectors.joining(" OR ", "(", ")"));
+        }
+    }
+
+    /**
+     * Child does not match
+     */
+    static final class Not extends QueryNode {
+
+        private final QueryNode child;
+
+        Not(QueryNode child) {
+            this.child = child;
+        }
+
+        @Override
+        public Predicate toPredicate(Root<Annotation> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+            return cb.not(child.toPredicate(root, query, cb));
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + child;
+        }
+    }
+
+    /**
+     * Comparison of one field. Names are matched through the indexed name
+     * columns of the referenced tables and compared by id, so terms on
+     * different associations can be combined with OR without joins.
+     */
+    static final class Term extends QueryNode {
+
+        private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+        // values written without quotes
+        private static final Pattern WORD = Pattern.compile("(?!(AND|OR|NOT)$)[\\w.+\\-]+");
+
+        private final Field field;
+        private final Op op;
+        private final String attribute;
+        private final String value;
+        private final Object parsed;
+        private final AnnotationIndex index;
+
+        /**
+         * Constructor
+         *
+         * @param field field
+         * @param op operator; EQ, NE or a range operator, or EXISTS for an
+         * attribute without comparison
+         * @param attribute attribute name of an attr term (nullable)
+         * @param value compared value (nullable for EXISTS)
+         * @param parsed value parsed for the field: Long, Boolean, Date,
+         * Double, or null to compare text
+         * @param index full-text index for text terms (nullable)
+         */
+        Term(Field field, Op op, String attribute, String value, Object parsed, AnnotationIndex index) {
+            this.field = field;
+            this.op = op;
+            this.attribute = attribute;
+            this.value = value;
+            this.parsed = parsed;
+            this.index = index;
+        }
+
+        @Override
+        public Predicate toPredicate(Root<Annotation> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+            switch (field) {
+                case VOCAB:
+                    return named(root.get("vocabulary").get("id"), Vocabulary.class, "name", query, cb);
+                case USER:
+                    return named(root.get("user").get("id"), UserAccount.class, "username", query, cb);
+                case GROUP:
+                    return named(root.get("group").get("id"), Group.class, "name", query, cb);
+                case ACCESS:
+                    return named(root.get("access").get("id"), Access.class, "name", query, cb);
+                case TARGET:
+                    return compare(root.get("target").get("id"), cb);
+                case PARENT:
+                    return (parsed == null)
+                            ? negate(cb.isNull(root.get("parent").get("id")), cb)
+                            : compare(root.get("parent").get("id"), cb);
+                case ID:
+                    return compare(root.get("id"), cb);
+                case REDACTED:
+                    return negate(cb.equal(root.get("redacted"), parsed), cb);
+                case CREATED:
+                case MODIFIED:
+                    return compareDate(root.get(field.toString()), (Date) parsed, cb);
+                case ATTR:
+                    return attribute(root, query, cb);
+                case TEXT:
+                    return text(root, query, cb);
+                default:
+                    throw new IllegalStateException(field.toString());
+            }
+        }
+
+        /**
+         * Referenced row has a name
+         */
+        private Predicate named(Path<Long> reference, Class<?> type, String name, CriteriaQuery<?> query, CriteriaBuilder cb) {
+            final Subquery<Long> ids = query.subquery(Long.class);
+            final Root<?> named = ids.from(type);
+            ids.select(named.get("id")).where(cb.equal(named.get(name), value));
+            return negate(cb.and(cb.isNotNull(reference), reference.in(ids)), cb);
+        }
+
+        private Predicate compare(Path<Long> path, CriteriaBuilder cb) {
+            return negate(cb.and(cb.isNotNull(path), cb.equal(path, parsed)), cb);
+        }
+
+        /**
+         * Compare a date; equality with a date without time matches the
+         * whole day
+         */
+        private Predicate compareDate(Path<Date> path, Date date, CriteriaBuilder cb) {
+            final Predicate known = cb.isNotNull(path);
+            switch (op) {
+                case GT:
+                    return cb.and(known, cb.greaterThan(path, date));
+                case GE:
+                    return cb.and(known, cb.greaterThanOrEqualTo(path, date));
+                case LT:
+                    return cb.and(known, cb.lessThan(path, date));
+                case LE:
+                    return cb.and(known, cb.lessThanOrEqualTo(path, date));
+                default:
+                    final Predicate equal = isDay(value)
+                            ? cb.and(known, cb.greaterThanOrEqualTo(path, date), cb.lessThan(path, new Date(date.getTime() + DAY)))
+                            : cb.and(known, cb.equal(path, date));
+                    return negate(equal, cb);
+            }
+        }
+
+        /**
+         * Annotation has data of the attribute; with an equality, with that
+         * value; with a range, with a typed value in range
+         */
+        private Predicate attribute(Root<Annotation> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+            final Subquery<Long> attributes = query.subquery(Long.class);
+            final Root<Attribute> attr = attributes.from(Attribute.class);
+            attributes.select(attr.get("id")).where(cb.equal(attr.get("name"), attribute));
+            if (op.isRange()) {
+                final Subquery<Long> values = query.subquery(Long.class);
+                final Root<AnnotationDataValue> typed = values.from(AnnotationDataValue.class);
+                final Predicate range = (parsed instanceof Double)
+                        ? range(typed.get("numberValue"), (Double) parsed, cb)
+                        : range(typed.get("dateValue"), (Date) parsed, cb);
+                values.select(typed.get("annotationId")).where(typed.get("attributeId").in(attributes), range);
+                return root.get("id").in(values);
+            }
+            final Subquery<Long> data = query.subquery(Long.class);
+            final Root<AnnotationData> d = data.from(AnnotationData.class);
+            data.select(d.get("id"));
+            if (op == Op.EXISTS) {
+                data.where(cb.equal(d.get("annotation"), root), d.get("attribute").get("id").in(attributes));
+                return cb.exists(data);
+            }
+            data.where(cb.equal(d.get("annotation"), root), d.get("attribute").get("id").in(attributes), cb.equal(d.get("value"), value));
+            return negate(cb.exists(data), cb);
+        }
+
+        private <Y extends Comparable<? super Y>> Predicate range(Path<Y> path, Y bound, CriteriaBuilder cb) {
+            switch (op) {
+                case GT:
+                    return cb.greaterThan(path, bound);
+                case GE:
+                    return cb.greaterThanOrEqualTo(path, bound);
+                case LT:
+                    return cb.lessThan(path, bound);
+                default:
+                    return cb.lessThanOrEqualTo(path, bound);
+            }
+        }
+
+        /**
+         * Annotation data contains the text: candidates from the full-text
+         * index when it is available, otherwise a case-insensitive scan
+         */
+        private Predicate text(Root<Annotation> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+            final Specification<Annotation> candidates = (index != null)
+                    ? index.containing(Arrays.asList(value.trim().split("\\s+")), Collections.emptySet())
+                    : null;
+            if (candidates != null) {
+                return candidates.toPredicate(root, query, cb);
+            }
+            final Subquery<Long> data = query.subquery(Long.class);
+            final Root<AnnotationData> d = data.from(AnnotationData.class);
+            data.select(d.get("id"))
+                    .where(cb.equal(d.get("annotation"), root), cb.like(cb.lower(d.get("value")), "%" + value.toLowerCase() + "%"));
+            return cb.exists(data);
+        }
+
+        private Predicate negate(Predicate predicate, CriteriaBuilder cb) {
+            return (op == Op.NE) ? cb.not(predicate) : predicate;
+        }
+
+        private static boolean isDay(String value) {
+            return value.length() == 10;
+        }
+
+        @Override
+        public String toString() {
+            if (field == Field.ATTR) {
+                return field + ":" + quote(attribute) + ((op == Op.EXISTS) ? "" : op + quote(value));
+            }
+            if (field == Field.TEXT) {
+                return field + ":" + quote(value);
+            }
+            return field + op.toString() + quote(value);
+        }
+
+        private static String quote(String s) {
+            if (WORD.matcher(s).matches()) {
+                return s;
+            }
+            return '"' + s.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+        }
+    }
+}
@@ -0,0 +1,552 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.search;
+
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Root;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Full-text index of annotations, stored on local disk.
+ * <p>
+ * Each annotation is one document holding the values of its data, the
+ * names of their attributes and the name of its vocabulary. Searches return
+ * candidate annotation ids only; access, redaction and every other filter
+ * are still applied by the database, which joins the candidates from
+ * {@link AnnotationSearchCandidates} however many there are. The database is
+ * the source of truth: documents are rewritten from it whenever an
+ * annotation changes, and the whole index can be rebuilt from it.
+ * <p>
+ * Writes are searchable once the near-real-time reader is refreshed, right
+ * after each write, and are committed to disk on a schedule rather than one
+ * by one. Writes made after the last commit are lost if the process stops
+ * abruptly; a rebuild restores them.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationIndex implements PublicMetrics {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationIndex.class);
+
+    // document fields
+    private static final String ID = "id";
+    private static final String TEXT = "text";
+
+    // candidates are swept once a minute
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final AnnotationSearchCandidates candidates;
+    private final String directory;
+    private final boolean rebuildOnStartup;
+    private final int batchSize;
+    private final long commitInterval;
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private FSDirectory index;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ThreadPoolTaskScheduler scheduler;
+
+    @Autowired(required = true)
+    public AnnotationIndex(
+            EntityManagerFactory entityManagerFactory,
+            AnnotationSearchCandidates candidates,
+            @Value("${ccd.annotations.index.directory:annotation-index}") String directory,
+            @Value("${ccd.annotations.index.rebuild-on-startup:false}") boolean rebuildOnStartup,
+            @Value("${ccd.annotations.index.batch-size:500}") int batchSize,
+            @Value("${ccd.annotations.index.commit-seconds:5}") long commitSeconds) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.candidates = candidates;
+        this.directory = directory;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.batchSize = Math.max(batchSize, 1);
+        this.commitInterval = TimeUnit.SECONDS.toMillis(Math.max(commitSeconds, 1));
+    }
+
+    /**
+     * Open the index, building it if it is empty or a rebuild was requested,
+     * and start committing it on a schedule
+     */
+    @PostConstruct
+    public void open() {
+        try {
+            index = FSDirectory.open(Paths.get(directory));
+            writer = new IndexWriter(index, new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+            searcherManager = new SearcherManager(writer, null);
+        } catch (IOException ex) {
+            LOGGER.error(String.format("Unable to open annotation index in %s; searching the database instead", directory), ex);
+            close();
+            return;
+        }
+        if (rebuildOnStartup || size() == 0) {
+            rebuild();
+        }
+        final long now = System.currentTimeMillis();
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("annotation-index-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::commit, new Date(now + commitInterval), commitInterval);
+        scheduler.scheduleWithFixedDelay(candidates::sweep, new Date(now + SWEEP_INTERVAL), SWEEP_INTERVAL);
+    }
+
+    /**
+     * Close the index, committing pending writes
+     */
+    @PreDestroy
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+            if (index != null) {
+                index.close();
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Unable to close annotation index", ex);
+        } finally {
+            searcherManager = null;
+            writer = null;
+            index = null;
+        }
+    }
+
+    /**
+     * @return whether the index is open and can be searched
+     */
+    public boolean isAvailable() {
+        return searcherManager != null;
+    }
+
+    /**
+     * Rewrite the documents of annotations from the database. Inside a
+     * transaction, the index is updated once the transaction has committed.
+     *
+     * @param ids annotation ids
+     */
+    public void update(Collection<Long> ids) {
+        if (!isAvailable() || ids.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            final List<Long> pending = new ArrayList<>(ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    write(pending);
+                }
+            });
+        } else {
+            write(new ArrayList<>(ids));
+        }
+    }
+
+    /**
+     * Rebuild the whole index from the database
+     *
+     * @return number of annotations indexed
+     */
+    public synchronized long rebuild() {
+        if (!isAvailable()) {
+            return 0;
+        }
+        final long start = System.currentTimeMillis();
+        long count = 0;
+        try {
+            writer.deleteAll();
+            Long last = null;
+            List<Long> ids;
+            do {
+                ids = nextIds(last);
+                if (!ids.isEmpty()) {
+                    // updated rather than added, in case a concurrent write got there first
+                    for (Map.Entry<Long, Document> document : documents(ids).entrySet()) {
+                        writer.updateDocument(new Term(ID, document.getKey().toString()), document.getValue());
+                    }
+                    count += ids.size();
+                    last = ids.get(ids.size() - 1);
+                }
+            } while (ids.size() == batchSize);
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        LOGGER.info(String.format("Annotation index rebuilt: %d annotations in %d ms", count, System.currentTimeMillis() - start));
+        return count;
+    }
+
+    /**
+     * Annotations whose text contains every term and none of the negated
+     * terms, joined from the stored candidates of the search. Terms match
+     * words of data values, attribute names and the vocabulary name by
+     * prefix, ignoring case, however many annotations match.
+     *
+     * @param terms search terms (nullable)
+     * @param nots negated search terms (nullable)
+     * @return specification, or null if there are no terms or the index is
+     * not available
+     */
+    public Specification<Annotation> containing(Collection<String> terms, Collection<String> nots) {
+        if (!isAvailable()) {
+            return null;
+        }
+        final Collection<String> excluded = (nots == null) ? Collections.emptySet() : nots;
+        if (terms != null && !terms.isEmpty()) {
+            final String searchId = store(all(terms, excluded));
+            return (root, query, cb) -> AnnotationSearchCandidates.contains(searchId, root, query, cb);
+        }
+        if (!excluded.isEmpty()) {
+            final String searchId = store(any(excluded));
+            return (root, query, cb) -> cb.not(AnnotationSearchCandidates.contains(searchId, root, query, cb));
+        }
+        return null;
+    }
+
+    /**
+     * Find annotations whose text contains every term and none of the
+     * negated terms
+     *
+     * @param terms search terms
+     * @param nots negated search terms
+     * @return ids of matching annotations
+     */
+    public Set<Long> search(Collection<String> terms, Collection<String> nots) {
+        return search(all(terms, nots));
+    }
+
+    /**
+     * Find annotations whose text contains any of the terms
+     *
+     * @param terms search terms
+     * @return ids of matching annotations
+     */
+    public Set<Long> searchAny(Collection<String> terms) {
+        return search(any(terms));
+    }
+
+    /**
+     * @return number of indexed annotations
+     */
+    public int size() {
+        if (!isAvailable()) {
+            return 0;
+        }
+        try {
+            final IndexSearcher searcher = searcherManager.acquire();
+            try {
+                return searcher.getIndexReader().numDocs();
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Collections.singletonList(new Metric<>("annotations.index.documents", size()));
+    }
+
+    /**
+     * Rewrite documents and make them searchable. The writer is safe for
+     * concurrent use; the writes are committed on the schedule.
+     */
+    private void write(List<Long> ids) {
+        try {
+            final Map<Long, Document> documents = documents(ids);
+            for (Long id : ids) {
+                final Term term = new Term(ID, id.toString());
+                final Document document = documents.get(id);
+                if (document == null) {
+                    writer.deleteDocuments(term);
+                } else {
+                    writer.updateDocument(term, document);
+                }
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException ex) {
+            // the database write has already succeeded; a rebuild restores the index
+            LOGGER.error(String.format("Unable to index annotations %s", ids), ex);
+        }
+    }
+
+    /**
+     * Commit writes made since the last commit, and refresh the reader in
+     * case a refresh after a write was skipped while another was running
+     */
+    private void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException ex) {
+            LOGGER.error("Unable to commit annotation index", ex);
+        }
+    }
+
+    private Query all(Collection<String> terms, Collection<String> nots) {
+        final BooleanQuery.Builder query = new BooleanQuery.Builder();
+        final List<Query> required = toQueries(terms);
+        if (required.isEmpty()) {
+            query.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        }
+        required.forEach(q -> query.add(q, BooleanClause.Occur.MUST));
+        toQueries(nots).forEach(q -> query.add(q, BooleanClause.Occur.MUST_NOT));
+        return query.build();
+    }
+
+    private Query any(Collection<String> terms) {
+        final BooleanQuery.Builder query = new BooleanQuery.Builder();
+        toQueries(terms).forEach(q -> query.add(q, BooleanClause.Occur.SHOULD));
+        return query.build();
+    }
+
+    /**
+     * Match terms against word prefixes. A term the analyzer splits into
+     * several words must match all of them; a term without words is
+     * ignored.
+     */
+    private List<Query> toQueries(Collection<String> terms) {
+        return terms.stream()
+                .map(this::toQuery)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private Query toQuery(String term) {
+        final List<String> words = new ArrayList<>();
+        try (TokenStream tokens = analyzer.tokenStream(TEXT, term)) {
+            final CharTermAttribute word = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                words.add(word.toString());
+            }
+            tokens.end();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (words.isEmpty()) {
+            return null;
+        }
+        if (words.size() == 1) {
+            return new PrefixQuery(new Term(TEXT, words.get(0)));
+        }
+        final BooleanQuery.Builder query = new BooleanQuery.Builder();
+        words.forEach(w -> query.add(new PrefixQuery(new Term(TEXT, w)), BooleanClause.Occur.MUST));
+        return query.build();
+    }
+
+    private Set<Long> search(Query query) {
+        try {
+            final IndexSearcher searcher = searcherManager.acquire();
+            try {
+                return collect(searcher, query);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Store the matches of a query as candidates, keyed by the query and
+     * the version of the reader searched, so a search is stored again only
+     * once the index has changed
+     */
+    private String store(Query query) {
+        try {
+            final IndexSearcher searcher = searcherManager.acquire();
+            try {
+                final long version = ((DirectoryReader) searcher.getIndexReader()).getVersion();
+                return candidates.store(query + "@" + version, () -> collect(searcher, query));
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static Set<Long> collect(IndexSearcher searcher, Query query) {
+        final Set<Long> ids = new HashSet<>();
+        try {
+            searcher.search(query, new SimpleCollector() {
+                private NumericDocValues values;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    values = DocValues.getNumeric(context.reader(), ID);
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    if (values.advanceExact(doc)) {
+                        ids.add(values.longValue());
+                    }
+                }
+
+                @Override
+                public ScoreMode scoreMode() {
+                    return ScoreMode.COMPLETE_NO_SCORES;
+                }
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return ids;
+    }
+
+    /**
+     * Ids of the next batch of annotations, in id order
+     */
+    private List<Long> nextIds(Long after) {
+        final EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+            final Root<Annotation> root = query.from(Annotation.class);
+            query.select(root.get(ID)).orderBy(cb.asc(root.get(ID)));
+            if (after != null) {
+                query.where(cb.greaterThan(root.get(ID), after));
+            }
+            return entityManager.createQuery(query)
+                    .setMaxResults(batchSize)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Documents of annotations, loaded in two queries
+     */
+    private Map<Long, Document> documents(List<Long> ids) {
+        final EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            final CriteriaQuery<Annotation> annotationQuery = cb.createQuery(Annotation.class);
+            final Root<Annotation> annotation = annotationQuery.from(Annotation.class);
+            annotation.fetch("vocabulary");
+            annotationQuery.select(annotation).where(annotation.get(ID).in(ids));
+            final List<Annotation> annotations = entityManager.createQuery(annotationQuery).getResultList();
+
+            final CriteriaQuery<AnnotationData> dataQuery = cb.createQuery(AnnotationData.class);
+            final Root<AnnotationData> data = dataQuery.from(AnnotationData.class);
+            data.fetch("attribute", JoinType.LEFT);
+            dataQuery.select(data).where(data.get("annotation").get(ID).in(ids));
+            final Map<Long, List<AnnotationData>> dataByAnnotation = entityManager.createQuery(dataQuery)
+                    .getResultList()
+                    .stream()
+                    .collect(Collectors.groupingBy(d -> d.getAnnotation().getId()));
+
+            return annotations.stream()
+                    .collect(Collectors.toMap(Annotation::getId, a -> toDocument(a, dataByAnnotation.getOrDefault(a.getId(), Collections.emptyList()))));
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static Document toDocument(Annotation annotation, List<AnnotationData> data) {
+        final Document document = new Document();
+        document.add(new StringField(ID, annotation.getId().toString(), Field.Store.NO));
+        document.add(new NumericDocValuesField(ID, annotation.getId()));
+        document.add(new TextField(TEXT, annotation.getVocabulary().getName(), Field.Store.NO));
+        data.forEach(d -> {
+            if (d.getValue() != null) {
+                document.add(new TextField(TEXT, d.getValue(), Field.Store.NO));
+            }
+            if (d.getAttribute() != null && d.getAttribute().getName() != null) {
+                document.add(new TextField(TEXT, d.getAttribute().getName(), Field.Store.NO));
+            }
+        });
+        return document;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.search;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Objects;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * Annotation matched by a full-text search.
+ * <p>
+ * Index searches store the ids they match under a search id, and the
+ * database joins them through the primary key, so a search matching any
+ * number of annotations is filtered, counted and paged without passing its
+ * ids in the statement. Rows are removed once they are older than the
+ * retention period.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Entity
+@IdClass(AnnotationSearchCandidate.Key.class)
+@Table(name = "annotation_search_candidate", indexes = {
+    @Index(name = "idx_search_candidate_created", columnList = "created")
+})
+public class AnnotationSearchCandidate implements Serializable {
+
+    private static final long serialVersionUID = 7264019385518230472L;
+
+    @Id
+    @Column(name = "search_id", length = 36)
+    private String searchId;
+
+    @Id
+    @Column(name = "annotation_id")
+    private Long annotationId;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "created", nullable = false)
+    private Date created;
+
+    protected AnnotationSearchCandidate() {
+    }
+
+    public AnnotationSearchCandidate(String searchId, Long annotationId, Date created) {
+        this.searchId = searchId;
+        this.annotationId = annotationId;
+        this.created = created;
+    }
+
+    public String getSearchId() {
+        return searchId;
+    }
+
+    public Long getAnnotationId() {
+        return annotationId;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    /**
+     * Primary key: search id and annotation id
+     */
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1840563729016285347L;
+
+        private String searchId;
+        private Long annotationId;
+
+        public Key() {
+        }
+
+        public Key(String searchId, Long annotationId) {
+            this.searchId = searchId;
+            this.annotationId = annotationId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Objects.equals(searchId, other.searchId) && Objects.equals(annotationId, other.annotationId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(searchId, annotationId);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.search;
+
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores the annotations matched by index searches, for the database to
+ * join.
+ * <p>
+ * Each search is stored once per index generation and reused while it is
+ * younger than half the retention period, so a listing, its count, its
+ * facets and the following pages share one set of rows. Rows older than the
+ * retention period are swept.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationSearchCandidates {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationSearchCandidates.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final int batchSize;
+    private final long retention;
+    private final Map<String, Stored> stored;
+
+    @Autowired(required = true)
+    public AnnotationSearchCandidates(
+            EntityManagerFactory entityManagerFactory,
+            @Value("${ccd.annotations.index.batch-size:500}") int batchSize,
+            @Value("${ccd.annotations.index.candidate-cache-size:100}") int cacheSize,
+            @Value("${ccd.annotations.index.candidate-retention-minutes:10}") long retentionMinutes) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.batchSize = Math.max(batchSize, 1);
+        this.retention = TimeUnit.MINUTES.toMillis(Math.max(retentionMinutes, 1));
+        this.stored = Collections.synchronizedMap(new LinkedHashMap<String, Stored>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Stored> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Store the annotations matched by a search, unless the same search was
+     * stored recently
+     *
+     * @param key search and index generation
+     * @param ids matching annotation ids, computed only if the search is
+     * stored
+     * @return search id
+     */
+    public String store(String key, Supplier<Collection<Long>> ids) {
+        final long now = System.currentTimeMillis();
+        final Stored previous = stored.get(key);
+        if (previous != null && now - previous.created < retention / 2) {
+            return previous.searchId;
+        }
+        final String searchId = UUID.randomUUID().toString();
+        insert(searchId, ids.get(), new Date(now));
+        stored.put(key, new Stored(searchId, now));
+        return searchId;
+    }
+
+    /**
+     * Annotation is one of those stored for a search
+     *
+     * @param searchId search id
+     * @param root annotation root
+     * @param query query
+     * @param cb criteria builder
+     * @return predicate
+     */
+    public static Predicate contains(String searchId, Root<Annotation> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        final Subquery<Long> candidates = query.subquery(Long.class);
+        final Root<AnnotationSearchCandidate> candidate = candidates.from(AnnotationSearchCandidate.class);
+        candidates.select(candidate.get("annotationId"))
+                .where(cb.equal(candidate.get("searchId"), searchId));
+        return root.get("id").in(candidates);
+    }
+
+    /**
+     * Remove rows older than the retention period
+     *
+     * @return number of rows removed
+     */
+    public int sweep() {
+        final Date before = new Date(System.currentTimeMillis() - retention);
+        final EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            final int removed = entityManager.createQuery("DELETE FROM AnnotationSearchCandidate c WHERE c.created < :before")
+                    .setParameter("before", before)
+                    .executeUpdate();
+            entityManager.getTransaction().commit();
+            if (removed > 0) {
+                LOGGER.debug(String.format("Swept %d annotation search candidates", removed));
+            }
+            return removed;
+        } finally {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Insert rows in one transaction, flushed in batches
+     */
+    private void insert(String searchId, Collection<Long> ids, Date created) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        final EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            int pending = 0;
+            for (Long id : ids) {
+                entityManager.persist(new AnnotationSearchCandidate(searchId, id, created));
+                if (++pending == batchSize) {
+                    entityManager.flush();
+                    entityManager.clear();
+                    pending = 0;
+                }
+            }
+            entityManager.getTransaction().commit();
+        } finally {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    private static class Stored {
+
+        private final String searchId;
+        private final long created;
+
+        private Stored(String searchId, long created) {
+            this.searchId = searchId;
+            this.created = created;
+        }
+    }
+}
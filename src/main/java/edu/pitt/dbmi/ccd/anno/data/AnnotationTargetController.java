@@ -18,11 +18,16 @@
  */
 package edu.pitt.dbmi.ccd.anno.data;
 
+import static edu.pitt.dbmi.ccd.anno.data.AnnotationTargetSpecifications.filter;
 import edu.pitt.dbmi.ccd.anno.error.AnnotationTargetNotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.ForbiddenException;
 import edu.pitt.dbmi.ccd.anno.error.NotFoundException;
 import static edu.pitt.dbmi.ccd.anno.util.ControllerUtils.formatParam;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.anno.util.SliceLoader;
 import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
 import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import edu.pitt.dbmi.ccd.db.entity.UserRole;
 import edu.pitt.dbmi.ccd.db.service.AnnotationTargetService;
 import edu.pitt.dbmi.ccd.security.userDetails.UserAccountDetails;
 import java.util.HashSet;
@@ -34,8 +39,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.hateoas.ExposesResourceFor;
 import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.Resources;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -66,6 +73,8 @@ public class AnnotationTargetController {
     private final AnnotationTargetService annotationTargetService;
     private final AnnotationTargetResourceAssembler assembler;
     private final AnnotationTargetPagedResourcesAssembler pageAssembler;
+    private final SliceLoader sliceLoader;
+    private final AnnotationTargetSummaries summaries;
 
     @Autowired(required = true)
     public AnnotationTargetController(
@@ -73,12 +82,16 @@ public class AnnotationTargetController {
             AnnotationTargetLinks annotationTargetLinks,
             AnnotationTargetService annotationTargetService,
             AnnotationTargetResourceAssembler assembler,
-            AnnotationTargetPagedResourcesAssembler pageAssembler) {
+            AnnotationTargetPagedResourcesAssembler pageAssembler,
+            SliceLoader sliceLoader,
+            AnnotationTargetSummaries summaries) {
         this.request = request;
         this.annotationTargetLinks = annotationTargetLinks;
         this.annotationTargetService = annotationTargetService;
         this.assembler = assembler;
         this.pageAssembler = pageAssembler;
+        this.sliceLoader = sliceLoader;
+        this.summaries = summaries;
     }
 
     /* GET requests */
@@ -87,15 +100,26 @@ public class AnnotationTargetController {
      *
      * @param username AnnotationTargeter (nullable)
      * @param type AnnotationTarget type (nullable)
+     * @param count false to skip counting the AnnotationTargets
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
      * @param pageable page request
      * @return page of AnnotationTargets
      */
     @RequestMapping(method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public PagedResources<AnnotationTargetResource> AnnotationTargets(@RequestParam(value = "user", required = false) String username, @RequestParam(value = "type", required = false) String type, Pageable pageable) {
-        final Page<AnnotationTarget> page = annotationTargetService.filter(username, type, pageable);
-        final PagedResources<AnnotationTargetResource> pagedResources = pageAssembler.toResource(page, assembler, request);
+    public Resources<AnnotationTargetResource> AnnotationTargets(
+            @RequestParam(value = "user", required = false) String username,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "count", required = false, defaultValue = "true") boolean count,
+            @RequestParam(value = Fields.PARAM, required = false) String fields,
+            Pageable pageable) {
+        final Fields selected = Fields.parse(fields, AnnotationTargetResource.FIELDS);
+        final Slice<AnnotationTarget> page = count
+                ? annotationTargetService.filter(username, type, pageable)
+                : sliceLoader.findSlice(AnnotationTarget.class, filter(username, type), pageable);
+        final Resources<AnnotationTargetResource> pagedResources = pageAssembler.toResources(page, t -> assembler.toResource(t, selected), request);
         pagedResources.add(annotationTargetLinks.search());
         return pagedResources;
     }
@@ -104,17 +128,48 @@ public class AnnotationTargetController {
      * Get single AnnotationTarget
      *
      * @param id AnnotationTarget id
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
      * @return AnnotationTarget
      */
     @RequestMapping(value = AnnotationTargetLinks.DATA, method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public AnnotationTargetResource AnnotationTarget(@PathVariable Long id) throws NotFoundException {
+    public AnnotationTargetResource AnnotationTarget(@PathVariable Long id, @RequestParam(value = Fields.PARAM, required = false) String fields) throws NotFoundException {
+        final Fields selected = Fields.parse(fields, AnnotationTargetResource.FIELDS);
         final AnnotationTarget annotationTarget = annotationTargetService.findById(id);
         if (annotationTarget == null) {
             throw new AnnotationTargetNotFoundException(id);
         }
-        final AnnotationTargetResource resource = assembler.toResource(annotationTarget);
+        final AnnotationTargetResource resource = assembler.toResource(annotationTarget, selected);
+        return resource;
+    }
+
+    /**
+     * Get numbers of annotations on an AnnotationTarget by vocabulary,
+     * attribute, user and access (if owner of the AnnotationTarget or ADMIN).
+     * Counts include private and group annotations.
+     *
+     * @param principal requester
+     * @param id AnnotationTarget id
+     * @return summary
+     */
+    @RequestMapping(value = AnnotationTargetLinks.SUMMARY, method = RequestMethod.GET)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public AnnotationTargetSummaryResource summary(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id) throws NotFoundException, ForbiddenException {
+        final UserAccount requester = principal.getUserAccount();
+        final AnnotationTarget annotationTarget = annotationTargetService.findById(id);
+        if (annotationTarget == null) {
+            throw new AnnotationTargetNotFoundException(id);
+        }
+        final boolean owner = annotationTarget.getUser() != null && annotationTarget.getUser().getId().equals(requester.getId());
+        if (!owner && !isAdmin(requester)) {
+            throw new ForbiddenException(requester, request);
+        }
+        final AnnotationTargetSummaryResource resource = new AnnotationTargetSummaryResource(summaries.find(id));
+        resource.add(annotationTargetLinks.summary(annotationTarget).withSelfRel());
+        resource.add(annotationTargetLinks.target(annotationTarget));
         return resource;
     }
 
@@ -125,6 +180,8 @@ public class AnnotationTargetController {
      * @param type AnnotationTarget type (nullable)
      * @param query search terms (nullable)
      * @param not negated search terms (nullable)
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
      * @param pageable page request
      * @return page of AnnotationTargets matching parameters
      */
@@ -136,7 +193,9 @@ public class AnnotationTargetController {
             @RequestParam(value = "type", required = false) String type,
             @RequestParam(value = "query", required = false) String query,
             @RequestParam(value = "not", required = false) String not,
+            @RequestParam(value = Fields.PARAM, required = false) String fields,
             Pageable pageable) {
+        final Fields selected = Fields.parse(fields, AnnotationTargetResource.FIELDS);
         final Set<String> matches = (query != null)
                 ? new HashSet<>(formatParam(query))
                 : null;
@@ -144,7 +203,7 @@ public class AnnotationTargetController {
                 ? new HashSet<>(formatParam(not))
                 : null;
         final Page<AnnotationTarget> page = annotationTargetService.search(username, type, matches, nots, pageable);
-        final PagedResources<AnnotationTargetResource> pagedResources = pageAssembler.toResource(page, assembler, request);
+        final PagedResources<AnnotationTargetResource> pagedResources = pageAssembler.toResource(page, t -> assembler.toResource(t, selected), request);
         return pagedResources;
     }
 
@@ -167,6 +226,34 @@ public class AnnotationTargetController {
         return resource;
     }
 
+    /**
+     * Recompute the annotation summary of an AnnotationTarget (if ADMIN)
+     *
+     * @param principal requester
+     * @param id AnnotationTarget id
+     * @return summary
+     */
+    @RequestMapping(value = AnnotationTargetLinks.SUMMARY_REBUILD, method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public AnnotationTargetSummaryResource rebuildSummary(@AuthenticationPrincipal UserAccountDetails principal, @PathVariable Long id) throws NotFoundException, ForbiddenException {
+        final UserAccount requester = principal.getUserAccount();
+        if (!isAdmin(requester)) {
+            throw new ForbiddenException(requester, request);
+        }
+        if (annotationTargetService.findById(id) == null) {
+            throw new AnnotationTargetNotFoundException(id);
+        }
+        summaries.rebuild(id);
+        return summary(principal, id);
+    }
+
+    private static boolean isAdmin(UserAccount user) {
+        return user.getUserRoles().stream()
+                .map(UserRole::getName)
+                .anyMatch(r -> r.equalsIgnoreCase("ADMIN"));
+    }
+
 //    @RequestMapping(method=RequestMethod.DELETE)
 //    @ResponseStatus(HttpStatus.NO_CONTENT)
 //    @ResponseBody
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.data;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Number of unredacted annotations on a target that share a vocabulary,
+ * attribute, user or access level. Kept up to date as annotations are
+ * created, edited and redacted.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Entity
+@Table(name = "annotation_target_count",
+        uniqueConstraints = @UniqueConstraint(name = "uk_target_count", columnNames = {"target_id", "dimension", "name"}),
+        indexes = @Index(name = "idx_target_count_target", columnList = "target_id"))
+public class AnnotationTargetCount implements Serializable {
+
+    private static final long serialVersionUID = 5820147396215840736L;
+
+    /**
+     * What annotations are counted by
+     */
+    public enum Dimension {
+        VOCABULARY, ATTRIBUTE, USER, ACCESS
+    }
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @Column(name = "target_id", nullable = false)
+    private Long targetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "dimension", nullable = false, length = 16)
+    private Dimension dimension;
+
+    @Column(name = "name", nullable = false)
+    private String name;
+
+    @Column(name = "annotations", nullable = false)
+    private long annotations;
+
+    protected AnnotationTargetCount() {
+    }
+
+    public AnnotationTargetCount(Long targetId, Dimension dimension, String name, long annotations) {
+        this.targetId = targetId;
+        this.dimension = dimension;
+        this.name = name;
+        this.annotations = annotations;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getTargetId() {
+        return targetId;
+    }
+
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getAnnotations() {
+        return annotations;
+    }
+}
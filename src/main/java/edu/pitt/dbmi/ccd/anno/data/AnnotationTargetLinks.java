@@ -40,12 +40,15 @@ public class AnnotationTargetLinks implements ResourceLinks {
     public static final String INDEX = "/data";
     public static final String DATA = "/{id}";
     public static final String ANNOTATIONS = "/{id}/annotations";
+    public static final String SUMMARY = "/{id}/summary";
+    public static final String SUMMARY_REBUILD = "/{id}/summary/rebuild";
 
     // targets rels
     private final String REL_UPLOAD;
     private final String REL_UPLOADS;
     private final String REL_ANNOS = "annotations";
     private final String REL_USER = "user";
+    private final String REL_SUMMARY = "summary";
 
     // query parameters
     // filter
@@ -74,7 +77,7 @@ public class AnnotationTargetLinks implements ResourceLinks {
      * @return link to collection
      */
     public Link targets() {
-        String template = toTemplate(entityLinks.linkFor(AnnotationTargetResource.class).toString(), USER, TYPE, PAGEABLE);
+        String template = toTemplate(entityLinks.linkFor(AnnotationTargetResource.class).toString(), USER, TYPE, COUNT, PAGEABLE);
         return new Link(template, REL_UPLOADS);
     }
 
@@ -108,4 +111,13 @@ public class AnnotationTargetLinks implements ResourceLinks {
         return new Link(template, REL_ANNOS);
     }
 
+    /**
+     * Get link to target's annotation summary
+     *
+     * @return link to summary
+     */
+    public Link summary(AnnotationTarget target) {
+        return entityLinks.linkFor(AnnotationTargetResource.class).slash(target.getId()).slash(REL_SUMMARY).withRel(REL_SUMMARY);
+    }
+
 }
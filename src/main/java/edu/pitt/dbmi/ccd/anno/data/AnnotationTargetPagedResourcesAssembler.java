@@ -19,13 +19,17 @@
 package edu.pitt.dbmi.ccd.anno.data;
 
 import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
+import java.util.List;
+import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.ResourceAssembler;
+import org.springframework.hateoas.Resources;
 import org.springframework.stereotype.Component;
 
 /**
@@ -61,4 +65,27 @@ public class AnnotationTargetPagedResourcesAssembler extends PagedResourcesAssem
         final Link self = annotationTargetLinks.getRequestLink(request);
         return this.toResource(page, assembler, self);
     }
+
+    /**
+     * Create Resources of target resources, without page metadata when the
+     * entities were not counted
+     *
+     * @param slice page or uncounted slice of entities
+     * @param assembler resource assembler
+     * @param request request data
+     * @return target resources with self and, for slices, next and previous
+     * links
+     */
+    public Resources<AnnotationTargetResource> toResources(Slice<AnnotationTarget> slice, ResourceAssembler<AnnotationTarget, AnnotationTargetResource> assembler, HttpServletRequest request) {
+        if (slice instanceof Page) {
+            return toResource((Page<AnnotationTarget>) slice, assembler, request);
+        }
+        final List<AnnotationTargetResource> content = slice.getContent()
+                .stream()
+                .map(assembler::toResource)
+                .collect(Collectors.toList());
+        final Resources<AnnotationTargetResource> resources = new Resources<>(content, annotationTargetLinks.getRequestLink(request));
+        resources.add(annotationTargetLinks.getSliceLinks(slice, request));
+        return resources;
+    }
 }
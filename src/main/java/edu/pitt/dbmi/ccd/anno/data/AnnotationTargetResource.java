@@ -22,8 +22,11 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.anno.util.SparseResource;
 import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
 import java.util.Date;
+import java.util.Set;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.hateoas.core.Relation;
@@ -35,7 +38,10 @@ import org.springframework.hateoas.core.Relation;
  */
 @Relation(value = "dataset", collectionRelation = "datasets")
 @JsonPropertyOrder({"id"})
-public final class AnnotationTargetResource extends ResourceSupport {
+public final class AnnotationTargetResource extends ResourceSupport implements SparseResource {
+
+    // fields
+    public static final Set<String> FIELDS = Fields.of("created", "modified", "user", "type", "title", "file", "address", Fields.LINKS);
 
     // types
     private static final String FILE = "file";
@@ -50,6 +56,7 @@ public final class AnnotationTargetResource extends ResourceSupport {
     private final String title;
     private final String file;
     private final String address;
+    private final boolean sparse;
 
     /**
      * Empty constructor
@@ -57,6 +64,7 @@ public final class AnnotationTargetResource extends ResourceSupport {
      * @return AnnotationTargetResource with empty variables
      */
     protected AnnotationTargetResource() {
+        this.sparse = false;
         this.id = null;
         this.created = null;
         this.modified = null;
@@ -73,20 +81,26 @@ public final class AnnotationTargetResource extends ResourceSupport {
      * @param target content
      */
     public AnnotationTargetResource(AnnotationTarget target) {
+        this(target, Fields.all());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param target content
+     * @param fields fields to include; others are left null
+     */
+    public AnnotationTargetResource(AnnotationTarget target, Fields fields) {
+        this.sparse = !fields.isAll();
         this.id = target.getId();
-        this.created = target.getCreated();
-        this.modified = target.getModified();
-        this.user = target.getUser().getUsername();
-        this.title = target.getTitle();
-        if (target.getFile() != null) {
-            this.type = FILE;
-            this.file = target.getFile().getName();
-            this.address = null;
-        } else {
-            this.type = URL;
-            this.file = null;
-            this.address = target.getAddress();
-        }
+        this.created = fields.includes("created") ? target.getCreated() : null;
+        this.modified = fields.includes("modified") ? target.getModified() : null;
+        this.user = fields.includes("user") ? target.getUser().getUsername() : null;
+        this.title = fields.includes("title") ? target.getTitle() : null;
+        final boolean isFile = target.getFile() != null;
+        this.type = fields.includes("type") ? (isFile ? FILE : URL) : null;
+        this.file = (isFile && fields.includes("file")) ? target.getFile().getName() : null;
+        this.address = (!isFile && fields.includes("address")) ? target.getAddress() : null;
     }
 
     /**
@@ -174,4 +188,9 @@ public final class AnnotationTargetResource extends ResourceSupport {
     public String getAddress() {
         return address;
     }
+
+    @Override
+    public boolean omitsNull(String property) {
+        return sparse;
+    }
 }
@@ -19,12 +19,14 @@
 package edu.pitt.dbmi.ccd.anno.data;
 
 import edu.pitt.dbmi.ccd.anno.user.UserLinks;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
 import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
@@ -55,10 +57,26 @@ public class AnnotationTargetResourceAssembler extends ResourceAssemblerSupport<
      */
     @Override
     public AnnotationTargetResource toResource(AnnotationTarget target) throws IllegalArgumentException {
+        return toResource(target, Fields.all());
+    }
+
+    /**
+     * convert AnnotationTarget to AnnotationTargetResource with only the
+     * requested fields
+     *
+     * @param target entity
+     * @param fields fields to include
+     * @return resource
+     */
+    public AnnotationTargetResource toResource(AnnotationTarget target, Fields fields) throws IllegalArgumentException {
         Assert.notNull(target);
-        AnnotationTargetResource resource = createResourceWithId(target.getId(), target);
-        resource.add(userLinks.user(target.getUser()));
-        resource.add(annotationTargetLinks.annotations(target));
+        AnnotationTargetResource resource = new AnnotationTargetResource(target, fields);
+        resource.add(linkTo(AnnotationTargetController.class).slash(target.getId()).withSelfRel());
+        if (fields.includes(Fields.LINKS)) {
+            resource.add(userLinks.user(target.getUser()));
+            resource.add(annotationTargetLinks.annotations(target));
+            resource.add(annotationTargetLinks.summary(target));
+        }
         return resource;
     }
 
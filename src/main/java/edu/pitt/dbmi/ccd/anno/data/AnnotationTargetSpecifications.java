@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.data;
+
+import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+import static org.springframework.util.StringUtils.isEmpty;
+
+/**
+ * Criteria predicates for querying annotation targets directly
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public abstract class AnnotationTargetSpecifications {
+
+    public static final String FILE = "file";
+    public static final String URL = "url";
+
+    /**
+     * Annotation targets matching filter parameters
+     *
+     * @param username owner username (nullable)
+     * @param type target type, either file or url (nullable)
+     * @return specification
+     */
+    public static Specification<AnnotationTarget> filter(String username, String type) {
+        return (root, query, cb) -> {
+            final List<Predicate> predicates = new ArrayList<>();
+            if (!isEmpty(username)) {
+                predicates.add(cb.equal(root.get("user").get("username"), username));
+            }
+            if (FILE.equalsIgnoreCase(type)) {
+                predicates.add(cb.isNotNull(root.get("file")));
+            } else if (URL.equalsIgnoreCase(type)) {
+                predicates.add(cb.isNotNull(root.get("address")));
+            }
+            return predicates.isEmpty() ? null : cb.and(predicates.toArray(new Predicate[predicates.size()]));
+        };
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.data;
+
+import edu.pitt.dbmi.ccd.anno.data.AnnotationTargetCount.Dimension;
+import edu.pitt.dbmi.ccd.db.entity.Access;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.Attribute;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Maintains per-target annotation counts.
+ * <p>
+ * Counts are adjusted in the transaction that creates, edits or redacts an
+ * annotation, so reading a summary costs one indexed lookup however many
+ * annotations the target has. Counts cover every unredacted annotation on
+ * the target, whatever its access level. {@link #rebuild()} recomputes them
+ * from the annotations, target by target.
+ * <p>
+ * On MySQL and HSQLDB a count is created or incremented with a single
+ * upsert statement, so concurrent transactions adding the first annotation
+ * of a kind do not collide on the unique key. Elsewhere a missing count is
+ * created after an update that matched no row.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class AnnotationTargetSummaries {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationTargetSummaries.class);
+
+    private static final String MYSQL_UPSERT = "INSERT INTO annotation_target_count (target_id, dimension, name, annotations) "
+            + "VALUES (?1, ?2, ?3, ?4) "
+            + "ON DUPLICATE KEY UPDATE annotations = annotations + VALUES(annotations)";
+    private static final String HSQLDB_UPSERT = "MERGE INTO annotation_target_count c "
+            + "USING (VALUES (CAST(?1 AS BIGINT), CAST(?2 AS VARCHAR(16)), CAST(?3 AS VARCHAR(255)), CAST(?4 AS BIGINT))) "
+            + "AS v (target_id, dimension, name, annotations) "
+            + "ON c.target_id = v.target_id AND c.dimension = v.dimension AND c.name = v.name "
+            + "WHEN MATCHED THEN UPDATE SET c.annotations = c.annotations + v.annotations "
+            + "WHEN NOT MATCHED THEN INSERT (target_id, dimension, name, annotations) "
+            + "VALUES (v.target_id, v.dimension, v.name, v.annotations)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final DataSource dataSource;
+    private final boolean rebuildOnStartup;
+    private final int batchSize;
+
+    // statement creating or incrementing a count, or null if the database has none
+    private String upsert;
+
+    @Autowired(required = true)
+    public AnnotationTargetSummaries(
+            EntityManagerFactory entityManagerFactory,
+            DataSource dataSource,
+            @Value("${ccd.annotations.summary.rebuild-on-startup:false}") boolean rebuildOnStartup,
+            @Value("${ccd.annotations.summary.batch-size:100}") int batchSize) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.dataSource = dataSource;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    /**
+     * Choose how counts are created, and recompute all summaries if
+     * requested
+     */
+    @PostConstruct
+    public void init() {
+        try (Connection connection = dataSource.getConnection()) {
+            final String product = connection.getMetaData().getDatabaseProductName();
+            if ("MySQL".equalsIgnoreCase(product)) {
+                upsert = MYSQL_UPSERT;
+            } else if (product != null && product.startsWith("HSQL")) {
+                upsert = HSQLDB_UPSERT;
+            } else {
+                LOGGER.info("No upsert statement for {}; annotation target counts are created after an update", product);
+            }
+        } catch (SQLException ex) {
+            LOGGER.warn("Unable to read database metadata; annotation target counts are created after an update", ex);
+        }
+        if (rebuildOnStartup) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Get the summary of a target
+     *
+     * @param targetId target id
+     * @return counts by dimension, then by name
+     */
+    @Transactional(readOnly = true)
+    public Map<Dimension, Map<String, Long>> find(Long targetId) {
+        final List<AnnotationTargetCount> counts = entityManager
+                .createQuery("SELECT c FROM AnnotationTargetCount c WHERE c.targetId = :target AND c.annotations > 0", AnnotationTargetCount.class)
+                .setParameter("target", targetId)
+                .getResultList();
+        final Map<Dimension, Map<String, Long>> summary = new EnumMap<>(Dimension.class);
+        counts.forEach(c -> summary.computeIfAbsent(c.getDimension(), k -> new TreeMap<>()).put(c.getName(), c.getAnnotations()));
+        return summary;
+    }
+
+    /**
+     * Count new annotations
+     *
+     * @param annotations saved annotations and their data
+     */
+    @Transactional
+    public void added(Map<Annotation, ? extends Collection<AnnotationData>> annotations) {
+        final Map<Key, Long> deltas = new HashMap<>();
+        annotations.forEach((annotation, data) -> {
+            if (annotation.getTarget() != null && !annotation.isRedacted()) {
+                keys(annotation, attributeNames(data)).forEach(k -> deltas.merge(k, 1L, Long::sum));
+            }
+        });
+        apply(deltas);
+    }
+
+    /**
+     * Count a new annotation
+     *
+     * @param annotation saved annotation
+     * @param data its saved data
+     */
+    @Transactional
+    public void added(Annotation annotation, Collection<AnnotationData> data) {
+        added(Collections.singletonMap(annotation, data));
+    }
+
+    /**
+     * Stop counting a redacted annotation
+     *
+     * @param annotation annotation, before it is redacted
+     */
+    @Transactional
+    public void redacted(Annotation annotation) {
+        if (annotation.getTarget() == null || annotation.isRedacted()) {
+            return;
+        }
+        final Map<Key, Long> deltas = new HashMap<>();
+        keys(annotation, attributeNames(annotation.getId())).forEach(k -> deltas.put(k, -1L));
+        apply(deltas);
+    }
+
+    /**
+     * Move an annotation to its new access level
+     *
+     * @param annotation annotation
+     * @param previous access level before the edit
+     */
+    @Transactional
+    public void accessChanged(Annotation annotation, Access previous) {
+        if (annotation.getTarget() == null || annotation.isRedacted() || Objects.equals(previous.getName(), annotation.getAccess().getName())) {
+            return;
+        }
+        final Long target = annotation.getTarget().getId();
+        final Map<Key, Long> deltas = new HashMap<>();
+        deltas.put(new Key(target, Dimension.ACCESS, previous.getName()), -1L);
+        deltas.put(new Key(target, Dimension.ACCESS, annotation.getAccess().getName()), 1L);
+        apply(deltas);
+    }
+
+    /**
+     * Move an annotation from the previous attribute of one of its data to
+     * the new one. The annotation stays counted under an attribute as long
+     * as any of its other data has it.
+     *
+     * @param annotation annotation
+     * @param data edited data, with its new attribute
+     * @param previous attribute of the data before the edit (nullable)
+     */
+    @Transactional
+    public void attributeChanged(Annotation annotation, AnnotationData data, Attribute previous) {
+        if (annotation.getTarget() == null || annotation.isRedacted()) {
+            return;
+        }
+        final String from = (previous == null) ? null : previous.getName();
+        final String to = (data.getAttribute() == null) ? null : data.getAttribute().getName();
+        if (Objects.equals(from, to)) {
+            return;
+        }
+        final Set<String> others = new HashSet<>(entityManager
+                .createQuery("SELECT DISTINCT d.attribute.name FROM AnnotationData d WHERE d.annotation.id = :annotation AND d.id <> :data", String.class)
+                .setParameter("annotation", annotation.getId())
+                .setParameter("data", data.getId())
+                .getResultList());
+        final Long target = annotation.getTarget().getId();
+        final Map<Key, Long> deltas = new HashMap<>();
+        if (from != null && !others.contains(from)) {
+            deltas.put(new Key(target, Dimension.ATTRIBUTE, from), -1L);
+        }
+        if (to != null && !others.contains(to)) {
+            deltas.put(new Key(target, Dimension.ATTRIBUTE, to), 1L);
+        }
+        apply(deltas);
+    }
+
+    /**
+     * Recompute the summaries of all targets, in batches of targets with one
+     * transaction each
+     *
+     * @return number of targets summarized
+     */
+    public long rebuild() {
+        final long start = System.currentTimeMillis();
+        long rebuilt = 0;
+        Long last = -1L;
+        List<Long> targets;
+        do {
+            final EntityManager batch = entityManagerFactory.createEntityManager();
+            try {
+                batch.getTransaction().begin();
+                targets = batch.createQuery("SELECT t.id FROM AnnotationTarget t WHERE t.id > :after ORDER BY t.id", Long.class)
+                        .setParameter("after", last)
+                        .setMaxResults(batchSize)
+                        .getResultList();
+                for (Long target : targets) {
+                    rebuild(batch, target);
+                    rebuilt++;
+                }
+                batch.getTransaction().commit();
+                if (!targets.isEmpty()) {
+                    last = targets.get(targets.size() - 1);
+                }
+            } finally {
+                if (batch.getTransaction().isActive()) {
+                    batch.getTransaction().rollback();
+                }
+                batch.close();
+            }
+        } while (targets.size() == batchSize);
+        LOGGER.info(String.format("Annotation target summaries rebuilt: %d targets in %d ms", rebuilt, System.currentTimeMillis() - start));
+        return rebuilt;
+    }
+
+    /**
+     * Recompute the summary of one target
+     *
+     * @param targetId target id
+     */
+    @Transactional
+    public void rebuild(Long targetId) {
+        rebuild(entityManager, targetId);
+    }
+
+    private void rebuild(EntityManager em, Long targetId) {
+        em.createQuery("DELETE FROM AnnotationTargetCount c WHERE c.targetId = :target")
+                .setParameter("target", targetId)
+                .executeUpdate();
+        final String annotations = "FROM Annotation a WHERE a.target.id = :target AND a.redacted = false GROUP BY ";
+        count(em, targetId, Dimension.VOCABULARY, "SELECT a.vocabulary.name, COUNT(a) " + annotations + "a.vocabulary.name");
+        count(em, targetId, Dimension.USER, "SELECT a.user.username, COUNT(a) " + annotations + "a.user.username");
+        count(em, targetId, Dimension.ACCESS, "SELECT a.access.name, COUNT(a) " + annotations + "a.access.name");
+        count(em, targetId, Dimension.ATTRIBUTE, "SELECT d.attribute.name, COUNT(DISTINCT d.annotation.id) FROM AnnotationData d "
+                + "WHERE d.annotation.target.id = :target AND d.annotation.redacted = false GROUP BY d.attribute.name");
+    }
+
+    private void count(EntityManager em, Long targetId, Dimension dimension, String query) {
+        final List<Object[]> rows = em.createQuery(query, Object[].class)
+                .setParameter("target", targetId)
+                .getResultList();
+        rows.stream()
+                .filter(r -> r[0] != null)
+                .forEach(r -> em.persist(new AnnotationTargetCount(targetId, dimension, (String) r[0], ((Number) r[1]).longValue())));
+    }
+
+    /**
+     * Add deltas to existing counts, creating counts that do not exist yet
+     */
+    private void apply(Map<Key, Long> deltas) {
+        deltas.forEach((key, delta) -> {
+            if (delta > 0 && upsert != null) {
+                entityManager.createNativeQuery(upsert)
+                        .setParameter(1, key.target)
+                        .setParameter(2, key.dimension.name())
+                        .setParameter(3, key.name)
+                        .setParameter(4, delta)
+                        .executeUpdate();
+                return;
+            }
+            final int updated = entityManager
+                    .createQuery("UPDATE AnnotationTargetCount c SET c.annotations = c.annotations + :delta "
+                            + "WHERE c.targetId = :target AND c.dimension = :dimension AND c.name = :name")
+                    .setParameter("delta", delta)
+                    .setParameter("target", key.target)
+                    .setParameter("dimension", key.dimension)
+                    .setParameter("name", key.name)
+                    .executeUpdate();
+            if (updated == 0 && delta > 0) {
+                entityManager.persist(new AnnotationTargetCount(key.target, key.dimension, key.name, delta));
+            }
+        });
+    }
+
+    private static List<Key> keys(Annotation annotation, Set<String> attributeNames) {
+        final Long target = annotation.getTarget().getId();
+        final List<Key> keys = attributeNames.stream()
+                .map(n -> new Key(target, Dimension.ATTRIBUTE, n))
+                .collect(Collectors.toList());
+        keys.add(new Key(target, Dimension.VOCABULARY, annotation.getVocabulary().getName()));
+        keys.add(new Key(target, Dimension.USER, annotation.getUser().getUsername()));
+        keys.add(new Key(target, Dimension.ACCESS, annotation.getAccess().getName()));
+        keys.removeIf(k -> k.name == null);
+        return keys;
+    }
+
+    private static Set<String> attributeNames(Collection<AnnotationData> data) {
+        return data.stream()
+                .filter(d -> d.getAttribute() != null)
+                .map(d -> d.getAttribute().getName())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private Set<String> attributeNames(Long annotationId) {
+        return new LinkedHashSet<>(entityManager
+                .createQuery("SELECT DISTINCT d.attribute.name FROM AnnotationData d WHERE d.annotation.id = :annotation", String.class)
+                .setParameter("annotation", annotationId)
+                .getResultList());
+    }
+
+    /**
+     * Target, dimension and name of a count
+     */
+    private static final class Key {
+
+        private final Long target;
+        private final Dimension dimension;
+        private final String name;
+
+        Key(Long target, Dimension dimension, String name) {
+            this.target = target;
+            this.dimension = dimension;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return target.equals(other.target) && dimension == other.dimension && Objects.equals(name, other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(target, dimension, name);
+        }
+    }
+}
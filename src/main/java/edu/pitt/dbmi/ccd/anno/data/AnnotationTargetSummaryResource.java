@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.data;
+
+import edu.pitt.dbmi.ccd.anno.data.AnnotationTargetCount.Dimension;
+import java.util.Collections;
+import java.util.Map;
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * Target summary DTO representation: numbers of unredacted annotations on a
+ * target by vocabulary, attribute, user and access level
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class AnnotationTargetSummaryResource extends ResourceSupport {
+
+    // content
+    private final long annotations;
+    private final Map<String, Long> vocabularies;
+    private final Map<String, Long> attributes;
+    private final Map<String, Long> users;
+    private final Map<String, Long> access;
+
+    /**
+     * Constructor
+     *
+     * @param counts counts by dimension, then by name
+     */
+    public AnnotationTargetSummaryResource(Map<Dimension, Map<String, Long>> counts) {
+        this.vocabularies = counts.getOrDefault(Dimension.VOCABULARY, Collections.emptyMap());
+        this.attributes = counts.getOrDefault(Dimension.ATTRIBUTE, Collections.emptyMap());
+        this.users = counts.getOrDefault(Dimension.USER, Collections.emptyMap());
+        this.access = counts.getOrDefault(Dimension.ACCESS, Collections.emptyMap());
+        // every annotation has exactly one vocabulary
+        this.annotations = vocabularies.values()
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    public long getAnnotations() {
+        return annotations;
+    }
+
+    public Map<String, Long> getVocabularies() {
+        return vocabularies;
+    }
+
+    public Map<String, Long> getAttributes() {
+        return attributes;
+    }
+
+    public Map<String, Long> getUsers() {
+        return users;
+    }
+
+    public Map<String, Long> getAccess() {
+        return access;
+    }
+}
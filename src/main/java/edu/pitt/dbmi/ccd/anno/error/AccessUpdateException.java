@@ -19,6 +19,7 @@
 package edu.pitt.dbmi.ccd.anno.error;
 
 import edu.pitt.dbmi.ccd.db.entity.Access;
+import edu.pitt.dbmi.ccd.db.entity.Group;
 
 /**
  * @author Mark Silvis (marksilvis@pitt.edu)
@@ -27,6 +28,7 @@ public final class AccessUpdateException extends RuntimeException {
 
     private static final String LOWER_ACCESS_MESSAGE = "Access %s cannot be set to more restrictive access level %s";
     private static final String NO_GROUP_MESSAGE = "Group required to set access to 'GROUP'";
+    private static final String UNUSED_GROUP_MESSAGE = "Group %s cannot be set with access %s, only with 'GROUP'";
 
     private final String message;
 
@@ -58,6 +60,17 @@ public final class AccessUpdateException extends RuntimeException {
         }
     }
 
+    /**
+     * Constructor
+     *
+     * @param access requested access
+     * @param group requested group, which the access does not use
+     */
+    public AccessUpdateException(Access access, Group group) {
+        super();
+        this.message = String.format(UNUSED_GROUP_MESSAGE, group.getName(), access.getName());
+    }
+
     /**
      * Get message
      *
@@ -0,0 +1,14 @@
+package edu.pitt.dbmi.ccd.anno.error;
+
+/**
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public class AnnotationJobNotFoundException extends NotFoundException {
+
+    private static final String JOB = "Annotation job";
+    private static final String ID = "id";
+
+    public AnnotationJobNotFoundException(String id) {
+        super(JOB, ID, id);
+    }
+}
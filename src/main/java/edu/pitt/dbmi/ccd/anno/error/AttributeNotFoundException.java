@@ -1,5 +1,8 @@
 package edu.pitt.dbmi.ccd.anno.error;
 
+import java.util.Collection;
+import java.util.TreeSet;
+
 /**
  * Mark Silvis (marksilvis@pitt.edu)
  */
@@ -13,6 +16,10 @@ public class AttributeNotFoundException extends NotFoundException {
         super(ATTRIB, ID, id);
     }
 
+    public AttributeNotFoundException(Collection<Long> ids) {
+        super(ATTRIB, ID, new TreeSet<>(ids));
+    }
+
     public AttributeNotFoundException(Long vocabulary, Long id) {
         super(ATTRIB, new String[]{VOCAB, ID}, new Object[]{vocabulary, id});
     }
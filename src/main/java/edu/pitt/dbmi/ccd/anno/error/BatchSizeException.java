@@ -0,0 +1,23 @@
+package edu.pitt.dbmi.ccd.anno.error;
+
+/**
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class BatchSizeException extends RuntimeException {
+
+    private static final String MESSAGE = "Batch of %d items exceeds maximum of %d";
+
+    private final int size;
+    private final int max;
+
+    public BatchSizeException(int size, int max) {
+        super();
+        this.size = size;
+        this.max = max;
+    }
+
+    @Override
+    public String getMessage() {
+        return String.format(MESSAGE, size, max);
+    }
+}
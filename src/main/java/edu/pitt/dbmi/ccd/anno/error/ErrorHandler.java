@@ -18,13 +18,22 @@
  */
 package edu.pitt.dbmi.ccd.anno.error;
 
+import edu.pitt.dbmi.ccd.anno.util.ETags;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.orm.jpa.JpaSystemException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -44,6 +53,9 @@ public final class ErrorHandler {
     private static final String SERVER_ERROR = "Internal server error";
     private static final String REQUEST_FAILED = "Request failed";
 
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
     /* 400s */
     // 400
     @ExceptionHandler(PropertyReferenceException.class)
@@ -86,13 +98,62 @@ public final class ErrorHandler {
         return new ErrorMessage(HttpStatus.BAD_REQUEST, ex.getMessage(), req);
     }
 
-//    @ExceptionHandler(VocabularyMismatchException.class)
-//    @ResponseStatus(HttpStatus.BAD_REQUEST)
-//    @ResponseBody
-//    public ErrorMessage handleAccessUpdateException(VocabularyMismatchException ex, HttpServletRequest req) {
-//        LOGGER.info(ex.getMessage());
-//        return new ErrorMessage(HttpStatus.BAD_REQUEST, ex.getMessage(), req);
-//    }
+    @ExceptionHandler(BatchSizeException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public ErrorMessage handleBatchSizeException(BatchSizeException ex, HttpServletRequest req) {
+        LOGGER.info(ex.getMessage());
+        return new ErrorMessage(HttpStatus.BAD_REQUEST, ex.getMessage(), req);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public ErrorMessage handleInvalidCursorException(InvalidCursorException ex, HttpServletRequest req) {
+        LOGGER.info(ex.getMessage());
+        return new ErrorMessage(HttpStatus.BAD_REQUEST, ex.getMessage(), req);
+    }
+
+    @ExceptionHandler(InvalidValueRangeException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public ErrorMessage handleInvalidValueRangeException(InvalidValueRangeException ex, HttpServletRequest req) {
+        LOGGER.info(ex.getMessage());
+        return new ErrorMessage(HttpStatus.BAD_REQUEST, ex.getMessage(), req);
+    }
+
+    @ExceptionHandler(InvalidFacetException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public ErrorMessage handleInvalidFacetException(InvalidFacetException ex, HttpServletRequest req) {
+        LOGGER.info(ex.getMessage());
+        return new ErrorMessage(HttpStatus.BAD_REQUEST, ex.getMessage(), req);
+    }
+
+    @ExceptionHandler(InvalidFieldsException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public ErrorMessage handleInvalidFieldsException(InvalidFieldsException ex, HttpServletRequest req) {
+        LOGGER.info(ex.getMessage());
+        return new ErrorMessage(HttpStatus.BAD_REQUEST, ex.getMessage(), req);
+    }
+
+    @ExceptionHandler(InvalidQueryException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public ErrorMessage handleInvalidQueryException(InvalidQueryException ex, HttpServletRequest req) {
+        LOGGER.info(ex.getMessage());
+        return new ErrorMessage(HttpStatus.BAD_REQUEST, ex.getMessage(), req);
+    }
+
+    @ExceptionHandler(VocabularyMismatchException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public ErrorMessage handleVocabularyMismatchException(VocabularyMismatchException ex, HttpServletRequest req) {
+        LOGGER.info(ex.getMessage());
+        return new ErrorMessage(HttpStatus.BAD_REQUEST, ex.getMessage(), req);
+    }
+
     // 403
     @ExceptionHandler(ForbiddenException.class)
     @ResponseStatus(HttpStatus.FORBIDDEN)
@@ -120,6 +181,31 @@ public final class ErrorHandler {
         return new ErrorMessage(HttpStatus.CONFLICT, ex.getMessage(), req);
     }
 
+    // 412
+    @ExceptionHandler(PreconditionFailedException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    @ResponseBody
+    public PreconditionFailedMessage handlePreconditionFailedException(PreconditionFailedException ex, HttpServletRequest req, HttpServletResponse res) {
+        LOGGER.info(ex.getMessage());
+        if (ex.getEtag() != null) {
+            res.setHeader(HttpHeaders.ETAG, ex.getEtag());
+            res.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return new PreconditionFailedMessage(ex, req);
+    }
+
+    // a write that lost a race at flush time; answered like a stale If-Match so clients can retry
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    @ResponseBody
+    public PreconditionFailedMessage handleObjectOptimisticLockingFailureException(ObjectOptimisticLockingFailureException ex, HttpServletRequest req, HttpServletResponse res) {
+        LOGGER.info(ex.getMessage());
+        final Long id = (ex.getIdentifier() instanceof Long) ? (Long) ex.getIdentifier() : null;
+        final Long version = (id == null) ? null : currentVersion(ex.getPersistentClass(), id);
+        final String etag = (version == null) ? null : ETags.variant(ETags.of(id, version), req.getHeader(HttpHeaders.ACCEPT));
+        return handlePreconditionFailedException(new PreconditionFailedException(id, version, etag), req, res);
+    }
+
     /* 500s */
     // 500
     @ExceptionHandler(JpaSystemException.class)
@@ -129,4 +215,52 @@ public final class ErrorHandler {
         LOGGER.error(ex.getMessage(), ex);
         return new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR, REQUEST_FAILED, req);
     }
+
+    // 503
+    @ExceptionHandler(JobQueueFullException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ResponseBody
+    public ErrorMessage handleJobQueueFullException(JobQueueFullException ex, HttpServletRequest req, HttpServletResponse res) {
+        LOGGER.warn(ex.getMessage());
+        res.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfter()));
+        return new ErrorMessage(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), req);
+    }
+
+    /**
+     * Current version of an entity, read outside the failed transaction
+     *
+     * @param type entity class (nullable)
+     * @param id entity id
+     * @return version, or null if the entity is gone, not versioned or
+     * unknown
+     */
+    private Long currentVersion(Class<?> type, Long id) {
+        if (type == null || entityManagerFactory == null) {
+            return null;
+        }
+        final EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            final EntityType<?> entity = entityManager.getMetamodel().entity(type);
+            final SingularAttribute<?, ?> version = entity.getSingularAttributes()
+                    .stream()
+                    .filter(SingularAttribute::isVersion)
+                    .findFirst()
+                    .orElse(null);
+            if (version == null) {
+                return null;
+            }
+            final String query = String.format("select e.%s from %s e where e.id = :id", version.getName(), entity.getName());
+            return entityManager.createQuery(query, Number.class)
+                    .setParameter("id", id)
+                    .getResultList()
+                    .stream()
+                    .findFirst()
+                    .map(Number::longValue)
+                    .orElse(null);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        } finally {
+            entityManager.close();
+        }
+    }
 }
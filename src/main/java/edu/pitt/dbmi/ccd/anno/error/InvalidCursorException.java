@@ -0,0 +1,19 @@
+package edu.pitt.dbmi.ccd.anno.error;
+
+/**
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class InvalidCursorException extends RuntimeException {
+
+    private final String message;
+
+    public InvalidCursorException(String message) {
+        super();
+        this.message = message;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+}
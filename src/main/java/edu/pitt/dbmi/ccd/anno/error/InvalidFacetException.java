@@ -0,0 +1,21 @@
+package edu.pitt.dbmi.ccd.anno.error;
+
+/**
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class InvalidFacetException extends RuntimeException {
+
+    private static final String MESSAGE = "Invalid facet '%s': expected vocab, user or attribute:<id>";
+
+    private final String message;
+
+    public InvalidFacetException(String facet) {
+        super();
+        this.message = String.format(MESSAGE, facet);
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+}
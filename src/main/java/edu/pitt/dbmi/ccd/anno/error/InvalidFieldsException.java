@@ -0,0 +1,24 @@
+package edu.pitt.dbmi.ccd.anno.error;
+
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class InvalidFieldsException extends RuntimeException {
+
+    private static final String MESSAGE = "Invalid field '%s': expected one of %s";
+
+    private final String message;
+
+    public InvalidFieldsException(String field, Collection<String> known) {
+        super();
+        this.message = String.format(MESSAGE, field, String.join(", ", new TreeSet<>(known)));
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+}
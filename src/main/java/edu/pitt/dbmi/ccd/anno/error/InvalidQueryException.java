@@ -0,0 +1,21 @@
+package edu.pitt.dbmi.ccd.anno.error;
+
+/**
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class InvalidQueryException extends RuntimeException {
+
+    private static final String MESSAGE = "Invalid query at position %d: %s";
+
+    private final String message;
+
+    public InvalidQueryException(int position, String reason) {
+        super();
+        this.message = String.format(MESSAGE, position, reason);
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+}
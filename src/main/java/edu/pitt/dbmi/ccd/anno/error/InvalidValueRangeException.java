@@ -0,0 +1,21 @@
+package edu.pitt.dbmi.ccd.anno.error;
+
+/**
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class InvalidValueRangeException extends RuntimeException {
+
+    private static final String MESSAGE = "Invalid value range [%s, %s): bounds must both be numbers or both be ISO-8601 dates";
+
+    private final String message;
+
+    public InvalidValueRangeException(String from, String to) {
+        super();
+        this.message = String.format(MESSAGE, (from == null) ? "" : from, (to == null) ? "" : to);
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,32 @@
+package edu.pitt.dbmi.ccd.anno.error;
+
+/**
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class JobQueueFullException extends RuntimeException {
+
+    private static final String MESSAGE = "Job queue is full (%d queued); retry later";
+
+    private final int queued;
+    private final long retryAfter;
+
+    public JobQueueFullException(int queued, long retryAfter) {
+        super();
+        this.queued = queued;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Get seconds to wait before submitting again
+     *
+     * @return seconds
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    @Override
+    public String getMessage() {
+        return String.format(MESSAGE, queued);
+    }
+}
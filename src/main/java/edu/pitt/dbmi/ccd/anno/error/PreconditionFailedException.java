@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.error;
+
+/**
+ * A write based on a stale copy of a resource, with the resource's current
+ * version and entity tag to retry with
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class PreconditionFailedException extends RuntimeException {
+
+    private static final String MESSAGE = "Resource %d has been modified (version %d); fetch it again and retry with its current ETag";
+
+    private final Long id;
+    private final Long version;
+    private final String etag;
+
+    public PreconditionFailedException(Long id, Long version, String etag) {
+        super();
+        this.id = id;
+        this.version = version;
+        this.etag = etag;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public String getMessage() {
+        return String.format(MESSAGE, id, version);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.error;
+
+import java.util.Date;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Error returned when a conditional write fails. Carries the resource's
+ * current version and entity tag so a client can tell how far behind its copy
+ * is and retry with the new tag once it has merged its change.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class PreconditionFailedMessage {
+
+    private final Date timestamp;
+    private final int status;
+    private final String error;
+    private final String message;
+    private final String path;
+    private final Long id;
+    private final Long version;
+    private final String etag;
+
+    /**
+     * Constructor
+     *
+     * @param ex failed precondition
+     * @param req http servlet request
+     * @return PreconditionFailedMessage with current timestamp, the
+     * resource's current version and entity tag, and path from
+     * HttpServletRequest
+     */
+    public PreconditionFailedMessage(PreconditionFailedException ex, HttpServletRequest req) {
+        this.timestamp = new Date();
+        this.status = HttpStatus.PRECONDITION_FAILED.value();
+        this.error = HttpStatus.PRECONDITION_FAILED.getReasonPhrase();
+        this.message = ex.getMessage();
+        this.path = req.getRequestURI();
+        this.id = ex.getId();
+        this.version = ex.getVersion();
+        this.etag = ex.getEtag();
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+}
@@ -27,6 +27,9 @@ import edu.pitt.dbmi.ccd.anno.user.UserPagedResourcesAssembler;
 import edu.pitt.dbmi.ccd.anno.user.UserResource;
 import edu.pitt.dbmi.ccd.anno.user.UserResourceAssembler;
 import static edu.pitt.dbmi.ccd.anno.util.ControllerUtils.formatParam;
+import edu.pitt.dbmi.ccd.anno.util.ETags;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.anno.util.SliceLoader;
 import edu.pitt.dbmi.ccd.db.entity.Group;
 import edu.pitt.dbmi.ccd.db.entity.UserAccount;
 import edu.pitt.dbmi.ccd.db.service.GroupService;
@@ -44,6 +47,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.hateoas.ExposesResourceFor;
 import org.springframework.hateoas.PagedResources;
@@ -59,6 +63,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * Controller for Group endpoints
@@ -84,6 +89,7 @@ public class GroupController {
     private final GroupPagedResourcesAssembler pageAssembler;
     private final UserResourceAssembler userAssembler;
     private final UserPagedResourcesAssembler userPageAssembler;
+    private final SliceLoader sliceLoader;
 
     @Autowired
     public GroupController(
@@ -94,7 +100,8 @@ public class GroupController {
             GroupResourceAssembler assembler,
             GroupPagedResourcesAssembler pageAssembler,
             UserResourceAssembler userAssembler,
-            UserPagedResourcesAssembler userPageAssembler) {
+            UserPagedResourcesAssembler userPageAssembler,
+            SliceLoader sliceLoader) {
         this.request = request;
         this.groupLinks = groupLinks;
         this.groupService = groupService;
@@ -103,22 +110,35 @@ public class GroupController {
         this.pageAssembler = pageAssembler;
         this.userAssembler = userAssembler;
         this.userPageAssembler = userPageAssembler;
+        this.sliceLoader = sliceLoader;
     }
 
     /* GET requests */
     /**
      * Get all groups
      *
+     * @param count false to skip counting the groups
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
      * @param pageable page request
-     * @return page of groups
+     * @param webRequest request, for conditional GET
+     * @return page of groups, or null if not modified
      */
     // @CrossOrigin
     @RequestMapping(method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public PagedResources<GroupResource> groups(@PageableDefault(size = 20, sort = {"name"}) Pageable pageable) {
-        final Page<Group> page = groupService.findAll(pageable);
-        final PagedResources<GroupResource> pagedResources = pageAssembler.toResource(page, assembler, request);
+    public Resources<GroupResource> groups(
+            @RequestParam(value = "count", required = false, defaultValue = "true") boolean count,
+            @RequestParam(value = Fields.PARAM, required = false) String fields,
+            @PageableDefault(size = 20, sort = {"name"}) Pageable pageable,
+            WebRequest webRequest) {
+        final Fields selected = Fields.parse(fields, GroupResource.FIELDS);
+        final Slice<Group> page = count ? groupService.findAll(pageable) : sliceLoader.findSlice(Group.class, null, pageable);
+        if (ETags.notModified(webRequest, ETags.of(page, g -> ETags.of(g.getId(), g.getName(), g.getDescription())), null)) {
+            return null;
+        }
+        final Resources<GroupResource> pagedResources = pageAssembler.toResources(page, g -> assembler.toResource(g, selected), request);
         pagedResources.add(groupLinks.search());
         return pagedResources;
     }
@@ -127,17 +147,25 @@ public class GroupController {
      * Get single group
      *
      * @param id group id
-     * @return group
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
+     * @param webRequest request, for conditional GET
+     * @return group, or null if not modified
      */
     @RequestMapping(value = GroupLinks.GROUP, method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public GroupResource group(@PathVariable Long id) throws NotFoundException {
+    public GroupResource group(@PathVariable Long id, @RequestParam(value = Fields.PARAM, required = false) String fields, WebRequest webRequest) throws NotFoundException {
+        final Fields selected = Fields.parse(fields, GroupResource.FIELDS);
         final Group group = groupService.findById(id);
         if (group == null) {
             throw new GroupNotFoundException(id);
         }
-        final GroupResource resource = assembler.toResource(group);
+        // groups have no version; their representation is their name and description
+        if (ETags.notModified(webRequest, ETags.of(group.getId(), group.getName(), group.getDescription()), null)) {
+            return null;
+        }
+        final GroupResource resource = assembler.toResource(group, selected);
         return resource;
     }
 
@@ -225,6 +253,8 @@ public class GroupController {
      *
      * @param query search terms (nullable)
      * @param not negated search terms (nullable)
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
      * @param pageable page request
      * @return page of groups matching parameters
      */
@@ -234,7 +264,9 @@ public class GroupController {
     public PagedResources<GroupResource> search(
             @RequestParam(value = "query", required = false) String query,
             @RequestParam(value = "not", required = false) String not,
+            @RequestParam(value = Fields.PARAM, required = false) String fields,
             Pageable pageable) {
+        final Fields selected = Fields.parse(fields, GroupResource.FIELDS);
         final Set<String> matches = (query != null)
                 ? new HashSet<>(formatParam(query))
                 : null;
@@ -242,7 +274,7 @@ public class GroupController {
                 ? new HashSet<>(formatParam(not))
                 : null;
         final Page<Group> page = groupService.search(matches, nots, pageable);
-        final PagedResources<GroupResource> pagedResources = pageAssembler.toResource(page, assembler, request);
+        final PagedResources<GroupResource> pagedResources = pageAssembler.toResource(page, g -> assembler.toResource(g, selected), request);
         return pagedResources;
     }
 
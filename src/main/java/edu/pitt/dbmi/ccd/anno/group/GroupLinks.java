@@ -81,7 +81,7 @@ public class GroupLinks implements ResourceLinks {
      * @return link to collection
      */
     public Link groups() {
-        String template = toTemplate(entityLinks.linkFor(GroupResource.class).toString(), PAGEABLE);
+        String template = toTemplate(entityLinks.linkFor(GroupResource.class).toString(), COUNT, PAGEABLE);
         return new Link(template, REL_GROUPS);
     }
 
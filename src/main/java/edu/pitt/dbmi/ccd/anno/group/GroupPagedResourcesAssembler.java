@@ -19,13 +19,17 @@
 package edu.pitt.dbmi.ccd.anno.group;
 
 import edu.pitt.dbmi.ccd.db.entity.Group;
+import java.util.List;
+import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.ResourceAssembler;
+import org.springframework.hateoas.Resources;
 import org.springframework.stereotype.Component;
 
 /**
@@ -61,4 +65,27 @@ public class GroupPagedResourcesAssembler extends PagedResourcesAssembler<Group>
         final Link self = groupLinks.getRequestLink(request);
         return this.toResource(page, assembler, self);
     }
+
+    /**
+     * Create Resources of group resources, without page metadata when the
+     * entities were not counted
+     *
+     * @param slice page or uncounted slice of entities
+     * @param assembler resource assembler
+     * @param request request data
+     * @return group resources with self and, for slices, next and previous
+     * links
+     */
+    public Resources<GroupResource> toResources(Slice<Group> slice, ResourceAssembler<Group, GroupResource> assembler, HttpServletRequest request) {
+        if (slice instanceof Page) {
+            return toResource((Page<Group>) slice, assembler, request);
+        }
+        final List<GroupResource> content = slice.getContent()
+                .stream()
+                .map(assembler::toResource)
+                .collect(Collectors.toList());
+        final Resources<GroupResource> resources = new Resources<>(content, groupLinks.getRequestLink(request));
+        resources.add(groupLinks.getSliceLinks(slice, request));
+        return resources;
+    }
 }
@@ -18,7 +18,10 @@
  */
 package edu.pitt.dbmi.ccd.anno.group;
 
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.anno.util.SparseResource;
 import edu.pitt.dbmi.ccd.db.entity.Group;
+import java.util.Set;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.hateoas.core.Relation;
@@ -29,11 +32,15 @@ import org.springframework.hateoas.core.Relation;
  * @author Mark Silvis (marksilvis@pitt.edu)
  */
 @Relation(value = "group", collectionRelation = "groups")
-public final class GroupResource extends ResourceSupport {
+public final class GroupResource extends ResourceSupport implements SparseResource {
+
+    // fields
+    public static final Set<String> FIELDS = Fields.of("name", "description", Fields.LINKS);
 
     // content
     private final String name;
     private final String description;
+    private final boolean sparse;
 
     /**
      * Empty constructor
@@ -41,6 +48,7 @@ public final class GroupResource extends ResourceSupport {
      * @return GroupResource with empty variables
      */
     protected GroupResource() {
+        this.sparse = false;
         this.name = "";
         this.description = "";
     }
@@ -51,8 +59,19 @@ public final class GroupResource extends ResourceSupport {
      * @param group content
      */
     public GroupResource(Group group) {
-        this.name = group.getName();
-        this.description = group.getDescription();
+        this(group, Fields.all());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param group content
+     * @param fields fields to include; others are left null
+     */
+    public GroupResource(Group group, Fields fields) {
+        this.sparse = !fields.isAll();
+        this.name = fields.includes("name") ? group.getName() : null;
+        this.description = fields.includes("description") ? group.getDescription() : null;
     }
 
     /**
@@ -83,4 +102,9 @@ public final class GroupResource extends ResourceSupport {
     public String getDescription() {
         return description;
     }
+
+    @Override
+    public boolean omitsNull(String property) {
+        return sparse;
+    }
 }
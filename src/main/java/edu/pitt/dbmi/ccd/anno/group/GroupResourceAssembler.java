@@ -18,12 +18,14 @@
  */
 package edu.pitt.dbmi.ccd.anno.group;
 
+import edu.pitt.dbmi.ccd.anno.util.Fields;
 import edu.pitt.dbmi.ccd.db.entity.Group;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
@@ -52,14 +54,28 @@ public class GroupResourceAssembler extends ResourceAssemblerSupport<Group, Grou
      */
     @Override
     public GroupResource toResource(Group group) throws IllegalArgumentException {
+        return toResource(group, Fields.all());
+    }
+
+    /**
+     * convert Group to GroupResource with only the requested fields
+     *
+     * @param group entity
+     * @param fields fields to include
+     * @return resource
+     */
+    public GroupResource toResource(Group group, Fields fields) throws IllegalArgumentException {
         Assert.notNull(group);
-        GroupResource resource = createResourceWithId(group.getId(), group);
-        resource.add(groupLinks.join(group));
-        resource.add(groupLinks.leave(group));
-        resource.add(groupLinks.mods(group));
-        resource.add(groupLinks.members(group));
-        resource.add(groupLinks.requesters(group));
-        resource.add(groupLinks.annotations(group));
+        GroupResource resource = new GroupResource(group, fields);
+        resource.add(linkTo(GroupController.class).slash(group.getId()).withSelfRel());
+        if (fields.includes(Fields.LINKS)) {
+            resource.add(groupLinks.join(group));
+            resource.add(groupLinks.leave(group));
+            resource.add(groupLinks.mods(group));
+            resource.add(groupLinks.members(group));
+            resource.add(groupLinks.requesters(group));
+            resource.add(groupLinks.annotations(group));
+        }
         return resource;
     }
 
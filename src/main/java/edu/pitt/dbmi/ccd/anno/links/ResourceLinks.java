@@ -18,9 +18,13 @@
  */
 package edu.pitt.dbmi.ccd.anno.links;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.servlet.http.HttpServletRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.hateoas.Link;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 /**
  * Interface for defining links for resources
@@ -40,6 +44,8 @@ public interface ResourceLinks {
     static final String QUERY_START = "{?";
     static final String QUERY_END = "}";
     static final String PAGEABLE = "page,size,sort";
+    static final String COUNT = "count";
+    static final String PAGE = "page";
 
     // query value
     static final String QUERY = "?";
@@ -61,6 +67,27 @@ public interface ResourceLinks {
         }
     }
 
+    // get next and previous links of an uncounted slice
+    default List<Link> getSliceLinks(Slice<?> slice, HttpServletRequest request) {
+        final List<Link> links = new ArrayList<>(2);
+        if (slice.hasNext()) {
+            links.add(getPageLink(request, slice.getNumber() + 1, Link.REL_NEXT));
+        }
+        if (slice.hasPrevious()) {
+            links.add(getPageLink(request, slice.getNumber() - 1, Link.REL_PREVIOUS));
+        }
+        return links;
+    }
+
+    // get link of requested URL with another page number
+    default Link getPageLink(HttpServletRequest request, int page, String rel) {
+        final String href = ServletUriComponentsBuilder.fromRequest(request)
+                .replaceQueryParam(PAGE, page)
+                .build()
+                .toUriString();
+        return new Link(href, rel);
+    }
+
     // create template for link
     default String toTemplate(String link, String query, String... queries) {
         StringBuilder template = new StringBuilder(link).append(QUERY_START).append(query);
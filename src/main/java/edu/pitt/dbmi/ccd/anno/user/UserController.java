@@ -24,6 +24,7 @@ import edu.pitt.dbmi.ccd.anno.error.UserNotFoundException;
 import edu.pitt.dbmi.ccd.anno.group.GroupPagedResourcesAssembler;
 import edu.pitt.dbmi.ccd.anno.group.GroupResource;
 import edu.pitt.dbmi.ccd.anno.group.GroupResourceAssembler;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
 import edu.pitt.dbmi.ccd.db.entity.Group;
 import edu.pitt.dbmi.ccd.db.entity.UserAccount;
 import edu.pitt.dbmi.ccd.db.entity.UserRole;
@@ -104,19 +105,22 @@ public class UserController {
      * Get all users (if ADMIN)
      *
      * @param principal current authenticated user details
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
      * @param pageable page request
      * @return page of users
      */
     @RequestMapping(method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public ResourceSupport users(@AuthenticationPrincipal UserAccountDetails principal, Pageable pageable) {
+    public ResourceSupport users(@AuthenticationPrincipal UserAccountDetails principal, @RequestParam(value = Fields.PARAM, required = false) String fields, Pageable pageable) {
+        final Fields selected = Fields.parse(fields, UserResource.FIELDS);
         UserAccount requester = principal.getUserAccount();
         if (requester.getUserRoles().stream()
                 .map(UserRole::getName)
                 .anyMatch(r -> r.equalsIgnoreCase("ADMIN"))) {
             Page<UserAccount> page = accountService.findAll(pageable);
-            final PagedResources<UserResource> pagedResources = pageAssembler.toResource(page, assembler, request);
+            final PagedResources<UserResource> pagedResources = pageAssembler.toResource(page, u -> assembler.toResource(u, selected), request);
             pagedResources.add(userLinks.search());
             return pagedResources;
         } else {
@@ -131,18 +135,21 @@ public class UserController {
      * Get user by account id
      *
      * @param id URL safe, base64 encoded user account id
+     * @param fields fields to include, comma separated (nullable; all fields
+     * if empty)
      * @return user
      */
     @RequestMapping(value = UserLinks.USER, method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public ResourceSupport getUser(@PathVariable String id) throws NotFoundException {
+    public ResourceSupport getUser(@PathVariable String id, @RequestParam(value = Fields.PARAM, required = false) String fields) throws NotFoundException {
+        final Fields selected = Fields.parse(fields, UserResource.FIELDS);
         String decoded = new String(base64Decoder.decode(id.getBytes()));
         UserAccount account = accountService.findByAccountId(decoded);
         if (account == null) {
             throw new UserNotFoundException(id);
         }
-        final UserResource resource = assembler.toResource(account);
+        final UserResource resource = assembler.toResource(account, selected);
         return resource;
     }
 
@@ -21,6 +21,8 @@ package edu.pitt.dbmi.ccd.anno.user;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.anno.util.SparseResource;
 import edu.pitt.dbmi.ccd.db.entity.Person;
 import edu.pitt.dbmi.ccd.db.entity.UserAccount;
 import java.util.HashSet;
@@ -37,7 +39,10 @@ import org.springframework.hateoas.core.Relation;
  */
 @Relation(value = "user", collectionRelation = "users")
 @JsonPropertyOrder({"username", "name", "email", "website"})
-public final class UserResource extends ResourceSupport {
+public final class UserResource extends ResourceSupport implements SparseResource {
+
+    // fields
+    public static final Set<String> FIELDS = Fields.of("name", "email", "roles", Fields.LINKS);
 
     // content
     private final String username;
@@ -45,7 +50,9 @@ public final class UserResource extends ResourceSupport {
     private final String middleName;
     private final String lastName;
     private final String email;
-    private final Set<String> roles = new HashSet<>(0);
+    private final boolean named;
+    private final Set<String> roles;
+    private final boolean sparse;
 
     /**
      * Empty constructor
@@ -53,11 +60,14 @@ public final class UserResource extends ResourceSupport {
      * @return UserResource with empty/null variables
      */
     protected UserResource() {
+        this.sparse = false;
         this.username = "";
         this.firstName = "";
         this.middleName = "";
         this.lastName = "";
         this.email = "";
+        this.named = true;
+        this.roles = new HashSet<>(0);
     }
 
     /**
@@ -67,16 +77,29 @@ public final class UserResource extends ResourceSupport {
      * @return new UserResource
      */
     public UserResource(UserAccount user) {
+        this(user, Fields.all());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param user content
+     * @param fields fields to include; others are left null
+     */
+    public UserResource(UserAccount user, Fields fields) {
+        this.sparse = !fields.isAll();
         this.username = user.getUsername();
 
-        final Person person = user.getPerson();
-        this.firstName = person.getFirstName();
-        this.middleName = person.getMiddleName();
-        this.lastName = person.getLastName();
-        this.email = person.getEmail();
-        this.roles.addAll(user.getUserRoles().stream()
+        this.named = fields.includes("name");
+        final Person person = (named || fields.includes("email")) ? user.getPerson() : null;
+        this.firstName = named ? person.getFirstName() : null;
+        this.middleName = named ? person.getMiddleName() : null;
+        this.lastName = named ? person.getLastName() : null;
+        this.email = fields.includes("email") ? person.getEmail() : null;
+        this.roles = fields.includes("roles") ? user.getUserRoles().stream()
                 .map(r -> r.getName())
-                .collect(Collectors.toSet()));
+                .collect(Collectors.toSet())
+                : null;
     }
 
     /**
@@ -137,6 +160,9 @@ public final class UserResource extends ResourceSupport {
      */
     @JsonProperty("name")
     public String getFullName() {
+        if (!named) {
+            return null;
+        }
         if (middleName == null) {
             return String.format("%s %s", firstName, lastName);
         } else {
@@ -162,4 +188,9 @@ public final class UserResource extends ResourceSupport {
     public Set<String> getRoles() {
         return roles;
     }
+
+    @Override
+    public boolean omitsNull(String property) {
+        return sparse;
+    }
 }
@@ -18,6 +18,7 @@
  */
 package edu.pitt.dbmi.ccd.anno.user;
 
+import edu.pitt.dbmi.ccd.anno.util.Fields;
 import edu.pitt.dbmi.ccd.db.entity.UserAccount;
 import java.util.Base64;
 import java.util.List;
@@ -25,6 +26,7 @@ import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
@@ -54,13 +56,28 @@ public class UserResourceAssembler extends ResourceAssemblerSupport<UserAccount,
      */
     @Override
     public UserResource toResource(UserAccount account) throws IllegalArgumentException {
+        return toResource(account, Fields.all());
+    }
+
+    /**
+     * Convert UserAccount + Person to UserResource with only the requested
+     * fields
+     *
+     * @param account entity
+     * @param fields fields to include
+     * @return resource
+     */
+    public UserResource toResource(UserAccount account, Fields fields) throws IllegalArgumentException {
         Assert.notNull(account);
         Assert.notNull(account.getAccountId());
         final String encoded = base64Encoder.encodeToString(account.getAccountId().getBytes());
-        UserResource resource = createResourceWithId(encoded, account);
-        resource.add(userLinks.annotations(account));
-        resource.add(userLinks.uploads(account));
-        resource.add(userLinks.groups(account));
+        UserResource resource = new UserResource(account, fields);
+        resource.add(linkTo(UserController.class).slash(encoded).withSelfRel());
+        if (fields.includes(Fields.LINKS)) {
+            resource.add(userLinks.annotations(account));
+            resource.add(userLinks.uploads(account));
+            resource.add(userLinks.groups(account));
+        }
         return resource;
     }
 
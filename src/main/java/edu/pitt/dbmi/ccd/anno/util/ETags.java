@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Entity tags for conditional requests. Tags are computed from entity ids
+ * and versions, so they can be checked before a resource is assembled.
+ * JSON, Smile and CBOR bodies of the same entity get different tags, and
+ * responses vary by Accept.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public abstract class ETags {
+
+    private static final MediaType HAL_JSON = org.springframework.hateoas.MediaTypes.HAL_JSON;
+    private static final MediaType SMILE = MediaType.valueOf(MediaTypes.SMILE_VALUE);
+    private static final MediaType CBOR = MediaType.valueOf(MediaTypes.CBOR_VALUE);
+
+    /**
+     * Strong entity tag of values that change whenever the representation
+     * does
+     *
+     * @param parts ids, versions and other values
+     * @return quoted entity tag
+     */
+    public static String of(Object... parts) {
+        final String fingerprint = Arrays.stream(parts)
+                .map(String::valueOf)
+                .collect(Collectors.joining("/"));
+        return '"' + DigestUtils.md5DigestAsHex(fingerprint.getBytes(StandardCharsets.UTF_8)) + '"';
+    }
+
+    /**
+     * Strong entity tag of a page or slice: its position and the versions of
+     * its content
+     *
+     * @param <T> content type
+     * @param slice page or slice
+     * @param version values that change whenever an element's representation
+     * does
+     * @return quoted entity tag
+     */
+    public static <T> String of(Slice<T> slice, Function<T, Object> version) {
+        final String content = slice.getContent()
+                .stream()
+                .map(version.andThen(String::valueOf))
+                .collect(Collectors.joining(","));
+        final Object total = (slice instanceof Page) ? ((Page<T>) slice).getTotalElements() : "-";
+        return of(slice.getNumber(), slice.getSize(), slice.hasNext(), total, content);
+    }
+
+    /**
+     * Entity tag of the representation an Accept header selects. JSON keeps
+     * the tag; Smile and CBOR add their format to it.
+     *
+     * @param etag quoted entity tag of the JSON representation
+     * @param accept Accept header (nullable)
+     * @return quoted entity tag of the selected representation
+     */
+    public static String variant(String etag, String accept) {
+        final String format = format(accept);
+        return (format == null) ? etag : etag.substring(0, etag.length() - 1) + '-' + format + '"';
+    }
+
+    /**
+     * Entity tag of a representation that also shows details kept outside
+     * the entity, like its number of replies. The details change the tag for
+     * conditional GETs, but If-Match only compares the entity's part.
+     *
+     * @param etag quoted entity tag of the entity itself
+     * @param details values shown alongside the entity
+     * @return quoted entity tag
+     */
+    public static String detailed(String etag, Object... details) {
+        final String detail = of(details);
+        return etag.substring(0, etag.length() - 1) + '.' + detail.substring(1);
+    }
+
+    /**
+     * Check an If-Match precondition using strong comparison of the entity's
+     * part of each tag. A tag of any format or details of the current entity
+     * matches, so a client may read one format and write with another, and a
+     * new reply does not fail a write to its parent.
+     *
+     * @param ifMatch If-Match header (nullable; an absent header always
+     * matches)
+     * @param etag current entity tag
+     * @return true if the client's copy is current and a write may proceed
+     */
+    public static boolean matches(String ifMatch, String etag) {
+        if (ifMatch == null) {
+            return true;
+        }
+        final String entity = entity(etag);
+        return Arrays.stream(ifMatch.split(","))
+                .map(String::trim)
+                .anyMatch(tag -> tag.equals("*") || entity(tag).equals(entity));
+    }
+
+    /**
+     * Check preconditions of a conditional GET, and set the ETag,
+     * Last-Modified and Vary headers
+     *
+     * @param webRequest current request
+     * @param etag entity tag of the JSON representation
+     * @param lastModified last modification (nullable)
+     * @return true if the client's copy is current and 304 should be sent
+     */
+    public static boolean notModified(WebRequest webRequest, String etag, Date lastModified) {
+        if (webRequest instanceof NativeWebRequest) {
+            final HttpServletResponse response = ((NativeWebRequest) webRequest).getNativeResponse(HttpServletResponse.class);
+            if (response != null) {
+                vary(response);
+            }
+        }
+        final String tag = variant(etag, webRequest.getHeader(HttpHeaders.ACCEPT));
+        return (lastModified == null)
+                ? webRequest.checkNotModified(tag)
+                : webRequest.checkNotModified(tag, lastModified.getTime());
+    }
+
+    /**
+     * Set the ETag and Vary headers of a response to a write
+     *
+     * @param request current request
+     * @param response current response
+     * @param etag entity tag of the JSON representation
+     */
+    public static void set(HttpServletRequest request, HttpServletResponse response, String etag) {
+        vary(response);
+        response.setHeader(HttpHeaders.ETAG, variant(etag, request.getHeader(HttpHeaders.ACCEPT)));
+    }
+
+    /**
+     * Tagged responses vary by Accept, so caches keep JSON, Smile and CBOR
+     * bodies apart
+     */
+    private static void vary(HttpServletResponse response) {
+        if (!response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+    }
+
+    /**
+     * Part of a tag computed from the entity itself, without details or
+     * format; tags that are not ours are returned unchanged
+     */
+    private static String entity(String tag) {
+        if (tag.length() < 2 || tag.charAt(0) != '"') {
+            return tag;
+        }
+        int end = 1;
+        while (end < tag.length() && Character.digit(tag.charAt(end), 16) >= 0) {
+            end++;
+        }
+        return tag.substring(0, end) + '"';
+    }
+
+    /**
+     * Binary format an Accept header prefers over JSON, the same way the
+     * JSON converters are tried before the binary ones
+     *
+     * @return "smile", "cbor", or null for JSON
+     */
+    private static String format(String accept) {
+        if (accept == null) {
+            return null;
+        }
+        final List<MediaType> types;
+        try {
+            types = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException ex) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(types);
+        for (MediaType type : types) {
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON) || type.isCompatibleWith(HAL_JSON)) {
+                return null;
+            }
+            if (type.isCompatibleWith(SMILE)) {
+                return "smile";
+            }
+            if (type.isCompatibleWith(CBOR)) {
+                return "cbor";
+            }
+        }
+        return null;
+    }
+}
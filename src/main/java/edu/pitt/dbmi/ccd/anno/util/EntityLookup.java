@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import org.springframework.stereotype.Component;
+
+/**
+ * Set-based entity lookups. Resolves many keys with a single IN query instead
+ * of one query per key.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class EntityLookup {
+
+    // maximum number of values bound to a single IN clause
+    private static final int IN_LIMIT = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Find entities whose attribute matches any of the given values
+     *
+     * @param type entity class
+     * @param attribute entity attribute to match
+     * @param values values to look for
+     * @param key maps found entities to their lookup key
+     * @param <T> entity type
+     * @param <K> key type
+     * @return found entities keyed by lookup value
+     */
+    public <T, K> Map<K, T> findAllIn(Class<T> type, String attribute, Collection<K> values, Function<T, K> key) {
+        final Map<K, T> found = new HashMap<>(values.size());
+        final List<K> distinct = new ArrayList<>(new LinkedHashSet<>(values));
+        for (int i = 0; i < distinct.size(); i += IN_LIMIT) {
+            final List<K> chunk = distinct.subList(i, Math.min(i + IN_LIMIT, distinct.size()));
+            final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            final CriteriaQuery<T> query = cb.createQuery(type);
+            final Root<T> root = query.from(type);
+            query.select(root).where(root.get(attribute).in(chunk));
+            entityManager.createQuery(query)
+                    .getResultList()
+                    .forEach(e -> found.put(key.apply(e), e));
+        }
+        return found;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.util;
+
+import edu.pitt.dbmi.ccd.anno.error.InvalidFieldsException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Sparse fieldset requested with the <code>fields</code> parameter.
+ * <p>
+ * Names are separated by commas; a dotted name such as
+ * <code>data.value</code> selects a field of nested resources. The id and
+ * self link are always included, and <code>links</code> selects the other
+ * links. Assemblers check the fieldset before building each part, so
+ * unrequested parts are never loaded.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class Fields {
+
+    // request parameter
+    public static final String PARAM = "fields";
+
+    // links other than self
+    public static final String LINKS = "links";
+
+    private static final Fields ALL = new Fields(null);
+
+    // requested names and their dotted prefixes; null for all fields
+    private final Set<String> names;
+
+    private Fields(Set<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * All fields
+     *
+     * @return fieldset including everything
+     */
+    public static Fields all() {
+        return ALL;
+    }
+
+    /**
+     * Parse a fields parameter
+     *
+     * @param fields comma separated field names (nullable; all fields if
+     * empty)
+     * @param known field names of the resource, including dotted names of
+     * nested resources
+     * @return fieldset
+     * @throws InvalidFieldsException if a name is not known
+     */
+    public static Fields parse(String fields, Set<String> known) throws InvalidFieldsException {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+        final Set<String> names = new HashSet<>();
+        for (String field : fields.split(",")) {
+            final String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!known.contains(name)) {
+                throw new InvalidFieldsException(name, known);
+            }
+            // a nested field implies its parent
+            for (int dot = name.indexOf('.'); dot > 0; dot = name.indexOf('.', dot + 1)) {
+                names.add(name.substring(0, dot));
+            }
+            names.add(name);
+        }
+        return new Fields(Collections.unmodifiableSet(names));
+    }
+
+    /**
+     * Whether all fields are included
+     *
+     * @return true if no fieldset was requested
+     */
+    public boolean isAll() {
+        return names == null;
+    }
+
+    /**
+     * Whether a field, or any field nested in it, is included
+     *
+     * @param name field name
+     * @return true if the field should be built
+     */
+    public boolean includes(String name) {
+        return names == null || names.contains(name);
+    }
+
+    /**
+     * Fieldset of a nested resource
+     *
+     * @param name field holding the nested resources
+     * @return all fields if the field itself was requested, otherwise the
+     * requested dotted names below it
+     */
+    public Fields nested(String name) {
+        final String prefix = name + '.';
+        final Set<String> nested = (names == null) ? null
+                : names.stream()
+                .filter(n -> n.startsWith(prefix))
+                .map(n -> n.substring(prefix.length()))
+                .collect(Collectors.toSet());
+        // a plain name without dotted names selects the whole nested resource
+        return (nested == null || nested.isEmpty()) ? ALL : new Fields(Collections.unmodifiableSet(nested));
+    }
+
+    /**
+     * Known field names
+     *
+     * @param names field names
+     * @return names as an unmodifiable set
+     */
+    public static Set<String> of(String... names) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(names)));
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.util;
+
+/**
+ * Media types not defined by {@link org.springframework.http.MediaType}
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class MediaTypes {
+
+    /**
+     * Newline-delimited JSON
+     */
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * Comma-separated values
+     */
+    public static final String CSV_VALUE = "text/csv";
+
+    /**
+     * Jackson binary JSON
+     */
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    /**
+     * Concise Binary Object Representation (RFC 7049)
+     */
+    public static final String CBOR_VALUE = "application/cbor";
+
+    private MediaTypes() {
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.util;
+
+/**
+ * Resource that leaves some of its null properties out of its
+ * representation, such as inline resources moved to a shared embedding.
+ * Other null properties are written as null.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ * @see SparseResourceModule
+ */
+public interface SparseResource {
+
+    /**
+     * Whether a null property is left out
+     *
+     * @param property property name
+     * @return true to leave the property out while it is null
+     */
+    boolean omitsNull(String property);
+}
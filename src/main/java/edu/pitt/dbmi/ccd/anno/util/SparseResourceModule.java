@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Jackson module leaving out the null properties a {@link SparseResource}
+ * omits. Registered on the primary, HAL and binary mappers.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public final class SparseResourceModule extends SimpleModule {
+
+    private static final long serialVersionUID = 1L;
+
+    public SparseResourceModule() {
+        super(SparseResourceModule.class.getSimpleName());
+        setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription beanDesc, List<BeanPropertyWriter> beanProperties) {
+                if (!SparseResource.class.isAssignableFrom(beanDesc.getBeanClass())) {
+                    return beanProperties;
+                }
+                return beanProperties.stream()
+                        .map(SparsePropertyWriter::new)
+                        .collect(Collectors.toList());
+            }
+        });
+    }
+
+    /**
+     * Writes a property unless it is null and omitted by its resource
+     */
+    private static final class SparsePropertyWriter extends BeanPropertyWriter {
+
+        private static final long serialVersionUID = 1L;
+
+        SparsePropertyWriter(BeanPropertyWriter base) {
+            super(base);
+        }
+
+        @Override
+        public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+            if (get(bean) == null && ((SparseResource) bean).omitsNull(getName())) {
+                return;
+            }
+            super.serializeAsField(bean, gen, prov);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.vocabulary;
+
+import edu.pitt.dbmi.ccd.anno.vocabulary.attribute.AttributeResource;
+import edu.pitt.dbmi.ccd.anno.vocabulary.attribute.AttributeResourceAssembler;
+import edu.pitt.dbmi.ccd.db.entity.Attribute;
+import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * Cache of vocabulary and attribute resources.
+ * <p>
+ * Vocabularies and their attribute trees are loaded once into an immutable
+ * snapshot, at startup and again after each invalidation. Resources are built
+ * from the snapshot on first use and kept per base URI, since their links are
+ * absolute. Cached resources are shared between responses and must not be
+ * modified.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@Component
+public class VocabularyCache implements PublicMetrics {
+
+    // loggers
+    private static final Logger LOGGER = LoggerFactory.getLogger(VocabularyCache.class);
+
+    // distinct base URIs for which resources are kept
+    private static final int MAX_BASE_URIS = 16;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final VocabularyResourceAssembler vocabularyAssembler;
+    private final AttributeResourceAssembler attributeAssembler;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private volatile State state;
+
+    @Autowired(required = true)
+    public VocabularyCache(EntityManagerFactory entityManagerFactory, VocabularyResourceAssembler vocabularyAssembler, AttributeResourceAssembler attributeAssembler) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.vocabularyAssembler = vocabularyAssembler;
+        this.attributeAssembler = attributeAssembler;
+    }
+
+    /**
+     * Load vocabularies once the application has started
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        final State warmed = state();
+        LOGGER.info("Cached {} vocabularies with {} attributes", warmed.vocabularies.size(), warmed.attributes.size());
+    }
+
+    /**
+     * Discard all cached vocabularies and resources; the snapshot is reloaded
+     * on next use
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        state = null;
+        invalidations.increment();
+    }
+
+    /**
+     * Get vocabulary resource by id
+     *
+     * @param id vocabulary id
+     * @return resource, or null if the vocabulary is unknown
+     */
+    public VocabularyResource vocabulary(Long id) {
+        final State current = state();
+        final Vocabulary vocabulary = current.vocabularies.get(id);
+        if (vocabulary == null) {
+            misses.increment();
+            return null;
+        }
+        return lookup(current.resources().vocabularies, id, k -> vocabularyAssembler.toResource(vocabulary));
+    }
+
+    /**
+     * Get vocabulary resource by name
+     *
+     * @param name vocabulary name
+     * @return resource, or null if the vocabulary is unknown
+     */
+    public VocabularyResource vocabulary(String name) {
+        final Vocabulary vocabulary = state().vocabulariesByName.get(name);
+        if (vocabulary == null) {
+            misses.increment();
+            return null;
+        }
+        return vocabulary(vocabulary.getId());
+    }
+
+    /**
+     * Get vocabulary resource, building it from the entity if it is not
+     * cached
+     *
+     * @param vocabulary entity
+     * @return resource
+     */
+    public VocabularyResource vocabulary(Vocabulary vocabulary) {
+        final VocabularyResource resource = vocabulary(vocabulary.getId());
+        return (resource != null) ? resource : vocabularyAssembler.toResource(vocabulary);
+    }
+
+    /**
+     * Get attribute resource, including child attributes, by id
+     *
+     * @param id attribute id
+     * @return resource, or null if the attribute is unknown
+     */
+    public AttributeResource attribute(Long id) {
+        final State current = state();
+        final Attribute attribute = current.attributes.get(id);
+        if (attribute == null) {
+            misses.increment();
+            return null;
+        }
+        return lookup(current.resources().attributes, id, k -> attributeAssembler.toResource(attribute, current::children));
+    }
+
+    /**
+     * Get attribute resource, building it from the entity if it is not
+     * cached
+     *
+     * @param attribute entity
+     * @return resource
+     */
+    public AttributeResource attribute(Attribute attribute) {
+        final AttributeResource resource = attribute(attribute.getId());
+        return (resource != null) ? resource : attributeAssembler.toResource(attribute);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final State current = state;
+        final long hitCount = hits.sum();
+        final long missCount = misses.sum();
+        final List<Metric<?>> metrics = new ArrayList<>(5);
+        metrics.add(new Metric<>("cache.vocabularies.size", (current != null) ? current.vocabularies.size() + current.attributes.size() : 0));
+        metrics.add(new Metric<>("cache.vocabularies.hit", hitCount));
+        metrics.add(new Metric<>("cache.vocabularies.miss", missCount));
+        metrics.add(new Metric<>("cache.vocabularies.hit.ratio", (hitCount + missCount > 0) ? (double) hitCount / (hitCount + missCount) : 0.0));
+        metrics.add(new Metric<>("cache.vocabularies.invalidations", invalidations.sum()));
+        return metrics;
+    }
+
+    private <R> R lookup(ConcurrentMap<Long, R> cache, Long id, Function<Long, R> builder) {
+        final R cached = cache.get(id);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        return cache.computeIfAbsent(id, builder);
+    }
+
+    private State state() {
+        final State current = state;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (state != null) {
+                return state;
+            }
+            final long loading = generation.get();
+            final State loaded = load();
+            // don't publish a snapshot that was invalidated while loading
+            if (loading == generation.get()) {
+                state = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    private State load() {
+        final EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            final CriteriaQuery<Vocabulary> vocabularies = cb.createQuery(Vocabulary.class);
+            vocabularies.select(vocabularies.from(Vocabulary.class));
+            final CriteriaQuery<Attribute> attributes = cb.createQuery(Attribute.class);
+            final Root<Attribute> attribute = attributes.from(Attribute.class);
+            attribute.fetch("vocabulary");
+            attributes.select(attribute).orderBy(cb.asc(attribute.get("id")));
+            return new State(entityManager.createQuery(vocabularies).getResultList(), entityManager.createQuery(attributes).getResultList());
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Immutable snapshot of vocabularies and attributes with the resources
+     * built from it
+     */
+    private static final class State {
+
+        private final Map<Long, Vocabulary> vocabularies;
+        private final Map<String, Vocabulary> vocabulariesByName;
+        private final Map<Long, Attribute> attributes;
+        private final Map<Long, List<Attribute>> children;
+        private final ConcurrentMap<String, Resources> resources = new ConcurrentHashMap<>();
+
+        private State(List<Vocabulary> vocabularies, List<Attribute> attributes) {
+            this.vocabularies = Collections.unmodifiableMap(vocabularies.stream()
+                    .collect(Collectors.toMap(Vocabulary::getId, Function.identity())));
+            this.vocabulariesByName = Collections.unmodifiableMap(vocabularies.stream()
+                    .collect(Collectors.toMap(Vocabulary::getName, Function.identity(), (a, b) -> a)));
+            this.attributes = Collections.unmodifiableMap(attributes.stream()
+                    .collect(Collectors.toMap(Attribute::getId, Function.identity())));
+            final Map<Long, List<Attribute>> byParent = new HashMap<>();
+            attributes.stream()
+                    .filter(a -> a.getParent() != null)
+                    .forEach(a -> byParent.computeIfAbsent(a.getParent().getId(), k -> new ArrayList<>()).add(a));
+            byParent.replaceAll((k, v) -> Collections.unmodifiableList(v));
+            this.children = Collections.unmodifiableMap(byParent);
+        }
+
+        private List<Attribute> children(Attribute parent) {
+            return children.getOrDefault(parent.getId(), Collections.emptyList());
+        }
+
+        /**
+         * Resources for the base URI of the current request
+         */
+        private Resources resources() {
+            final String baseUri = ServletUriComponentsBuilder.fromCurrentServletMapping().toUriString();
+            final Resources cached = resources.get(baseUri);
+            if (cached != null) {
+                return cached;
+            }
+            // don't let arbitrary Host headers grow the cache
+            return (resources.size() < MAX_BASE_URIS) ? resources.computeIfAbsent(baseUri, k -> new Resources())
+                    : new Resources();
+        }
+    }
+
+    /**
+     * Resources for a single base URI
+     */
+    private static final class Resources {
+
+        private final ConcurrentMap<Long, VocabularyResource> vocabularies = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Long, AttributeResource> attributes = new ConcurrentHashMap<>();
+    }
+}
@@ -21,6 +21,8 @@ package edu.pitt.dbmi.ccd.anno.vocabulary;
 import edu.pitt.dbmi.ccd.anno.error.AttributeNotFoundException;
 import edu.pitt.dbmi.ccd.anno.error.NotFoundException;
 import edu.pitt.dbmi.ccd.anno.error.VocabularyNotFoundException;
+import edu.pitt.dbmi.ccd.anno.util.ETags;
+import edu.pitt.dbmi.ccd.anno.util.SliceLoader;
 import edu.pitt.dbmi.ccd.anno.vocabulary.attribute.AttributePagedResourcesAssembler;
 import edu.pitt.dbmi.ccd.anno.vocabulary.attribute.AttributeResource;
 import edu.pitt.dbmi.ccd.anno.vocabulary.attribute.AttributeResourceAssembler;
@@ -37,12 +39,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.hateoas.ExposesResourceFor;
 import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.Resources;
 import org.springframework.http.HttpStatus;
 import static org.springframework.util.StringUtils.isEmpty;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * Controller for Vocabulary endpoints
@@ -68,6 +73,7 @@ public class VocabularyController {
     private final VocabularyPagedResourcesAssembler pageAssembler;
     private final AttributeResourceAssembler attributeAssembler;
     private final AttributePagedResourcesAssembler attributePageAssembler;
+    private final SliceLoader sliceLoader;
 
     @Autowired(required = true)
     public VocabularyController(
@@ -78,7 +84,8 @@ public class VocabularyController {
             VocabularyResourceAssembler assembler,
             VocabularyPagedResourcesAssembler pageAssembler,
             AttributeResourceAssembler attributeAssembler,
-            AttributePagedResourcesAssembler attributePageAssembler) {
+            AttributePagedResourcesAssembler attributePageAssembler,
+            SliceLoader sliceLoader) {
         this.request = request;
         this.vocabularyLinks = vocabularyLinks;
         this.vocabularyService = vocabularyService;
@@ -87,21 +94,27 @@ public class VocabularyController {
         this.pageAssembler = pageAssembler;
         this.attributeAssembler = attributeAssembler;
         this.attributePageAssembler = attributePageAssembler;
+        this.sliceLoader = sliceLoader;
     }
 
     /* GET requests */
     /**
      * Get all vocabularies
      *
+     * @param count false to skip counting the vocabularies
      * @param pageable page request
-     * @return page of vocabularies
+     * @param webRequest request, for conditional GET
+     * @return page of vocabularies, or null if not modified
      */
     @RequestMapping(method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public PagedResources<VocabularyResource> vocabularies(Pageable pageable) {
-        final Page<Vocabulary> page = vocabularyService.findAll(pageable);
-        final PagedResources<VocabularyResource> pagedResources = pageAssembler.toResource(page, assembler, request);
+    public Resources<VocabularyResource> vocabularies(@RequestParam(value = "count", required = false, defaultValue = "true") boolean count, Pageable pageable, WebRequest webRequest) {
+        final Slice<Vocabulary> page = count ? vocabularyService.findAll(pageable) : sliceLoader.findSlice(Vocabulary.class, null, pageable);
+        if (ETags.notModified(webRequest, ETags.of(page, v -> v.getId() + ":" + v.getVersion()), null)) {
+            return null;
+        }
+        final Resources<VocabularyResource> pagedResources = pageAssembler.toResources(page, assembler, request);
         pagedResources.add(vocabularyLinks.search());
         return pagedResources;
     }
@@ -110,16 +123,20 @@ public class VocabularyController {
      * Get single vocabulary
      *
      * @param id vocabulary id
-     * @return vocabulary
+     * @param webRequest request, for conditional GET
+     * @return vocabulary, or null if not modified
      */
     @RequestMapping(value = VocabularyLinks.VOCABULARY, method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public VocabularyResource vocabulary(@PathVariable Long id) throws NotFoundException {
+    public VocabularyResource vocabulary(@PathVariable Long id, WebRequest webRequest) throws NotFoundException {
         final Vocabulary vocabulary = vocabularyService.findById(id);
         if (vocabulary == null) {
             throw new VocabularyNotFoundException(id);
         }
+        if (ETags.notModified(webRequest, ETags.of(vocabulary.getId(), vocabulary.getVersion()), null)) {
+            return null;
+        }
         final VocabularyResource resource = assembler.toResource(vocabulary);
         return resource;
     }
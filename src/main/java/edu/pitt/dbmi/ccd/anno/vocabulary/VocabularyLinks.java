@@ -79,7 +79,7 @@ public class VocabularyLinks implements ResourceLinks {
      * @return link to collection
      */
     public Link vocabularies() {
-        String template = toTemplate(entityLinks.linkFor(VocabularyResource.class).toString(), PAGEABLE);
+        String template = toTemplate(entityLinks.linkFor(VocabularyResource.class).toString(), COUNT, PAGEABLE);
         return new Link(template, REL_VOCABULARIES);
     }
 
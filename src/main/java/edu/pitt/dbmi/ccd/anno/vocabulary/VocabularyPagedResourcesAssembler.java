@@ -19,13 +19,17 @@
 package edu.pitt.dbmi.ccd.anno.vocabulary;
 
 import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import java.util.List;
+import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.ResourceAssembler;
+import org.springframework.hateoas.Resources;
 import org.springframework.stereotype.Component;
 
 /**
@@ -61,4 +65,27 @@ public class VocabularyPagedResourcesAssembler extends PagedResourcesAssembler<V
         final Link self = vocabularyLinks.getRequestLink(request);
         return this.toResource(page, assembler, self);
     }
+
+    /**
+     * Create Resources of vocabulary resources, without page metadata when the
+     * entities were not counted
+     *
+     * @param slice page or uncounted slice of entities
+     * @param assembler resource assembler
+     * @param request request data
+     * @return vocabulary resources with self and, for slices, next and previous
+     * links
+     */
+    public Resources<VocabularyResource> toResources(Slice<Vocabulary> slice, ResourceAssembler<Vocabulary, VocabularyResource> assembler, HttpServletRequest request) {
+        if (slice instanceof Page) {
+            return toResource((Page<Vocabulary>) slice, assembler, request);
+        }
+        final List<VocabularyResource> content = slice.getContent()
+                .stream()
+                .map(assembler::toResource)
+                .collect(Collectors.toList());
+        final Resources<VocabularyResource> resources = new Resources<>(content, vocabularyLinks.getRequestLink(request));
+        resources.add(vocabularyLinks.getSliceLinks(slice, request));
+        return resources;
+    }
 }
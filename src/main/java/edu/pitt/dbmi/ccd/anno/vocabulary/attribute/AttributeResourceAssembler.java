@@ -22,8 +22,10 @@ import edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyController;
 import edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyLinks;
 import edu.pitt.dbmi.ccd.db.entity.Attribute;
 import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.springframework.beans.BeanUtils;
@@ -59,15 +61,27 @@ public class AttributeResourceAssembler extends ResourceAssemblerSupport<Attribu
      */
     @Override
     public AttributeResource toResource(Attribute attribute) {
+        return toResource(attribute, Attribute::getChildren);
+    }
+
+    /**
+     * convert Attribute to AttributeResource using preloaded child
+     * attributes
+     *
+     * @param attribute entity
+     * @param children child attributes of an attribute
+     * @return resource
+     */
+    public AttributeResource toResource(Attribute attribute, Function<Attribute, ? extends Collection<Attribute>> children) {
         Assert.notNull(attribute);
 
         // create resource
         AttributeResource resource = createResourceWithId(attribute.getId(), attribute);
 
         // make child attributes resources if there are any
-        Set<AttributeResource> subAttributes = attribute.getChildren()
+        Set<AttributeResource> subAttributes = children.apply(attribute)
                 .stream()
-                .map(this::toResource)
+                .map(a -> toResource(a, children))
                 .collect(Collectors.toSet());
         if (subAttributes.size() > 0) {
             resource.addSubAttributes(subAttributes);
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno;
+
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationController;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationForm;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationBatchWriter;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataForm;
+import edu.pitt.dbmi.ccd.anno.error.ErrorHandler;
+import edu.pitt.dbmi.ccd.anno.error.PreconditionFailedException;
+import edu.pitt.dbmi.ccd.anno.error.PreconditionFailedMessage;
+import edu.pitt.dbmi.ccd.anno.group.GroupController;
+import edu.pitt.dbmi.ccd.anno.util.MediaTypes;
+import edu.pitt.dbmi.ccd.anno.vocabulary.VocabularyController;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.Group;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import edu.pitt.dbmi.ccd.db.service.AnnotationService;
+import edu.pitt.dbmi.ccd.db.service.GroupService;
+import edu.pitt.dbmi.ccd.db.service.VocabularyService;
+import edu.pitt.dbmi.ccd.security.userDetails.UserAccountDetails;
+import java.util.Collections;
+import java.util.function.Function;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Verifies conditional requests: 304 for a current If-None-Match, entity
+ * tags that change with edits and replies and differ by format, and 412 for
+ * stale If-Match
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class ConditionalRequestTest {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired(required = true)
+    private AnnotationController annotationController;
+
+    @Autowired(required = true)
+    private VocabularyController vocabularyController;
+
+    @Autowired(required = true)
+    private GroupController groupController;
+
+    @Autowired(required = true)
+    private AnnotationBatchWriter batchWriter;
+
+    @Autowired(required = true)
+    private ErrorHandler errorHandler;
+
+    @SpyBean
+    private AnnotationService annotationService;
+
+    @SpyBean
+    private VocabularyService vocabularyService;
+
+    @SpyBean
+    private GroupService groupService;
+
+    private UserAccount owner;
+    private UserAccountDetails principal;
+
+    private MockHttpServletRequest request;
+
+    @Before
+    public void setUp() {
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        owner = entityManager.find(UserAccount.class, 1L);
+        principal = mock(UserAccountDetails.class);
+        when(principal.getUserAccount()).thenReturn(owner);
+        // read and write through the test's persistence context
+        doAnswer(i -> entityManager.find(Annotation.class, i.getArgumentAt(1, Long.class)))
+                .when(annotationService).findById(any(UserAccount.class), anyLong());
+        doAnswer(i -> {
+            entityManager.flush();
+            return i.getArgumentAt(0, Annotation.class);
+        }).when(annotationService).saveAndFlush(any(Annotation.class));
+        doAnswer(i -> entityManager.find(Vocabulary.class, i.getArgumentAt(0, Long.class)))
+                .when(vocabularyService).findById(anyLong());
+        doAnswer(i -> entityManager.find(Group.class, i.getArgumentAt(0, Long.class)))
+                .when(groupService).findById(anyLong());
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void currentTagIsNotModified() {
+        final String annotation = get(r -> annotationController.annotation(principal, 1L, null, r), null).tag;
+        assertThat(annotation, is(notNullValue()));
+        final Response notModified = get(r -> annotationController.annotation(principal, 1L, null, r), annotation);
+        assertThat(notModified.status, is(HttpStatus.NOT_MODIFIED.value()));
+        assertThat(notModified.body, is(nullValue()));
+
+        final String vocabulary = get(r -> vocabularyController.vocabulary(1L, r), null).tag;
+        assertThat(get(r -> vocabularyController.vocabulary(1L, r), vocabulary).status, is(HttpStatus.NOT_MODIFIED.value()));
+
+        final String group = get(r -> groupController.group(1L, null, r), null).tag;
+        assertThat(get(r -> groupController.group(1L, null, r), group).status, is(HttpStatus.NOT_MODIFIED.value()));
+    }
+
+    @Test
+    public void dataEditChangesTag() {
+        final String before = annotationTag();
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        annotationController.editAnnotationData(principal, 1L, 1L, before, new AnnotationDataForm(null, "Edited"), response);
+        final String after = response.getHeader(HttpHeaders.ETAG);
+        assertThat(after, is(notNullValue()));
+        assertThat(after, is(not(before)));
+
+        final Response modified = get(r -> annotationController.annotation(principal, 1L, null, r), before);
+        assertThat(modified.status, is(HttpStatus.OK.value()));
+        assertThat(get(r -> annotationController.annotationData(principal, 1L, 1L, r), null).tag, is(after));
+        assertThat(entityManager.find(AnnotationData.class, 1L).getValue(), is("Edited"));
+    }
+
+    @Test
+    public void replyChangesParentTag() {
+        final String before = annotationTag();
+        final AnnotationForm reply = new AnnotationForm(1L, 1L, "PUBLIC", "Plaintext", Collections.singletonList(new AnnotationDataForm(1L, "Reply")));
+        final Long version = entityManager.find(Annotation.class, 1L).getVersion();
+        assertThat(batchWriter.write(owner, Collections.singletonList(reply)).getCreated(), is(1L));
+        assertThat(annotationTag(), is(not(before)));
+        assertThat(get(r -> annotationController.annotation(principal, 1L, null, r), before).status, is(HttpStatus.OK.value()));
+
+        // replies leave the parent's version alone, so its owner's copy is still current for writes
+        assertThat(entityManager.find(Annotation.class, 1L).getVersion(), is(version));
+        annotationController.editAnnotationData(principal, 1L, 1L, before, new AnnotationDataForm(null, "After reply"), new MockHttpServletResponse());
+        assertThat(entityManager.find(AnnotationData.class, 1L).getValue(), is("After reply"));
+    }
+
+    @Test
+    public void vocabularyAndGroupEditsChangeTags() {
+        final String vocabulary = get(r -> vocabularyController.vocabulary(1L, r), null).tag;
+        entityManager.find(Vocabulary.class, 1L).setDescription("Edited");
+        entityManager.flush();
+        assertThat(get(r -> vocabularyController.vocabulary(1L, r), vocabulary).status, is(HttpStatus.OK.value()));
+
+        final String group = get(r -> groupController.group(1L, null, r), null).tag;
+        entityManager.find(Group.class, 1L).setDescription("Edited");
+        entityManager.flush();
+        assertThat(get(r -> groupController.group(1L, null, r), group).status, is(HttpStatus.OK.value()));
+    }
+
+    @Test
+    public void staleTagFails() {
+        final String stale = annotationTag();
+        annotationController.editAnnotationData(principal, 1L, 1L, stale, new AnnotationDataForm(null, "First"), new MockHttpServletResponse());
+        // the 412 carries the tag of the data being written
+        final String current = get(r -> annotationController.annotationData(principal, 1L, 1L, r), null).tag;
+        try {
+            annotationController.editAnnotationData(principal, 1L, 1L, stale, new AnnotationDataForm(null, "Second"), new MockHttpServletResponse());
+            fail("Expected PreconditionFailedException");
+        } catch (PreconditionFailedException ex) {
+            assertThat(ex.getEtag(), is(current));
+            final MockHttpServletResponse response = new MockHttpServletResponse();
+            final PreconditionFailedMessage message = new ErrorHandler().handlePreconditionFailedException(ex, new MockHttpServletRequest(), response);
+            assertThat(message.getStatus(), is(HttpStatus.PRECONDITION_FAILED.value()));
+            assertThat(response.getHeader(HttpHeaders.ETAG), is(current));
+        }
+        assertThat(entityManager.find(AnnotationData.class, 1L).getValue(), is("First"));
+    }
+
+    @Test
+    public void wildcardOrMissingTagProceeds() {
+        annotationController.editAnnotationData(principal, 1L, 1L, "*", new AnnotationDataForm(null, "Wildcard"), new MockHttpServletResponse());
+        assertThat(entityManager.find(AnnotationData.class, 1L).getValue(), is("Wildcard"));
+        annotationController.editAnnotationData(principal, 1L, 1L, null, new AnnotationDataForm(null, "Missing"), new MockHttpServletResponse());
+        assertThat(entityManager.find(AnnotationData.class, 1L).getValue(), is("Missing"));
+        annotationController.editAnnotationData(principal, 1L, 1L, "\"other\", " + annotationTag(), new AnnotationDataForm(null, "Listed"), new MockHttpServletResponse());
+        assertThat(entityManager.find(AnnotationData.class, 1L).getValue(), is("Listed"));
+    }
+
+    @Test
+    public void formatsHaveTheirOwnTags() {
+        final Response json = get(r -> annotationController.annotation(principal, 1L, null, r), null);
+        final Response smile = get(r -> annotationController.annotation(principal, 1L, null, r), null, MediaTypes.SMILE_VALUE);
+        final Response cbor = get(r -> annotationController.annotation(principal, 1L, null, r), null, "application/cbor, application/json;q=0.5");
+        assertThat(smile.tag, is(not(json.tag)));
+        assertThat(cbor.tag, is(not(json.tag)));
+        assertThat(cbor.tag, is(not(smile.tag)));
+        assertThat(smile.vary, is(HttpHeaders.ACCEPT));
+        assertThat(get(r -> annotationController.annotation(principal, 1L, null, r), null, "*/*").tag, is(json.tag));
+        assertThat(get(r -> annotationController.annotation(principal, 1L, null, r), json.tag, MediaTypes.SMILE_VALUE).status, is(HttpStatus.OK.value()));
+        assertThat(get(r -> annotationController.annotation(principal, 1L, null, r), smile.tag, MediaTypes.SMILE_VALUE).status, is(HttpStatus.NOT_MODIFIED.value()));
+
+        // a tag of any format is a current copy; the response is tagged for the requested one
+        request.addHeader(HttpHeaders.ACCEPT, MediaTypes.SMILE_VALUE);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        annotationController.editAnnotationData(principal, 1L, 1L, cbor.tag, new AnnotationDataForm(null, "Binary"), response);
+        assertThat(entityManager.find(AnnotationData.class, 1L).getValue(), is("Binary"));
+        assertThat(response.getHeader(HttpHeaders.ETAG), is(get(r -> annotationController.annotationData(principal, 1L, 1L, r), null, MediaTypes.SMILE_VALUE).tag));
+        assertThat(response.getHeader(HttpHeaders.VARY), is(HttpHeaders.ACCEPT));
+    }
+
+    @Test
+    public void concurrentWriteFails() {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final PreconditionFailedMessage message = errorHandler.handleObjectOptimisticLockingFailureException(
+                new ObjectOptimisticLockingFailureException(Annotation.class, 1L), new MockHttpServletRequest(), response);
+        assertThat(message.getStatus(), is(HttpStatus.PRECONDITION_FAILED.value()));
+        assertThat(message.getVersion(), is(entityManager.find(Annotation.class, 1L).getVersion()));
+        assertThat(message.getEtag(), is(notNullValue()));
+        assertThat(response.getHeader(HttpHeaders.ETAG), is(message.getEtag()));
+
+        // the tag in the 412 is good for a retry
+        annotationController.editAnnotationData(principal, 1L, 1L, message.getEtag(), new AnnotationDataForm(null, "Retried"), new MockHttpServletResponse());
+        assertThat(entityManager.find(AnnotationData.class, 1L).getValue(), is("Retried"));
+    }
+
+    private String annotationTag() {
+        return get(r -> annotationController.annotation(principal, 1L, null, r), null).tag;
+    }
+
+    /**
+     * Send a GET, with If-None-Match if a tag is given
+     */
+    private static Response get(Function<ServletWebRequest, Object> controller, String ifNoneMatch) {
+        return get(controller, ifNoneMatch, null);
+    }
+
+    /**
+     * Send a GET, with If-None-Match and Accept if given
+     */
+    private static Response get(Function<ServletWebRequest, Object> controller, String ifNoneMatch, String accept) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        if (accept != null) {
+            request.addHeader(HttpHeaders.ACCEPT, accept);
+        }
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final Object body = controller.apply(new ServletWebRequest(request, response));
+        return new Response(response.getStatus(), response.getHeader(HttpHeaders.ETAG), response.getHeader(HttpHeaders.VARY), body);
+    }
+
+    private static final class Response {
+
+        private final int status;
+        private final String tag;
+        private final String vary;
+        private final Object body;
+
+        Response(int status, String tag, String vary, Object body) {
+            this.status = status;
+            this.tag = tag;
+            this.vary = vary;
+            this.body = body;
+        }
+    }
+
+}
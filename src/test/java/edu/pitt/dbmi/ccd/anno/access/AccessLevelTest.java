@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.access;
+
+import static edu.pitt.dbmi.ccd.anno.access.AccessLevel.GROUP;
+import static edu.pitt.dbmi.ccd.anno.access.AccessLevel.PRIVATE;
+import static edu.pitt.dbmi.ccd.anno.access.AccessLevel.PUBLIC;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * Verifies access level names and the allowed access changes
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public class AccessLevelTest {
+
+    @Test
+    public void accessOnlyWidens() {
+        assertThat(PUBLIC.canChangeTo(PUBLIC), is(true));
+        assertThat(PUBLIC.canChangeTo(GROUP), is(false));
+        assertThat(PUBLIC.canChangeTo(PRIVATE), is(false));
+
+        assertThat(GROUP.canChangeTo(PUBLIC), is(true));
+        assertThat(GROUP.canChangeTo(GROUP), is(true));
+        assertThat(GROUP.canChangeTo(PRIVATE), is(false));
+
+        assertThat(PRIVATE.canChangeTo(PUBLIC), is(true));
+        assertThat(PRIVATE.canChangeTo(GROUP), is(true));
+        assertThat(PRIVATE.canChangeTo(PRIVATE), is(true));
+    }
+
+    @Test
+    public void unknownLevelIsNotAllowed() {
+        for (AccessLevel level : AccessLevel.values()) {
+            assertThat(level.canChangeTo(null), is(false));
+        }
+    }
+
+    @Test
+    public void namesIgnoreCase() {
+        assertThat(AccessLevel.of("PUBLIC"), is(PUBLIC));
+        assertThat(AccessLevel.of("group"), is(GROUP));
+        assertThat(AccessLevel.of(" Private "), is(PRIVATE));
+        assertThat(AccessLevel.of("secret"), is(nullValue()));
+        assertThat(AccessLevel.of(null), is(nullValue()));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.anno.access.AccessLevel;
+import edu.pitt.dbmi.ccd.anno.access.AccessRegistry;
+import edu.pitt.dbmi.ccd.anno.error.AccessUpdateException;
+import edu.pitt.dbmi.ccd.db.entity.Access;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.Group;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies access and group changes applied to an annotation
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationAccessUpdateTest {
+
+    @Autowired
+    private AnnotationController annotationController;
+
+    @Autowired
+    private AccessRegistry accessRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private AnnotationController controller;
+    private Group group;
+
+    @Before
+    public void setUp() {
+        controller = AopTestUtils.getTargetObject(annotationController);
+        group = entityManager.find(Group.class, 1L);
+    }
+
+    @Test
+    public void privateToGroupSetsGroup() {
+        final Annotation annotation = controller.updateAnnotation(annotation(4L), access(AccessLevel.GROUP), group);
+        assertThat(level(annotation), is(AccessLevel.GROUP));
+        assertThat(annotation.getGroup(), is(sameInstance(group)));
+    }
+
+    @Test
+    public void privateToGroupRequiresGroup() {
+        final Annotation annotation = annotation(4L);
+        rejected(annotation, AccessLevel.GROUP, null);
+        assertThat(level(annotation), is(AccessLevel.PRIVATE));
+    }
+
+    @Test
+    public void groupOnPrivateIsRejected() {
+        final Annotation annotation = annotation(4L);
+        rejected(annotation, null, group);
+        rejected(annotation, AccessLevel.PRIVATE, group);
+        assertThat(level(annotation), is(AccessLevel.PRIVATE));
+        assertThat(annotation.getGroup(), is(nullValue()));
+    }
+
+    @Test
+    public void groupOnPublicIsRejected() {
+        final Annotation annotation = annotation(3L);
+        rejected(annotation, AccessLevel.PUBLIC, group);
+        assertThat(level(annotation), is(AccessLevel.GROUP));
+        assertThat(annotation.getGroup(), is(sameInstance(group)));
+    }
+
+    @Test
+    public void groupToPublicClearsGroup() {
+        final Annotation annotation = controller.updateAnnotation(annotation(3L), access(AccessLevel.PUBLIC), null);
+        assertThat(level(annotation), is(AccessLevel.PUBLIC));
+        assertThat(annotation.getGroup(), is(nullValue()));
+    }
+
+    @Test
+    public void groupKeepsGroupWhenNoneGiven() {
+        final Annotation annotation = controller.updateAnnotation(annotation(3L), null, null);
+        assertThat(level(annotation), is(AccessLevel.GROUP));
+        assertThat(annotation.getGroup(), is(sameInstance(group)));
+    }
+
+    @Test
+    public void accessCannotNarrow() {
+        rejected(annotation(3L), AccessLevel.PRIVATE, null);
+        rejected(annotation(1L), AccessLevel.GROUP, group);
+        rejected(annotation(1L), AccessLevel.PRIVATE, null);
+    }
+
+    private void rejected(Annotation annotation, AccessLevel level, Group group) {
+        try {
+            controller.updateAnnotation(annotation, access(level), group);
+            fail("Expected AccessUpdateException");
+        } catch (AccessUpdateException ex) {
+            // expected
+        }
+    }
+
+    private Annotation annotation(Long id) {
+        return entityManager.find(Annotation.class, id);
+    }
+
+    private Access access(AccessLevel level) {
+        return accessRegistry.get(level);
+    }
+
+    private AccessLevel level(Annotation annotation) {
+        return accessRegistry.level(annotation.getAccess());
+    }
+}
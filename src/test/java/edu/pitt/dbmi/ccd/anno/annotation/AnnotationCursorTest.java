@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.visibleTo;
+import edu.pitt.dbmi.ccd.anno.error.InvalidCursorException;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specifications;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies cursor tokens and keyset paging by id, creation and modification
+ * date
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationCursorTest {
+
+    private static final Sort CREATED_ASC = new Sort(Sort.Direction.ASC, "created");
+    private static final Sort MODIFIED_ASC = new Sort(Sort.Direction.ASC, "modified");
+    private static final Sort MODIFIED_DESC = new Sort(Sort.Direction.DESC, "modified");
+
+    @Autowired
+    private AnnotationPageLoader pageLoader;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private UserAccount requester;
+
+    @Before
+    public void setUp() {
+        requester = entityManager.find(UserAccount.class, 1L);
+    }
+
+    @Test
+    public void roundTrip() {
+        final Annotation last = new Annotation();
+        last.setId(42L);
+        final Timestamp created = new Timestamp(1500000000123L);
+        created.setNanos(123456000);
+        last.setCreated(created);
+
+        final AnnotationCursor cursor = AnnotationCursor.first(CREATED_ASC).next(last);
+        final String token = cursor.encode();
+        final AnnotationCursor decoded = AnnotationCursor.decode(token, CREATED_ASC);
+        assertThat(decoded.encode(), is(token));
+        assertThat(decoded.getSort(), is(new Sort(Sort.Direction.ASC, "created", "id")));
+    }
+
+    @Test
+    public void emptyTokenStartsListing() {
+        assertThat(AnnotationCursor.decode("", null).getSort(), is(new Sort(Sort.Direction.ASC, "id")));
+    }
+
+    @Test
+    public void invalidTokensAreRejected() {
+        rejected("not a cursor", null);
+        rejected(token("id,ASC,1,,"), null);
+        rejected(token("id,ASC,one,,1"), null);
+        rejected(token("id,UP,1,,1"), null);
+        rejected(token("id,ASC,1,,1,extra"), null);
+    }
+
+    @Test
+    public void tokensOfAnotherSortAreRejected() {
+        final Annotation last = new Annotation();
+        last.setId(1L);
+        last.setCreated(new Timestamp(0));
+        final String token = AnnotationCursor.first(CREATED_ASC).next(last).encode();
+        rejected(token, MODIFIED_ASC);
+        rejected(token, new Sort(Sort.Direction.DESC, "created"));
+        rejected(token, null);
+        rejected("", new Sort(Sort.Direction.ASC, "vocabulary"));
+        rejected("", new Sort(Sort.Direction.ASC, "created").and(new Sort(Sort.Direction.ASC, "modified")));
+    }
+
+    @Test
+    public void tiesAreBrokenById() {
+        final Timestamp same = new Timestamp(1500000000000L);
+        for (long id = 1; id <= 4; id++) {
+            entityManager.find(Annotation.class, id).setCreated(same);
+        }
+        entityManager.flush();
+        assertThat(pages(CREATED_ASC, 1), contains(1L, 2L, 3L, 4L));
+        assertThat(pages(CREATED_ASC, 3), contains(1L, 2L, 3L, 4L));
+        assertThat(pages(new Sort(Sort.Direction.DESC, "created"), 3), contains(4L, 3L, 2L, 1L));
+    }
+
+    @Test
+    public void unsetDatesSortBelowEveryDate() {
+        entityManager.find(Annotation.class, 2L).setModified(new Timestamp(1500000000000L));
+        entityManager.find(Annotation.class, 3L).setModified(new Timestamp(1400000000000L));
+        entityManager.flush();
+        assertThat(pages(MODIFIED_ASC, 1), contains(1L, 4L, 3L, 2L));
+        assertThat(pages(MODIFIED_ASC, 3), contains(1L, 4L, 3L, 2L));
+        assertThat(pages(MODIFIED_DESC, 1), contains(2L, 3L, 4L, 1L));
+        assertThat(pages(MODIFIED_DESC, 3), contains(2L, 3L, 4L, 1L));
+    }
+
+    @Test
+    public void unsetDateRoundTrip() {
+        final Annotation last = new Annotation();
+        last.setId(7L);
+        final String token = AnnotationCursor.first(MODIFIED_ASC).next(last).encode();
+        assertThat(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8), is("modified,ASC,,,7"));
+        assertThat(AnnotationCursor.decode(token, MODIFIED_ASC).encode(), is(token));
+        rejected(token("id,ASC,,,7"), null);
+    }
+
+    /**
+     * Ids of every annotation, read one page at a time
+     */
+    private List<Long> pages(Sort sort, int size) {
+        final List<Long> ids = new ArrayList<>();
+        AnnotationCursor cursor = AnnotationCursor.decode("", sort);
+        do {
+            final AnnotationPage page = pageLoader.load(Specifications.where(visibleTo(requester)), cursor, size);
+            page.getSlice().forEach(a -> ids.add(a.getId()));
+            cursor = (page.getNext() != null) ? AnnotationCursor.decode(page.getNext().encode(), sort) : null;
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void rejected(String token, Sort sort) {
+        try {
+            AnnotationCursor.decode(token, sort);
+            fail("Expected InvalidCursorException");
+        } catch (InvalidCursorException ex) {
+            // expected
+        }
+    }
+}
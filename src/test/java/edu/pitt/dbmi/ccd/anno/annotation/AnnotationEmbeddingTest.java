@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataResource;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.util.Collections;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.hateoas.Resources;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies that only shared embedding leaves inline resources out of the
+ * representation; by default they are written, even when null
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationEmbeddingTest {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired(required = true)
+    @Qualifier("_halObjectMapper")
+    private ObjectMapper mapper;
+
+    @Test
+    public void inlineWritesNullResources() throws Exception {
+        final JsonNode annotation = mapper.valueToTree(resource());
+        assertThat(annotation.has(AnnotationResource.VOCABULARY_RESOURCE), is(true));
+        assertThat(annotation.get(AnnotationResource.VOCABULARY_RESOURCE).isNull(), is(true));
+        final JsonNode data = annotation.get(AnnotationResource.DATA).get(0);
+        assertThat(data.has(AnnotationDataResource.ATTRIBUTE_RESOURCE), is(true));
+        assertThat(data.get(AnnotationDataResource.ATTRIBUTE_RESOURCE).isNull(), is(true));
+    }
+
+    @Test
+    public void sharedLeavesResourcesOut() throws Exception {
+        final AnnotationResource resource = resource();
+        AnnotationEmbedding.shared(new Resources<>(Collections.singletonList(resource)));
+        final JsonNode annotation = mapper.valueToTree(resource);
+        assertThat(annotation.has(AnnotationResource.VOCABULARY_RESOURCE), is(false));
+        final JsonNode data = annotation.get(AnnotationResource.DATA).get(0);
+        assertThat(data.has(AnnotationDataResource.ATTRIBUTE_RESOURCE), is(false));
+        assertThat(data.get("value").asText(), is("Public annotation"));
+    }
+
+    /**
+     * Annotation 1 and its data, without inline resources
+     */
+    private AnnotationResource resource() {
+        final AnnotationResource resource = new AnnotationResource(entityManager.find(Annotation.class, 1L));
+        resource.addData(new AnnotationDataResource(entityManager.find(AnnotationData.class, 1L)));
+        return resource;
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.visibleTo;
+import edu.pitt.dbmi.ccd.anno.error.InvalidFacetException;
+import edu.pitt.dbmi.ccd.db.entity.Group;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies that facet counts only include annotations visible to the
+ * requester
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationFacetsTest {
+
+    private static final String TEXT = AnnotationFacets.ATTRIBUTE + "1";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired(required = true)
+    private AnnotationFacets facets;
+
+    private UserAccount owner;
+    private UserAccount other;
+
+    @Before
+    public void setUp() {
+        owner = entityManager.find(UserAccount.class, 1L);
+        other = entityManager.find(UserAccount.class, 2L);
+    }
+
+    @Test
+    public void nonMemberCountsPublicOnly() throws InvalidFacetException {
+        final Map<String, Map<String, Long>> counts = count(other);
+        assertThat(counts.get(AnnotationFacets.VOCAB), hasEntry("Plaintext", 2L));
+        assertThat(counts.get(AnnotationFacets.USER), hasEntry("isaac", 2L));
+        assertThat(counts.get(TEXT).keySet(), contains("Child annotation", "Public annotation"));
+    }
+
+    @Test
+    public void memberCountsGroupAnnotations() throws InvalidFacetException {
+        final Group group = entityManager.find(Group.class, 1L);
+        group.getMembers().add(other);
+        entityManager.flush();
+
+        final Map<String, Map<String, Long>> counts = count(other);
+        assertThat(counts.get(AnnotationFacets.VOCAB), hasEntry("Plaintext", 3L));
+        assertThat(counts.get(TEXT), hasEntry("Scientists group annotation", 1L));
+        assertThat(counts.get(TEXT), not(hasKey("Private annotation")));
+    }
+
+    @Test
+    public void ownerCountsAll() throws InvalidFacetException {
+        final Map<String, Map<String, Long>> counts = count(owner);
+        assertThat(counts.get(AnnotationFacets.VOCAB), hasEntry("Plaintext", 4L));
+        assertThat(counts.get(AnnotationFacets.USER), hasEntry("isaac", 4L));
+        assertThat(counts.get(TEXT).size(), is(5));
+        assertThat(counts.get(TEXT), hasEntry("Private annotation with additional data", 1L));
+    }
+
+    @Test
+    public void unknownFacet() {
+        try {
+            facets.count(visibleTo(owner), Collections.singleton("access"), 10);
+            fail("Expected InvalidFacetException");
+        } catch (InvalidFacetException ex) {
+            // expected
+        }
+    }
+
+    private Map<String, Map<String, Long>> count(UserAccount requester) throws InvalidFacetException {
+        return facets.count(visibleTo(requester), Arrays.asList(AnnotationFacets.VOCAB, AnnotationFacets.USER, TEXT), 10);
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.visibleTo;
+import edu.pitt.dbmi.ccd.anno.util.Fields;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specifications;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies that a page of annotations is read and assembled in a fixed number
+ * of queries
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationPageLoaderTest {
+
+    // ids, count, annotations, data, children
+    private static final long MAX_STATEMENTS = 5;
+
+    @Autowired
+    private AnnotationPageLoader pageLoader;
+
+    @Autowired
+    private AnnotationResourceAssembler assembler;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private UserAccount requester;
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp() {
+        requester = entityManager.find(UserAccount.class, 1L);
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @Test
+    public void lastPage() {
+        final List<AnnotationResource> resources = load(new PageRequest(0, 20));
+        assertThat(resources.size(), is(4));
+        assertThat(resources.get(0).getLink("children"), is(notNullValue()));
+        assertThat(resources.get(0).getChildCount(), is(1L));
+        assertThat(resources.get(1).getLink("children"), is(nullValue()));
+        assertThat(resources.get(1).getChildCount(), is(0L));
+        assertThat(resources.get(3).getData().size(), is(2));
+        assertThat(statistics.getPrepareStatementCount(), lessThanOrEqualTo(MAX_STATEMENTS - 1));
+    }
+
+    @Test
+    public void fullPage() {
+        final List<AnnotationResource> resources = load(new PageRequest(0, 2));
+        assertThat(resources.size(), is(2));
+        assertThat(statistics.getPrepareStatementCount(), lessThanOrEqualTo(MAX_STATEMENTS));
+    }
+
+    @Test
+    public void sparseFields() {
+        final Fields fields = Fields.parse("created,vocabulary", AnnotationResource.FIELDS);
+        final AnnotationPage page = pageLoader.load(Specifications.where(visibleTo(requester)), new PageRequest(0, 20), fields);
+        final List<AnnotationResource> resources = page.getPage()
+                .getContent()
+                .stream()
+                .map(a -> assembler.toResource(a, page, fields))
+                .collect(Collectors.toList());
+        assertThat(resources.size(), is(4));
+        assertThat(resources.get(0).getVocabulary(), is("Plaintext"));
+        assertThat(resources.get(0).getUser(), is(nullValue()));
+        assertThat(resources.get(0).getChildCount(), is(nullValue()));
+        assertThat(resources.get(0).getLink("children"), is(nullValue()));
+        assertThat(resources.get(3).getData(), is(nullValue()));
+        // data and children are not loaded
+        assertThat(statistics.getPrepareStatementCount(), lessThanOrEqualTo(MAX_STATEMENTS - 3));
+    }
+
+    @Test
+    public void keysetSlices() {
+        final List<Long> ids = new ArrayList<>();
+        AnnotationCursor cursor = AnnotationCursor.decode("", new Sort(Sort.Direction.DESC, "id"));
+        do {
+            statistics.clear();
+            final AnnotationPage page = pageLoader.load(Specifications.where(visibleTo(requester)), cursor, 1);
+            page.getSlice().forEach(a -> ids.add(a.getId()));
+            // never counted
+            assertThat(statistics.getPrepareStatementCount(), lessThanOrEqualTo(MAX_STATEMENTS - 1));
+            cursor = (page.getNext() != null) ? AnnotationCursor.decode(page.getNext().encode(), new Sort(Sort.Direction.DESC, "id")) : null;
+        } while (cursor != null);
+        assertThat(ids, contains(4L, 3L, 2L, 1L));
+    }
+
+    @Test
+    public void byIds() {
+        final AnnotationPage page = pageLoader.load(Specifications.where(visibleTo(requester)), Arrays.asList(3L, 99L, 1L));
+        final List<Long> ids = page.getSlice()
+                .getContent()
+                .stream()
+                .map(a -> a.getId())
+                .collect(Collectors.toList());
+        // request order, without the unknown id; never counted
+        assertThat(ids, contains(3L, 1L));
+        assertThat(statistics.getPrepareStatementCount(), lessThanOrEqualTo(MAX_STATEMENTS - 1));
+    }
+
+    private List<AnnotationResource> load(PageRequest pageable) {
+        final AnnotationPage page = pageLoader.load(Specifications.where(visibleTo(requester)), pageable);
+        return page.getPage()
+                .getContent()
+                .stream()
+                .map(a -> assembler.toResource(a, page))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.anno.access.AccessLevel;
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.visibleTo;
+import edu.pitt.dbmi.ccd.db.entity.Access;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.Group;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies that annotation visibility in queries follows the access rules:
+ * public annotations are visible to everyone, group annotations to members
+ * of the group, and every annotation to its owner
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationSpecificationsTest {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private UserAccount owner;
+    private UserAccount other;
+    private Group group;
+
+    @Before
+    public void setUp() {
+        owner = entityManager.find(UserAccount.class, 1L);
+        other = entityManager.find(UserAccount.class, 2L);
+        group = entityManager.find(Group.class, 1L);
+    }
+
+    @Test
+    public void nonMemberSeesPublicOnly() {
+        assertThat(visible(other), contains(1L, 2L));
+        assertThat(visible(other), is(expected(other)));
+    }
+
+    @Test
+    public void memberSeesPublicAndGroup() {
+        group.getMembers().add(other);
+        entityManager.flush();
+        assertThat(visible(other), contains(1L, 2L, 3L));
+        assertThat(visible(other), is(expected(other)));
+    }
+
+    @Test
+    public void ownerSeesAll() {
+        assertThat(visible(owner), contains(1L, 2L, 3L, 4L));
+        assertThat(visible(owner), is(expected(owner)));
+    }
+
+    @Test
+    public void accessNamesIgnoreCase() {
+        entityManager.find(Access.class, 1L).setName("public");
+        entityManager.find(Access.class, 2L).setName("Group");
+        group.getMembers().add(other);
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(visible(other), containsInAnyOrder(1L, 2L, 3L));
+    }
+
+    /**
+     * Ids of annotations selected by the specification
+     */
+    private List<Long> visible(UserAccount requester) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        final Root<Annotation> root = query.from(Annotation.class);
+        query.select(root.get("id"))
+                .where(visibleTo(requester).toPredicate(root, query, cb))
+                .orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    /**
+     * Ids of annotations visible by the access rules, checked in memory
+     */
+    private List<Long> expected(UserAccount requester) {
+        final CriteriaQuery<Annotation> query = entityManager.getCriteriaBuilder().createQuery(Annotation.class);
+        query.select(query.from(Annotation.class));
+        return entityManager.createQuery(query).getResultList().stream()
+                .filter(annotation -> isVisible(annotation, requester))
+                .map(Annotation::getId)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isVisible(Annotation annotation, UserAccount requester) {
+        if (annotation.getUser().getId().equals(requester.getId())) {
+            return true;
+        }
+        switch (AccessLevel.of(annotation.getAccess().getName())) {
+            case PUBLIC:
+                return true;
+            case GROUP:
+                final Set<Long> members = annotation.getGroup().getMembers().stream()
+                        .map(UserAccount::getId)
+                        .collect(Collectors.toSet());
+                return members.contains(requester.getId());
+            default:
+                return false;
+        }
+    }
+}
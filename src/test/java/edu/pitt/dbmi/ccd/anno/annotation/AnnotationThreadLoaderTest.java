@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.notRedacted;
+import static edu.pitt.dbmi.ccd.anno.annotation.AnnotationSpecifications.visibleTo;
+import edu.pitt.dbmi.ccd.db.entity.Access;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.domain.Specifications;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies the order of replies in a thread and that replies below a hidden
+ * reply are left out. The test database is loaded one level at a time.
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationThreadLoaderTest {
+
+    @Autowired
+    private AnnotationThreadLoader threadLoader;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private UserAccount isaac;
+    private UserAccount alan;
+    private Annotation root;
+
+    // 1 -> 2 -> 6
+    //   -> 5 -> 9
+    //   -> 7 (private to alan) -> 8
+    private Long reply5;
+    private Long reply6;
+    private Long reply7;
+    private Long reply8;
+    private Long reply9;
+
+    @Before
+    public void setUp() {
+        isaac = entityManager.find(UserAccount.class, 1L);
+        alan = entityManager.find(UserAccount.class, 2L);
+        root = entityManager.find(Annotation.class, 1L);
+        final Annotation reply2 = entityManager.find(Annotation.class, 2L);
+        reply5 = reply(root, isaac, 1L).getId();
+        reply6 = reply(reply2, isaac, 1L).getId();
+        final Annotation hidden = reply(root, alan, 3L);
+        reply7 = hidden.getId();
+        reply8 = reply(hidden, alan, 1L).getId();
+        reply9 = reply(entityManager.find(Annotation.class, reply5), isaac, 1L).getId();
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    public void depthFirstInIdOrder() {
+        assertThat(ids(load(alan, 10, 100)), contains(1L, 2L, reply6, reply5, reply9, reply7, reply8));
+    }
+
+    @Test
+    public void repliesBelowHiddenReplyAreDropped() {
+        final AnnotationThread thread = load(isaac, 10, 100);
+        assertThat(ids(thread), contains(1L, 2L, reply6, reply5, reply9));
+        assertThat(thread.isTruncated(), is(false));
+    }
+
+    @Test
+    public void depthLimit() {
+        assertThat(ids(load(alan, 1, 100)), contains(1L, 2L, reply5, reply7));
+    }
+
+    @Test
+    public void sizeLimit() {
+        final AnnotationThread thread = load(alan, 10, 3);
+        assertThat(ids(thread), contains(1L, 2L, reply5, reply7));
+        assertThat(thread.isTruncated(), is(true));
+    }
+
+    private AnnotationThread load(UserAccount requester, int maxDepth, int maxSize) {
+        return threadLoader.load(root, Specifications.where(visibleTo(requester)).and(notRedacted()), maxDepth, maxSize);
+    }
+
+    private Annotation reply(Annotation parent, UserAccount user, Long access) {
+        final Annotation reply = new Annotation(
+                user,
+                entityManager.find(AnnotationTarget.class, 1L),
+                parent,
+                entityManager.find(Access.class, access),
+                null,
+                entityManager.find(Vocabulary.class, 1L));
+        entityManager.persist(reply);
+        return reply;
+    }
+
+    private static List<Long> ids(AnnotationThread thread) {
+        return thread.getAnnotations().stream().map(Annotation::getId).collect(Collectors.toList());
+    }
+}
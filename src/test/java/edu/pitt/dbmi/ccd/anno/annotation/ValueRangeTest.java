@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation;
+
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataValue;
+import edu.pitt.dbmi.ccd.anno.error.ErrorHandler;
+import edu.pitt.dbmi.ccd.anno.error.ErrorMessage;
+import edu.pitt.dbmi.ccd.anno.error.InvalidValueRangeException;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies parsing of value range bounds, the values they select, and that
+ * invalid bounds are a bad request
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class ValueRangeTest {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Before
+    public void setUp() {
+        value(1L, "1");
+        value(2L, "2.5");
+        value(3L, "10");
+        value(4L, "2020-01-01");
+        value(5L, "2020-06-01T12:00:00Z");
+        entityManager.flush();
+    }
+
+    @Test
+    public void emptyBounds() {
+        assertThat(ValueRange.of(null, null), is(nullValue()));
+        assertThat(ValueRange.of("", ""), is(nullValue()));
+    }
+
+    @Test
+    public void numbers() {
+        assertThat(ValueRange.of("1", "10").isNumeric(), is(true));
+        assertThat(ValueRange.of("-1.5e3", null).isNumeric(), is(true));
+        // from is inclusive, to is exclusive
+        assertThat(select(ValueRange.of("1", "10")), contains(1L, 2L));
+        assertThat(select(ValueRange.of("2", null)), contains(2L, 3L));
+        assertThat(select(ValueRange.of(null, "2.5")), contains(1L));
+        assertThat(select(ValueRange.of("11", null)), is(empty()));
+    }
+
+    @Test
+    public void dates() {
+        assertThat(ValueRange.of("2020-01-01", "2021-01-01").isNumeric(), is(false));
+        assertThat(select(ValueRange.of("2020-01-01", "2021-01-01")), contains(4L, 5L));
+        assertThat(select(ValueRange.of("2020-01-02", null)), contains(5L));
+        assertThat(select(ValueRange.of(null, "2020-06-01T12:00:00Z")), contains(4L));
+        assertThat(select(ValueRange.of("2020-06-01T13:00:00+02:00", null)), contains(5L));
+    }
+
+    @Test
+    public void mixedOrInvalidBoundsAreRejected() {
+        rejected("1", "2020-01-01");
+        rejected("2020-01-01", "10");
+        rejected("one", null);
+        rejected(null, "2020-13-01");
+        rejected("1e999", null);
+    }
+
+    private List<Long> select(ValueRange range) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        final Root<AnnotationDataValue> root = query.from(AnnotationDataValue.class);
+        query.select(root.get("id"))
+                .where(range.toPredicates(root, cb).toArray(new Predicate[0]))
+                .orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private void value(Long dataId, String value) {
+        final AnnotationData data = entityManager.find(AnnotationData.class, dataId);
+        data.setValue(value);
+        final AnnotationDataValue typed = AnnotationDataValue.of(data);
+        final AnnotationDataValue existing = entityManager.find(AnnotationDataValue.class, dataId);
+        if (existing != null) {
+            entityManager.remove(existing);
+            entityManager.flush();
+        }
+        entityManager.persist(typed);
+    }
+
+    private static void rejected(String from, String to) {
+        try {
+            ValueRange.of(from, to);
+            fail("Expected InvalidValueRangeException");
+        } catch (InvalidValueRangeException ex) {
+            final ErrorMessage message = new ErrorHandler().handleInvalidValueRangeException(ex, new MockHttpServletRequest());
+            assertThat(message.getStatus(), is(HttpStatus.BAD_REQUEST.value()));
+        }
+    }
+}
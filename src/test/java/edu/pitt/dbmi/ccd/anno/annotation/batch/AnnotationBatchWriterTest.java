@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationForm;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataForm;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies that failed items of a batch are reported individually and do
+ * not abort the rest of the batch, and that nested data is stored as a tree
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationBatchWriterTest {
+
+    @Autowired
+    private AnnotationBatchWriter batchWriter;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private UserAccount requester;
+
+    @Before
+    public void setUp() {
+        requester = entityManager.find(UserAccount.class, 1L);
+    }
+
+    @Test
+    public void failedItemsAreIsolated() {
+        final List<AnnotationForm> forms = Arrays.asList(
+                form(1L, "PUBLIC", "Plaintext", 1L),
+                // invalid: no vocabulary
+                form(1L, "PUBLIC", null, 1L),
+                // unknown vocabulary
+                form(1L, "PUBLIC", "Unknown", 1L),
+                // unknown attribute
+                form(1L, "PUBLIC", "Plaintext", 99L),
+                // unknown target
+                form(99L, "PRIVATE", "Plaintext", 1L),
+                form(1L, "PRIVATE", "Plaintext", 1L));
+        final AnnotationBatchResult result = batchWriter.write(requester, forms);
+
+        assertThat(result.getCreated(), is(2L));
+        assertThat(result.getFailed(), is(4L));
+        final List<AnnotationBatchItem> items = result.getItems();
+        for (int i = 0; i < items.size(); i++) {
+            final AnnotationBatchItem item = items.get(i);
+            assertThat(item.getIndex(), is(i));
+            final boolean created = (i == 0 || i == 5);
+            assertThat(item.failed(), is(!created));
+            if (created) {
+                assertThat(item.getId(), is(notNullValue()));
+                final Annotation annotation = entityManager.find(Annotation.class, item.getId());
+                assertThat(annotation.getVocabulary().getName(), is("Plaintext"));
+            } else {
+                assertThat(item.getId(), is(nullValue()));
+                assertThat(item.getMessage(), is(notNullValue()));
+            }
+        }
+    }
+
+    @Test
+    public void nestedDataKeepsParents() {
+        final AnnotationDataForm leaf = new AnnotationDataForm(1L, "leaf");
+        final AnnotationDataForm inner = new AnnotationDataForm(1L, Collections.singletonList(leaf));
+        final AnnotationDataForm root = new AnnotationDataForm(1L, Arrays.asList(inner, new AnnotationDataForm(1L, "sibling")));
+        final AnnotationForm form = new AnnotationForm(1L, "PUBLIC", "Plaintext", Collections.singletonList(root));
+        final AnnotationBatchResult result = batchWriter.write(requester, Collections.singletonList(form));
+        assertThat(result.getCreated(), is(1L));
+        entityManager.clear();
+
+        final List<AnnotationData> data = entityManager
+                .createQuery("SELECT d FROM AnnotationData d WHERE d.annotation.id = :id ORDER BY d.id", AnnotationData.class)
+                .setParameter("id", result.getItems().get(0).getId())
+                .getResultList();
+        assertThat(data.size(), is(4));
+        assertThat(data.get(0).getParent(), is(nullValue()));
+        assertThat(data.get(1).getParent().getId(), is(data.get(0).getId()));
+        assertThat(data.get(2).getParent().getId(), is(data.get(1).getId()));
+        assertThat(data.get(2).getValue(), is("leaf"));
+        assertThat(data.get(3).getParent().getId(), is(data.get(0).getId()));
+        assertThat(data.get(3).getValue(), is("sibling"));
+    }
+
+    private static AnnotationForm form(Long target, String access, String vocabulary, Long attribute) {
+        return new AnnotationForm(target, access, vocabulary, Collections.singletonList(new AnnotationDataForm(attribute, "value")));
+    }
+}
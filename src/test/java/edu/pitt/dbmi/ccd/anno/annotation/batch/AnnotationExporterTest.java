@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationFilter;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies that exports page through annotations by id
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationExporterTest {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Test
+    public void chunksDoNotSkipOrRepeat() throws IOException {
+        final UserAccount requester = entityManager.find(UserAccount.class, 1L);
+        final AnnotationFilter filter = new AnnotationFilter(null, null, null, null, null, null, null, true, false, null, null, null, null, null, null);
+        for (int chunkSize : Arrays.asList(1, 2, 3, 4, 500)) {
+            final AnnotationExporter exporter = new AnnotationExporter(objectMapper, chunkSize);
+            ReflectionTestUtils.setField(exporter, "entityManager", entityManager);
+            entityManager.clear();
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final long count = exporter.export(requester, filter, AnnotationExporter.Format.NDJSON, output);
+            assertThat(count, is(4L));
+
+            final List<Long> ids = new ArrayList<>();
+            int data = 0;
+            for (String line : new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+                final JsonNode node = objectMapper.readTree(line);
+                ids.add(node.get("id").asLong());
+                data += node.get("data").size();
+            }
+            assertThat(ids, contains(1L, 2L, 3L, 4L));
+            assertThat(data, is(5));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies chunking, per-line errors and partial progress of a streaming
+ * import
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationImporterTest {
+
+    private static final String VALID = "{\"target\":1,\"access\":\"PUBLIC\",\"vocabulary\":\"Plaintext\",\"data\":[{\"attribute\":1,\"value\":\"%s\"}]}";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AnnotationBatchWriter batchWriter;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private UserAccount requester;
+
+    @Before
+    public void setUp() {
+        requester = entityManager.find(UserAccount.class, 1L);
+    }
+
+    @Test
+    public void chunksAndLineErrors() throws IOException {
+        final AnnotationImporter importer = new AnnotationImporter(objectMapper, batchWriter, 2, 1000);
+        final AnnotationImportResource resource = importer.importAnnotations(requester, input(
+                valid("first"),
+                "{not json",
+                "",
+                valid("second"),
+                valid("third")));
+        assertThat(resource.isComplete(), is(true));
+        assertThat(resource.getLines(), is(5L));
+        assertThat(resource.getCreated(), is(3L));
+        assertThat(resource.getFailed(), is(1L));
+
+        final List<AnnotationImportChunk> chunks = resource.getChunks();
+        assertThat(chunks.size(), is(2));
+        assertThat(chunks.get(0).getFirstLine(), is(1L));
+        assertThat(chunks.get(0).getLastLine(), is(4L));
+        assertThat(chunks.get(0).getCreated(), is(2L));
+        assertThat(chunks.get(0).getErrors().get(0).getLine(), is(2L));
+        assertThat(chunks.get(1).getFirstLine(), is(5L));
+        assertThat(chunks.get(1).getCreated(), is(1L));
+    }
+
+    @Test
+    public void longLinesAreSkipped() throws IOException {
+        final AnnotationImporter importer = new AnnotationImporter(objectMapper, batchWriter, 10, 200);
+        final AnnotationImportResource resource = importer.importAnnotations(requester, input(
+                valid(String.join("", Collections.nCopies(500, "x"))),
+                valid("short")));
+        assertThat(resource.isComplete(), is(true));
+        assertThat(resource.getCreated(), is(1L));
+        assertThat(resource.getFailed(), is(1L));
+        final AnnotationImportChunk.Error error = resource.getChunks().get(0).getErrors().get(0);
+        assertThat(error.getLine(), is(1L));
+        assertThat(error.getMessage(), containsString("200"));
+    }
+
+    @Test
+    public void databaseErrorReportsCommittedChunks() throws IOException {
+        final AnnotationImporter importer = new AnnotationImporter(objectMapper, batchWriter, 1, 100000);
+        // the value does not fit its column
+        final AnnotationImportResource resource = importer.importAnnotations(requester, input(
+                valid("first"),
+                valid(String.join("", Collections.nCopies(5000, "x"))),
+                valid("never read")));
+        assertThat(resource.isComplete(), is(false));
+        assertThat(resource.getLines(), is(2L));
+        assertThat(resource.getCreated(), is(1L));
+        assertThat(resource.getFailed(), is(1L));
+
+        final List<AnnotationImportChunk> chunks = resource.getChunks();
+        assertThat(chunks.size(), is(2));
+        assertThat(chunks.get(0).isWritten(), is(true));
+        assertThat(chunks.get(1).isWritten(), is(false));
+        assertThat(chunks.get(1).getErrors().get(0).getLine(), is(2L));
+    }
+
+    private static String valid(String value) {
+        return String.format(VALID, value);
+    }
+
+    private static ByteArrayInputStream input(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", Arrays.asList(lines)).getBytes(StandardCharsets.UTF_8));
+    }
+}
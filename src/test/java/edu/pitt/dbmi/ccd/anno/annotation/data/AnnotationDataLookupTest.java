@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.data;
+
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies that annotation data is only found through the annotation it
+ * belongs to
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationDataLookupTest {
+
+    @Autowired
+    private AnnotationDataLookup dataLookup;
+
+    @Test
+    public void findWithinAnnotation() {
+        final AnnotationData data = dataLookup.find(4L, 5L);
+        assertThat(data.getId(), is(5L));
+        assertThat(data.getAnnotation().getId(), is(4L));
+        assertThat(data.getAttribute().getName(), is("text"));
+    }
+
+    @Test
+    public void dataOfAnotherAnnotationIsNotFound() {
+        // data 1 belongs to annotation 1
+        assertThat(dataLookup.find(4L, 1L), is(nullValue()));
+        assertThat(dataLookup.find(99L, 1L), is(nullValue()));
+        assertThat(dataLookup.find(1L, 99L), is(nullValue()));
+    }
+
+    @Test
+    public void pageOfAnnotation() {
+        final Page<AnnotationData> page = dataLookup.findByAnnotation(4L, null, new PageRequest(0, 1, new Sort(Sort.Direction.DESC, "id")));
+        assertThat(ids(page), contains(5L));
+        assertThat(page.getTotalElements(), is(2L));
+        assertThat(ids(dataLookup.findByAnnotation(4L, null, new PageRequest(1, 1, new Sort(Sort.Direction.DESC, "id")))), contains(4L));
+    }
+
+    @Test
+    public void pageByAttribute() {
+        assertThat(ids(dataLookup.findByAnnotation(4L, 1L, new PageRequest(0, 10))), contains(4L, 5L));
+        assertThat(ids(dataLookup.findByAnnotation(4L, 99L, new PageRequest(0, 10))), is(empty()));
+        assertThat(ids(dataLookup.findByAnnotation(99L, null, new PageRequest(0, 10))), is(empty()));
+    }
+
+    private static List<Long> ids(Page<AnnotationData> page) {
+        return page.getContent().stream().map(AnnotationData::getId).collect(Collectors.toList());
+    }
+}
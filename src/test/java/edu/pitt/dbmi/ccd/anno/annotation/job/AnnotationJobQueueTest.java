@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.job;
+
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationForm;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationBatchItem;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationBatchResult;
+import edu.pitt.dbmi.ccd.anno.annotation.batch.AnnotationBatchWriter;
+import edu.pitt.dbmi.ccd.anno.error.AnnotationJobNotFoundException;
+import edu.pitt.dbmi.ccd.anno.error.ErrorHandler;
+import edu.pitt.dbmi.ccd.anno.error.JobQueueFullException;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Verifies rejection, retention and shutdown of queued annotation jobs
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public class AnnotationJobQueueTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private AnnotationBatchWriter batchWriter;
+    private UserAccount requester;
+
+    @Before
+    public void setUp() {
+        batchWriter = mock(AnnotationBatchWriter.class);
+        when(batchWriter.write(any(UserAccount.class), anyListOf(AnnotationForm.class))).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            final AnnotationBatchItem item = new AnnotationBatchItem(0);
+            item.setId(1L);
+            return new AnnotationBatchResult(Collections.singletonList(item), 0);
+        });
+        requester = new UserAccount();
+        requester.setId(1L);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    public void fullQueueAsksToRetry() throws InterruptedException {
+        final AnnotationJobQueue queue = new AnnotationJobQueue(batchWriter, 1, 1, 60, 7, 10);
+        try {
+            // one running, one queued
+            queue.submit(requester, new AnnotationForm());
+            queue.submit(requester, new AnnotationForm());
+            try {
+                queue.submit(requester, new AnnotationForm());
+                fail("Expected JobQueueFullException");
+            } catch (JobQueueFullException ex) {
+                assertThat(ex.getRetryAfter(), is(7L));
+                final MockHttpServletResponse response = new MockHttpServletResponse();
+                new ErrorHandler().handleJobQueueFullException(ex, new MockHttpServletRequest(), response);
+                assertThat(response.getHeader(HttpHeaders.RETRY_AFTER), is("7"));
+            }
+        } finally {
+            release.countDown();
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void finishedJobsArePurgedOnRead() throws InterruptedException {
+        final AnnotationJobQueue queue = new AnnotationJobQueue(batchWriter, 1, 1, 0, 10, 10);
+        release.countDown();
+        final AnnotationJob job = queue.submit(requester, new AnnotationForm());
+        queue.shutdown();
+        assertThat(job.finished(), is(true));
+        Thread.sleep(5);
+        try {
+            queue.find(requester, job.getId());
+            fail("Expected AnnotationJobNotFoundException");
+        } catch (AnnotationJobNotFoundException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shutdownWaitsForQueuedJobs() {
+        final AnnotationJobQueue queue = new AnnotationJobQueue(batchWriter, 1, 2, 60, 10, 10);
+        final AnnotationJob first = queue.submit(requester, new AnnotationForm());
+        final AnnotationJob second = queue.submit(requester, new AnnotationForm());
+        release.countDown();
+        queue.shutdown();
+        assertThat(first.getStatus(), is(AnnotationJob.Status.DONE));
+        assertThat(second.getStatus(), is(AnnotationJob.Status.DONE));
+        assertThat(queue.find(requester, second.getId()).getAnnotation(), is(1L));
+    }
+}
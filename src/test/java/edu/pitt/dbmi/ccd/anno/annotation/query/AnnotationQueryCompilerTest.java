@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.query;
+
+import edu.pitt.dbmi.ccd.anno.error.InvalidQueryException;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies which annotations compiled queries match
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationQueryCompilerTest {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired(required = true)
+    private AnnotationQueryCompiler compiler;
+
+    @Test
+    public void names() {
+        assertThat(ids("group:Scientists"), contains(3L));
+        assertThat(ids("access:PUBLIC OR access:PRIVATE"), contains(1L, 2L, 4L));
+        assertThat(ids("vocab:Plaintext NOT access:PUBLIC"), contains(3L, 4L));
+        assertThat(ids("user:alan"), is(empty()));
+    }
+
+    @Test
+    public void negationMatchesNullColumns() {
+        assertThat(ids("group!=Scientists"), contains(1L, 2L, 4L));
+        assertThat(ids("NOT group:Scientists"), contains(1L, 2L, 4L));
+        assertThat(ids("parent!=1"), contains(1L, 3L, 4L));
+        assertThat(ids("NOT parent:1"), contains(1L, 3L, 4L));
+        assertThat(ids("parent:none"), contains(1L, 3L, 4L));
+        assertThat(ids("parent!=none"), contains(2L));
+    }
+
+    @Test
+    public void unsetDates() {
+        assertThat(ids("created>2020-01-01T10:00Z"), is(empty()));
+        assertThat(ids("NOT created>2020-01-01T10:00Z"), contains(1L, 2L, 3L, 4L));
+        assertThat(ids("modified!=2020-01-01"), contains(1L, 2L, 3L, 4L));
+    }
+
+    @Test
+    public void attributesAndText() {
+        assertThat(ids("attr:text"), contains(1L, 2L, 3L, 4L));
+        assertThat(ids("attr:text=\"Child annotation\""), contains(2L));
+        assertThat(ids("attr:text!=\"Child annotation\""), contains(1L, 3L, 4L));
+        assertThat(ids("additional"), contains(4L));
+        assertThat(ids("private OR scientists"), contains(3L, 4L));
+    }
+
+    @Test
+    public void cachesParsedQueries() {
+        final AnnotationQuery query = compiler.compile("vocab:Plaintext user:isaac");
+        assertThat(compiler.compile(" vocab:Plaintext user:isaac "), is(sameInstance(query)));
+        assertThat(query.getExpression(), is("(vocab=Plaintext AND user=isaac)"));
+    }
+
+    @Test
+    public void rejectsLongQueries() {
+        final StringBuilder q = new StringBuilder();
+        while (q.length() <= 2000) {
+            q.append("a ");
+        }
+        try {
+            compiler.compile(q.toString() + "b");
+            fail("Expected InvalidQueryException");
+        } catch (InvalidQueryException ex) {
+            assertThat(ex.getMessage(), is("Invalid query at position 2000: longer than 2000 characters"));
+        }
+    }
+
+    private List<Long> ids(String q) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        final Root<Annotation> root = query.from(Annotation.class);
+        query.select(root.get("id"))
+                .where(compiler.compile(q).getSpecification().toPredicate(root, query, cb))
+                .orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+}
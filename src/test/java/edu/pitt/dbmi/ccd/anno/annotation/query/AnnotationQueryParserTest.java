@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.query;
+
+import edu.pitt.dbmi.ccd.anno.error.InvalidQueryException;
+import java.util.Collections;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Verifies how annotation queries are parsed and normalized
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+public class AnnotationQueryParserTest {
+
+    @Test
+    public void andBindsTighterThanOr() {
+        assertThat(parse("a OR b AND c"), is("(text:a OR (text:b AND text:c))"));
+        assertThat(parse("a AND b OR c"), is("((text:a AND text:b) OR text:c)"));
+        assertThat(parse("(a OR b) c"), is("((text:a OR text:b) AND text:c)"));
+    }
+
+    @Test
+    public void adjacentTermsAreAnded() {
+        assertThat(parse("a b c"), is("(text:a AND text:b AND text:c)"));
+        assertThat(parse("a OR b c"), is("(text:a OR (text:b AND text:c))"));
+        assertThat(parse("NOT a b"), is("(NOT text:a AND text:b)"));
+        assertThat(parse("vocab:Plaintext (user:isaac)"), is("(vocab=Plaintext AND user=isaac)"));
+    }
+
+    @Test
+    public void fieldsAndOperators() {
+        assertThat(parse("vocabulary:Plaintext"), is("vocab=Plaintext"));
+        assertThat(parse("user!=isaac"), is("user!=isaac"));
+        assertThat(parse("dataset=1"), is("target=1"));
+        assertThat(parse("parent:none"), is("parent=none"));
+        assertThat(parse("attr:text"), is("attr:text"));
+        assertThat(parse("attribute:\"my attr\">=5"), is("attr:\"my attr\">=5"));
+        assertThat(parse("text:hello"), is("text:hello"));
+    }
+
+    @Test
+    public void quotedValues() {
+        assertThat(parse("\"hello world\""), is("text:\"hello world\""));
+        assertThat(parse("\"AND\""), is("text:\"AND\""));
+        assertThat(parse("user:\"a b\""), is("user=\"a b\""));
+        assertThat(parse("\"say \\\"hi\\\" \\\\ bye\""), is("text:\"say \\\"hi\\\" \\\\ bye\""));
+    }
+
+    @Test
+    public void unquotedDateTimes() {
+        assertThat(parse("created>2020-01-01T10:00Z"), is("created>\"2020-01-01T10:00Z\""));
+        assertThat(parse("modified:2020-01-01T10:00:00+01:00"), is("modified=\"2020-01-01T10:00:00+01:00\""));
+        assertThat(parse("attr:time<=2020-01-01T10:00Z"), is("attr:time<=\"2020-01-01T10:00Z\""));
+        assertThat(parse("created>=2020-01-01 a"), is("(created>=2020-01-01 AND text:a)"));
+    }
+
+    @Test
+    public void normalizedFormParsesToItself() {
+        for (String q : new String[]{
+            "a OR b c",
+            "NOT (vocab:Plaintext OR user!=isaac) created<2020-01-01T10:00Z",
+            "attr:\"my attr\"=\"x \\\"y\\\"\" parent:none",
+            "\"quoted text\" OR id=3"}) {
+            final String normalized = parse(q);
+            assertThat(q, parse(normalized), is(normalized));
+        }
+    }
+
+    @Test
+    public void errorPositions() {
+        assertError("", "Invalid query at position 0: empty query");
+        assertError("a AND", "Invalid query at position 5: expected a term");
+        assertError("(a", "Invalid query at position 2: expected ')'");
+        assertError("a )", "Invalid query at position 2: unexpected ')'");
+        assertError("foo:bar", "Invalid query at position 0: unknown field 'foo'");
+        assertError("id:abc", "Invalid query at position 3: expected an id");
+        assertError("vocab>x", "Invalid query at position 5: vocab only supports ':', '=' and '!='");
+        assertError("text!=x", "Invalid query at position 4: text only supports ':'");
+        assertError("a created:yesterday", "Invalid query at position 10: expected an ISO-8601 date");
+        assertError("redacted:maybe", "Invalid query at position 9: expected true or false");
+        assertError("user=!x", "Invalid query at position 5: expected a value");
+        assertError("a \"unterminated", "Invalid query at position 2: unterminated string");
+        assertError("attr=x", "Invalid query at position 0: attr needs an attribute name: attr:\"name\"");
+    }
+
+    @Test
+    public void maxDepth() {
+        assertThat(parse(nested("(", 31) + "a" + nested(")", 31)), is("text:a"));
+        assertError(nested("(", 32) + "a" + nested(")", 32), "Invalid query at position 32: nested deeper than 32");
+        assertError(nested("NOT ", 40) + "a", "Invalid query at position 128: nested deeper than 32");
+    }
+
+    private static String parse(String q) {
+        return new AnnotationQueryParser(q, null).parse().toString();
+    }
+
+    private static void assertError(String q, String message) {
+        try {
+            parse(q);
+            fail("Expected InvalidQueryException for " + q);
+        } catch (InvalidQueryException ex) {
+            assertThat(ex.getMessage(), is(message));
+        }
+    }
+
+    private static String nested(String s, int times) {
+        return String.join("", Collections.nCopies(times, s));
+    }
+
+}
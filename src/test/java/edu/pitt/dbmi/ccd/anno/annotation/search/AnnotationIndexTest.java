@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.annotation.search;
+
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Verifies that index searches follow database changes and are joined by
+ * the database however many annotations they match
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class AnnotationIndexTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AnnotationSearchCandidates candidates;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private AnnotationIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        index = new AnnotationIndex(entityManagerFactory, candidates, folder.newFolder().getPath(), false, 2, 60);
+        index.open();
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void builtFromDatabase() {
+        assertThat(index.size(), is(4));
+        assertThat(index.search(Collections.singleton("private"), Collections.emptySet()), containsInAnyOrder(4L));
+        // by prefix, ignoring case
+        assertThat(index.search(Collections.singleton("SCIENT"), Collections.emptySet()), containsInAnyOrder(3L));
+        assertThat(index.search(Arrays.asList("annotation", "additional"), Collections.emptySet()), containsInAnyOrder(4L));
+        assertThat(index.search(Collections.singleton("annotation"), Arrays.asList("private", "child")), containsInAnyOrder(1L, 3L));
+        assertThat(index.searchAny(Arrays.asList("child", "scientists")), containsInAnyOrder(2L, 3L));
+        assertThat(index.search(Collections.singleton("missing"), Collections.emptySet()), is(empty()));
+    }
+
+    @Test
+    public void vocabularyAndAttributeNamesMatch() {
+        assertThat(index.search(Collections.singleton("plaintext"), Collections.emptySet()), containsInAnyOrder(1L, 2L, 3L, 4L));
+        assertThat(index.search(Collections.singleton("text"), Collections.singleton("private")), containsInAnyOrder(1L, 2L, 3L));
+    }
+
+    @Test
+    public void candidatesJoinedByDatabase() {
+        assertThat(ids(index.containing(Collections.singleton("plaintext"), null)), containsInAnyOrder(1L, 2L, 3L, 4L));
+        assertThat(ids(index.containing(Collections.singleton("text"), Collections.singleton("private"))), containsInAnyOrder(1L, 2L, 3L));
+        assertThat(ids(index.containing(null, Arrays.asList("child", "scientists"))), containsInAnyOrder(1L, 4L));
+        assertThat(ids(index.containing(Collections.singleton("missing"), null)), is(empty()));
+        assertThat(index.containing(null, null), is(nullValue()));
+    }
+
+    @Test
+    public void updatedAfterCommit() {
+        setValue(1L, "Quantum entanglement");
+        try {
+            assertThat(index.search(Collections.singleton("quantum"), Collections.emptySet()), containsInAnyOrder(1L));
+            assertThat(index.search(Collections.singleton("public"), Collections.emptySet()), is(empty()));
+        } finally {
+            setValue(1L, "Public annotation");
+        }
+        assertThat(index.search(Collections.singleton("quantum"), Collections.emptySet()), is(empty()));
+        assertThat(index.search(Collections.singleton("public"), Collections.emptySet()), containsInAnyOrder(1L));
+    }
+
+    private List<Long> ids(Specification<Annotation> specification) {
+        final CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        final Root<Annotation> root = query.from(Annotation.class);
+        query.select(root.get("id")).where(specification.toPredicate(root, query, cb));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private void setValue(Long dataId, String value) {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            final AnnotationData data = entityManager.find(AnnotationData.class, dataId);
+            data.setValue(value);
+            index.update(Collections.singleton(data.getAnnotation().getId()));
+            return null;
+        });
+    }
+}
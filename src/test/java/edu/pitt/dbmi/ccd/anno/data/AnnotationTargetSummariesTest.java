@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.data;
+
+import edu.pitt.dbmi.ccd.anno.data.AnnotationTargetCount.Dimension;
+import edu.pitt.dbmi.ccd.db.entity.Access;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
+import edu.pitt.dbmi.ccd.db.entity.Attribute;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import edu.pitt.dbmi.ccd.db.entity.Vocabulary;
+import java.util.Collections;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies that annotation target counts follow new annotations and edits
+ * of data attributes
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class AnnotationTargetSummariesTest {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired(required = true)
+    private AnnotationTargetSummaries summaries;
+
+    @Test
+    public void rebuiltOnStartup() {
+        final Map<Dimension, Map<String, Long>> summary = summaries.find(1L);
+        assertThat(summary.get(Dimension.VOCABULARY).get("Plaintext"), is(4L));
+        assertThat(summary.get(Dimension.USER).get("isaac"), is(4L));
+        assertThat(summary.get(Dimension.ACCESS).get("PUBLIC"), is(2L));
+        assertThat(summary.get(Dimension.ACCESS).get("GROUP"), is(1L));
+        assertThat(summary.get(Dimension.ACCESS).get("PRIVATE"), is(1L));
+        assertThat(summary.get(Dimension.ATTRIBUTE).get("text"), is(4L));
+    }
+
+    @Test
+    public void addedCreatesThenIncrementsCounts() {
+        final UserAccount alan = entityManager.find(UserAccount.class, 2L);
+        final Annotation annotation = new Annotation(alan,
+                entityManager.find(AnnotationTarget.class, 1L),
+                null,
+                entityManager.find(Access.class, 1L),
+                null,
+                entityManager.find(Vocabulary.class, 1L));
+        final AnnotationData data = new AnnotationData(annotation, entityManager.find(Attribute.class, 1L), "value");
+
+        assertThat(summaries.find(1L).get(Dimension.USER).get("alan"), is(nullValue()));
+        summaries.added(annotation, Collections.singleton(data));
+        entityManager.clear();
+        assertThat(summaries.find(1L).get(Dimension.USER).get("alan"), is(1L));
+        summaries.added(annotation, Collections.singleton(data));
+        entityManager.clear();
+        final Map<Dimension, Map<String, Long>> summary = summaries.find(1L);
+        assertThat(summary.get(Dimension.USER).get("alan"), is(2L));
+        assertThat(summary.get(Dimension.ACCESS).get("PUBLIC"), is(4L));
+        assertThat(summary.get(Dimension.ATTRIBUTE).get("text"), is(6L));
+    }
+
+    @Test
+    public void attributeChangeMovesAnnotation() {
+        final Attribute text = entityManager.find(Attribute.class, 1L);
+        final Attribute note = new Attribute();
+        note.setName("note");
+        note.setVocabulary(text.getVocabulary());
+        entityManager.persist(note);
+
+        // annotation 4 keeps "text" through its other data
+        final AnnotationData first = entityManager.find(AnnotationData.class, 4L);
+        first.setAttribute(note);
+        summaries.attributeChanged(first.getAnnotation(), first, text);
+        entityManager.flush();
+        entityManager.clear();
+        Map<Dimension, Map<String, Long>> summary = summaries.find(1L);
+        assertThat(summary.get(Dimension.ATTRIBUTE).get("text"), is(4L));
+        assertThat(summary.get(Dimension.ATTRIBUTE).get("note"), is(1L));
+
+        // its last "text" data moves, and "note" is already counted
+        final AnnotationData second = entityManager.find(AnnotationData.class, 5L);
+        second.setAttribute(entityManager.find(Attribute.class, note.getId()));
+        summaries.attributeChanged(second.getAnnotation(), second, text);
+        entityManager.flush();
+        entityManager.clear();
+        summary = summaries.find(1L);
+        assertThat(summary.get(Dimension.ATTRIBUTE).get("text"), is(3L));
+        assertThat(summary.get(Dimension.ATTRIBUTE).get("note"), is(1L));
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.ccd.anno.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.pitt.dbmi.ccd.anno.annotation.AnnotationResource;
+import edu.pitt.dbmi.ccd.anno.annotation.data.AnnotationDataResource;
+import edu.pitt.dbmi.ccd.anno.data.AnnotationTargetResource;
+import edu.pitt.dbmi.ccd.anno.group.GroupResource;
+import edu.pitt.dbmi.ccd.anno.user.UserResource;
+import edu.pitt.dbmi.ccd.db.entity.Annotation;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationData;
+import edu.pitt.dbmi.ccd.db.entity.AnnotationTarget;
+import edu.pitt.dbmi.ccd.db.entity.Group;
+import edu.pitt.dbmi.ccd.db.entity.UserAccount;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Verifies that resources built for every field keep writing null
+ * properties, and only a requested fieldset leaves them out
+ *
+ * @author Mark Silvis (marksilvis@pitt.edu)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+@Transactional
+public class SparseResourceTest {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired(required = true)
+    @Qualifier("_halObjectMapper")
+    private ObjectMapper mapper;
+
+    @Test
+    public void allFieldsWritesNullAnnotationProperties() throws Exception {
+        final AnnotationResource resource = new AnnotationResource(entityManager.find(Annotation.class, 1L));
+        resource.addData(new AnnotationDataResource(entityManager.find(AnnotationData.class, 1L)));
+        final JsonNode annotation = mapper.valueToTree(resource);
+        assertThat(names(annotation), contains("id", "created", "modified", "upload", "user", "access", "vocabulary", "childCount", "vocabularyResource", "data", "links"));
+        assertThat(annotation.get("childCount").asLong(), is(0L));
+        assertThat(names(annotation.get("data").get(0)), contains("id", "attribute", "attributeResource", "value", "links"));
+    }
+
+    @Test
+    public void fieldsetLeavesAnnotationPropertiesOut() throws Exception {
+        final Fields fields = Fields.parse("vocabulary,data.value", AnnotationResource.FIELDS);
+        final AnnotationResource resource = new AnnotationResource(entityManager.find(Annotation.class, 1L), fields);
+        resource.addData(new AnnotationDataResource(entityManager.find(AnnotationData.class, 1L), fields.nested(AnnotationResource.DATA)));
+        final JsonNode annotation = mapper.valueToTree(resource);
+        assertThat(names(annotation), contains("id", "vocabulary", "data", "links"));
+        assertThat(names(annotation.get("data").get(0)), contains("id", "value", "links"));
+    }
+
+    @Test
+    public void allFieldsWritesNullTargetGroupAndUserProperties() throws Exception {
+        final JsonNode target = mapper.valueToTree(new AnnotationTargetResource(entityManager.find(AnnotationTarget.class, 1L)));
+        assertThat(target.has("modified"), is(true));
+        final JsonNode group = mapper.valueToTree(new GroupResource(entityManager.find(Group.class, 1L)));
+        assertThat(names(group), contains("name", "description", "links"));
+        final JsonNode user = mapper.valueToTree(new UserResource(entityManager.find(UserAccount.class, 1L)));
+        assertThat(names(user), contains("username", "name", "email", "roles", "links"));
+    }
+
+    @Test
+    public void fieldsetLeavesTargetGroupAndUserPropertiesOut() throws Exception {
+        final JsonNode target = mapper.valueToTree(new AnnotationTargetResource(entityManager.find(AnnotationTarget.class, 1L),
+                Fields.parse("title", AnnotationTargetResource.FIELDS)));
+        assertThat(names(target), contains("id", "title", "links"));
+        final JsonNode group = mapper.valueToTree(new GroupResource(entityManager.find(Group.class, 1L),
+                Fields.parse("name", GroupResource.FIELDS)));
+        assertThat(names(group), contains("name", "links"));
+        final JsonNode user = mapper.valueToTree(new UserResource(entityManager.find(UserAccount.class, 1L),
+                Fields.parse("email", UserResource.FIELDS)));
+        assertThat(names(user), contains("username", "email", "links"));
+    }
+
+    private static List<String> names(JsonNode node) {
+        final List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}